@@ -0,0 +1,73 @@
+package bench.jmh;
+
+import main.FileManager;
+import main.TransactionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and saving the text ledger through {@code FileManager}.
+ * <p>
+ * Every invocation processes the whole file, so each one is timed on its own;
+ * run with {@code -prof gc} for the allocation rate.
+ * </p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class FileBenchmark {
+
+    /**
+     * The file the save benchmarks write to.
+     */
+    @State(Scope.Thread)
+    public static class Output {
+        public Path file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            file = Files.createTempFile("pft-bench-save", ".txt");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public TransactionManager loadTransactions(LedgerState ledger) {
+        TransactionManager manager = new TransactionManager();
+        FileManager.loadTransactions(manager, ledger.ledgerFile.toString());
+        return manager;
+    }
+
+    @Benchmark
+    public Path saveTransactions(LedgerState ledger, Output output) throws IOException {
+        FileManager.saveTransactions(ledger.manager, output.file.toString());
+        return output.file;
+    }
+
+    @Benchmark
+    public List<?> getAllTransactions(LedgerState ledger) {
+        return ledger.manager.getAllTransactions();
+    }
+}
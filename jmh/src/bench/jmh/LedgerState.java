@@ -0,0 +1,66 @@
+package bench.jmh;
+
+import bench.LedgerGenerator;
+import main.FileManager;
+import main.TransactionManager;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * A synthetic ledger shared by the benchmarks of one trial.
+ * <p>
+ * The rows come from {@link LedgerGenerator}, so categories, types, amounts and descriptions follow
+ * realistic distributions. The ledger is written to a temporary text file and loaded into a manager.
+ * </p>
+ */
+@State(Scope.Benchmark)
+public class LedgerState {
+    /** The number of generated rows. */
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    /**
+     * Whether the manager caches query results. Off by default, so repeated queries measure the query
+     * engine; run with {@code -p queryCache=true} to measure cache hits instead.
+     */
+    @Param({"false"})
+    public boolean queryCache;
+
+    /** The text ledger holding the generated rows. */
+    public Path ledgerFile;
+
+    /** A manager loaded from {@link #ledgerFile}. */
+    public TransactionManager manager;
+
+    /**
+     * Generates the ledger file and loads it.
+     *
+     * @throws IOException if the file cannot be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ledgerFile = Files.createTempFile("pft-bench", ".txt");
+        new LedgerGenerator(42).writeTextLedger(ledgerFile.toString(), rows);
+        manager = new TransactionManager();
+        manager.setQueryCacheEnabled(queryCache);
+        FileManager.loadTransactions(manager, ledgerFile.toString());
+    }
+
+    /**
+     * Deletes the ledger file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(ledgerFile);
+    }
+}
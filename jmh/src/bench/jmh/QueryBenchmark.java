@@ -0,0 +1,83 @@
+package bench.jmh;
+
+import main.Category;
+import main.RollupPeriod;
+import main.TransactionQuery;
+import main.TransactionSummary;
+import main.TransactionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the read paths of {@code TransactionManager}: the balance, each {@code filterBy*} method, the
+ * rollup reports and largest-N queries.
+ * <p>
+ * Reported as throughput and as sampled latency; run with {@code -prof gc} for the allocation rate.
+ * </p>
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class QueryBenchmark {
+    /** A month near the start of the generated ledger, so every ledger size has rows in it. */
+    private static final LocalDateTime MONTH_START = LocalDateTime.of(2015, 3, 1, 0, 0);
+
+    @Benchmark
+    public double getBalance(LedgerState ledger) {
+        return ledger.manager.getBalance();
+    }
+
+    @Benchmark
+    public List<?> filterByType(LedgerState ledger) {
+        return ledger.manager.filterByType(TransactionType.INCOME);
+    }
+
+    @Benchmark
+    public List<?> filterByCategory(LedgerState ledger) {
+        return ledger.manager.filterByCategory(Category.ENTERTAINMENT);
+    }
+
+    @Benchmark
+    public List<?> filterByDateRange(LedgerState ledger) {
+        return ledger.manager.filterByDateRange(MONTH_START, MONTH_START.plusMonths(1));
+    }
+
+    @Benchmark
+    public List<?> filterByAmountRange(LedgerState ledger) {
+        return ledger.manager.filterByAmountRange(500, 1000);
+    }
+
+    @Benchmark
+    public List<?> filterByKeyword(LedgerState ledger) {
+        return ledger.manager.filterByKeyword("coffee");
+    }
+
+    @Benchmark
+    public TransactionSummary getSummaryBetween(LedgerState ledger) {
+        return ledger.manager.getSummaryBetween(MONTH_START, MONTH_START.plusMonths(1));
+    }
+
+    @Benchmark
+    public Map<?, ?> getPeriodSummaries(LedgerState ledger) {
+        return ledger.manager.getPeriodSummaries(RollupPeriod.MONTH, MONTH_START.toLocalDate(),
+                MONTH_START.toLocalDate().plusYears(1));
+    }
+
+    @Benchmark
+    public List<?> findLargest(LedgerState ledger) {
+        return ledger.manager.findLargest(TransactionQuery.all().withType(TransactionType.EXPENSE)
+                .withDateRange(MONTH_START, MONTH_START.plusYears(1)), 20);
+    }
+}
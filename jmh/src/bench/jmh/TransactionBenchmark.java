@@ -0,0 +1,35 @@
+package bench.jmh;
+
+import main.Category;
+import main.Transaction;
+import main.TransactionType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code Transaction} construction, which includes generating the transaction ID.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+    private final LocalDateTime time = LocalDateTime.of(2024, 5, 17, 12, 30);
+
+    @Benchmark
+    public Transaction newTransaction() {
+        return new Transaction(time, 12.5, "Coffee Shop", TransactionType.EXPENSE, Category.FOOD);
+    }
+}
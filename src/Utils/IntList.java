@@ -0,0 +1,89 @@
+package Utils;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of primitive {@code int} values.
+ * Used for row-position lists where boxing every element into an {@link Integer} would be wasteful.
+ */
+public class IntList {
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates an empty list with a small initial capacity.
+     */
+    public IntList() {
+        this(8);
+    }
+
+    /**
+     * Creates an empty list.
+     *
+     * @param capacity the initial capacity
+     */
+    public IntList(int capacity) {
+        values = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Appends a value to the end of the list.
+     *
+     * @param value the value to add
+     */
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Returns the value at a position.
+     *
+     * @param index the position
+     * @return the value stored there
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * Returns the last value of the list.
+     *
+     * @return the last value
+     */
+    public int last() {
+        return get(size - 1);
+    }
+
+    /**
+     * Returns the number of values in the list.
+     *
+     * @return the list size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks whether the list is empty.
+     *
+     * @return {@code true} if the list holds no values
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Copies the values into a new array.
+     *
+     * @return an array of exactly {@link #size()} values
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
@@ -0,0 +1,184 @@
+package Utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Utility class for the small amount of JSON the HTTP service reads and writes.
+ * Only flat objects are parsed; nested objects and arrays are rejected.
+ */
+public class JsonUtils {
+
+    // Private constructor to prevent instantiation
+    private JsonUtils() {}
+
+    /**
+     * Appends a string as a quoted JSON string, escaping quotes, backslashes and control characters.
+     *
+     * @param text  the buffer to append to
+     * @param value the string to write
+     * @return the buffer
+     */
+    public static StringBuilder appendString(StringBuilder text, String value) {
+        text.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> text.append("\\\"");
+                case '\\' -> text.append("\\\\");
+                case '\n' -> text.append("\\n");
+                case '\r' -> text.append("\\r");
+                case '\t' -> text.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        text.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 15, 16));
+                    } else {
+                        text.append(c);
+                    }
+                }
+            }
+        }
+        return text.append('"');
+    }
+
+    /**
+     * Parses a flat JSON object such as {@code {"amount": 12.5, "type": "EXPENSE"}}.
+     * String values are unescaped; numbers, {@code true}, {@code false} and {@code null} are returned as written.
+     *
+     * @param json the JSON text
+     * @return the members in order of appearance
+     * @throws IllegalArgumentException if the text is not a flat JSON object
+     */
+    public static Map<String, String> parseObject(String json) {
+        Map<String, String> members = new LinkedHashMap<>();
+        int[] position = {skipSpace(json, 0)};
+        expect(json, position, '{');
+        if (peek(json, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String name = readString(json, position);
+                expect(json, position, ':');
+                String value = peek(json, position) == '"' ? readString(json, position) : readLiteral(json, position);
+                members.put(name, value);
+                if (peek(json, position) == ',') {
+                    position[0]++;
+                    continue;
+                }
+                expect(json, position, '}');
+                break;
+            }
+        }
+
+        if (skipSpace(json, position[0]) != json.length()) {
+            throw new IllegalArgumentException("Unexpected text after JSON object");
+        }
+        return members;
+    }
+
+    /**
+     * Skips whitespace.
+     *
+     * @param json     the JSON text
+     * @param position the current position
+     * @return the position of the next non-whitespace character, or the text length
+     */
+    private static int skipSpace(String json, int position) {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) position++;
+        return position;
+    }
+
+    /**
+     * Moves past whitespace and returns the next character without consuming it.
+     *
+     * @param json     the JSON text
+     * @param position the current position, updated in place
+     * @return the next character
+     * @throws IllegalArgumentException at the end of the text
+     */
+    private static char peek(String json, int[] position) {
+        position[0] = skipSpace(json, position[0]);
+        if (position[0] >= json.length()) throw new IllegalArgumentException("Unexpected end of JSON");
+        return json.charAt(position[0]);
+    }
+
+    /**
+     * Consumes an expected character after optional whitespace.
+     *
+     * @param json     the JSON text
+     * @param position the current position, updated in place
+     * @param expected the character that must come next
+     * @throws IllegalArgumentException if another character comes next
+     */
+    private static void expect(String json, int[] position, char expected) {
+        if (peek(json, position) != expected) {
+            throw new IllegalArgumentException("Expected '" + expected + "' at position " + position[0]);
+        }
+        position[0]++;
+    }
+
+    /**
+     * Reads a quoted string and unescapes it.
+     *
+     * @param json     the JSON text
+     * @param position the current position, updated in place
+     * @return the string value
+     * @throws IllegalArgumentException if the string is unterminated or holds an invalid escape
+     */
+    private static String readString(String json, int[] position) {
+        expect(json, position, '"');
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (true) {
+            if (i >= json.length()) throw new IllegalArgumentException("Unterminated JSON string");
+            char c = json.charAt(i++);
+            if (c == '"') break;
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+
+            if (i >= json.length()) throw new IllegalArgumentException("Unterminated JSON string");
+            char escaped = json.charAt(i++);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (i + 4 > json.length()) throw new IllegalArgumentException("Invalid JSON escape");
+                    try {
+                        value.append((char) Integer.parseInt(json.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid JSON escape");
+                    }
+                    i += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        position[0] = i;
+        return value.toString();
+    }
+
+    /**
+     * Reads a number, {@code true}, {@code false} or {@code null} as written.
+     *
+     * @param json     the JSON text
+     * @param position the current position, updated in place
+     * @return the literal text
+     * @throws IllegalArgumentException if the value is empty, an object or an array
+     */
+    private static String readLiteral(String json, int[] position) {
+        int start = position[0];
+        int i = start;
+        while (i < json.length() && ",}".indexOf(json.charAt(i)) < 0 && !Character.isWhitespace(json.charAt(i))) i++;
+        String literal = json.substring(start, i);
+        if (literal.isEmpty() || literal.charAt(0) == '{' || literal.charAt(0) == '[') {
+            throw new IllegalArgumentException("Unsupported JSON value at position " + start);
+        }
+        position[0] = i;
+        return literal;
+    }
+}
@@ -0,0 +1,213 @@
+package Utils;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive {@code long} keys to primitive {@code int} values.
+ * <p>
+ * Uses open addressing with linear probing over parallel arrays, so neither keys nor values are boxed.
+ * Used for key-to-row lookups where a {@code HashMap<Long, Integer>} would allocate two objects per entry.
+ * </p>
+ */
+public class LongIntHashMap {
+    /** Marks an unused slot; the key itself is stored separately. */
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    /**
+     * Creates an empty map with a small initial capacity.
+     */
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty map.
+     *
+     * @param expectedSize the number of entries the map should hold without resizing
+     */
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the value mapped to a key.
+     *
+     * @param key          the key
+     * @param defaultValue the value to return if the key is absent
+     * @return the mapped value, or {@code defaultValue}
+     */
+    public int get(long key, int defaultValue) {
+        if (key == FREE) return hasFreeKey ? freeKeyValue : defaultValue;
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) return values[slot];
+            if (current == FREE) return defaultValue;
+        }
+    }
+
+    /**
+     * Checks whether a key is mapped.
+     *
+     * @param key the key
+     * @return {@code true} if the key is present
+     */
+    public boolean containsKey(long key) {
+        if (key == FREE) return hasFreeKey;
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) return true;
+            if (current == FREE) return false;
+        }
+    }
+
+    /**
+     * Maps a key to a value, replacing any previous value.
+     *
+     * @param key   the key
+     * @param value the value
+     */
+    public void put(long key, int value) {
+        insert(key, value, true);
+    }
+
+    /**
+     * Maps a key to a value unless the key is already present.
+     *
+     * @param key   the key
+     * @param value the value
+     * @return {@code true} if the value was stored, {@code false} if the key was already mapped
+     */
+    public boolean putIfAbsent(long key, int value) {
+        return insert(key, value, false);
+    }
+
+    /**
+     * Removes the entry of a key. The entries after it in its probe run are shifted back, so lookups
+     * never need tombstones.
+     *
+     * @param key the key
+     * @return {@code true} if the key was mapped
+     */
+    public boolean remove(long key) {
+        if (key == FREE) {
+            if (!hasFreeKey) return false;
+            hasFreeKey = false;
+            size--;
+            return true;
+        }
+
+        int slot = slot(key);
+        while (keys[slot] != key) {
+            if (keys[slot] == FREE) return false;
+            slot = (slot + 1) & mask;
+        }
+
+        // Move every later entry of the run that may not skip the freed slot into it
+        for (int next = (slot + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                slot = next;
+            }
+        }
+        keys[slot] = FREE;
+        size--;
+        return true;
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return the entry count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry, keeping the current capacity.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    /**
+     * Stores an entry.
+     *
+     * @param key     the key
+     * @param value   the value
+     * @param replace whether an existing value is overwritten
+     * @return {@code true} if the value was stored
+     */
+    private boolean insert(long key, int value, boolean replace) {
+        if (key == FREE) {
+            if (hasFreeKey && !replace) return false;
+            if (!hasFreeKey) size++;
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return true;
+        }
+
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long current = keys[slot];
+            if (current == key) {
+                if (replace) values[slot] = value;
+                return replace;
+            }
+            if (current == FREE) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > (mask + 1) / 4 * 3) resize();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Doubles the table and rehashes every entry.
+     */
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key == FREE) continue;
+            int slot = slot(key);
+            while (keys[slot] != FREE) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Returns the home slot of a key.
+     *
+     * @param key the key
+     * @return the slot index
+     */
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+}
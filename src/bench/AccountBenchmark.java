@@ -0,0 +1,93 @@
+package bench;
+
+import main.AccountRegistry;
+import main.Category;
+import main.Money;
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionQuery;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures cross-account aggregation over many account ledgers.
+ * <p>
+ * Generated accounts are written to a temporary root directory once. Each run opens a fresh registry and
+ * sums the balances of the accounts one by one, then cold and warm on the registry's fork/join pool, and
+ * finally a category summary of a tenth of the accounts to show that only the accounts touched are loaded.
+ * </p>
+ * Usage: {@code java -cp out bench.AccountBenchmark [accounts=200] [rowsPerAccount=10000]}
+ */
+public class AccountBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        int accounts = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int rowsPerAccount = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        String root = "account-benchmark";
+        List<String> names = new ArrayList<>(accounts);
+        AccountRegistry setup = new AccountRegistry(root);
+        for (int a = 0; a < accounts; a++) {
+            String name = "account-" + a;
+            names.add(name);
+            TransactionManager manager = setup.getAccount(name).getManager();
+            new LedgerGenerator(a).generate(rowsPerAccount, (id, time, amount, type, category, description) ->
+                    manager.addTransaction(new Transaction(time, amount, description, type, category)));
+            manager.publish();
+        }
+        setup.close();
+
+        try {
+            for (int run = 0; run < RUNS; run++) {
+                AccountRegistry registry = new AccountRegistry(root);
+                long start = System.nanoTime();
+                long sequential = 0;
+                for (String name : names) {
+                    sequential = Money.add(sequential, registry.getAccount(name).getManager().getBalanceCents());
+                }
+                double sequentialSeconds = (System.nanoTime() - start) / 1e9;
+                registry.close();
+
+                registry = new AccountRegistry(root);
+                start = System.nanoTime();
+                long parallel = registry.getBalanceCents(names);
+                double coldSeconds = (System.nanoTime() - start) / 1e9;
+                start = System.nanoTime();
+                registry.summarize(TransactionQuery.all(), names);
+                double warmSeconds = (System.nanoTime() - start) / 1e9;
+                registry.close();
+
+                registry = new AccountRegistry(root);
+                start = System.nanoTime();
+                registry.getCategorySummaries(names.subList(0, Math.max(1, accounts / 10))).get(Category.FOOD);
+                double partialSeconds = (System.nanoTime() - start) / 1e9;
+                int loaded = registry.getLoadedAccounts().size();
+                registry.close();
+
+                System.out.printf("sequential %8.3f s | parallel cold %8.3f s, warm %8.4f s | %d of %d accounts %8.3f s | balance %s%s%n",
+                        sequentialSeconds, coldSeconds, warmSeconds, loaded, accounts, partialSeconds,
+                        Money.format(parallel), parallel == sequential ? "" : " MISMATCH " + Money.format(sequential));
+            }
+        } finally {
+            delete(new File(root));
+        }
+    }
+
+    /**
+     * Deletes a file or a directory with everything in it.
+     *
+     * @param file the file or directory
+     */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,57 @@
+package bench;
+
+import main.Budget;
+import main.Category;
+import main.RollupPeriod;
+import main.Transaction;
+import main.TransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the cost of budget checks on inserts: a generated ledger is added with
+ * {@code addTransaction} with no budgets, with one budget per category and period, and with thousands
+ * of budgets, while a listener counts the alerts.
+ * <p>
+ * The rows/s should stay about the same however many budgets are configured, since each expense only
+ * updates one running total per period and moves a cursor over the sorted thresholds.
+ * </p>
+ * Usage: {@code java -cp out bench.BudgetBenchmark [rows=1000000] [budgets=5000]}
+ */
+public class BudgetBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int many = args.length > 1 ? Integer.parseInt(args[1]) : 5_000;
+
+        List<Transaction> transactions = new ArrayList<>(rows);
+        new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) ->
+                transactions.add(new Transaction(time, amount, description, type, category)));
+
+        int[] budgetCounts = {0, RollupPeriod.values().length * Category.values().length, many};
+        for (int run = 0; run < RUNS; run++) {
+            for (int budgets : budgetCounts) {
+                TransactionManager manager = new TransactionManager();
+                for (int i = 0; i < budgets; i++) {
+                    Category category = Category.values()[i % Category.values().length];
+                    RollupPeriod period = RollupPeriod.values()[i / Category.values().length % RollupPeriod.values().length];
+                    // Limits from 10.00 up, so the thresholds of a track are spread over a wide range of totals
+                    manager.addBudget(new Budget(category, period, 1_000L * (1 + i), 50, 80, 100));
+                }
+                AtomicLong alerts = new AtomicLong();
+                manager.addBudgetListener(alert -> alerts.incrementAndGet());
+
+                long start = System.nanoTime();
+                for (Transaction transaction : transactions) {
+                    manager.addTransaction(transaction);
+                }
+                manager.publish();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%,6d budgets: %8.3f s %,12.0f rows/s %,12d alerts%n", budgets, seconds, rows / seconds, alerts.get());
+            }
+        }
+    }
+}
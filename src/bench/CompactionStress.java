@@ -0,0 +1,267 @@
+package bench;
+
+import main.Category;
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionQuery;
+import main.TransactionType;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Stress test for edits, deletions and the background compaction of deleted rows in {@link TransactionManager}.
+ * <p>
+ * The manager is loaded with rows whose amount, date and description put every tenth row into a subset
+ * that one index answers: an amount range (amount index), a keyword (keyword postings) and the first tenth
+ * of the dates (timestamp index). An editor thread then deletes random loaded rows and edits others,
+ * keeping their amount, date and subset keyword but changing their category and version; a producer adds
+ * new rows outside the subsets. The deleted rows pile up until the background compactor swaps in a compacted
+ * store, several times over. Meanwhile reader threads check that every read is consistent:
+ * </p>
+ * <ul>
+ *     <li>each subset count and the total of the loaded rows lie between the live values tracked by the editor
+ *     before and after the query, so deleted rows are never counted and live ones never lost</li>
+ *     <li>every transaction streamed for a subset belongs to it, also when the store is swapped mid-stream</li>
+ *     <li>a snapshot of all transactions never holds an ID twice</li>
+ * </ul>
+ * At the end, the counts, the balance and the running totals are checked against a final compaction.
+ * The process exits with status 1 on the first violation.
+ * <p>
+ * Usage: {@code java -Xmx2g -cp out bench.CompactionStress [rows=500000] [edits=200000] [readers=2]}
+ * </p>
+ */
+public class CompactionStress {
+    private static final String SUBSET_KEYWORD = "k0";
+
+    public static void main(String[] args) throws InterruptedException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        int edits = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int readers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int produced = edits / 4;
+
+        // Compact whenever 5% of the rows are deleted, so that the readers run into several compactions
+        if (System.getProperty("pft.reclaimPercent") == null) {
+            System.setProperty("pft.reclaimPercent", "5");
+        }
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+        TransactionManager manager = new TransactionManager();
+        List<Transaction> loaded = new ArrayList<>(rows);
+        long loadedCents = 0;
+        for (int i = 0; i < rows; i++) {
+            Transaction transaction = new Transaction(base.plusMinutes(i), amount(i), description(i, 0),
+                    TransactionType.INCOME, Category.OTHER);
+            loaded.add(transaction);
+            loadedCents += transaction.getAmountCents();
+        }
+        manager.addTransactions(loaded);
+
+        // Live counts of the two subsets and the live total of the loaded rows, maintained by the editor
+        Live amountSubset = new Live((rows + 9) / 10);
+        Live dateSubset = new Live(rows / 10);
+        Live loadedTotal = new Live(loadedCents);
+        TransactionQuery byAmount = TransactionQuery.all().withAmountRange(0.01, 0.01);
+        TransactionQuery byKeyword = TransactionQuery.all().withKeyword(SUBSET_KEYWORD);
+        TransactionQuery byDate = TransactionQuery.all().withDateRange(base, base.plusMinutes(rows / 10 - 1));
+        TransactionQuery loadedRows = TransactionQuery.all().withDateRange(base, base.plusMinutes(rows - 1));
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+
+        Thread editor = new Thread(() -> {
+            await(start);
+            Random random = new Random(42);
+            int[] live = new int[rows];
+            for (int i = 0; i < rows; i++) live[i] = i;
+            int liveCount = rows;
+            int[] versions = new int[rows];
+            for (int e = 0; e < edits && liveCount > 0 && failure.get() == null; e++) {
+                int slot = random.nextInt(liveCount);
+                int i = live[slot];
+                Transaction current = loaded.get(i);
+                if (random.nextBoolean()) {
+                    long amount = i % 10 == 0 ? 1 : 0;
+                    long date = i < rows / 10 ? 1 : 0;
+                    amountSubset.lower.addAndGet(-amount);
+                    dateSubset.lower.addAndGet(-date);
+                    loadedTotal.lower.addAndGet(-current.getAmountCents());
+                    if (!manager.deleteTransaction(current.getIdValue())) {
+                        failure.compareAndSet(null, "row " + i + " could not be deleted");
+                    }
+                    amountSubset.upper.addAndGet(-amount);
+                    dateSubset.upper.addAndGet(-date);
+                    loadedTotal.upper.addAndGet(-current.getAmountCents());
+                    live[slot] = live[--liveCount];
+                } else {
+                    Category category = Category.values()[random.nextInt(Category.values().length)];
+                    Transaction edited = current.withDetails(current.getDate(), amount(i), description(i, ++versions[i]),
+                            TransactionType.INCOME, category);
+                    if (!manager.updateTransaction(edited)) {
+                        failure.compareAndSet(null, "row " + i + " could not be edited");
+                    }
+                }
+            }
+        }, "editor");
+
+        Thread producer = new Thread(() -> {
+            await(start);
+            for (int i = 0; i < produced && failure.get() == null; i++) {
+                manager.addTransaction(new Transaction(base.plusMinutes(rows + i), 0.5, "new " + i,
+                        TransactionType.INCOME, Category.SALARY));
+            }
+        }, "producer");
+
+        Thread[] readerThreads = new Thread[readers];
+        long[] reads = new long[readers];
+        long[] slowestRead = new long[readers];
+        long[] reclaimsSeen = new long[readers];
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            readerThreads[r] = new Thread(() -> {
+                await(start);
+                int lastDeleted = 0;
+                while (!done.get() && failure.get() == null) {
+                    long begin = System.nanoTime();
+                    check(amountSubset, () -> manager.count(byAmount), "amount subset count", failure);
+                    check(amountSubset, () -> manager.count(byKeyword), "keyword subset count", failure);
+                    check(dateSubset, () -> manager.count(byDate), "date subset count", failure);
+                    check(loadedTotal, () -> manager.summarize(loadedRows).getIncomeCents(), "loaded total", failure);
+                    slowestRead[reader] = Math.max(slowestRead[reader], (System.nanoTime() - begin) / 4);
+
+                    if (reads[reader] % 8 == 0) {
+                        manager.stream(byKeyword).forEach(t -> {
+                            if (!t.getDescription().startsWith(SUBSET_KEYWORD + " ")) {
+                                failure.compareAndSet(null, "streamed " + t + " outside the keyword subset");
+                            }
+                        });
+                        List<Transaction> all = manager.getAllTransactions();
+                        Set<Long> ids = new HashSet<>();
+                        for (Transaction t : all) {
+                            if (!ids.add(t.getIdValue())) failure.compareAndSet(null, "snapshot holds " + t.getId() + " twice");
+                        }
+                    }
+
+                    int deleted = manager.getDeletedCount();
+                    if (deleted < lastDeleted) reclaimsSeen[reader]++;
+                    lastDeleted = deleted;
+                    reads[reader]++;
+                }
+            }, "reader-" + r);
+            readerThreads[r].start();
+        }
+        editor.start();
+        producer.start();
+
+        long begin = System.nanoTime();
+        start.countDown();
+        editor.join();
+        producer.join();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        done.set(true);
+        for (Thread thread : readerThreads) thread.join();
+
+        int deletedBefore = manager.getDeletedCount();
+        if (failure.get() == null) {
+            manager.verifyAggregates();
+            manager.reclaimDeletedRows();
+            manager.verifyAggregates();
+            long expectedBalance = loadedTotal.upper.get() + produced * 50L;
+            if (manager.count(byAmount) != amountSubset.upper.get() || manager.count(byKeyword) != amountSubset.upper.get()
+                    || manager.count(byDate) != dateSubset.upper.get()) {
+                failure.set("final subset counts differ from the editor's");
+            } else if (manager.getBalanceCents() != expectedBalance) {
+                failure.set("expected balance " + expectedBalance + ", found " + manager.getBalanceCents());
+            } else if (manager.getDeletedCount() != 0) {
+                failure.set(manager.getDeletedCount() + " deleted rows left after the final compaction");
+            }
+        }
+
+        long totalReads = 0;
+        long reclaims = 0;
+        long slowest = 0;
+        for (int r = 0; r < readers; r++) {
+            totalReads += reads[r];
+            reclaims = Math.max(reclaims, reclaimsSeen[r]);
+            slowest = Math.max(slowest, slowestRead[r]);
+        }
+        System.out.printf("%,d rows, %,d edits and deletions, %,d new rows in %.2f s (%,.0f changes/s)%n",
+                rows, edits, produced, seconds, (edits + produced) / seconds);
+        System.out.printf("%,d read rounds by %d readers, %d compactions seen, slowest query %.1f ms, %,d deleted rows pending at the end%n",
+                totalReads, readers, reclaims, slowest / 1e6, deletedBefore);
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Gets the amount of a loaded row: one cent for every tenth row, more for the others.
+     *
+     * @param i the row number
+     * @return the amount, kept by every version of the row
+     */
+    private static double amount(int i) {
+        return i % 10 == 0 ? 0.01 : (2 + i % 1000) / 100.0;
+    }
+
+    /**
+     * Gets the description of a version of a loaded row. Every tenth row starts with the subset keyword.
+     *
+     * @param i       the row number
+     * @param version the version number, 0 for the loaded row
+     * @return the description
+     */
+    private static String description(int i, int version) {
+        return (i % 10 == 0 ? SUBSET_KEYWORD : "k" + (1 + i % 9)) + " row " + i + " v" + version;
+    }
+
+    /**
+     * Bounds on a live count or total that only goes down. The editor lowers {@code lower} before a deletion
+     * and {@code upper} once it is done, so the value a reader can see always lies between them.
+     */
+    private static final class Live {
+        final AtomicLong lower;
+        final AtomicLong upper;
+
+        Live(long initial) {
+            lower = new AtomicLong(initial);
+            upper = new AtomicLong(initial);
+        }
+    }
+
+    /**
+     * Checks that a live count read by a query lies between the upper bound before it and the lower bound after it.
+     *
+     * @param live    the bounds maintained by the editor
+     * @param query   runs the query
+     * @param what    names the query in the failure message
+     * @param failure receives the first violation
+     */
+    private static void check(Live live, LongSupplier query, String what, AtomicReference<String> failure) {
+        long before = live.upper.get();
+        long value = query.getAsLong();
+        long after = live.lower.get();
+        if (value > before || value < after) {
+            failure.compareAndSet(null, what + " " + value + " outside [" + after + ", " + before + "]");
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package bench;
+
+import main.Category;
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionQuery;
+import main.TransactionType;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multi-producer stress test for {@link TransactionManager}.
+ * <p>
+ * Several producer threads add transactions while reader threads keep checking that every read sees a
+ * consistent state:
+ * </p>
+ * <ul>
+ *     <li>each producer's transactions form a gap-free prefix, in the order that producer added them</li>
+ *     <li>the transaction count and the balance never go backwards</li>
+ *     <li>a thread always sees the transactions it added itself</li>
+ * </ul>
+ * At the end, the count, the balance, the running totals and the uniqueness of IDs are checked.
+ * The process exits with status 1 on the first violation.
+ * <p>
+ * Usage: {@code java -cp out bench.ConcurrentIngestStress [producers=8] [perProducer=200000] [readers=2]}
+ * </p>
+ */
+public class ConcurrentIngestStress {
+
+    public static void main(String[] args) throws InterruptedException {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int perProducer = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int readers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        TransactionManager manager = new TransactionManager();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        LocalDateTime base = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+        Thread[] producerThreads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            producerThreads[p] = new Thread(() -> {
+                await(start);
+                for (int i = 0; i < perProducer && failure.get() == null; i++) {
+                    // Back-date every seventh row so the time index has to merge out-of-order rows
+                    LocalDateTime time = base.plusSeconds(i * 60L - (i % 7 == 0 ? 86_400 : 0));
+                    manager.addTransaction(new Transaction(time, amount(i), producer + ":" + i,
+                            TransactionType.INCOME, Category.values()[i % Category.values().length]));
+                    if (i % 50_000 == 0 && manager.filterByKeyword(producer + ":" + i).isEmpty()) {
+                        failure.compareAndSet(null, "producer " + producer + " does not see its row " + i);
+                    }
+                }
+            }, "producer-" + p);
+            producerThreads[p].start();
+        }
+
+        Thread[] readerThreads = new Thread[readers];
+        int[] snapshots = new int[readers];
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            readerThreads[r] = new Thread(() -> {
+                await(start);
+                long lastCount = 0;
+                long lastBalance = 0;
+                while (!done.get() && failure.get() == null) {
+                    long count = manager.count(TransactionQuery.all());
+                    long balance = manager.getBalanceCents();
+                    if (count < lastCount || balance < lastBalance) {
+                        failure.compareAndSet(null, "count or balance went backwards");
+                    }
+                    lastCount = count;
+                    lastBalance = balance;
+
+                    String problem = checkSnapshot(manager.getAllTransactions(), producers);
+                    if (problem != null) failure.compareAndSet(null, problem);
+                    snapshots[reader]++;
+                }
+            }, "reader-" + r);
+            readerThreads[r].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread thread : producerThreads) thread.join();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        done.set(true);
+        for (Thread thread : readerThreads) thread.join();
+
+        if (failure.get() == null) {
+            List<Transaction> all = manager.getAllTransactions();
+            long expectedBalance = 0;
+            for (int i = 0; i < perProducer; i++) {
+                expectedBalance += Math.round(amount(i) * 100) * producers;
+            }
+            Set<String> ids = new HashSet<>();
+            for (Transaction t : all) ids.add(t.getId());
+
+            if (all.size() != producers * perProducer) {
+                failure.set("expected " + producers * perProducer + " rows, found " + all.size());
+            } else if (manager.getBalanceCents() != expectedBalance) {
+                failure.set("expected balance " + expectedBalance + ", found " + manager.getBalanceCents());
+            } else if (ids.size() != all.size()) {
+                failure.set((all.size() - ids.size()) + " duplicate IDs");
+            } else {
+                String problem = checkSnapshot(all, producers);
+                if (problem != null) failure.set(problem);
+                manager.verifyAggregates();
+            }
+        }
+
+        int total = 0;
+        for (int n : snapshots) total += n;
+        System.out.printf("%d producers x %,d rows in %.2f s (%,.0f rows/s), %d snapshots checked by %d readers%n",
+                producers, perProducer, seconds, producers * perProducer / seconds, total, readers);
+        if (failure.get() != null) {
+            System.out.println("FAILED: " + failure.get());
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Checks that each producer's rows in a snapshot are numbered 0, 1, 2, ... in row order.
+     *
+     * @param snapshot  the transactions of one read
+     * @param producers the number of producers
+     * @return a description of the violation, or {@code null} if the snapshot is consistent
+     */
+    private static String checkSnapshot(List<Transaction> snapshot, int producers) {
+        int[] next = new int[producers];
+        for (Transaction t : snapshot) {
+            String description = t.getDescription();
+            int colon = description.indexOf(':');
+            int producer = Integer.parseInt(description.substring(0, colon));
+            int sequence = Integer.parseInt(description.substring(colon + 1));
+            if (sequence != next[producer]) {
+                return "producer " + producer + " expected row " + next[producer] + " but found " + sequence;
+            }
+            next[producer]++;
+        }
+        return null;
+    }
+
+    private static double amount(int i) {
+        return (i % 1000) / 100.0 + 0.01;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
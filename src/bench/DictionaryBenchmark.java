@@ -0,0 +1,136 @@
+package bench;
+
+import main.DescriptionDictionary;
+import main.FileManager;
+import main.KeywordMatchMode;
+import main.TransactionManager;
+import main.TransactionQuery;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Measures what the description dictionary saves on a ledger with realistic description cardinality
+ * (merchant names with branch numbers, see {@link LedgerGenerator#LedgerGenerator(long, int)}).
+ * <p>
+ * It reports the heap held by the descriptions as one {@link String} per row, as a line-by-line loader
+ * keeps them, against a {@link DescriptionDictionary} plus one {@code int} code per row; the load time and
+ * heap of a whole {@link TransactionManager}; and a substring keyword search checked row by row against
+ * the same search answered by the manager, which matches each distinct description once and then
+ * selects rows by code.
+ * </p>
+ * Usage: {@code java -Xmx3g -cp out bench.DictionaryBenchmark [rows=10000000] [branches=1000]}
+ */
+public class DictionaryBenchmark {
+    private static final int RUNS = 3;
+    private static final String KEYWORD = "shop #1";
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        int branches = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        String fileName = "dictionary-benchmark.txt";
+        File file = new File(fileName);
+        new LedgerGenerator(42, branches).writeTextLedger(fileName, rows);
+        try {
+            long base = usedHeap();
+            String[] perRow = readDescriptions(fileName, rows);
+            long perRowBytes = usedHeap() - base;
+
+            DescriptionDictionary dictionary = new DescriptionDictionary();
+            int[] codes = new int[rows];
+            for (int row = 0; row < rows; row++) {
+                codes[row] = dictionary.encode(perRow[row]);
+            }
+            perRow = null;
+            long encodedBytes = usedHeap() - base;
+            System.out.printf("%,d rows, %,d distinct descriptions%n", rows, dictionary.size());
+            System.out.printf("String per row:     %,8d MB (%5.1f bytes/row)%n", perRowBytes >> 20, (double) perRowBytes / rows);
+            System.out.printf("dictionary + codes: %,8d MB (%5.1f bytes/row)%n", encodedBytes >> 20, (double) encodedBytes / rows);
+
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                int matches = 0;
+                for (int row = 0; row < rows; row++) {
+                    if (containsIgnoreCase(dictionary.decode(codes[row]), KEYWORD)) matches++;
+                }
+                System.out.printf("keyword per row:    %8.1f ms (%,d matches)%n", (System.nanoTime() - start) / 1e6, matches);
+            }
+            dictionary = null;
+            codes = null;
+
+            TransactionManager manager = null;
+            for (int run = 0; run < RUNS; run++) {
+                manager = null;
+                base = usedHeap();
+                long start = System.nanoTime();
+                manager = new TransactionManager();
+                FileManager.loadTransactions(manager, fileName, 1);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("manager load:       %8.3f s  %,d MB heap%n", seconds, (usedHeap() - base) >> 20);
+            }
+
+            manager.setQueryCacheEnabled(false);
+            manager.setKeywordMatchMode(KeywordMatchMode.SUBSTRING);
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                long matches = manager.count(TransactionQuery.all().withKeyword(KEYWORD));
+                System.out.printf("keyword by code:    %8.1f ms (%,d matches)%n", (System.nanoTime() - start) / 1e6, matches);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Reads the description of every line as its own string, as a loader using {@code split} does.
+     *
+     * @param fileName the ledger file
+     * @param rows     the number of rows in the file
+     * @return the descriptions in file order
+     * @throws IOException if reading fails
+     */
+    private static String[] readDescriptions(String fileName, int rows) throws IOException {
+        String[] descriptions = new String[rows];
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName, StandardCharsets.UTF_8), 1 << 16)) {
+            String line;
+            int row = 0;
+            while ((line = reader.readLine()) != null && row < rows) {
+                descriptions[row++] = line.substring(line.lastIndexOf('|') + 1);
+            }
+        }
+        return descriptions;
+    }
+
+    /**
+     * Checks whether a description contains a keyword, ignoring case, as the row-by-row filter did.
+     *
+     * @param description the description to check
+     * @param keyword     the keyword to look for
+     * @return {@code true} if the keyword appears anywhere in the description
+     */
+    private static boolean containsIgnoreCase(String description, String keyword) {
+        for (int i = 0; i <= description.length() - keyword.length(); i++) {
+            if (description.regionMatches(true, i, keyword, 0, keyword.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the heap in use after a few garbage collections.
+     *
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,64 @@
+package bench;
+
+import main.ImportPipeline;
+import main.ImportReport;
+import main.ImportRules;
+import main.Money;
+import main.TransactionManager;
+import main.TransactionType;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * Measures the bank statement import with 1 to N parser threads.
+ * <p>
+ * A generated statement with a header and signed amounts is written to a temporary CSV file once, then
+ * imported into a fresh {@link TransactionManager} per run. A final run imports the statement a second time
+ * into the same manager, where every row is a duplicate.
+ * </p>
+ * Usage: {@code java -cp out bench.ImportBenchmark [rows=1000000] [maxThreads=processors]}
+ */
+public class ImportBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        String fileName = "import-benchmark.csv";
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write("Date,Description,Amount");
+            writer.newLine();
+            IOException[] failure = new IOException[1];
+            new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) -> {
+                try {
+                    long cents = Money.ofDouble(amount);
+                    writer.write(time + "," + description + "," + Money.format(type == TransactionType.EXPENSE ? -cents : cents));
+                    writer.newLine();
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+
+        try {
+            TransactionManager manager = null;
+            for (int threads = 1; threads <= maxThreads; threads *= 2) {
+                for (int run = 0; run < RUNS; run++) {
+                    manager = new TransactionManager();
+                    ImportReport report = ImportPipeline.run(manager, fileName, ImportRules.defaults(), threads);
+                    System.out.printf("%2d parsers  %s%n", threads, report);
+                }
+            }
+
+            ImportReport report = ImportPipeline.run(manager, fileName, ImportRules.defaults(), maxThreads);
+            System.out.printf("re-import   %s%n", report);
+        } finally {
+            new File(fileName).delete();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package bench;
+
+import main.Category;
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionType;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures how {@link TransactionManager#addTransaction(Transaction)} scales with the number of writer
+ * threads, from 1 to N, while one reader keeps asking for the balance.
+ * <p>
+ * The transactions are created up front, so only ingestion is timed. Each run ends with a publish,
+ * so every row is visible when the clock stops.
+ * </p>
+ * Usage: {@code java -cp out bench.IngestBenchmark [rows=4000000] [maxThreads=processors]}
+ */
+public class IngestBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws InterruptedException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 4_000_000;
+        int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Transaction[] transactions = new Transaction[rows];
+        int[] index = new int[1];
+        new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) ->
+                transactions[index[0]++] = new Transaction(time, amount, description, type, category));
+
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            for (int run = 0; run < RUNS; run++) {
+                run(transactions, threads);
+            }
+        }
+    }
+
+    /**
+     * Adds all transactions on the given number of threads and prints the throughput.
+     *
+     * @param transactions the transactions to add
+     * @param threads      the number of writer threads
+     * @throws InterruptedException if interrupted while waiting for the writers
+     */
+    private static void run(Transaction[] transactions, int threads) throws InterruptedException {
+        TransactionManager manager = new TransactionManager();
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        long[] reads = new long[1];
+
+        Thread reader = new Thread(() -> {
+            await(start);
+            while (!done.get()) {
+                manager.getBalanceCents();
+                reads[0]++;
+            }
+        });
+        reader.start();
+
+        Thread[] writers = new Thread[threads];
+        for (int w = 0; w < threads; w++) {
+            int first = (int) ((long) transactions.length * w / threads);
+            int last = (int) ((long) transactions.length * (w + 1) / threads);
+            writers[w] = new Thread(() -> {
+                await(start);
+                for (int i = first; i < last; i++) {
+                    manager.addTransaction(transactions[i]);
+                }
+            });
+            writers[w].start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread writer : writers) writer.join();
+        manager.publish();
+        double seconds = (System.nanoTime() - begin) / 1e9;
+        done.set(true);
+        reader.join();
+
+        System.out.printf("%2d writers %,12d rows  %6.2f s  %,12.0f rows/s  %,10d balance reads%n",
+                threads, manager.size(), seconds, transactions.length / seconds, reads[0]);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
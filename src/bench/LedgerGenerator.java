@@ -0,0 +1,158 @@
+package bench;
+
+import main.Category;
+import main.Money;
+import main.TransactionId;
+import main.TransactionType;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Random;
+
+/**
+ * Generates synthetic ledgers with realistic distributions for the benchmarks.
+ * <p>
+ * Categories are weighted like a household budget, amounts follow a log-normal distribution per category,
+ * descriptions are drawn from a small pool of merchants per category with a skew towards the most common
+ * ones (optionally followed by a branch number, as on card statements), and timestamps advance a few hours per row with occasional back-dated entries.
+ * </p>
+ */
+public class LedgerGenerator {
+    private static final Category[] CATEGORIES = Category.values();
+    /** Relative frequency of each category, in {@link Category} order. */
+    private static final int[] CATEGORY_WEIGHTS = {30, 15, 8, 3, 12, 5, 27};
+    /** Median amount of each category, in {@link Category} order. */
+    private static final double[] MEDIAN_AMOUNTS = {25, 15, 120, 4500, 30, 60, 40};
+    private static final String[][] MERCHANTS = {
+            {"Supermarket", "Coffee Shop", "Bakery", "Pizza Place", "Farmers Market", "Sushi Bar", "Burger Joint", "Deli"},
+            {"Metro Card", "Taxi", "Fuel Station", "Parking", "Train Ticket", "Bike Share"},
+            {"Electricity", "Water Bill", "Internet", "Mobile Plan", "Gas Bill"},
+            {"Salary", "Bonus", "Freelance Payment"},
+            {"Cinema", "Streaming Subscription", "Concert Tickets", "Video Games", "Bookstore"},
+            {"Pharmacy", "Dentist", "Gym Membership", "Doctor Visit"},
+            {"Rent", "Gift", "Bank Fee", "Online Store", "Hardware Store", "Charity"}
+    };
+    private static final LocalDateTime START = LocalDateTime.of(2015, 1, 1, 8, 0);
+
+    private final Random random;
+    private final int branches;
+    private long epochSecond = START.toEpochSecond(ZoneOffset.UTC);
+    private int sequence;
+
+    /**
+     * Creates a generator.
+     *
+     * @param seed the random seed; the same seed always produces the same ledger
+     */
+    public LedgerGenerator(long seed) {
+        this(seed, 0);
+    }
+
+    /**
+     * Creates a generator whose expense descriptions carry a branch number, e.g. {@code Coffee Shop #117},
+     * which raises the number of distinct descriptions to tens of thousands as in real bank exports.
+     *
+     * @param seed     the random seed; the same seed always produces the same ledger
+     * @param branches the number of branches per merchant, or 0 for bare merchant names
+     */
+    public LedgerGenerator(long seed, int branches) {
+        this.random = new Random(seed);
+        this.branches = branches;
+    }
+
+    /**
+     * Receives the columns of each generated row.
+     */
+    @FunctionalInterface
+    public interface RowConsumer {
+        /**
+         * Accepts one generated row.
+         *
+         * @param id          the transaction ID
+         * @param time        the timestamp
+         * @param amount      the amount
+         * @param type        the transaction type
+         * @param category    the category
+         * @param description the description
+         */
+        void accept(String id, LocalDateTime time, double amount, TransactionType type, Category category, String description);
+    }
+
+    /**
+     * Generates rows and passes them to a consumer.
+     *
+     * @param rows     the number of rows
+     * @param consumer receives the rows in order
+     */
+    public void generate(int rows, RowConsumer consumer) {
+        for (int i = 0; i < rows; i++) {
+            epochSecond += 600 + random.nextInt(4 * 3600);
+            // About one row in fifty is entered late, with a date a few days back
+            long time = random.nextInt(50) == 0 ? epochSecond - random.nextInt(5 * 86_400) : epochSecond;
+
+            Category category = pickCategory();
+            TransactionType type = category == Category.SALARY || random.nextInt(100) == 0
+                    ? TransactionType.INCOME : TransactionType.EXPENSE;
+            double median = MEDIAN_AMOUNTS[category.ordinal()];
+            double amount = Math.round(median * Math.exp(random.nextGaussian() * 0.8) * 100) / 100.0;
+            String[] merchants = MERCHANTS[category.ordinal()];
+            // Squaring a uniform value skews the choice towards the first merchants
+            double skew = random.nextDouble();
+            String description = merchants[(int) (skew * skew * merchants.length)];
+            if (branches > 0 && type == TransactionType.EXPENSE) {
+                double branch = random.nextDouble();
+                description = description + " #" + (int) (branch * branch * branches);
+            }
+
+            LocalDateTime date = LocalDateTime.ofEpochSecond(time, 0, ZoneOffset.UTC);
+            sequence = (sequence + 1) & 0xFFFF;
+            consumer.accept(TransactionId.toString(TransactionId.of(time, 0, sequence)), date, amount, type, category, description);
+        }
+    }
+
+    /**
+     * Writes a ledger in the pipe-separated text format of {@code FileManager}.
+     *
+     * @param fileName the file to create
+     * @param rows     the number of rows
+     * @throws IOException if writing fails
+     */
+    public void writeTextLedger(String fileName, int rows) throws IOException {
+        try (Writer writer = new BufferedWriter(new FileWriter(fileName, StandardCharsets.UTF_8), 1 << 16)) {
+            StringBuilder line = new StringBuilder(128);
+            IOException[] failure = new IOException[1];
+            generate(rows, (id, time, amount, type, category, description) -> {
+                if (failure[0] != null) return;
+                line.setLength(0);
+                line.append(id).append('|').append(time).append('|').append(type).append('|');
+                Money.appendTo(line, Money.ofDouble(amount)).append('|').append(category).append('|').append(description).append('\n');
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+    }
+
+    /**
+     * Picks a category according to {@link #CATEGORY_WEIGHTS}.
+     *
+     * @return the category
+     */
+    private Category pickCategory() {
+        int roll = random.nextInt(100);
+        for (int i = 0; i < CATEGORY_WEIGHTS.length; i++) {
+            roll -= CATEGORY_WEIGHTS[i];
+            if (roll < 0) return CATEGORIES[i];
+        }
+
+        return Category.OTHER;
+    }
+}
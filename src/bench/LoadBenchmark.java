@@ -0,0 +1,94 @@
+package bench;
+
+import main.Category;
+import main.FileManager;
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionType;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures load throughput of the transaction file.
+ * <p>
+ * Compares the original path ({@code readLine}, {@code String.split}, {@code LocalDateTime.parse},
+ * {@code Double.parseDouble}, an intermediate list and a copy into the manager) with the streaming
+ * {@link FileManager#loadTransactions(TransactionManager, String)} path.
+ * </p>
+ * Usage: {@code java -cp out bench.LoadBenchmark [rows=10000000] [file=bench-ledger.txt] [--legacy]}
+ */
+public class LoadBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String fileName = args.length > 1 ? args[1] : "bench-ledger.txt";
+        boolean legacy = args.length > 2 && args[2].equals("--legacy");
+
+        File file = new File(fileName);
+        long start = System.nanoTime();
+        new LedgerGenerator(42).writeTextLedger(fileName, rows);
+        System.out.printf("Generated %,d rows (%,d MB) in %.1f s%n", rows, file.length() >> 20, seconds(start));
+
+        if (legacy) {
+            for (int run = 0; run < RUNS; run++) {
+                start = System.nanoTime();
+                TransactionManager manager = new TransactionManager();
+                manager.addTransactions(legacyLoad(fileName));
+                report("split + parse + list copy", manager.size(), file.length(), start);
+            }
+        }
+
+        for (int run = 0; run < RUNS; run++) {
+            start = System.nanoTime();
+            TransactionManager manager = new TransactionManager();
+            int loaded = FileManager.loadTransactions(manager, fileName);
+            report("streaming tokenizer", loaded, file.length(), start);
+        }
+
+        file.delete();
+    }
+
+    /**
+     * The load loop as originally written in {@code FileManager}.
+     *
+     * @param fileName the file to read
+     * @return the parsed transactions
+     * @throws IOException if reading fails
+     */
+    private static List<Transaction> legacyLoad(String fileName) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\\|");
+                if (parts.length != 6) continue;
+
+                LocalDateTime date = LocalDateTime.parse(parts[1]);
+                TransactionType type = TransactionType.valueOf(parts[2]);
+                double amount = Double.parseDouble(parts[3]);
+                Category category = Category.valueOf(parts[4]);
+                transactions.add(new Transaction(date, amount, parts[5], type, category));
+            }
+        }
+
+        return transactions;
+    }
+
+    private static void report(String label, long rows, long bytes, long start) {
+        double elapsed = seconds(start);
+        System.out.printf("%-28s %,12d rows  %7.2f s  %,12.0f rows/s  %7.1f MB/s%n",
+                label, rows, elapsed, rows / elapsed, (bytes >> 20) / elapsed);
+    }
+
+    private static double seconds(long start) {
+        return (System.nanoTime() - start) / 1e9;
+    }
+}
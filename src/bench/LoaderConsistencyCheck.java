@@ -0,0 +1,158 @@
+package bench;
+
+import main.FileManager;
+import main.MappedTransactionStore;
+import main.Money;
+import main.Transaction;
+import main.TransactionManager;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Checks that every way of loading a text ledger gives the same rows under the same IDs.
+ * <p>
+ * A generated ledger is written with some rows reusing the ID of an earlier row, some far back so the
+ * duplicate lands in another chunk of the parallel loader, and some rows without an ID. The ledger is then
+ * loaded on one thread, on several threads and through the binary ledger, and the results are compared row
+ * by row. Each load must also hold unique IDs, every one of which finds its own row.
+ * The process exits with status 1 on the first difference.
+ * </p>
+ * <p>
+ * Usage: {@code java -cp out bench.LoaderConsistencyCheck [rows=300000] [threads=4] [file=check-ledger.txt]}
+ * </p>
+ */
+public class LoaderConsistencyCheck {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 300_000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        String fileName = args.length > 2 ? args[2] : "check-ledger.txt";
+        String binaryFileName = fileName + ".bin";
+
+        int[] duplicates = new int[1];
+        writeLedger(fileName, rows, duplicates);
+
+        TransactionManager sequential = new TransactionManager();
+        FileManager.loadTransactions(sequential, fileName, 1);
+        TransactionManager parallel = new TransactionManager();
+        FileManager.loadTransactions(parallel, fileName, threads);
+        FileManager.convertToBinary(fileName, binaryFileName);
+        TransactionManager binary = new TransactionManager(new MappedTransactionStore(binaryFileName));
+
+        String failure = check("sequential load", sequential.getAllTransactions(), rows, sequential);
+        if (failure == null) failure = check("parallel load", parallel.getAllTransactions(), rows, parallel);
+        if (failure == null) failure = check("binary ledger", binary.getAllTransactions(), rows, binary);
+        if (failure == null) failure = compare("parallel load", sequential.getAllTransactions(), parallel.getAllTransactions());
+        if (failure == null) failure = compare("binary ledger", sequential.getAllTransactions(), binary.getAllTransactions());
+
+        System.out.printf("%,d rows (%,d with a duplicate ID) loaded on 1 and %d threads and from the binary ledger%n",
+                rows, duplicates[0], threads);
+        if (failure != null) {
+            System.out.println("FAILED: " + failure);
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    /**
+     * Writes a generated ledger in which every 7th row repeats the ID of an earlier row and every 11th row
+     * has no ID.
+     *
+     * @param fileName   the file to create
+     * @param rows       the number of rows
+     * @param duplicates receives the number of rows written with a duplicate ID
+     * @throws IOException if writing fails
+     */
+    private static void writeLedger(String fileName, int rows, int[] duplicates) throws IOException {
+        List<String> ids = new ArrayList<>(rows);
+        try (Writer writer = new BufferedWriter(new FileWriter(fileName, StandardCharsets.UTF_8), 1 << 16)) {
+            StringBuilder line = new StringBuilder(128);
+            IOException[] failure = new IOException[1];
+            new LedgerGenerator(7).generate(rows, (id, time, amount, type, category, description) -> {
+                if (failure[0] != null) return;
+                int row = ids.size();
+                ids.add(id);
+                if (row % 7 == 3) {
+                    // Alternate between the previous row and one half the ledger back
+                    id = ids.get(row % 2 == 0 ? row - 1 : row / 2);
+                    duplicates[0]++;
+                } else if (row % 11 == 5) {
+                    id = "";
+                }
+                line.setLength(0);
+                line.append(id).append('|').append(time).append('|').append(type).append('|');
+                Money.appendTo(line, Money.ofDouble(amount)).append('|').append(category).append('|').append(description).append('\n');
+                try {
+                    writer.append(line);
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) throw failure[0];
+        }
+    }
+
+    /**
+     * Checks that a load holds every row under a unique ID that finds the row again.
+     *
+     * @param name         the load, for the message
+     * @param transactions the loaded transactions
+     * @param rows         the number of rows in the ledger
+     * @param manager      the manager holding them
+     * @return a description of the first problem, or {@code null} if there is none
+     */
+    private static String check(String name, List<Transaction> transactions, int rows, TransactionManager manager) {
+        if (transactions.size() != rows) {
+            return name + ": expected " + rows + " rows, found " + transactions.size();
+        }
+        Set<Long> ids = new HashSet<>();
+        for (Transaction t : transactions) {
+            if (!ids.add(t.getIdValue())) {
+                return name + ": ID " + t.getId() + " held by more than one row";
+            }
+            Transaction found = manager.getTransaction(t.getIdValue());
+            if (found == null || !same(found, t)) {
+                return name + ": ID " + t.getId() + " finds " + found + " instead of " + t;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares two loads row by row.
+     *
+     * @param name     the load compared with the sequential one, for the message
+     * @param expected the transactions of the sequential load
+     * @param actual   the transactions of the other load
+     * @return a description of the first difference, or {@code null} if there is none
+     */
+    private static String compare(String name, List<Transaction> expected, List<Transaction> actual) {
+        for (int i = 0; i < expected.size(); i++) {
+            if (!same(expected.get(i), actual.get(i))) {
+                return name + ": row " + i + " is " + actual.get(i) + " instead of " + expected.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compares the ID and every column of two transactions.
+     *
+     * @param a the first transaction
+     * @param b the second transaction
+     * @return {@code true} if they are equal
+     */
+    private static boolean same(Transaction a, Transaction b) {
+        return a.getIdValue() == b.getIdValue() && a.getDate().equals(b.getDate())
+                && a.getAmountCents() == b.getAmountCents() && a.getType() == b.getType()
+                && a.getCategory() == b.getCategory() && a.getDescription().equals(b.getDescription());
+    }
+}
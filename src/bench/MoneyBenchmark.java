@@ -0,0 +1,92 @@
+package bench;
+
+import main.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Compares {@code double} amounts with the fixed-point {@link Money} representation on a generated ledger,
+ * for both speed and correctness.
+ * <p>
+ * The amount column of the ledger is rendered as text once. Each path then parses every amount and sums
+ * them: the {@code double} path with {@link Double#parseDouble(String)} and {@code +=}, the fixed-point
+ * path with {@link Money#parse(char[], int, int)} and {@link Money#add(long, long)}. The sums are also
+ * checked against a {@link BigDecimal} reference, which shows the drift of the {@code double} total.
+ * </p>
+ * Usage: {@code java -cp out bench.MoneyBenchmark [rows=10000000]}
+ */
+public class MoneyBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+
+        StringBuilder text = new StringBuilder(rows * 8);
+        int[] ends = new int[rows];
+        int[] row = new int[1];
+        new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) -> {
+            Money.appendTo(text, Money.ofDouble(amount));
+            ends[row[0]++] = text.length();
+        });
+        char[] amounts = new char[text.length()];
+        text.getChars(0, text.length(), amounts, 0);
+
+        BigDecimal reference = BigDecimal.ZERO;
+        for (int i = 0, start = 0; i < rows; start = ends[i++]) {
+            reference = reference.add(new BigDecimal(new String(amounts, start, ends[i] - start)));
+        }
+        System.out.printf("%,d amounts, exact total %s%n", rows, reference.toPlainString());
+
+        double doubleTotal = 0;
+        long centsTotal = 0;
+        for (int run = 0; run < RUNS; run++) {
+            long start = System.nanoTime();
+            doubleTotal = sumDoubles(amounts, ends);
+            report("double: parseDouble + +=", rows, start);
+
+            start = System.nanoTime();
+            centsTotal = sumCents(amounts, ends);
+            report("cents: Money.parse + add", rows, start);
+        }
+
+        BigDecimal doubleError = new BigDecimal(doubleTotal).subtract(reference);
+        BigDecimal centsError = BigDecimal.valueOf(centsTotal, 2).subtract(reference);
+        System.out.printf("double total %.6f, off by %s%n", doubleTotal, doubleError.toPlainString());
+        System.out.printf("cents total  %s, off by %s%n", Money.format(centsTotal), centsError.toPlainString());
+    }
+
+    /**
+     * Parses and sums the amounts the way the original code did.
+     *
+     * @param amounts the amount text
+     * @param ends    the end offset of each amount
+     * @return the sum
+     */
+    private static double sumDoubles(char[] amounts, int[] ends) {
+        double total = 0;
+        for (int i = 0, start = 0; i < ends.length; start = ends[i++]) {
+            total += Double.parseDouble(new String(amounts, start, ends[i] - start));
+        }
+        return total;
+    }
+
+    /**
+     * Parses and sums the amounts in cents.
+     *
+     * @param amounts the amount text
+     * @param ends    the end offset of each amount
+     * @return the sum in cents
+     */
+    private static long sumCents(char[] amounts, int[] ends) {
+        long total = 0;
+        for (int i = 0, start = 0; i < ends.length; start = ends[i++]) {
+            total = Money.add(total, Money.parse(amounts, start, ends[i]));
+        }
+        return total;
+    }
+
+    private static void report(String label, long rows, long start) {
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-28s %,12d rows  %7.3f s  %,14.0f rows/s%n", label, rows, elapsed, rows / elapsed);
+    }
+}
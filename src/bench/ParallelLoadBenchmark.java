@@ -0,0 +1,42 @@
+package bench;
+
+import main.FileManager;
+import main.TransactionManager;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures how loading a text ledger scales with the number of parsing threads,
+ * from one thread up to the number of available processors (doubling each step).
+ * Usage: {@code java -cp out bench.ParallelLoadBenchmark [rows=10000000] [file=bench-ledger.txt] [maxThreads]}
+ */
+public class ParallelLoadBenchmark {
+    private static final int RUNS = 3;
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        String fileName = args.length > 1 ? args[1] : "bench-ledger.txt";
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        File file = new File(fileName);
+        new LedgerGenerator(42).writeTextLedger(fileName, rows);
+        System.out.printf("Ledger: %,d rows, %,d MB, %d processors%n", rows, file.length() >> 20,
+                Runtime.getRuntime().availableProcessors());
+
+        double baseline = 0;
+        for (int threads = 1; threads <= maxThreads; threads = threads < maxThreads ? Math.min(threads * 2, maxThreads) : threads + 1) {
+            double best = Double.MAX_VALUE;
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                TransactionManager manager = new TransactionManager();
+                FileManager.loadTransactions(manager, fileName, threads);
+                best = Math.min(best, (System.nanoTime() - start) / 1e9);
+            }
+            if (threads == 1) baseline = best;
+            System.out.printf("%3d threads  %7.2f s  %,12.0f rows/s  speedup %.2fx%n", threads, best, rows / best, baseline / best);
+        }
+
+        file.delete();
+    }
+}
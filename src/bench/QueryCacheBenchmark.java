@@ -0,0 +1,70 @@
+package bench;
+
+import main.Category;
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionQuery;
+import main.TransactionType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures a dashboard-like workload with and without the query result cache: a handful of filters and
+ * summaries are repeated over and over, with a new transaction added after every round of queries.
+ * <p>
+ * The new transactions are dated in the last days of the ledger and spread over all categories, so each
+ * one invalidates only the cached queries it matches. The cache counters are printed after each run.
+ * </p>
+ * Usage: {@code java -cp out bench.QueryCacheBenchmark [rows=1000000] [rounds=1000]}
+ */
+public class QueryCacheBenchmark {
+    private static final int RUNS = 3;
+    private static final Category[] CATEGORIES = Category.values();
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+
+        TransactionManager manager = new TransactionManager();
+        LocalDateTime[] last = new LocalDateTime[1];
+        new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) -> {
+            manager.addTransaction(new Transaction(time, amount, description, type, category));
+            last[0] = time;
+        });
+        manager.publish();
+
+        LocalDateTime now = last[0];
+        LocalDateTime monthStart = now.withDayOfMonth(1).toLocalDate().atStartOfDay();
+        TransactionQuery expenses = TransactionQuery.all().withType(TransactionType.EXPENSE);
+        List<TransactionQuery> dashboard = List.of(
+                expenses.withCategory(Category.FOOD).withDateRange(monthStart, now.plusYears(1)),
+                expenses.withDateRange(now.minusDays(30), now.plusYears(1)),
+                expenses.withCategory(Category.UTILITIES).withDateRange(now.minusYears(1), now.plusYears(1)),
+                TransactionQuery.all().withKeyword("coffee"),
+                TransactionQuery.all().withAmountRange(1_000, Double.MAX_VALUE));
+
+        System.out.printf("%,d rows, %d queries per round, one insert per round%n", rows, dashboard.size() * 2);
+        for (int run = 0; run < RUNS; run++) {
+            for (boolean cached : new boolean[] {false, true}) {
+                manager.setQueryCacheEnabled(cached);
+                Random random = new Random(run);
+                long checksum = 0;
+                long start = System.nanoTime();
+                for (int round = 0; round < rounds; round++) {
+                    for (TransactionQuery query : dashboard) {
+                        checksum += manager.find(query).size();
+                        checksum += manager.summarize(query).getExpenseCents();
+                    }
+                    Category category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+                    manager.addTransaction(new Transaction(now.minusHours(random.nextInt(72)), 1 + random.nextInt(5_000) / 100.0,
+                            "Benchmark", category == Category.SALARY ? TransactionType.INCOME : TransactionType.EXPENSE, category));
+                }
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%-9s %8.3f s %,12.0f queries/s  (checksum %d)%n  %s%n", cached ? "cache on" : "cache off",
+                        seconds, rounds * dashboard.size() * 2 / seconds, checksum, manager.getQueryCacheStats());
+            }
+        }
+    }
+}
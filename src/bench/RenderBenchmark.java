@@ -0,0 +1,70 @@
+package bench;
+
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionPager;
+import main.TransactionQuery;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+
+/**
+ * Compares the time to print a whole generated ledger row by row with {@code println(transaction)},
+ * as the menu used to, against the buffered {@link TransactionPager} at several page sizes.
+ * <p>
+ * Output goes to a discarding stream through a {@link PrintStream} set up like {@link System#out}
+ * (small buffer, flushed on every line break), so the cost of formatting and of the console stream
+ * is included but the terminal's own drawing speed is not.
+ * </p>
+ * Usage: {@code java -cp out bench.RenderBenchmark [rows=1000000]}
+ */
+public class RenderBenchmark {
+    private static final int RUNS = 3;
+    private static final int[] PAGE_SIZES = {50, 1_000, 100_000};
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        TransactionManager manager = new TransactionManager();
+        new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) ->
+                manager.addTransaction(new Transaction(time, amount, description, type, category)));
+        manager.publish();
+
+        try (PrintStream console = new PrintStream(new BufferedOutputStream(OutputStream.nullOutputStream(), 128), true)) {
+            for (int run = 0; run < RUNS; run++) {
+                long start = System.nanoTime();
+                for (Transaction transaction : manager.getAllTransactions()) {
+                    console.println(transaction);
+                }
+                report("println per row", rows, start);
+
+                for (int pageSize : PAGE_SIZES) {
+                    start = System.nanoTime();
+                    Writer out = new OutputStreamWriter(console);
+                    TransactionPager pager = manager.page(TransactionQuery.all(), pageSize);
+                    do {
+                        pager.render(out);
+                        out.flush();
+                    } while (pager.next());
+                    report("pager, " + pageSize + " rows per page", rows, start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prints the time and throughput of one run.
+     *
+     * @param label the name of the run
+     * @param rows  the number of printed rows
+     * @param start the start time from {@link System#nanoTime()}
+     */
+    private static void report(String label, int rows, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-30s %,d rows  %6.3f s  %,12.0f rows/s%n", label, rows, seconds, rows / seconds);
+    }
+}
@@ -0,0 +1,173 @@
+package bench;
+
+import main.LedgerServer;
+import main.Transaction;
+import main.TransactionManager;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of the HTTP service on localhost: concurrent clients send a mix of balance, summary, filter and
+ * add-transaction requests for a fixed time, then the p50 and p99 latency of each endpoint and the overall
+ * requests per second are printed.
+ * <p>
+ * Without a URL, a {@link LedgerServer} over a generated ledger is started in this process on a free port.
+ * With a URL, an already running server (e.g. {@code --serve}) is tested instead; note that the test
+ * adds transactions to it.
+ * </p>
+ * Usage: {@code java -cp out bench.ServerLoadTest [clients=32] [seconds=10] [rows=100000] [url]}
+ */
+public class ServerLoadTest {
+    private static final String[] NAMES = {"GET /balance", "GET /summary", "GET /transactions", "POST /transactions"};
+    /** Cumulative share of each request kind, in percent. */
+    private static final int[] MIX = {40, 70, 90, 100};
+    private static final String[] KEYWORDS = {"coffee", "rent", "taxi", "salary", "pharmacy", "cinema"};
+    private static final String[] CATEGORIES = {"FOOD", "TRANSPORT", "UTILITIES", "HEALTH", "OTHER"};
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int rows = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        LedgerServer server = null;
+        String url;
+        if (args.length > 3) {
+            url = args[3];
+        } else {
+            TransactionManager manager = new TransactionManager();
+            new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) ->
+                    manager.addTransaction(new Transaction(time, amount, description, type, category)));
+            server = new LedgerServer(manager, 0);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+            System.out.printf("Server on %s with %,d rows, %s%n", url, manager.size(),
+                    server.isVirtualThreads() ? "virtual threads" : "platform thread pool");
+        }
+
+        try {
+            run(url, clients, seconds);
+        } finally {
+            if (server != null) server.stop();
+        }
+    }
+
+    /**
+     * Runs the clients and prints the results.
+     *
+     * @param url     the base URL of the server
+     * @param clients the number of concurrent clients
+     * @param seconds the test duration
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    private static void run(String url, int clients, int seconds) throws InterruptedException {
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long[][][] latencies = new long[clients][NAMES.length][];
+        int[][] counts = new int[clients][NAMES.length];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch start = new CountDownLatch(1);
+        long warmupEnd = System.nanoTime() + 2_000_000_000L;
+        long[] window = new long[2];
+
+        Thread[] threads = new Thread[clients];
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            for (int kind = 0; kind < NAMES.length; kind++) latencies[c][kind] = new long[1024];
+            threads[c] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < window[1]) {
+                    int roll = random.nextInt(100);
+                    int kind = 0;
+                    while (roll >= MIX[kind]) kind++;
+
+                    long begin = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = http.send(request(url, kind, random), HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() >= 400) errors.incrementAndGet();
+                    } catch (IOException | InterruptedException e) {
+                        errors.incrementAndGet();
+                        continue;
+                    }
+                    long end = System.nanoTime();
+                    if (begin < window[0]) continue;
+
+                    long[] samples = latencies[client][kind];
+                    int count = counts[client][kind];
+                    if (count == samples.length) latencies[client][kind] = samples = Arrays.copyOf(samples, count * 2);
+                    samples[count] = end - begin;
+                    counts[client][kind] = count + 1;
+                }
+            });
+            threads[c].start();
+        }
+
+        window[0] = warmupEnd;
+        window[1] = warmupEnd + seconds * 1_000_000_000L;
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+
+        long total = 0;
+        System.out.printf("%-20s %10s %10s %10s%n", "endpoint", "requests", "p50 ms", "p99 ms");
+        for (int kind = 0; kind < NAMES.length; kind++) {
+            int size = 0;
+            for (int c = 0; c < clients; c++) size += counts[c][kind];
+            long[] all = new long[size];
+            int offset = 0;
+            for (int c = 0; c < clients; c++) {
+                System.arraycopy(latencies[c][kind], 0, all, offset, counts[c][kind]);
+                offset += counts[c][kind];
+            }
+            Arrays.sort(all);
+            total += size;
+            System.out.printf("%-20s %,10d %10.2f %10.2f%n", NAMES[kind], size, percentile(all, 50), percentile(all, 99));
+        }
+        System.out.printf("%d clients, %d s: %,.0f requests/s, %d errors%n", clients, seconds, (double) total / seconds, errors.get());
+    }
+
+    /**
+     * Builds a random request of a kind.
+     *
+     * @param url    the base URL
+     * @param kind   the index into {@link #NAMES}
+     * @param random the random source
+     * @return the request
+     */
+    private static HttpRequest request(String url, int kind, ThreadLocalRandom random) {
+        return switch (kind) {
+            case 0 -> HttpRequest.newBuilder(URI.create(url + "/balance")).build();
+            case 1 -> HttpRequest.newBuilder(URI.create(url + "/summary?type=EXPENSE&category="
+                    + CATEGORIES[random.nextInt(CATEGORIES.length)])).build();
+            case 2 -> HttpRequest.newBuilder(URI.create(url + "/transactions?limit=100&keyword="
+                    + KEYWORDS[random.nextInt(KEYWORDS.length)])).build();
+            default -> HttpRequest.newBuilder(URI.create(url + "/transactions"))
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"amount\":" + (1 + random.nextInt(10_000)) / 100.0
+                            + ",\"type\":\"EXPENSE\",\"category\":\"FOOD\",\"description\":\"Load test\"}"))
+                    .build();
+        };
+    }
+
+    /**
+     * Reads a percentile from sorted latencies.
+     *
+     * @param sorted  the latencies in nanoseconds, ascending
+     * @param percent the percentile
+     * @return the latency in milliseconds, or 0 without samples
+     */
+    private static double percentile(long[] sorted, int percent) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.min(sorted.length - 1, (long) Math.ceil(sorted.length * percent / 100.0) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,149 @@
+package bench;
+
+import main.AmountHistogram;
+import main.AmountPercentiles;
+import main.Category;
+import main.RollupPeriod;
+import main.Transaction;
+import main.TransactionManager;
+import main.TransactionType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares monthly amount percentiles per category from the amount histograms with sorting the transactions
+ * of each category, as callers had to do before: a generated ledger is loaded, and the median, 90th and 99th
+ * percentile of every (month, category, type) is computed both ways.
+ * <p>
+ * The report prints the one-off cost of building the histograms, the time per report both ways, the largest
+ * relative error of the histogram percentiles (at most 1/128), the heap the histograms take, and the
+ * {@code addTransaction} rows/s with and without histograms to maintain.
+ * </p>
+ * Usage: {@code java -Xmx4g -cp out bench.SketchBenchmark [rows=1000000]}
+ */
+public class SketchBenchmark {
+    private static final int RUNS = 5;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        List<Transaction> transactions = new ArrayList<>(rows);
+        new LedgerGenerator(42).generate(rows, (id, time, amount, type, category, description) ->
+                transactions.add(new Transaction(time, amount, description, type, category)));
+        TransactionManager manager = new TransactionManager();
+        manager.addTransactions(transactions);
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        List<AmountPercentiles> percentiles = manager.getAmountPercentiles(RollupPeriod.MONTH, LocalDate.MIN, LocalDate.MAX);
+        double buildMillis = (System.nanoTime() - start) / 1e6;
+        long heapAfter = usedHeap();
+        System.out.printf("%,d rows, %,d (month, category, type) cells; histograms built in %.1f ms, about %,d KB of heap%n",
+                rows, percentiles.size(), buildMillis, (heapAfter - heapBefore) / 1024);
+
+        Map<String, long[]> exact = null;
+        for (int run = 0; run < RUNS; run++) {
+            start = System.nanoTime();
+            percentiles = manager.getAmountPercentiles(RollupPeriod.MONTH, LocalDate.MIN, LocalDate.MAX);
+            double sketchMillis = (System.nanoTime() - start) / 1e6;
+            start = System.nanoTime();
+            AmountHistogram year = manager.getAmountHistogram(TransactionType.EXPENSE, Category.FOOD,
+                    LocalDate.of(2020, 1, 1), LocalDate.of(2020, 12, 31));
+            double mergeMicros = (System.nanoTime() - start) / 1e3;
+
+            start = System.nanoTime();
+            exact = sortedPercentiles(manager);
+            double sortMillis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("monthly percentiles: histograms %8.2f ms | filterByCategory + sort %8.2f ms | one year of FOOD merged in %.0f us (median %s)%n",
+                    sketchMillis, sortMillis, mergeMicros, year.getValueAtQuantile(0.5) / 100.0);
+        }
+
+        double worst = 0;
+        for (AmountPercentiles entry : percentiles) {
+            long[] expected = exact.get(key(entry.getStart(), entry.getCategory(), entry.getType()));
+            long[] estimated = {entry.getMedianCents(), entry.getP90Cents(), entry.getP99Cents()};
+            for (int q = 0; q < QUANTILES.length; q++) {
+                worst = Math.max(worst, Math.abs(estimated[q] - expected[q]) / (double) Math.max(1, Math.abs(expected[q])));
+            }
+        }
+        System.out.printf("largest relative error: %.4f%% (bound %.4f%%)%n", worst * 100, AmountHistogram.RELATIVE_ERROR * 100);
+
+        for (int run = 0; run < RUNS; run++) {
+            System.out.printf("addTransaction: %,12.0f rows/s without histograms | %,12.0f rows/s with histograms%n",
+                    insertRate(transactions, false), insertRate(transactions, true));
+        }
+    }
+
+    /**
+     * Computes the exact percentiles of every (month, category, type) by collecting and sorting amounts.
+     *
+     * @param manager the manager to read
+     * @return the median, 90th and 99th percentile in cents per cell key
+     */
+    private static Map<String, long[]> sortedPercentiles(TransactionManager manager) {
+        Map<String, long[]> percentiles = new HashMap<>();
+        for (Category category : Category.values()) {
+            Map<String, long[]> amounts = new HashMap<>();
+            Map<String, Integer> counts = new HashMap<>();
+            for (Transaction transaction : manager.filterByCategory(category)) {
+                String key = key(transaction.getDate().toLocalDate().withDayOfMonth(1), category, transaction.getType());
+                long[] cell = amounts.computeIfAbsent(key, k -> new long[16]);
+                int count = counts.merge(key, 1, Integer::sum);
+                if (count > cell.length) {
+                    cell = Arrays.copyOf(cell, cell.length * 2);
+                    amounts.put(key, cell);
+                }
+                cell[count - 1] = transaction.getAmountCents();
+            }
+            for (Map.Entry<String, long[]> entry : amounts.entrySet()) {
+                int count = counts.get(entry.getKey());
+                long[] sorted = Arrays.copyOf(entry.getValue(), count);
+                Arrays.sort(sorted);
+                long[] result = new long[QUANTILES.length];
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    result[q] = sorted[(int) Math.max(1, Math.ceil(QUANTILES[q] * count)) - 1];
+                }
+                percentiles.put(entry.getKey(), result);
+            }
+        }
+        return percentiles;
+    }
+
+    /**
+     * Measures the insert rate of a fresh manager.
+     *
+     * @param transactions the rows to add
+     * @param histograms   whether the histograms are built first, so every insert updates them
+     * @return the rows per second
+     */
+    private static double insertRate(List<Transaction> transactions, boolean histograms) {
+        TransactionManager manager = new TransactionManager();
+        if (histograms) {
+            manager.getAmountHistogram(null, null, LocalDate.MIN, LocalDate.MAX);
+        }
+        long start = System.nanoTime();
+        for (Transaction transaction : transactions) {
+            manager.addTransaction(transaction);
+        }
+        manager.publish();
+        return transactions.size() / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static String key(LocalDate month, Category category, TransactionType type) {
+        return month + " " + category + " " + type;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
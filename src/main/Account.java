@@ -0,0 +1,90 @@
+package main;
+
+/**
+ * One account of an {@link AccountRegistry}: a named partition with its own ledger files, store and indexes.
+ * <p>
+ * Nothing is read from disk until the account is first accessed with {@link #getManager()}, so memory grows
+ * with the accounts actually used, not with the accounts on disk. {@link #unload()} closes the ledger and
+ * releases the memory again.
+ * </p>
+ */
+public final class Account {
+    private final String name;
+    private final LedgerFiles files;
+    private volatile TransactionManager transactionManager;
+
+    /**
+     * Creates an account that is not loaded yet.
+     *
+     * @param name  The account name.
+     * @param files The files of the account's ledger.
+     */
+    Account(String name, LedgerFiles files) {
+        this.name = name;
+        this.files = files;
+    }
+
+    /**
+     * Gets the account name.
+     *
+     * @return The name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the files of the account's ledger.
+     *
+     * @return The ledger files.
+     */
+    public LedgerFiles getFiles() {
+        return files;
+    }
+
+    /**
+     * Checks whether the account's ledger is in memory.
+     *
+     * @return {@code true} once {@link #getManager()} was called, until {@link #unload()}.
+     */
+    public boolean isLoaded() {
+        return transactionManager != null;
+    }
+
+    /**
+     * Gets the manager of the account, opening its ledger on first access (see {@link FileManager#openLedger(LedgerFiles)}).
+     * Concurrent first accesses open the ledger only once.
+     *
+     * @return The account's manager.
+     */
+    public TransactionManager getManager() {
+        TransactionManager manager = transactionManager;
+        if (manager == null) {
+            synchronized (this) {
+                manager = transactionManager;
+                if (manager == null) {
+                    manager = FileManager.openLedger(files);
+                    transactionManager = manager;
+                }
+            }
+        }
+        return manager;
+    }
+
+    /**
+     * Closes the account's ledger as when leaving the menu and drops it from memory.
+     * A manager obtained before must not be used afterwards; the next {@link #getManager()} opens the ledger again.
+     */
+    public synchronized void unload() {
+        TransactionManager manager = transactionManager;
+        if (manager == null) return;
+
+        transactionManager = null;
+        FileManager.closeLedger(manager, files);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,211 @@
+package main;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * The accounts kept under one root directory, each in a directory of its own named after the account
+ * (see {@link LedgerFiles#in(String)}).
+ * <p>
+ * Every {@link Account} is a separate partition with its own files, store, indexes and budgets, loaded
+ * lazily on first access. Cross-account questions fan out over the requested accounts on a
+ * {@link ForkJoinPool}: each account computes a partial aggregate from its own running totals or indexes
+ * (loading its ledger if needed), and the partial results are merged pairwise on the way back up.
+ * </p>
+ */
+public class AccountRegistry {
+    /** The root directory used by the {@code --account} option. */
+    public static final String DEFAULT_ROOT = "accounts";
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final String root;
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool;
+
+    /**
+     * A cross-account aggregation over a range of accounts, split in halves until one account is left.
+     *
+     * @param <T> the type of the aggregate
+     */
+    private static final class Aggregation<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Account[] accounts;
+        private final int from;
+        private final int to;
+        private final transient Function<TransactionManager, T> partial;
+        private final transient BinaryOperator<T> merge;
+
+        Aggregation(Account[] accounts, int from, int to, Function<TransactionManager, T> partial, BinaryOperator<T> merge) {
+            this.accounts = accounts;
+            this.from = from;
+            this.to = to;
+            this.partial = partial;
+            this.merge = merge;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from == 1) {
+                return partial.apply(accounts[from].getManager());
+            }
+
+            int mid = (from + to) >>> 1;
+            Aggregation<T> left = new Aggregation<>(accounts, from, mid, partial, merge);
+            left.fork();
+            T right = new Aggregation<>(accounts, mid, to, partial, merge).compute();
+            return merge.apply(left.join(), right);
+        }
+    }
+
+    /**
+     * Creates a registry over a root directory. Nothing is read until an account is accessed.
+     * Cross-account queries run on {@code pft.accountThreads} threads (default: one per processor).
+     *
+     * @param root The directory holding one directory per account.
+     */
+    public AccountRegistry(String root) {
+        this.root = root;
+        this.pool = new ForkJoinPool(Integer.getInteger("pft.accountThreads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Gets the root directory.
+     *
+     * @return The directory holding one directory per account.
+     */
+    public String getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets an account, creating it if it does not exist yet. Its ledger is not loaded.
+     *
+     * @param name The account name: letters, digits, {@code _} and {@code -}.
+     * @return The account.
+     * @throws IllegalArgumentException if the name is invalid.
+     */
+    public Account getAccount(String name) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid account name: " + name);
+        }
+        return accounts.computeIfAbsent(name, n -> new Account(n, LedgerFiles.in(root + File.separator + n)));
+    }
+
+    /**
+     * Lists the accounts that have a ledger on disk or were accessed in this session, without loading any.
+     *
+     * @return The account names in alphabetical order.
+     */
+    public List<String> listAccounts() {
+        TreeSet<String> names = new TreeSet<>(accounts.keySet());
+        File[] directories = new File(root).listFiles(File::isDirectory);
+        if (directories != null) {
+            for (File directory : directories) {
+                LedgerFiles files = LedgerFiles.in(directory.getPath());
+                boolean hasLedger = new File(files.getTextFile()).exists() || new File(files.getBinaryFile()).exists()
+                        || new File(files.getLogFile()).exists();
+                if (hasLedger && NAME.matcher(directory.getName()).matches()) {
+                    names.add(directory.getName());
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Lists the accounts whose ledger is currently in memory.
+     *
+     * @return The loaded account names in alphabetical order.
+     */
+    public List<String> getLoadedAccounts() {
+        TreeSet<String> names = new TreeSet<>();
+        for (Account account : accounts.values()) {
+            if (account.isLoaded()) names.add(account.getName());
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Computes an aggregate over several accounts in parallel: {@code partial} runs once per account and the
+     * results are combined with {@code merge}, which must be associative.
+     *
+     * @param names   The accounts to include; those not loaded yet are loaded.
+     * @param partial Computes the aggregate of one account.
+     * @param merge   Combines two aggregates.
+     * @param empty   The aggregate of no accounts.
+     * @param <T>     The type of the aggregate.
+     * @return The aggregate over all the accounts.
+     * @throws IllegalArgumentException if an account name is invalid.
+     */
+    public <T> T aggregate(Collection<String> names, Function<TransactionManager, T> partial, BinaryOperator<T> merge, T empty) {
+        if (names.isEmpty()) return empty;
+
+        Account[] selected = new Account[names.size()];
+        int i = 0;
+        for (String name : names) {
+            selected[i++] = getAccount(name);
+        }
+        return pool.invoke(new Aggregation<>(selected, 0, selected.length, partial, merge));
+    }
+
+    /**
+     * Gets the combined balance of several accounts.
+     *
+     * @param names The accounts to include.
+     * @return The sum of their balances in cents.
+     */
+    public long getBalanceCents(Collection<String> names) {
+        return aggregate(names, TransactionManager::getBalanceCents, Money::add, 0L);
+    }
+
+    /**
+     * Counts and totals the transactions matching a query across several accounts.
+     *
+     * @param query The criteria to match.
+     * @param names The accounts to include.
+     * @return The combined count and income/expense totals of the matches.
+     */
+    public TransactionSummary summarize(TransactionQuery query, Collection<String> names) {
+        return aggregate(names, manager -> manager.summarize(query), TransactionSummary::plus, TransactionSummary.EMPTY);
+    }
+
+    /**
+     * Gets the combined summary of every category across several accounts.
+     *
+     * @param names The accounts to include.
+     * @return A map from each category to its combined summary.
+     */
+    public Map<Category, TransactionSummary> getCategorySummaries(Collection<String> names) {
+        Map<Category, TransactionSummary> empty = new EnumMap<>(Category.class);
+        for (Category category : Category.values()) {
+            empty.put(category, TransactionSummary.EMPTY);
+        }
+        return aggregate(names, manager -> new EnumMap<>(manager.getCategorySummaries()), (left, right) -> {
+            right.forEach((category, summary) -> left.merge(category, summary, TransactionSummary::plus));
+            return left;
+        }, empty);
+    }
+
+    /**
+     * Closes the ledgers of all loaded accounts and stops the aggregation threads.
+     */
+    public void close() {
+        for (Account account : accounts.values()) {
+            account.unload();
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,347 @@
+package main;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Mergeable histogram of transaction amounts with logarithmic buckets, for percentiles and distributions.
+ * <p>
+ * Amounts below {@code 1.28} get one bucket per cent. Above that, every power of two is split into 64 buckets
+ * of equal width, so a bucket is at most 1/64 as wide as its lower bound. Every bucket keeps an exact count,
+ * and a quantile is answered with the middle of the bucket that holds it, which is within
+ * {@link #RELATIVE_ERROR} (1/128, under 0.8%) of the true amount at that rank. Negative amounts are mirrored.
+ * </p>
+ * <p>
+ * While the used buckets are few compared with the range they span, as in most (month, category) cells, their
+ * keys and counts are kept in two sorted arrays. Once a dense array over the range would take less memory,
+ * the counts move to one array that spans the buckets between the smallest and the largest amount recorded.
+ * Either way a histogram never holds more than 7,423 counts, however many amounts it has seen. Merging two
+ * histograms adds their counts, which gives exactly the histogram of the combined amounts: months can be
+ * merged into quarters or years without looking at the transactions again.
+ * Removing an amount takes it out of its bucket, so deleted transactions leave no trace. Not thread-safe.
+ * </p>
+ */
+public class AmountHistogram {
+    /** The largest relative difference between a reported quantile and the true amount at that rank. */
+    public static final double RELATIVE_ERROR = 1.0 / 128;
+
+    /** Amounts below this many cents have a bucket each. */
+    private static final int EXACT_BUCKETS = 128;
+    /** The number of buckets each power of two above {@link #EXACT_BUCKETS} is split into. */
+    private static final int SUB_BUCKETS = 64;
+    private static final int MAX_INDEX = index(Long.MAX_VALUE);
+
+    /** The keys of the used buckets in ascending order while sparse; keys are signed bucket indexes. */
+    private int[] keys = new int[4];
+    /** The counts of {@link #keys} while sparse, or of every key from {@link #offset} on once dense. */
+    private long[] counts = new long[4];
+    /** The number of used sparse buckets, or -1 once dense. */
+    private int used;
+    private int offset;
+    private long count;
+
+    /**
+     * Adds an amount.
+     *
+     * @param amountCents The amount in cents.
+     */
+    public void record(long amountCents) {
+        add(key(amountCents), 1);
+        count++;
+    }
+
+    /**
+     * Takes out an amount recorded before, e.g. when its transaction is deleted.
+     *
+     * @param amountCents The amount in cents.
+     * @throws IllegalArgumentException if no amount in the bucket of {@code amountCents} is left.
+     */
+    public void remove(long amountCents) {
+        int position = position(key(amountCents));
+        if (position < 0 || counts[position] == 0) {
+            throw new IllegalArgumentException("No amount of " + Money.format(amountCents) + " recorded");
+        }
+        counts[position]--;
+        count--;
+    }
+
+    /**
+     * Adds the counts of another histogram to this one. The other histogram is not changed.
+     *
+     * @param other The histogram to add.
+     */
+    public void merge(AmountHistogram other) {
+        if (other.count == 0) return;
+
+        int positions = other.positions();
+        if (other.used < 0 && used >= 0) {
+            toDense(other.keyAt(0), other.keyAt(positions - 1));
+        }
+        for (int position = 0; position < positions; position++) {
+            if (other.counts[position] != 0) add(other.keyAt(position), other.counts[position]);
+        }
+        count += other.count;
+    }
+
+    /**
+     * Gets the number of amounts recorded.
+     *
+     * @return The amount count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the amount at a quantile, e.g. {@code 0.5} for the median or {@code 0.99} for the 99th percentile.
+     * The amount at rank {@code ceil(quantile * count)} in ascending order is estimated within
+     * {@link #RELATIVE_ERROR}.
+     *
+     * @param quantile The quantile, from 0 to 1.
+     * @return The estimated amount in cents, or 0 if the histogram is empty.
+     * @throws IllegalArgumentException if the quantile is not between 0 and 1.
+     */
+    public long getValueAtQuantile(double quantile) {
+        if (!(quantile >= 0 && quantile <= 1)) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + quantile);
+        }
+        if (count == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        int position = 0;
+        while ((seen += counts[position]) < rank) position++;
+        return representative(keyAt(position));
+    }
+
+    /**
+     * Gets the non-empty buckets in ascending amount order, e.g. to draw the distribution.
+     *
+     * @return The buckets with their bounds and counts.
+     */
+    public List<HistogramBin> getBins() {
+        List<HistogramBin> bins = new ArrayList<>();
+        for (int position = 0; position < positions(); position++) {
+            if (counts[position] == 0) continue;
+
+            int key = keyAt(position);
+            int index = Math.abs(key);
+            long low = lowest(index);
+            long high = low + width(index) - 1;
+            bins.add(key < 0 ? new HistogramBin(-high, -low, counts[position]) : new HistogramBin(low, high, counts[position]));
+        }
+        return bins;
+    }
+
+    /**
+     * Checks whether another histogram has the same count in every bucket.
+     *
+     * @param other The histogram to compare with.
+     * @return {@code true} if both describe the same amounts.
+     */
+    boolean hasSameCounts(AmountHistogram other) {
+        if (count != other.count) return false;
+
+        for (int position = 0; position < positions(); position++) {
+            if (counts[position] == 0) continue;
+            int otherPosition = other.position(keyAt(position));
+            if (otherPosition < 0 || other.counts[otherPosition] != counts[position]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns a formatted string representation of the histogram.
+     *
+     * @return The count and the median, 90th and 99th percentile.
+     */
+    @Override
+    public String toString() {
+        return count + " amounts | median " + Money.format(getValueAtQuantile(0.5))
+                + " | p90 " + Money.format(getValueAtQuantile(0.9)) + " | p99 " + Money.format(getValueAtQuantile(0.99));
+    }
+
+    /**
+     * Adds to the count of a bucket, inserting it into the sparse arrays or switching to the dense array
+     * if needed.
+     *
+     * @param key    The signed bucket index.
+     * @param amount The number of amounts to add.
+     */
+    private void add(int key, long amount) {
+        if (used >= 0) {
+            int position = Arrays.binarySearch(keys, 0, used, key);
+            if (position >= 0) {
+                counts[position] += amount;
+                return;
+            }
+            // A sparse bucket takes 12 bytes and a dense one 8, so switch once the dense array would be smaller
+            long span = (long) Math.max(key, keys[Math.max(0, used - 1)]) - Math.min(key, keys[0]) + 1;
+            if (used == 0 || (used + 1) * 3L < span * 2) {
+                insert(-position - 1, key, amount);
+                return;
+            }
+            toDense(key, key);
+        }
+        cover(key, key);
+        counts[key - offset] += amount;
+    }
+
+    /**
+     * Inserts a bucket into the sparse arrays.
+     *
+     * @param position The position that keeps the keys sorted.
+     * @param key      The signed bucket index.
+     * @param amount   The count of the bucket.
+     */
+    private void insert(int position, int key, long amount) {
+        if (used == keys.length) {
+            keys = Arrays.copyOf(keys, used * 2);
+            counts = Arrays.copyOf(counts, used * 2);
+        }
+        System.arraycopy(keys, position, keys, position + 1, used - position);
+        System.arraycopy(counts, position, counts, position + 1, used - position);
+        keys[position] = key;
+        counts[position] = amount;
+        used++;
+    }
+
+    /**
+     * Moves the sparse buckets into a dense array that also spans a range of keys.
+     *
+     * @param low  The lowest key to span.
+     * @param high The highest key to span.
+     */
+    private void toDense(int low, int high) {
+        int[] sparseKeys = keys;
+        long[] sparseCounts = counts;
+        int sparseUsed = used;
+        if (sparseUsed > 0) {
+            low = Math.min(low, sparseKeys[0]);
+            high = Math.max(high, sparseKeys[sparseUsed - 1]);
+        }
+        counts = new long[high - low + 1];
+        offset = low;
+        keys = null;
+        used = -1;
+        for (int i = 0; i < sparseUsed; i++) {
+            counts[sparseKeys[i] - offset] = sparseCounts[i];
+        }
+    }
+
+    /**
+     * Grows the dense array so it spans a range of bucket keys. It at least doubles when it grows, and never
+     * spans more than every possible key.
+     *
+     * @param low  The lowest key to span.
+     * @param high The highest key to span.
+     */
+    private void cover(int low, int high) {
+        int top = offset + counts.length - 1;
+        if (low >= offset && high <= top) return;
+
+        int spanLow = Math.min(low, offset);
+        int spanHigh = Math.max(high, top);
+        int length = Math.min(Math.max(spanHigh - spanLow + 1, counts.length * 2), 2 * MAX_INDEX + 1);
+        // Put the spare room on the side that grew, as amounts tend to keep growing the same way
+        int newOffset = low < offset ? Math.max(-MAX_INDEX, spanHigh - length + 1) : spanLow;
+        newOffset = Math.min(newOffset, MAX_INDEX - length + 1);
+
+        long[] grown = new long[length];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+
+    /**
+     * Gets the number of positions in {@link #counts} that may hold a count.
+     *
+     * @return The number of sparse buckets, or the length of the dense array.
+     */
+    private int positions() {
+        return used >= 0 ? used : counts.length;
+    }
+
+    /**
+     * Gets the bucket key of a position in {@link #counts}.
+     *
+     * @param position The position.
+     * @return The signed bucket index.
+     */
+    private int keyAt(int position) {
+        return used >= 0 ? keys[position] : position + offset;
+    }
+
+    /**
+     * Finds the position of a bucket in {@link #counts}.
+     *
+     * @param key The signed bucket index.
+     * @return The position, or -1 if the bucket has no position.
+     */
+    private int position(int key) {
+        if (used >= 0) return Math.max(-1, Arrays.binarySearch(keys, 0, used, key));
+        int position = key - offset;
+        return position < 0 || position >= counts.length ? -1 : position;
+    }
+
+    /**
+     * Gets the signed bucket key of an amount: the bucket index, negated for negative amounts.
+     *
+     * @param amountCents The amount in cents.
+     * @return The bucket key.
+     */
+    private static int key(long amountCents) {
+        if (amountCents >= 0) return index(amountCents);
+        return -index(amountCents == Long.MIN_VALUE ? Long.MAX_VALUE : -amountCents);
+    }
+
+    /**
+     * Gets the bucket index of a non-negative amount.
+     *
+     * @param cents The amount in cents.
+     * @return The bucket index; equal to the amount below {@link #EXACT_BUCKETS}.
+     */
+    private static int index(long cents) {
+        if (cents < EXACT_BUCKETS) return (int) cents;
+
+        // Keep the top seven bits: the shifted value lies in [64, 128)
+        int shift = 63 - Long.numberOfLeadingZeros(cents) - 6;
+        return EXACT_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) ((cents >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Gets the smallest amount of a bucket.
+     *
+     * @param index The bucket index.
+     * @return The lower bound in cents (inclusive).
+     */
+    private static long lowest(int index) {
+        if (index < EXACT_BUCKETS) return index;
+
+        int shift = (index - EXACT_BUCKETS) / SUB_BUCKETS + 1;
+        return (long) ((index - EXACT_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Gets the number of amounts a bucket spans.
+     *
+     * @param index The bucket index.
+     * @return The bucket width in cents.
+     */
+    private static long width(int index) {
+        return index < EXACT_BUCKETS ? 1 : 1L << ((index - EXACT_BUCKETS) / SUB_BUCKETS + 1);
+    }
+
+    /**
+     * Gets the amount reported for a bucket: its middle, which is within {@link #RELATIVE_ERROR} of every amount in it.
+     *
+     * @param key The signed bucket key.
+     * @return The amount in cents.
+     */
+    private static long representative(int key) {
+        int index = Math.abs(key);
+        long middle = lowest(index) + width(index) / 2;
+        return key < 0 ? -middle : middle;
+    }
+}
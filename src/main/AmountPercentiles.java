@@ -0,0 +1,110 @@
+package main;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable amount percentiles of the transactions of one type and category in one time bucket,
+ * as returned by {@link TransactionManager#getAmountPercentiles(RollupPeriod, LocalDate, LocalDate)}.
+ * Amounts are kept in cents and are within {@link AmountHistogram#RELATIVE_ERROR} of the exact percentiles.
+ */
+public class AmountPercentiles {
+    private final LocalDate start;
+    private final Category category;
+    private final TransactionType type;
+    private final long count;
+    private final long medianCents;
+    private final long p90Cents;
+    private final long p99Cents;
+
+    /**
+     * Constructs new AmountPercentiles from the histogram of a bucket.
+     *
+     * @param start     The first day of the time bucket.
+     * @param category  The category of the transactions.
+     * @param type      The type of the transactions.
+     * @param histogram The amounts of the transactions.
+     */
+    public AmountPercentiles(LocalDate start, Category category, TransactionType type, AmountHistogram histogram) {
+        this.start = start;
+        this.category = category;
+        this.type = type;
+        this.count = histogram.getCount();
+        this.medianCents = histogram.getValueAtQuantile(0.5);
+        this.p90Cents = histogram.getValueAtQuantile(0.9);
+        this.p99Cents = histogram.getValueAtQuantile(0.99);
+    }
+
+    /**
+     * Gets the first day of the time bucket.
+     *
+     * @return The bucket start.
+     */
+    public LocalDate getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the category of the transactions.
+     *
+     * @return The category.
+     */
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * Gets the type of the transactions.
+     *
+     * @return The transaction type.
+     */
+    public TransactionType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of transactions.
+     *
+     * @return The transaction count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the median amount in cents.
+     *
+     * @return The median in cents.
+     */
+    public long getMedianCents() {
+        return medianCents;
+    }
+
+    /**
+     * Gets the 90th percentile amount in cents.
+     *
+     * @return The 90th percentile in cents.
+     */
+    public long getP90Cents() {
+        return p90Cents;
+    }
+
+    /**
+     * Gets the 99th percentile amount in cents.
+     *
+     * @return The 99th percentile in cents.
+     */
+    public long getP99Cents() {
+        return p99Cents;
+    }
+
+    /**
+     * Returns a formatted string representation of the percentiles.
+     *
+     * @return The bucket, category, type, count, median, 90th and 99th percentile.
+     */
+    @Override
+    public String toString() {
+        return start + " " + category + " " + type + ": " + count + " transactions | median " + Money.format(medianCents)
+                + " | p90 " + Money.format(p90Cents) + " | p99 " + Money.format(p99Cents);
+    }
+}
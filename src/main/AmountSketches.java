@@ -0,0 +1,253 @@
+package main;
+
+import Utils.LongIntHashMap;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * One {@link AmountHistogram} per calendar month, {@link Category} and {@link TransactionType}.
+ * <p>
+ * Recording or removing a transaction updates the histogram of its cell in constant time. Percentiles and
+ * distributions of longer periods merge the monthly histograms of the requested months, so they cost time
+ * proportional to the number of months, not to the number of transactions. Months start at midnight UTC,
+ * like the buckets of {@link TransactionRollups}.
+ * </p>
+ * <p>
+ * The histograms are kept in an array with one slot of cells per month that has transactions, with a hash
+ * map from the first day of the month to its slot. The caller guards the sketches with the manager's lock.
+ * </p>
+ */
+final class AmountSketches {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Category[] CATEGORIES = Category.values();
+    private static final int CELLS = TYPES.length * CATEGORIES.length;
+    private static final int INITIAL_MONTHS = 16;
+
+    private final LongIntHashMap slots = new LongIntHashMap(INITIAL_MONTHS);
+    private long[] months = new long[INITIAL_MONTHS];
+    private AmountHistogram[] histograms = new AmountHistogram[INITIAL_MONTHS * CELLS];
+    private int monthCount;
+    /** The day of the last recorded transaction and the first day of its month. */
+    private long lastDay = Long.MIN_VALUE;
+    private long lastMonth;
+
+    /**
+     * Adds one transaction to the histogram of its month, category and type.
+     *
+     * @param epochSecond The timestamp as seconds since the epoch.
+     * @param type        The transaction type.
+     * @param category    The category.
+     * @param amountCents The amount in cents.
+     */
+    void record(long epochSecond, TransactionType type, Category category, long amountCents) {
+        long month = month(epochSecond);
+        int slot = slots.get(month, -1);
+        if (slot < 0) {
+            slot = addMonth(month);
+        }
+        int cell = slot * CELLS + cell(type, category);
+        if (histograms[cell] == null) {
+            histograms[cell] = new AmountHistogram();
+        }
+        histograms[cell].record(amountCents);
+    }
+
+    /**
+     * Takes one transaction out of the histogram of its month, category and type, e.g. when it is deleted.
+     *
+     * @param epochSecond The timestamp as seconds since the epoch.
+     * @param type        The transaction type.
+     * @param category    The category.
+     * @param amountCents The amount in cents.
+     * @throws IllegalArgumentException if the amount was not recorded in that cell.
+     */
+    void remove(long epochSecond, TransactionType type, Category category, long amountCents) {
+        int slot = slots.get(month(epochSecond), -1);
+        AmountHistogram histogram = slot < 0 ? null : histograms[slot * CELLS + cell(type, category)];
+        if (histogram == null) {
+            throw new IllegalArgumentException("No " + category + "/" + type + " transaction recorded at " + epochSecond);
+        }
+        histogram.remove(amountCents);
+    }
+
+    /**
+     * Merges the histograms of every month that overlaps a date range. Partly covered months count in full.
+     *
+     * @param type     The transaction type, or {@code null} for both.
+     * @param category The category, or {@code null} for every category.
+     * @param from     The first day of the range (inclusive).
+     * @param to       The last day of the range (inclusive).
+     * @return A new histogram of the matching amounts.
+     */
+    AmountHistogram histogram(TransactionType type, Category category, LocalDate from, LocalDate to) {
+        long first = RollupPeriod.MONTH.bucketStart(from.toEpochDay());
+        long last = RollupPeriod.MONTH.bucketStart(to.toEpochDay());
+        AmountHistogram merged = new AmountHistogram();
+        for (int slot = 0; slot < monthCount; slot++) {
+            if (months[slot] < first || months[slot] > last) continue;
+            for (int c = 0; c < CELLS; c++) {
+                AmountHistogram histogram = histograms[slot * CELLS + c];
+                if (histogram != null && (type == null || TYPES[c % TYPES.length] == type)
+                        && (category == null || CATEGORIES[c / TYPES.length] == category)) {
+                    merged.merge(histogram);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Returns the percentiles of every non-empty (bucket, category, type) combination of the months that
+     * overlap a date range, ordered by bucket, then category, then type.
+     *
+     * @param period The bucket length; {@link RollupPeriod#MONTH} or {@link RollupPeriod#YEAR}.
+     * @param from   The first day of the range (inclusive).
+     * @param to     The last day of the range (inclusive).
+     * @return The percentiles of the range.
+     * @throws IllegalArgumentException if the period is shorter than a month.
+     */
+    List<AmountPercentiles> percentiles(RollupPeriod period, LocalDate from, LocalDate to) {
+        if (period != RollupPeriod.MONTH && period != RollupPeriod.YEAR) {
+            throw new IllegalArgumentException("Amount percentiles are kept per month, not per " + period);
+        }
+        long first = RollupPeriod.MONTH.bucketStart(from.toEpochDay());
+        long last = RollupPeriod.MONTH.bucketStart(to.toEpochDay());
+
+        // A bucket of a single month reads its histogram directly; a copy is only made to merge a second month
+        Map<Long, AmountHistogram[]> buckets = new TreeMap<>();
+        Set<AmountHistogram> copies = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int slot = 0; slot < monthCount; slot++) {
+            if (months[slot] < first || months[slot] > last) continue;
+
+            AmountHistogram[] bucket = buckets.computeIfAbsent(period.bucketStart(months[slot]), start -> new AmountHistogram[CELLS]);
+            for (int c = 0; c < CELLS; c++) {
+                AmountHistogram histogram = histograms[slot * CELLS + c];
+                if (histogram == null || histogram.getCount() == 0) continue;
+                if (bucket[c] == null) {
+                    bucket[c] = histogram;
+                    continue;
+                }
+                if (!copies.contains(bucket[c])) {
+                    AmountHistogram copy = new AmountHistogram();
+                    copy.merge(bucket[c]);
+                    copies.add(copy);
+                    bucket[c] = copy;
+                }
+                bucket[c].merge(histogram);
+            }
+        }
+
+        List<AmountPercentiles> percentiles = new ArrayList<>();
+        for (Map.Entry<Long, AmountHistogram[]> bucket : buckets.entrySet()) {
+            LocalDate start = LocalDate.ofEpochDay(bucket.getKey());
+            for (int c = 0; c < CELLS; c++) {
+                AmountHistogram histogram = bucket.getValue()[c];
+                if (histogram == null) continue;
+                percentiles.add(new AmountPercentiles(start, CATEGORIES[c / TYPES.length], TYPES[c % TYPES.length], histogram));
+            }
+        }
+        return percentiles;
+    }
+
+    /**
+     * Computes the sketches from scratch by scanning the live rows of a store.
+     *
+     * @param store   The store to scan.
+     * @param deleted The rows to leave out.
+     * @return Freshly computed sketches.
+     */
+    static AmountSketches recompute(TransactionStore store, RowBitmap deleted) {
+        AmountSketches sketches = new AmountSketches();
+        for (int row = 0; row < store.size(); row++) {
+            if (deleted.get(row)) continue;
+            sketches.record(store.epochSecond(row), store.type(row), store.category(row), store.amountCents(row));
+        }
+
+        return sketches;
+    }
+
+    /**
+     * Compares these sketches with another set of sketches. Empty histograms count as missing.
+     *
+     * @param other The sketches to compare with.
+     * @return A description of the first difference found, or {@code null} if they are equal.
+     */
+    String findMismatch(AmountSketches other) {
+        String mismatch = firstMissing(other);
+        return mismatch != null ? mismatch : other.firstMissing(this);
+    }
+
+    /**
+     * Finds the first non-empty histogram of these sketches that the other sketches do not hold.
+     *
+     * @param other The sketches to compare with.
+     * @return A description of the difference, or {@code null} if every histogram is matched.
+     */
+    private String firstMissing(AmountSketches other) {
+        for (int slot = 0; slot < monthCount; slot++) {
+            int otherSlot = other.slots.get(months[slot], -1);
+            for (int c = 0; c < CELLS; c++) {
+                AmountHistogram histogram = histograms[slot * CELLS + c];
+                if (histogram == null || histogram.getCount() == 0) continue;
+
+                AmountHistogram otherHistogram = otherSlot < 0 ? null : other.histograms[otherSlot * CELLS + c];
+                if (otherHistogram == null || !histogram.hasSameCounts(otherHistogram)) {
+                    return LocalDate.ofEpochDay(months[slot]) + " " + CATEGORIES[c / TYPES.length] + "/" + TYPES[c % TYPES.length]
+                            + ": " + histogram + "; other " + otherHistogram;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the month of a timestamp. Transactions mostly arrive in date order, so the month is only
+     * recomputed when the day changes.
+     *
+     * @param epochSecond The timestamp as seconds since the epoch.
+     * @return The first day of its month, as days since the epoch.
+     */
+    private long month(long epochSecond) {
+        long day = Math.floorDiv(epochSecond, 86_400L);
+        if (day != lastDay) {
+            lastMonth = RollupPeriod.MONTH.bucketStart(day);
+            lastDay = day;
+        }
+        return lastMonth;
+    }
+
+    /**
+     * Allocates the slot of a month, growing the arrays if needed.
+     *
+     * @param month The first day of the month, as days since the epoch.
+     * @return The new slot.
+     */
+    private int addMonth(long month) {
+        if (monthCount == months.length) {
+            months = Arrays.copyOf(months, monthCount * 2);
+            histograms = Arrays.copyOf(histograms, monthCount * 2 * CELLS);
+        }
+        months[monthCount] = month;
+        slots.put(month, monthCount);
+        return monthCount++;
+    }
+
+    /**
+     * Returns the position of a (category, type) cell within a month; cells are ordered by category, then type.
+     *
+     * @param type     The transaction type.
+     * @param category The category.
+     * @return The cell position.
+     */
+    private static int cell(TransactionType type, Category category) {
+        return category.ordinal() * TYPES.length + type.ordinal();
+    }
+}
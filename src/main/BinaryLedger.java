@@ -0,0 +1,81 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Layout of the binary ledger file.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE}-byte header, followed by one fixed-width
+ * {@value #RECORD_SIZE}-byte record per transaction and finally a heap holding the description dictionary:
+ * a table with the heap offset of every distinct description, then the descriptions as length-prefixed
+ * UTF-8 strings. Records refer to their description by its dense code, the position in the table, so each
+ * distinct description is stored once and readers can keep per-description results in a plain array.
+ * All numbers are little-endian.
+ * </p>
+ * <pre>
+ * header: int magic "PFTL" | int version | long record count | long heap position | long heap length
+ * record: long epoch second | long amount in cents | long ID (see {@link TransactionId})
+ *         | int description code | byte type ordinal | byte category ordinal | 2 bytes reserved
+ * heap:   int description count | int heap offset per description code | length-prefixed strings
+ * </pre>
+ * Version 2 files had no table: the record held the heap offset of the description instead of its code.
+ * Version 1 files also stored the ID as text in the heap; the record then held an int ID offset at byte 16,
+ * the description offset at byte 20 and the ordinals at bytes 24 and 25. Both can still be read.
+ * Records can be read in place from a memory-mapped file, see {@link MappedTransactionStore}.
+ */
+final class BinaryLedger {
+    static final int MAGIC = 0x4C544650; // "PFTL" when read as little-endian bytes
+    static final int VERSION = 3;
+    static final int VERSION_DESCRIPTION_OFFSETS = 2;
+    static final int VERSION_TEXT_IDS = 1;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int HEADER_SIZE = 32;
+    static final int HEADER_COUNT = 8;
+    static final int HEADER_HEAP_POSITION = 16;
+    static final int HEADER_HEAP_LENGTH = 24;
+
+    static final int RECORD_SIZE = 32;
+    static final int EPOCH_SECOND = 0;
+    static final int AMOUNT_CENTS = 8;
+    static final int ID = 16;
+    static final int DESCRIPTION_CODE = 24;
+    static final int V2_DESCRIPTION_OFFSET = 24;
+    static final int TYPE = 28;
+    static final int CATEGORY = 29;
+
+    static final int V1_ID_OFFSET = 16;
+    static final int V1_DESCRIPTION_OFFSET = 20;
+    static final int V1_TYPE = 24;
+    static final int V1_CATEGORY = 25;
+
+    // Private constructor to prevent instantiation
+    private BinaryLedger() {}
+
+    /**
+     * Checks whether a file starts with the binary ledger magic number.
+     *
+     * @param fileName the file to inspect
+     * @return {@code true} if the file is a binary ledger, {@code false} if it is text, empty or missing
+     */
+    static boolean isBinary(String fileName) {
+        Path path = Paths.get(fileName);
+        if (!Files.isRegularFile(path)) return false;
+
+        try (FileChannel channel = FileChannel.open(path)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ORDER);
+            while (magic.hasRemaining() && channel.read(magic) > 0) {
+                // keep reading until four bytes are in
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package main;
+
+import Utils.IntList;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a binary ledger file (see {@link BinaryLedger}) row by row through a {@link FileChannel}.
+ * Records are streamed to disk as they are written; the description dictionary and its string heap are
+ * kept in memory and appended, together with the header, when the writer is closed.
+ */
+class BinaryLedgerWriter implements Closeable {
+    private static final int RECORDS_PER_FLUSH = 4096;
+
+    private final FileChannel channel;
+    private final ByteBuffer records = ByteBuffer.allocateDirect(BinaryLedger.RECORD_SIZE * RECORDS_PER_FLUSH)
+            .order(BinaryLedger.ORDER);
+    private final DescriptionDictionary descriptions = new DescriptionDictionary();
+    /** The offset of every description's string within {@link #heap}, by description code. */
+    private final IntList stringOffsets = new IntList();
+    private byte[] heap = new byte[1 << 16];
+    private int heapLength;
+    private long count;
+
+    /**
+     * Creates or truncates a binary ledger file.
+     *
+     * @param fileName the file to write
+     * @throws IOException if the file cannot be opened
+     */
+    BinaryLedgerWriter(String fileName) throws IOException {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        channel.position(BinaryLedger.HEADER_SIZE);
+    }
+
+    /**
+     * Writes one row.
+     *
+     * @param id          the transaction ID
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @param amountCents the amount in cents
+     * @param type        the transaction type
+     * @param category    the transaction category
+     * @param description the description text
+     * @throws IOException if writing fails
+     */
+    void write(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description) throws IOException {
+        int descriptionCode = descriptions.encode(description);
+        if (descriptionCode == stringOffsets.size()) {
+            stringOffsets.add(addString(description));
+        }
+
+        if (!records.hasRemaining()) flushRecords();
+        records.putLong(epochSecond)
+                .putLong(amountCents)
+                .putLong(id)
+                .putInt(descriptionCode)
+                .put((byte) type.ordinal())
+                .put((byte) category.ordinal())
+                .putShort((short) 0);
+        count++;
+    }
+
+    /**
+     * Writes the remaining records, the description table, the string heap and the header, then closes the file.
+     *
+     * @throws IOException if writing fails or the heap would exceed 2 GB
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushRecords();
+            int tableLength = 4 + 4 * stringOffsets.size();
+            if ((long) tableLength + heapLength > Integer.MAX_VALUE - 8) {
+                throw new IOException("String heap of binary ledger exceeds 2 GB");
+            }
+            ByteBuffer table = ByteBuffer.allocate(tableLength).order(BinaryLedger.ORDER);
+            table.putInt(stringOffsets.size());
+            for (int code = 0; code < stringOffsets.size(); code++) {
+                table.putInt(tableLength + stringOffsets.get(code));
+            }
+            table.flip();
+
+            long heapPosition = BinaryLedger.HEADER_SIZE + count * BinaryLedger.RECORD_SIZE;
+            writeFully(table, heapPosition);
+            writeFully(ByteBuffer.wrap(heap, 0, heapLength), heapPosition + tableLength);
+
+            ByteBuffer header = ByteBuffer.allocate(BinaryLedger.HEADER_SIZE).order(BinaryLedger.ORDER);
+            header.putInt(BinaryLedger.MAGIC)
+                    .putInt(BinaryLedger.VERSION)
+                    .putLong(count)
+                    .putLong(heapPosition)
+                    .putLong(tableLength + heapLength)
+                    .flip();
+            writeFully(header, 0);
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Appends a length-prefixed UTF-8 string to the heap.
+     *
+     * @param value the string to store
+     * @return the offset of the string in the heap
+     * @throws IOException if the heap would exceed 2 GB
+     */
+    private int addString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        long needed = (long) heapLength + 4 + bytes.length;
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new IOException("String heap of binary ledger exceeds 2 GB");
+        }
+        if (needed > heap.length) {
+            heap = Arrays.copyOf(heap, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(needed, heap.length * 2L)));
+        }
+
+        int offset = heapLength;
+        ByteBuffer.wrap(heap, offset, 4).order(BinaryLedger.ORDER).putInt(bytes.length);
+        System.arraycopy(bytes, 0, heap, offset + 4, bytes.length);
+        heapLength += 4 + bytes.length;
+        return offset;
+    }
+
+    /**
+     * Writes the buffered records at the current channel position.
+     *
+     * @throws IOException if writing fails
+     */
+    private void flushRecords() throws IOException {
+        records.flip();
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        records.clear();
+    }
+
+    /**
+     * Writes a whole buffer at an absolute file position.
+     *
+     * @param buffer   the bytes to write
+     * @param position the file position
+     * @throws IOException if writing fails
+     */
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+}
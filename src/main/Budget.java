@@ -0,0 +1,138 @@
+package main;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * An immutable spending limit for the expenses of one {@link Category} per day, week, month or year.
+ * <p>
+ * A budget has one or more alert thresholds, given as percentages of the limit. When an expense makes the
+ * category's total for its period reach a threshold, a {@link BudgetAlert} is sent to the listeners
+ * registered with {@link TransactionManager#addBudgetListener(BudgetListener)}.
+ * </p>
+ */
+public class Budget {
+    /** The thresholds of a budget created without explicit ones: a warning at 80% and the limit itself. */
+    private static final int[] DEFAULT_THRESHOLDS = {80, 100};
+
+    private final Category category;
+    private final RollupPeriod period;
+    private final long limitCents;
+    private final int[] thresholdPercents;
+
+    /**
+     * Constructs a new Budget.
+     *
+     * @param category          The category whose expenses are limited.
+     * @param period            The period the limit applies to, e.g. {@link RollupPeriod#MONTH}.
+     * @param limitCents        The spending limit per period, in cents.
+     * @param thresholdPercents The alert thresholds as percentages of the limit; 80% and 100% if none are given.
+     * @throws IllegalArgumentException if the limit or a threshold is not positive.
+     */
+    public Budget(Category category, RollupPeriod period, long limitCents, int... thresholdPercents) {
+        if (limitCents <= 0) {
+            throw new IllegalArgumentException("Budget limit must be positive: " + Money.format(limitCents));
+        }
+        int[] percents = thresholdPercents.length == 0 ? DEFAULT_THRESHOLDS : thresholdPercents.clone();
+        Arrays.sort(percents);
+        if (percents[0] <= 0) {
+            throw new IllegalArgumentException("Budget threshold must be positive: " + percents[0] + "%");
+        }
+        this.category = Objects.requireNonNull(category);
+        this.period = Objects.requireNonNull(period);
+        this.limitCents = limitCents;
+        this.thresholdPercents = Arrays.stream(percents).distinct().toArray();
+        thresholdCents(this.thresholdPercents[this.thresholdPercents.length - 1]);
+    }
+
+    /**
+     * Gets the category whose expenses are limited.
+     *
+     * @return The category.
+     */
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * Gets the period the limit applies to.
+     *
+     * @return The period.
+     */
+    public RollupPeriod getPeriod() {
+        return period;
+    }
+
+    /**
+     * Gets the spending limit per period.
+     *
+     * @return The limit.
+     */
+    public double getLimit() {
+        return Money.toDouble(limitCents);
+    }
+
+    /**
+     * Gets the spending limit per period in cents.
+     *
+     * @return The limit in cents.
+     */
+    public long getLimitCents() {
+        return limitCents;
+    }
+
+    /**
+     * Gets the alert thresholds.
+     *
+     * @return The thresholds as percentages of the limit, ascending.
+     */
+    public int[] getThresholdPercents() {
+        return thresholdPercents.clone();
+    }
+
+    /**
+     * Converts a threshold to the period total that reaches it, rounding up to whole cents.
+     *
+     * @param percent The threshold as a percentage of the limit.
+     * @return The total in cents at which the threshold is reached.
+     * @throws IllegalArgumentException if the total does not fit in a {@code long}.
+     */
+    long thresholdCents(int percent) {
+        try {
+            return Math.addExact(Math.multiplyExact(limitCents / 100, percent), ((limitCents % 100) * percent + 99) / 100);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Budget threshold too large: " + percent + "% of " + Money.format(limitCents));
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Budget)) return false;
+        Budget other = (Budget) o;
+        return limitCents == other.limitCents && category == other.category && period == other.period
+                && Arrays.equals(thresholdPercents, other.thresholdPercents);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(category, period, limitCents, Arrays.hashCode(thresholdPercents));
+    }
+
+    /**
+     * Returns a readable description of the budget, e.g. {@code FOOD 500.00 per MONTH (alerts at 80%, 100%)}.
+     *
+     * @return The budget description.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(category).append(' ');
+        Money.appendTo(text, limitCents).append(" per ").append(period).append(" (alerts at ");
+        for (int i = 0; i < thresholdPercents.length; i++) {
+            if (i > 0) text.append(", ");
+            text.append(thresholdPercents[i]).append('%');
+        }
+        return text.append(')').toString();
+    }
+}
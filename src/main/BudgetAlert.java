@@ -0,0 +1,89 @@
+package main;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable event sent to {@link BudgetListener}s when an expense makes a category's total for a period
+ * reach one of the thresholds of a {@link Budget}.
+ */
+public class BudgetAlert {
+    private final Budget budget;
+    private final LocalDate periodStart;
+    private final int thresholdPercent;
+    private final long spentCents;
+    private final long transactionId;
+
+    /**
+     * Constructs a new BudgetAlert.
+     *
+     * @param budget           The budget whose threshold was reached.
+     * @param periodStart      The first day of the period the expense falls in.
+     * @param thresholdPercent The threshold that was reached, as a percentage of the limit.
+     * @param spentCents       The category's expense total for the period, including the expense, in cents.
+     * @param transactionId    The ID of the expense that reached the threshold.
+     */
+    public BudgetAlert(Budget budget, LocalDate periodStart, int thresholdPercent, long spentCents, long transactionId) {
+        this.budget = budget;
+        this.periodStart = periodStart;
+        this.thresholdPercent = thresholdPercent;
+        this.spentCents = spentCents;
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * Gets the budget whose threshold was reached.
+     *
+     * @return The budget.
+     */
+    public Budget getBudget() {
+        return budget;
+    }
+
+    /**
+     * Gets the first day of the period the expense falls in.
+     *
+     * @return The period start.
+     */
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    /**
+     * Gets the threshold that was reached.
+     *
+     * @return The threshold as a percentage of the limit.
+     */
+    public int getThresholdPercent() {
+        return thresholdPercent;
+    }
+
+    /**
+     * Gets the category's expense total for the period, including the expense that reached the threshold.
+     *
+     * @return The total in cents.
+     */
+    public long getSpentCents() {
+        return spentCents;
+    }
+
+    /**
+     * Gets the ID of the expense that reached the threshold.
+     *
+     * @return The transaction ID.
+     */
+    public String getTransactionId() {
+        return TransactionId.toString(transactionId);
+    }
+
+    /**
+     * Returns a formatted string representation of the alert.
+     *
+     * @return The budget, period, threshold and amount spent.
+     */
+    @Override
+    public String toString() {
+        return "Budget alert: " + budget.getCategory() + " " + budget.getPeriod() + " of " + periodStart
+                + " reached " + thresholdPercent + "% | spent " + Money.format(spentCents)
+                + " of " + Money.format(budget.getLimitCents());
+    }
+}
@@ -0,0 +1,15 @@
+package main;
+
+/**
+ * Receives the alerts of the {@link Budget}s of a {@link TransactionManager}.
+ */
+@FunctionalInterface
+public interface BudgetListener {
+    /**
+     * Called once for every budget threshold an expense reaches, after the expense has been published.
+     * Alerts are delivered one at a time, outside the manager's locks, so a listener may read the manager.
+     *
+     * @param alert The threshold that was reached.
+     */
+    void budgetAlert(BudgetAlert alert);
+}
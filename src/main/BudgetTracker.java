@@ -0,0 +1,379 @@
+package main;
+
+import Utils.LongIntHashMap;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Checks the {@link Budget}s of a manager against running expense totals per period and category.
+ * <p>
+ * There is one track per (period, category) pair that has budgets. A track keeps the expense total of every
+ * period bucket and the thresholds of all its budgets, converted to cents and sorted. Recording an expense
+ * updates at most one total per period and compares it with the thresholds: for the latest bucket a cursor
+ * points at the next threshold to be reached, so the check costs constant time however many budgets are
+ * configured, plus one step per alert. Back-dated expenses in older buckets find their position with a
+ * binary search.
+ * </p>
+ * <p>
+ * The tracker is guarded by the manager's write lock, except for alert delivery: alerts are queued while
+ * the lock is held and delivered by {@link #deliverAlerts()} once it is released. During a bulk load no
+ * expenses are recorded; {@link #rebuild(TransactionRollups)} reloads the totals from the rollups at the end,
+ * so historical rows never raise alerts.
+ * </p>
+ */
+final class BudgetTracker {
+    private static final RollupPeriod[] PERIODS = RollupPeriod.values();
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final Track[] tracks = new Track[PERIODS.length * CATEGORIES.length];
+    private final LinkedHashSet<Budget> budgets = new LinkedHashSet<>();
+    private final CopyOnWriteArrayList<BudgetListener> listeners = new CopyOnWriteArrayList<>();
+    private final ConcurrentLinkedQueue<BudgetAlert> pending = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock delivery = new ReentrantLock();
+    private int trackCount;
+    /** The day of the last recorded expense and the first day of its bucket in every period. */
+    private long lastDay = Long.MIN_VALUE;
+    private final long[] lastBuckets = new long[PERIODS.length];
+
+    /**
+     * The running totals and sorted thresholds of one (period, category) pair.
+     */
+    private final class Track {
+        final RollupPeriod period;
+        final LongIntHashMap slots = new LongIntHashMap();
+        long[] totals = new long[16];
+        int bucketCount;
+        long[] thresholds;
+        Budget[] owners;
+        int[] percents;
+        long cursorBucket = Long.MIN_VALUE;
+        int cursor;
+
+        Track(RollupPeriod period) {
+            this.period = period;
+        }
+
+        /**
+         * Adds an expense to the total of its bucket and queues an alert for every threshold it reaches.
+         *
+         * @param bucket      the first day of the bucket, as days since the epoch
+         * @param amountCents the expense amount in cents
+         * @param id          the transaction ID
+         */
+        void record(long bucket, long amountCents, long id) {
+            int slot = slot(bucket);
+            long before = totals[slot];
+            long after = Money.add(before, amountCents);
+            totals[slot] = after;
+
+            int next = bucket == cursorBucket ? cursor : firstAbove(before);
+            while (next < thresholds.length && thresholds[next] <= after) {
+                if (!listeners.isEmpty()) {
+                    pending.add(new BudgetAlert(owners[next], LocalDate.ofEpochDay(bucket), percents[next], after, id));
+                }
+                next++;
+            }
+            while (next > 0 && thresholds[next - 1] > after) {
+                next--;
+            }
+            if (bucket >= cursorBucket) {
+                cursorBucket = bucket;
+                cursor = next;
+            }
+        }
+
+        /**
+         * Gets the expense total of a bucket.
+         *
+         * @param bucket the first day of the bucket, as days since the epoch
+         * @return the total in cents
+         */
+        long total(long bucket) {
+            int slot = slots.get(bucket, -1);
+            return slot < 0 ? 0 : totals[slot];
+        }
+
+        /**
+         * Replaces the thresholds with those of the given budgets and repositions the cursor.
+         *
+         * @param matching the budgets of this track
+         */
+        void setBudgets(List<Budget> matching) {
+            List<long[]> entries = new ArrayList<>();
+            for (int b = 0; b < matching.size(); b++) {
+                for (int percent : matching.get(b).getThresholdPercents()) {
+                    entries.add(new long[] {matching.get(b).thresholdCents(percent), b, percent});
+                }
+            }
+            entries.sort((x, y) -> Long.compare(x[0], y[0]));
+
+            thresholds = new long[entries.size()];
+            owners = new Budget[entries.size()];
+            percents = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                thresholds[i] = entries.get(i)[0];
+                owners[i] = matching.get((int) entries.get(i)[1]);
+                percents[i] = (int) entries.get(i)[2];
+            }
+            cursor = firstAbove(total(cursorBucket));
+        }
+
+        /**
+         * Reloads the bucket totals from the rollups.
+         *
+         * @param rollups  the rollups of every stored row
+         * @param category the category of this track
+         */
+        void load(TransactionRollups rollups, Category category) {
+            slots.clear();
+            bucketCount = 0;
+            cursorBucket = Long.MIN_VALUE;
+            for (Rollup rollup : rollups.report(period, LocalDate.MIN, LocalDate.MAX)) {
+                if (rollup.getType() != TransactionType.EXPENSE || rollup.getCategory() != category) continue;
+
+                long bucket = rollup.getStart().toEpochDay();
+                totals[slot(bucket)] = rollup.getSumCents();
+                cursorBucket = Math.max(cursorBucket, bucket);
+            }
+            cursor = thresholds == null ? 0 : firstAbove(total(cursorBucket));
+        }
+
+        /**
+         * Finds the slot of a bucket's total, adding an empty total for a new bucket.
+         *
+         * @param bucket the first day of the bucket, as days since the epoch
+         * @return the slot in {@link #totals}
+         */
+        private int slot(long bucket) {
+            int slot = slots.get(bucket, -1);
+            if (slot >= 0) return slot;
+
+            if (bucketCount == totals.length) {
+                totals = Arrays.copyOf(totals, bucketCount * 2);
+            }
+            totals[bucketCount] = 0;
+            slots.put(bucket, bucketCount);
+            return bucketCount++;
+        }
+
+        /**
+         * Finds the first threshold above a total.
+         *
+         * @param total the total in cents
+         * @return the index of the first threshold greater than the total, or the threshold count
+         */
+        private int firstAbove(long total) {
+            int low = 0;
+            int high = thresholds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (thresholds[mid] <= total) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Records an expense in the totals of every period that has budgets for its category.
+     * Income is ignored. The caller must hold the manager's write lock.
+     *
+     * @param id          the transaction ID
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @param type        the transaction type
+     * @param category    the transaction category
+     * @param amountCents the amount in cents
+     * @throws ArithmeticException if a period total would overflow
+     */
+    void record(long id, long epochSecond, TransactionType type, Category category, long amountCents) {
+        if (trackCount == 0 || type != TransactionType.EXPENSE) return;
+
+        long day = Math.floorDiv(epochSecond, 86_400L);
+        if (day != lastDay) {
+            // Expenses mostly arrive in date order, so the buckets are only recomputed when the day changes
+            for (RollupPeriod period : PERIODS) {
+                lastBuckets[period.ordinal()] = period.bucketStart(day);
+            }
+            lastDay = day;
+        }
+        for (RollupPeriod period : PERIODS) {
+            Track track = tracks[index(period, category)];
+            if (track != null) {
+                track.record(lastBuckets[period.ordinal()], amountCents, id);
+            }
+        }
+    }
+
+    /**
+     * Takes a deleted or replaced expense out of the totals of every period that has budgets for its category.
+     * Totals only go down, so no alert is raised. The caller must hold the manager's write lock.
+     *
+     * @param id          the transaction ID
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @param type        the transaction type
+     * @param category    the transaction category
+     * @param amountCents the amount in cents
+     */
+    void remove(long id, long epochSecond, TransactionType type, Category category, long amountCents) {
+        record(id, epochSecond, type, category, Math.negateExact(amountCents));
+    }
+
+    /**
+     * Reloads the totals of every track from the rollups, e.g. after a bulk load.
+     * The caller must hold the manager's write lock.
+     *
+     * @param rollups the rollups of every stored row
+     */
+    void rebuild(TransactionRollups rollups) {
+        for (int i = 0; i < tracks.length; i++) {
+            if (tracks[i] != null) {
+                tracks[i].load(rollups, CATEGORIES[i % CATEGORIES.length]);
+            }
+        }
+    }
+
+    /**
+     * Adds a budget. The caller must hold the manager's write lock.
+     *
+     * @param budget  the budget
+     * @param rollups the rollups of every stored row, to load the totals of a new track from
+     * @return {@code false} if an equal budget was already present
+     */
+    boolean add(Budget budget, TransactionRollups rollups) {
+        if (!budgets.add(budget)) return false;
+
+        int index = index(budget.getPeriod(), budget.getCategory());
+        if (tracks[index] == null) {
+            tracks[index] = new Track(budget.getPeriod());
+            tracks[index].load(rollups, budget.getCategory());
+            trackCount++;
+        }
+        tracks[index].setBudgets(budgetsOf(budget.getPeriod(), budget.getCategory()));
+        return true;
+    }
+
+    /**
+     * Removes a budget. The caller must hold the manager's write lock.
+     *
+     * @param budget the budget
+     * @return {@code false} if the budget was not present
+     */
+    boolean remove(Budget budget) {
+        if (!budgets.remove(budget)) return false;
+
+        int index = index(budget.getPeriod(), budget.getCategory());
+        List<Budget> remaining = budgetsOf(budget.getPeriod(), budget.getCategory());
+        if (remaining.isEmpty()) {
+            tracks[index] = null;
+            trackCount--;
+        } else {
+            tracks[index].setBudgets(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the budgets in the order they were added. The caller must hold the manager's lock.
+     *
+     * @return a copy of the budgets
+     */
+    List<Budget> budgets() {
+        return new ArrayList<>(budgets);
+    }
+
+    /**
+     * Gets the expense total of a budget's category for the period that holds a day.
+     * The caller must hold the manager's lock.
+     *
+     * @param budget the budget
+     * @param day    the day
+     * @return the total in cents
+     * @throws IllegalArgumentException if the budget is not present
+     */
+    long spentCents(Budget budget, LocalDate day) {
+        if (!budgets.contains(budget)) {
+            throw new IllegalArgumentException("Unknown budget: " + budget);
+        }
+        return tracks[index(budget.getPeriod(), budget.getCategory())].total(budget.getPeriod().bucketStart(day.toEpochDay()));
+    }
+
+    /**
+     * Registers a listener for alerts raised from now on.
+     *
+     * @param listener the listener
+     */
+    void addListener(BudgetListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener
+     */
+    void removeListener(BudgetListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Delivers the queued alerts to the listeners, one at a time and in the order they were raised.
+     * Must be called without holding the manager's lock. A failing listener does not stop the delivery.
+     */
+    void deliverAlerts() {
+        if (pending.isEmpty()) return;
+
+        delivery.lock();
+        try {
+            BudgetAlert alert;
+            while ((alert = pending.poll()) != null) {
+                for (BudgetListener listener : listeners) {
+                    try {
+                        listener.budgetAlert(alert);
+                    } catch (RuntimeException e) {
+                        System.out.println("Error in budget listener: " + e.getMessage());
+                    }
+                }
+            }
+        } finally {
+            delivery.unlock();
+        }
+    }
+
+    /**
+     * Collects the budgets of a (period, category) pair.
+     *
+     * @param period   the period
+     * @param category the category
+     * @return the matching budgets, in the order they were added
+     */
+    private List<Budget> budgetsOf(RollupPeriod period, Category category) {
+        List<Budget> matching = new ArrayList<>();
+        for (Budget budget : budgets) {
+            if (budget.getPeriod() == period && budget.getCategory() == category) {
+                matching.add(budget);
+            }
+        }
+        return matching;
+    }
+
+    /**
+     * Returns the position of a (period, category) track.
+     *
+     * @param period   the period
+     * @param category the category
+     * @return the index into {@link #tracks}
+     */
+    private static int index(RollupPeriod period, Category category) {
+        return period.ordinal() * CATEGORIES.length + category.ordinal();
+    }
+}
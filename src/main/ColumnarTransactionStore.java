@@ -0,0 +1,131 @@
+package main;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * {@link TransactionStore} that keeps each column in its own primitive array.
+ * <p>
+ * Timestamps are stored as epoch seconds, amounts as cents, the type and category as enum ordinals
+ * and the description as a code into a {@link DescriptionDictionary}. Scans read only the arrays they
+ * need and {@link Transaction} objects are created on demand by {@link #get(int)}.
+ * Sub-second precision of timestamps and fractions of a cent are not kept.
+ * </p>
+ */
+public class ColumnarTransactionStore implements TransactionStore {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final DescriptionDictionary descriptions = new DescriptionDictionary();
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] epochSeconds = new long[INITIAL_CAPACITY];
+    private long[] amountsCents = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private byte[] categories = new byte[INITIAL_CAPACITY];
+    private int[] descriptionCodes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int append(Transaction transaction) {
+        return appendRow(transaction.getIdValue(), transaction.getDate().toEpochSecond(ZoneOffset.UTC),
+                transaction.getAmountCents(), transaction.getType(), transaction.getCategory(),
+                transaction.getDescription());
+    }
+
+    @Override
+    public int appendRow(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description) {
+        if (size == epochSeconds.length) {
+            grow();
+        }
+
+        int row = size++;
+        ids[row] = id;
+        epochSeconds[row] = epochSecond;
+        amountsCents[row] = amountCents;
+        types[row] = (byte) type.ordinal();
+        categories[row] = (byte) category.ordinal();
+        descriptionCodes[row] = descriptions.encode(description);
+        return row;
+    }
+
+    @Override
+    public Transaction get(int row) {
+        checkRow(row);
+        LocalDateTime date = LocalDateTime.ofEpochSecond(epochSeconds[row], 0, ZoneOffset.UTC);
+        return new Transaction(ids[row], date, amountsCents[row],
+                descriptions.decode(descriptionCodes[row]), TYPES[types[row]], CATEGORIES[categories[row]]);
+    }
+
+    @Override
+    public long id(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    @Override
+    public long epochSecond(int row) {
+        checkRow(row);
+        return epochSeconds[row];
+    }
+
+    @Override
+    public long amountCents(int row) {
+        checkRow(row);
+        return amountsCents[row];
+    }
+
+    @Override
+    public TransactionType type(int row) {
+        checkRow(row);
+        return TYPES[types[row]];
+    }
+
+    @Override
+    public Category category(int row) {
+        checkRow(row);
+        return CATEGORIES[categories[row]];
+    }
+
+    @Override
+    public String description(int row) {
+        checkRow(row);
+        return descriptions.decode(descriptionCodes[row]);
+    }
+
+    @Override
+    public int descriptionCode(int row) {
+        checkRow(row);
+        return descriptionCodes[row];
+    }
+
+    /**
+     * Doubles the capacity of every column array.
+     */
+    private void grow() {
+        int capacity = epochSeconds.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+        amountsCents = Arrays.copyOf(amountsCents, capacity);
+        types = Arrays.copyOf(types, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        descriptionCodes = Arrays.copyOf(descriptionCodes, capacity);
+    }
+
+    /**
+     * Rejects row positions outside the stored range.
+     *
+     * @param row the row position to check
+     */
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package main;
+
+import java.util.Arrays;
+
+/**
+ * Maps distinct description strings to compact integer codes.
+ * Repeated descriptions (merchant names, "Salary", "Rent", ...) are stored only once.
+ * <p>
+ * Codes are assigned densely from 0 in order of first appearance. The codes are kept in an open-addressing
+ * hash table of {@code int}s next to the cached string hashes, so an entry costs a few array slots instead of
+ * a map node and a boxed {@link Integer}. Descriptions can also be looked up straight from a parser's
+ * character buffer with {@link #encode(char[], int, int)}; a {@link String} is only created the first
+ * time a description is seen.
+ * </p>
+ */
+public class DescriptionDictionary {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private String[] values = new String[INITIAL_CAPACITY];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    /** Open-addressing table of code + 1 per slot; 0 marks an empty slot. Kept at most half full. */
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private int size;
+
+    /**
+     * Returns the code of a description, assigning a new one if it has not been seen before.
+     *
+     * @param description the description to encode
+     * @return the code of the description
+     */
+    public int encode(String description) {
+        int hash = description.hashCode();
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) return add(description, hash, slot);
+            if (hashes[code] == hash && values[code].equals(description)) return code;
+        }
+    }
+
+    /**
+     * Returns the code of a description held in a character buffer, assigning a new one if it has not been
+     * seen before. No string is created for a description that is already known.
+     *
+     * @param buffer the characters holding the description
+     * @param start  the first character (inclusive)
+     * @param end    the last character (exclusive)
+     * @return the code of the description
+     */
+    public int encode(char[] buffer, int start, int end) {
+        // Same hash as String.hashCode(), so both lookups find the same entries
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+
+        int mask = table.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int code = table[slot] - 1;
+            if (code < 0) return add(new String(buffer, start, end - start), hash, slot);
+            if (hashes[code] == hash && regionEquals(values[code], buffer, start, end)) return code;
+        }
+    }
+
+    /**
+     * Returns the shared string of a description held in a character buffer, adding it if it is new.
+     * Parsers use this so that every row with the same description references one {@link String}.
+     *
+     * @param buffer the characters holding the description
+     * @param start  the first character (inclusive)
+     * @param end    the last character (exclusive)
+     * @return the shared description string
+     */
+    public String intern(char[] buffer, int start, int end) {
+        int code = encode(buffer, start, end);
+        return values[code];
+    }
+
+    /**
+     * Returns the description stored under a code.
+     *
+     * @param code a code previously returned by {@link #encode(String)}
+     * @return the description text
+     * @throws IndexOutOfBoundsException if no description has the code
+     */
+    public String decode(int code) {
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("Description code " + code + " out of bounds for size " + size);
+        }
+        return values[code];
+    }
+
+    /**
+     * Returns the number of distinct descriptions.
+     *
+     * @return the dictionary size
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Stores a new description under the next code.
+     *
+     * @param description the new description
+     * @param hash        its string hash
+     * @param slot        the empty table slot found for it
+     * @return the assigned code
+     */
+    private int add(String description, int hash, int slot) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+        int code = size++;
+        values[code] = description;
+        hashes[code] = hash;
+
+        if (size * 2 > table.length) {
+            rehash(table.length * 2);
+        } else {
+            table[slot] = code + 1;
+        }
+        return code;
+    }
+
+    /**
+     * Rebuilds the hash table with a new capacity.
+     *
+     * @param capacity the new number of slots, a power of two
+     */
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = spread(hashes[code]) & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code + 1;
+        }
+    }
+
+    /**
+     * Compares a string with a range of characters.
+     *
+     * @param value  the string
+     * @param buffer the characters
+     * @param start  the first character (inclusive)
+     * @param end    the last character (exclusive)
+     * @return {@code true} if the string holds exactly these characters
+     */
+    private static boolean regionEquals(String value, char[] buffer, int start, int end) {
+        if (value.length() != end - start) return false;
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i - start) != buffer[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Mixes the bits of a string hash, since similar descriptions have similar hashes in the low bits.
+     *
+     * @param hash the string hash
+     * @return the mixed hash
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,78 @@
+package main;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks the keyword criterion of a query against row descriptions once per distinct description.
+ * <p>
+ * The result for a description is remembered under its dictionary code (see
+ * {@link TransactionStore#descriptionCode(int)}), so every further row with that description is selected
+ * or rejected by one array lookup instead of a case-insensitive text search. Rows whose store has no
+ * description codes are checked directly.
+ * </p>
+ * <p>
+ * A matcher is not synchronized. When it is shared by threads, a racing update can at worst lose a
+ * remembered result, which is then computed again.
+ * </p>
+ */
+final class DescriptionMatcher {
+    private static final byte UNKNOWN = 0;
+    private static final byte MATCH = 1;
+    private static final byte NO_MATCH = 2;
+    private static final int INITIAL_CODES = 64;
+
+    private final TransactionStore store;
+    private final String keyword;
+    private final List<String> tokens;
+    private byte[] results = new byte[INITIAL_CODES];
+
+    /**
+     * Creates a matcher for a keyword.
+     *
+     * @param store   the store holding the rows
+     * @param keyword the search text
+     * @param mode    how the keyword is matched
+     */
+    DescriptionMatcher(TransactionStore store, String keyword, KeywordMatchMode mode) {
+        this.store = store;
+        this.keyword = keyword;
+        this.tokens = mode == KeywordMatchMode.TOKEN_PREFIX ? KeywordIndex.tokenize(keyword) : null;
+    }
+
+    /**
+     * Checks whether a row's description matches the keyword.
+     *
+     * @param row the row position
+     * @return {@code true} if the description matches
+     */
+    boolean matches(int row) {
+        int code = store.descriptionCode(row);
+        if (code < 0) return matches(store.description(row));
+
+        byte[] known = results;
+        if (code < known.length && known[code] != UNKNOWN) {
+            return known[code] == MATCH;
+        }
+
+        boolean match = matches(store.description(row));
+        if (code >= known.length) {
+            known = Arrays.copyOf(known, Math.max(code + 1, known.length * 2));
+            results = known;
+        }
+        known[code] = match ? MATCH : NO_MATCH;
+        return match;
+    }
+
+    /**
+     * Checks a description against the keyword.
+     *
+     * @param description the description text
+     * @return {@code true} if the description matches
+     */
+    private boolean matches(String description) {
+        return tokens != null
+                ? KeywordIndex.matchesTokens(description, tokens)
+                : KeywordIndex.containsIgnoreCase(description, keyword);
+    }
+}
@@ -0,0 +1,100 @@
+package main;
+
+import java.util.Set;
+
+/**
+ * One {@link RowBitmap} per {@link Category} and per {@link TransactionType}, over row positions.
+ * <p>
+ * Single-value filters iterate one bitmap; combined type and category filters are word-wise AND/OR
+ * of the bitmaps, and counts are popcounts.
+ * </p>
+ */
+public class EnumBitmapIndex {
+    private final RowBitmap[] byType = new RowBitmap[TransactionType.values().length];
+    private final RowBitmap[] byCategory = new RowBitmap[Category.values().length];
+
+    /**
+     * Creates an empty index.
+     */
+    public EnumBitmapIndex() {
+        for (int i = 0; i < byType.length; i++) byType[i] = new RowBitmap();
+        for (int i = 0; i < byCategory.length; i++) byCategory[i] = new RowBitmap();
+    }
+
+    /**
+     * Indexes a row.
+     *
+     * @param row      the row position
+     * @param type     the type of the row
+     * @param category the category of the row
+     */
+    public void add(int row, TransactionType type, Category category) {
+        byType[type.ordinal()].set(row);
+        byCategory[category.ordinal()].set(row);
+    }
+
+    /**
+     * Removes a row from the index.
+     *
+     * @param row      the row position
+     * @param type     the type of the row
+     * @param category the category of the row
+     */
+    public void remove(int row, TransactionType type, Category category) {
+        byType[type.ordinal()].clear(row);
+        byCategory[category.ordinal()].clear(row);
+    }
+
+    /**
+     * Returns the rows of one type. The bitmap is live and must not be modified.
+     *
+     * @param type the transaction type
+     * @return the rows of that type
+     */
+    public RowBitmap rows(TransactionType type) {
+        return byType[type.ordinal()];
+    }
+
+    /**
+     * Returns the rows of one category. The bitmap is live and must not be modified.
+     *
+     * @param category the category
+     * @return the rows of that category
+     */
+    public RowBitmap rows(Category category) {
+        return byCategory[category.ordinal()];
+    }
+
+    /**
+     * Counts the rows of one category by popcount.
+     *
+     * @param category the category
+     * @return the number of rows in that category
+     */
+    public int count(Category category) {
+        return byCategory[category.ordinal()].cardinality();
+    }
+
+    /**
+     * Selects the rows matching an optional type and an optional set of categories.
+     *
+     * @param type       the required type, or {@code null} for any
+     * @param categories the accepted categories, or {@code null} for any
+     * @return a new bitmap of the matching rows, or {@code null} if neither restriction is given
+     */
+    public RowBitmap select(TransactionType type, Set<Category> categories) {
+        RowBitmap result = null;
+        if (categories != null) {
+            for (Category category : categories) {
+                RowBitmap rows = byCategory[category.ordinal()];
+                result = result == null ? rows.copy() : result.or(rows);
+            }
+        }
+        if (type != null) {
+            RowBitmap rows = byType[type.ordinal()];
+            result = result == null ? rows.copy() : result.and(rows);
+        }
+
+        return result;
+    }
+}
@@ -1,17 +1,63 @@
 package main;
 
+import Utils.LongIntHashMap;
+
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Handles saving and loading {@link Transaction} data to and from a file.
  * This class provides static methods to persist financial transactions and restore them on startup.
+ * <p>
+ * Two on-disk formats are supported: the pipe-separated text file and the fixed-width binary ledger
+ * (see {@link BinaryLedger}), which is memory-mapped on startup instead of parsed. The format is detected
+ * from the file contents; {@link #convertToBinary(String, String)} turns a text ledger into a binary one.
+ * Text files are always read and written as UTF-8, the encoding of the log and of the binary ledger's
+ * strings, whatever the platform charset is.
+ * </p>
+ * <p>
+ * Transactions added during a session are appended to a write-ahead {@link TransactionLog} instead of
+ * rewriting the whole ledger. On startup the base file is loaded and the log replayed on top of it; once
+ * the log grows past a threshold it is folded into the base file in the background ({@link #compact}).
+ * The log is configured with the system properties {@code pft.fsync} ({@link FsyncPolicy} name),
+ * {@code pft.fsyncIntervalMs} and {@code pft.compactAfter} (records).
+ * </p>
+ * <p>
+ * Every saved ledger gets a {@code .rollup} file next to it holding its {@link TransactionRollups}, stamped
+ * with the ledger's size and modification time. Loading a ledger with a matching rollup file reuses the
+ * saved rollups instead of recomputing them.
+ * </p>
+ * <p>
+ * The {@link Budget}s are kept in a small text file of their own and loaded by {@link #openLedger()}.
+ * </p>
+ * <p>
+ * The methods without a {@link LedgerFiles} argument work on the ledger in the working directory
+ * ({@link LedgerFiles#DEFAULT}); the others open and save the ledger of an {@link Account}.
+ * </p>
  */
 public class FileManager {
-    /** The name of the file used to store transaction data. */
-    private static final String FILE_NAME = "transactions.txt";
+    /** Rows written per lock acquisition while a snapshot is taken of a live manager. */
+    private static final int SNAPSHOT_CHUNK = 1 << 16;
+    /** Text ledgers of at least this size are parsed on several threads. */
+    private static final long PARALLEL_LOAD_BYTES = 16 << 20;
+    /** Appended to a ledger file name to name its rollup file. */
+    private static final String ROLLUP_SUFFIX = ".rollup";
+    /** Identifies a rollup file ("PFTR"). */
+    private static final int ROLLUP_MAGIC = 0x50465452;
+    /** The rollup file format version. */
+    private static final int ROLLUP_VERSION = 1;
 
     /**
      * Saves a list of transactions to a file.
@@ -22,9 +68,9 @@ public class FileManager {
      * @param transactions the list of transactions to be saved
      */
     public static void saveTransactions(List<Transaction> transactions) {
-        try(BufferedWriter writer = new BufferedWriter(new FileWriter(FILE_NAME))) {
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(LedgerFiles.DEFAULT.getTextFile(), StandardCharsets.UTF_8))) {
             for (Transaction t: transactions) {
-                String line = t.getId() + "|" + t.getDate() + "|" + t.getType() + "|" + t.getAmount() + "|" + t.getCategory() + "|" +t.getDescription();
+                String line = t.getId() + "|" + t.getDate() + "|" + t.getType() + "|" + Money.format(t.getAmountCents()) + "|" + t.getCategory() + "|" +t.getDescription();
                 writer.write(line);
                 writer.newLine();
             }
@@ -33,6 +79,588 @@ public class FileManager {
         }
     }
 
+    /**
+     * Saves every transaction of a manager in the format of the ledger currently on disk:
+     * the binary ledger if one exists, otherwise the text file.
+     * The new file is written under a temporary name first and then moved over the old one.
+     * If a {@link TransactionLog} is attached, the log is folded into the saved file.
+     *
+     * @param transactionManager the manager whose transactions are saved
+     */
+    public static void saveTransactions(TransactionManager transactionManager) {
+        saveTransactions(transactionManager, LedgerFiles.DEFAULT);
+    }
+
+    /**
+     * Saves every transaction of a manager to the ledger of the given files, in the format of the ledger
+     * currently on disk, folding in the attached {@link TransactionLog} if there is one.
+     *
+     * @param transactionManager the manager whose transactions are saved
+     * @param files              the files of the ledger
+     */
+    public static void saveTransactions(TransactionManager transactionManager, LedgerFiles files) {
+        try {
+            if (transactionManager.getTransactionLog() != null) {
+                compact(transactionManager, files);
+            } else {
+                writeLedger(transactionManager, files.getActiveFile());
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving transactions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves a snapshot of every transaction of a manager to the given file.
+     * The format follows the file name: binary for {@code .bin} files, text otherwise.
+     * The attached {@link TransactionLog}, if any, is left untouched.
+     *
+     * @param transactionManager the manager whose transactions are saved
+     * @param fileName           the file to write
+     * @throws IOException if writing fails
+     */
+    public static void saveTransactions(TransactionManager transactionManager, String fileName) throws IOException {
+        writeLedger(transactionManager, fileName);
+    }
+
+    /**
+     * Folds the write-ahead log into the base ledger file.
+     * <p>
+     * The log is rotated while no writer can log a transaction (see
+     * {@link TransactionManager#rotateTransactionLog()}), so the rows present at that moment are exactly the
+     * rows of the old base file plus the rotated log. Those rows, less the deleted ones, are then written to a
+     * new base file, taking the manager's read lock only for one chunk of rows at a time so new transactions can
+     * still be added. They keep going to the fresh log, as do edits and deletions made meanwhile.
+     * </p>
+     *
+     * @param transactionManager the manager whose ledger is compacted
+     * @throws IOException if rotating the log or writing the base file fails
+     */
+    public static void compact(TransactionManager transactionManager) throws IOException {
+        compact(transactionManager, LedgerFiles.DEFAULT);
+    }
+
+    /**
+     * Folds the write-ahead log into the base file of the ledger of the given files (see {@link #compact(TransactionManager)}).
+     *
+     * @param transactionManager the manager whose ledger is compacted
+     * @param files              the files of the ledger
+     * @throws IOException if rotating the log or writing the base file fails
+     */
+    public static void compact(TransactionManager transactionManager, LedgerFiles files) throws IOException {
+        TransactionLog log = transactionManager.getTransactionLog();
+        Lock positions = transactionManager.lockRowPositions();
+        try {
+            int rows = transactionManager.rotateTransactionLog();
+            writeLedger(transactionManager, files.getActiveFile(), rows);
+        } finally {
+            positions.unlock();
+        }
+        if (log != null) log.finishCompaction();
+    }
+
+    /**
+     * Ends a session: closes the write-ahead log, so only the transactions added in this session are written.
+     * Without a log, the whole ledger is saved.
+     *
+     * @param transactionManager the manager of the session
+     */
+    public static void closeLedger(TransactionManager transactionManager) {
+        closeLedger(transactionManager, LedgerFiles.DEFAULT);
+    }
+
+    /**
+     * Ends a session on the ledger of the given files (see {@link #closeLedger(TransactionManager)}).
+     *
+     * @param transactionManager the manager of the session
+     * @param files              the files of the ledger
+     */
+    public static void closeLedger(TransactionManager transactionManager, LedgerFiles files) {
+        TransactionLog log = transactionManager.getTransactionLog();
+        if (log == null) {
+            saveTransactions(transactionManager, files);
+            return;
+        }
+
+        try {
+            log.close();
+            transactionManager.setTransactionLog(null);
+        } catch (IOException e) {
+            System.out.println("Error saving transactions: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends one ledger line, without the line separator, in the format
+     * <pre>[id]|[date]|[type]|[amount]|[category]|[description]</pre>
+     * The amount is written with two fraction digits, e.g. {@code 12.50}.
+     *
+     * @param line        the buffer to append to
+     * @param id          the transaction ID
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @param amountCents the amount in cents
+     * @param type        the transaction type
+     * @param category    the transaction category
+     * @param description the description text
+     */
+    static void appendLine(StringBuilder line, long id, long epochSecond, long amountCents,
+                           TransactionType type, Category category, String description) {
+        TransactionId.appendTo(line, id).append('|')
+                .append(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC)).append('|')
+                .append(type).append('|');
+        Money.appendTo(line, amountCents).append('|')
+                .append(category).append('|')
+                .append(description);
+    }
+
+    /**
+     * Writes every row of a manager to a ledger file (see {@link #writeLedger(TransactionManager, String, int)}).
+     *
+     * @param transactionManager the manager to snapshot
+     * @param fileName           the file to replace
+     * @throws IOException if writing fails
+     */
+    private static void writeLedger(TransactionManager transactionManager, String fileName) throws IOException {
+        Lock positions = transactionManager.lockRowPositions();
+        try {
+            int rows;
+            Lock read = transactionManager.lockForRead();
+            try {
+                rows = transactionManager.getStore().size();
+            } finally {
+                read.unlock();
+            }
+            writeLedger(transactionManager, fileName, rows);
+        } finally {
+            positions.unlock();
+        }
+    }
+
+    /**
+     * Writes the first rows of a manager to a ledger file, in that file's format, replacing it atomically.
+     * Deleted rows are left out. The rollups of the written rows are saved next to it.
+     * The row positions are kept in place while the rows are read (see {@link TransactionManager#lockRowPositions()}).
+     *
+     * @param transactionManager the manager to snapshot
+     * @param fileName           the file to replace
+     * @param rows               the number of row positions to write, deleted rows included
+     * @throws IOException if writing fails
+     */
+    private static void writeLedger(TransactionManager transactionManager, String fileName, int rows) throws IOException {
+        Lock positions = transactionManager.lockRowPositions();
+        try {
+            writeRows(transactionManager, fileName, rows);
+        } finally {
+            positions.unlock();
+        }
+    }
+
+    /**
+     * Writes the live rows among the first row positions of a manager, for {@link #writeLedger(TransactionManager, String, int)}.
+     *
+     * @param transactionManager the manager to snapshot
+     * @param fileName           the file to replace
+     * @param rows               the number of row positions to write
+     * @throws IOException if writing fails
+     */
+    private static void writeRows(TransactionManager transactionManager, String fileName, int rows) throws IOException {
+        Path target = Paths.get(fileName);
+        Path temp = Paths.get(fileName + ".tmp");
+        TransactionStore store = transactionManager.getStore();
+        TransactionRollups rollups = new TransactionRollups();
+
+        if (BinaryLedger.isBinary(fileName)) {
+            try (BinaryLedgerWriter writer = new BinaryLedgerWriter(temp.toString())) {
+                for (int start = 0; start < rows; start += SNAPSHOT_CHUNK) {
+                    Lock read = transactionManager.lockForRead();
+                    try {
+                        for (int row = start; row < Math.min(rows, start + SNAPSHOT_CHUNK); row++) {
+                            if (transactionManager.isDeleted(row)) continue;
+                            writer.write(store.id(row), store.epochSecond(row), store.amountCents(row),
+                                    store.type(row), store.category(row), store.description(row));
+                            rollups.record(store.epochSecond(row), store.type(row), store.category(row), store.amountCents(row));
+                        }
+                    } finally {
+                        read.unlock();
+                    }
+                }
+            }
+        } else {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(temp.toFile(), StandardCharsets.UTF_8))) {
+                StringBuilder line = new StringBuilder(128);
+                for (int start = 0; start < rows; start += SNAPSHOT_CHUNK) {
+                    Lock read = transactionManager.lockForRead();
+                    try {
+                        for (int row = start; row < Math.min(rows, start + SNAPSHOT_CHUNK); row++) {
+                            if (transactionManager.isDeleted(row)) continue;
+                            line.setLength(0);
+                            appendLine(line, store.id(row), store.epochSecond(row), store.amountCents(row),
+                                    store.type(row), store.category(row), store.description(row));
+                            writer.append(line).append('\n');
+                            rollups.record(store.epochSecond(row), store.type(row), store.category(row), store.amountCents(row));
+                        }
+                    } finally {
+                        read.unlock();
+                    }
+                }
+            }
+        }
+
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writeRollups(rollups, fileName);
+    }
+
+    /**
+     * Saves the rollups of a ledger file next to it, stamped with the ledger's current size and
+     * modification time. A failure only costs a recomputation on the next load, so it is reported and ignored.
+     *
+     * @param rollups  the rollups of every row in the ledger file
+     * @param fileName the ledger file
+     */
+    private static void writeRollups(TransactionRollups rollups, String fileName) {
+        File ledger = new File(fileName);
+        Path target = Paths.get(fileName + ROLLUP_SUFFIX);
+        Path temp = Paths.get(fileName + ROLLUP_SUFFIX + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(ROLLUP_MAGIC);
+            out.writeInt(ROLLUP_VERSION);
+            out.writeLong(ledger.length());
+            out.writeLong(ledger.lastModified());
+            rollups.writeTo(out);
+        } catch (IOException e) {
+            System.out.println("Error saving rollups: " + e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error saving rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the rollups saved next to a ledger file.
+     *
+     * @param fileName the ledger file
+     * @return the saved rollups, or {@code null} if there are none or they were not written for the
+     *         ledger file as it is now
+     */
+    private static TransactionRollups readRollups(String fileName) {
+        File ledger = new File(fileName);
+        File file = new File(fileName + ROLLUP_SUFFIX);
+        if (!file.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != ROLLUP_MAGIC || in.readInt() != ROLLUP_VERSION
+                    || in.readLong() != ledger.length() || in.readLong() != ledger.lastModified()) {
+                return null;
+            }
+            return TransactionRollups.readFrom(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Opens the ledger on disk. A binary ledger is memory-mapped, a text ledger is parsed into memory.
+     * The write-ahead log is then replayed on top and attached to the manager for new transactions.
+     *
+     * @return a manager holding the saved transactions; empty if there is no ledger yet
+     */
+    public static TransactionManager openLedger() {
+        return openLedger(LedgerFiles.DEFAULT);
+    }
+
+    /**
+     * Opens the ledger of the given files, creating their directory if needed (see {@link #openLedger()}).
+     * Its budgets are loaded as well.
+     *
+     * @param files the files of the ledger
+     * @return a manager holding the saved transactions; empty if there is no ledger yet
+     */
+    public static TransactionManager openLedger(LedgerFiles files) {
+        TransactionManager transactionManager = openBaseLedger(files);
+        File logFile = new File(files.getLogFile());
+        File compacting = new File(files.getLogFile() + ".compacting");
+
+        try {
+            files.createDirectory();
+            if (compacting.exists()) {
+                // A compaction was interrupted and its rows may already be in the base file: gather every
+                // pending record in the rotated log, replay it skipping known IDs and fold it in right away
+                if (logFile.exists()) {
+                    Files.write(compacting.toPath(), Files.readAllBytes(logFile.toPath()), StandardOpenOption.APPEND);
+                    Files.delete(logFile.toPath());
+                }
+                replayLog(transactionManager, compacting);
+                writeLedger(transactionManager, files.getActiveFile());
+                Files.delete(compacting.toPath());
+            } else {
+                replayLog(transactionManager, logFile);
+            }
+
+            FsyncPolicy policy = FsyncPolicy.valueOf(System.getProperty("pft.fsync", FsyncPolicy.EVERY_COMMIT.name()));
+            long interval = Long.getLong("pft.fsyncIntervalMs", 200);
+            TransactionLog log = new TransactionLog(files.getLogFile(), policy, interval);
+            log.setCompaction(Long.getLong("pft.compactAfter", 10_000), () -> {
+                try {
+                    compact(transactionManager, files);
+                    return true;
+                } catch (IOException e) {
+                    System.out.println("Error compacting transactions: " + e.getMessage());
+                    return false;
+                }
+            });
+            transactionManager.setTransactionLog(log);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error opening transaction log, changes will be saved on exit: " + e.getMessage());
+        }
+        loadBudgets(transactionManager, files);
+
+        return transactionManager;
+    }
+
+    /**
+     * Saves the budgets of a manager, one per line in the format
+     * <pre>[category]|[period]|[limit]|[threshold%],[threshold%]...</pre>
+     *
+     * @param transactionManager the manager holding the budgets
+     */
+    public static void saveBudgets(TransactionManager transactionManager) {
+        saveBudgets(transactionManager, LedgerFiles.DEFAULT);
+    }
+
+    /**
+     * Saves the budgets of a manager to the budgets file of the given ledger files.
+     *
+     * @param transactionManager the manager holding the budgets
+     * @param files              the files of the ledger
+     */
+    public static void saveBudgets(TransactionManager transactionManager, LedgerFiles files) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(files.getBudgetFile(), StandardCharsets.UTF_8))) {
+            for (Budget budget : transactionManager.getBudgets()) {
+                StringBuilder line = new StringBuilder();
+                line.append(budget.getCategory()).append('|').append(budget.getPeriod()).append('|');
+                Money.appendTo(line, budget.getLimitCents()).append('|');
+                int[] percents = budget.getThresholdPercents();
+                for (int i = 0; i < percents.length; i++) {
+                    if (i > 0) line.append(',');
+                    line.append(percents[i]);
+                }
+                writer.write(line.toString());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving budgets: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the saved budgets into a manager. Malformed lines are skipped with a message.
+     *
+     * @param transactionManager the manager that receives the budgets
+     * @param files              the files of the ledger
+     */
+    public static void loadBudgets(TransactionManager transactionManager, LedgerFiles files) {
+        File file = new File(files.getBudgetFile());
+        if (!file.exists()) return;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    String[] fields = line.split("\\|");
+                    int[] percents = Arrays.stream(fields[3].split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+                    transactionManager.addBudget(new Budget(Category.valueOf(fields[0].trim()), RollupPeriod.valueOf(fields[1].trim()),
+                            Money.parse(fields[2].trim()), percents));
+                } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                    System.out.println("Skipping invalid budget: " + line);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error loading budgets: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the base ledger file, memory-mapping it if it is binary.
+     *
+     * @param files the files of the ledger
+     * @return a manager holding the rows of the base file
+     */
+    private static TransactionManager openBaseLedger(LedgerFiles files) {
+        String fileName = files.getActiveFile();
+        if (BinaryLedger.isBinary(fileName)) {
+            try {
+                return new TransactionManager(new MappedTransactionStore(fileName), readRollups(fileName));
+            } catch (IOException e) {
+                System.out.println("Error loading transactions: " + e.getMessage());
+                return new TransactionManager();
+            }
+        }
+
+        TransactionManager transactionManager = new TransactionManager();
+        loadTransactions(transactionManager, fileName);
+        return transactionManager;
+    }
+
+    /**
+     * Replays a write-ahead log file into a manager. A last line without a line break was torn by a crash;
+     * it is ignored and cut off the file so later appends start on a fresh line.
+     * New rows whose ID the manager already holds are skipped; edits and deletions are applied in log order
+     * (see {@link #replayRecord}). A record with an invalid field is reported and skipped, so the records after
+     * it are still replayed.
+     *
+     * @param transactionManager the manager that receives the rows
+     * @param file               the log file to replay
+     * @throws IOException if reading the log fails; the log must then be neither attached nor compacted, as
+     *                     the records not replayed yet would be lost
+     */
+    private static void replayLog(TransactionManager transactionManager, File file) throws IOException {
+        if (!file.exists()) return;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            int complete = bytes.length;
+            while (complete > 0 && bytes[complete - 1] != '\n') complete--;
+            if (complete < bytes.length) {
+                channel.truncate(complete);
+            }
+
+            char[] text = new String(bytes, 0, complete, StandardCharsets.UTF_8).toCharArray();
+            DescriptionDictionary descriptions = new DescriptionDictionary();
+            int lineStart = 0;
+            for (int i = 0; i < text.length; i++) {
+                if (text[i] == '\n') {
+                    try {
+                        replayRecord(transactionManager, text, lineStart, i, descriptions);
+                    } catch (IllegalArgumentException e) {
+                        System.out.println("Skipping invalid log record: " + new String(text, lineStart, i - lineStart).trim());
+                    }
+                    lineStart = i + 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Applies one record of a write-ahead log. An edit replaces the row of its ID, or is added if the row is
+     * missing, e.g. because an interrupted compaction already dropped the deleted old version; a deletion
+     * removes the row of its ID if there is one; a new row is added unless its ID is already known. Replaying
+     * a record that is already in the base file therefore changes nothing.
+     *
+     * @param transactionManager the manager that receives the changes
+     * @param text               the log text
+     * @param start              the first character of the record (inclusive)
+     * @param end                the end of the record (exclusive)
+     * @param descriptions       the dictionary that supplies one shared string per distinct description
+     * @throws IllegalArgumentException if a field holds an invalid value
+     */
+    private static void replayRecord(TransactionManager transactionManager, char[] text, int start, int end,
+                                     DescriptionDictionary descriptions) {
+        if (startsWith(text, start, end, TransactionLog.DELETE_PREFIX)) {
+            if (text[end - 1] == '\r') end--;
+            long id = TransactionId.parse(text, start + TransactionLog.DELETE_PREFIX.length(), end);
+            if (id != TransactionId.NONE) {
+                transactionManager.deleteTransaction(id);
+            }
+        } else if (startsWith(text, start, end, TransactionLog.UPDATE_PREFIX)) {
+            LedgerParser.parseLine(text, start + TransactionLog.UPDATE_PREFIX.length(), end, descriptions,
+                    (id, epochSecond, amountCents, type, category, description) -> {
+                        if (id == TransactionId.NONE) throw new IllegalArgumentException("Edit without a transaction ID");
+                        transactionManager.replaceRow(id, epochSecond, amountCents, type, category, description);
+                    });
+        } else {
+            LedgerParser.parseLine(text, start, end, descriptions, (id, epochSecond, amountCents, type, category, description) -> {
+                if (transactionManager.rowOf(id) < 0) {
+                    transactionManager.addRow(id, epochSecond, amountCents, type, category, description);
+                }
+            });
+        }
+    }
+
+    /**
+     * Checks whether a range of characters starts with a prefix.
+     *
+     * @param text   the characters
+     * @param start  the first character of the range (inclusive)
+     * @param end    the end of the range (exclusive)
+     * @param prefix the prefix to look for
+     * @return {@code true} if the range starts with the prefix
+     */
+    private static boolean startsWith(char[] text, int start, int end, String prefix) {
+        if (end - start < prefix.length()) return false;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (text[start + i] != prefix.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Converts the text ledger into a binary ledger and keeps the text file as a {@code .bak} backup,
+     * so later runs open the binary ledger.
+     *
+     * @return the number of converted rows, or -1 if the conversion failed
+     */
+    public static int convertToBinary() {
+        return convertToBinary(LedgerFiles.DEFAULT);
+    }
+
+    /**
+     * Converts the text ledger of the given files into a binary ledger (see {@link #convertToBinary()}).
+     *
+     * @param files the files of the ledger
+     * @return the number of converted rows, or -1 if the conversion failed
+     */
+    public static int convertToBinary(LedgerFiles files) {
+        String textFile = files.getTextFile();
+        if (!new File(textFile).exists() || BinaryLedger.isBinary(textFile)) {
+            System.out.println("No text ledger to convert.");
+            return -1;
+        }
+
+        int rows = convertToBinary(textFile, files.getBinaryFile());
+        if (rows >= 0 && !new File(textFile).renameTo(new File(textFile + ".bak"))) {
+            System.out.println("Could not rename " + textFile + "; " + files.getBinaryFile() + " will be used from now on.");
+        }
+
+        return rows;
+    }
+
+    /**
+     * Converts a pipe-separated text ledger into a binary ledger in one streaming pass.
+     * Rows without an ID, or with an ID an earlier row already has, get a new one, as when the text ledger is
+     * loaded; the IDs written so far are kept in a hash map to find a free one.
+     *
+     * @param textFileName   the text ledger to read
+     * @param binaryFileName the binary ledger to create
+     * @return the number of converted rows, or -1 if the conversion failed
+     */
+    public static int convertToBinary(String textFileName, String binaryFileName) {
+        try (Reader reader = new FileReader(textFileName, StandardCharsets.UTF_8);
+             BinaryLedgerWriter writer = new BinaryLedgerWriter(binaryFileName)) {
+            LongIntHashMap written = new LongIntHashMap();
+            TransactionId.Allocator ids = new TransactionId.Allocator();
+            return LedgerParser.parse(reader, (id, epochSecond, amountCents, type, category, description) -> {
+                if (id == TransactionId.NONE || written.containsKey(id)) {
+                    id = ids.next(epochSecond, written::containsKey);
+                }
+                written.put(id, 0);
+                try {
+                    writer.write(id, epochSecond, amountCents, type, category, description);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            System.out.println("Error converting transactions: " + e.getMessage());
+            return -1;
+        }
+    }
+
     /**
      * Loads transactions from the file.
      *
@@ -42,28 +670,80 @@ public class FileManager {
     public static List<Transaction> loadTransactions(){
         List<Transaction> transactions = new ArrayList<>();
 
-        File file = new File(FILE_NAME);
+        File file = new File(LedgerFiles.DEFAULT.getTextFile());
         if(!file.exists()) return transactions;
 
-        try(BufferedReader reader = new BufferedReader(new FileReader(FILE_NAME))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if(parts.length != 6) continue;
+        try(BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            LedgerParser.parse(reader, (id, epochSecond, amountCents, type, category, description) -> {
+                LocalDateTime date = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+                transactions.add(new Transaction(id, date, amountCents, description, type, category));
+            });
+        }catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error loading transactions: " + e.getMessage());
+        }
+
+        return transactions;
+    }
+
+    /**
+     * Streams the transactions from the file straight into a manager's store.
+     * No intermediate list or {@link Transaction} objects are created.
+     *
+     * @param transactionManager the manager that receives the rows
+     * @return the number of loaded rows; rows read before an error are kept
+     */
+    public static int loadTransactions(TransactionManager transactionManager) {
+        return loadTransactions(transactionManager, LedgerFiles.DEFAULT.getTextFile());
+    }
 
-                String id = parts[0];
-                LocalDateTime date = LocalDateTime.parse(parts[1]);
-                TransactionType type = TransactionType.valueOf(parts[2]);
-                double amount = Double.parseDouble(parts[3]);
-                Category category = Category.valueOf(parts[4]);
-                String description = parts[5];
+    /**
+     * Streams the transactions from a given file straight into a manager's store.
+     * Files of at least {@value #PARALLEL_LOAD_BYTES} bytes are parsed on {@code pft.loadThreads} threads
+     * (default: one per processor).
+     *
+     * @param transactionManager the manager that receives the rows
+     * @param fileName           the pipe-separated file to read
+     * @return the number of loaded rows; rows read before an error are kept
+     */
+    public static int loadTransactions(TransactionManager transactionManager, String fileName) {
+        int threads = Integer.getInteger("pft.loadThreads", Runtime.getRuntime().availableProcessors());
+        boolean large = new File(fileName).length() >= PARALLEL_LOAD_BYTES;
+        return loadTransactions(transactionManager, fileName, large ? threads : 1);
+    }
 
-                transactions.add(new Transaction(date, amount, description, type, category));
+    /**
+     * Streams the transactions from a given file straight into a manager's store using a fixed number
+     * of parsing threads. With more than one thread the file is split into line-aligned chunks that are
+     * parsed in parallel and appended in file order (see {@link ParallelLedgerLoader}).
+     * When loading into an empty manager, rollups saved with the file are reused; otherwise they are
+     * rebuilt in one pass once the file is loaded.
+     *
+     * @param transactionManager the manager that receives the rows
+     * @param fileName           the pipe-separated file to read
+     * @param threads            the number of parsing threads
+     * @return the number of loaded rows; rows read before an error are kept
+     */
+    public static int loadTransactions(TransactionManager transactionManager, String fileName, int threads) {
+        File file = new File(fileName);
+        if(!file.exists()) return 0;
+
+        int before = transactionManager.size();
+        TransactionRollups saved = before == 0 ? readRollups(fileName) : null;
+        transactionManager.beginBulkLoad();
+        try {
+            if (threads > 1) {
+                ParallelLedgerLoader.load(transactionManager, fileName, threads);
+            } else {
+                try (Reader reader = new FileReader(file, StandardCharsets.UTF_8)) {
+                    LedgerParser.parse(reader, transactionManager::addRow);
+                }
             }
-        }catch (IOException | IllegalArgumentException e) {
+        } catch (IOException | IllegalArgumentException e) {
             System.out.println("Error loading transactions: " + e.getMessage());
+        } finally {
+            transactionManager.endBulkLoad(saved);
         }
 
-        return transactions;
+        return transactionManager.size() - before;
     }
 }
@@ -0,0 +1,15 @@
+package main;
+
+/**
+ * Determines when the write-ahead {@link TransactionLog} forces appended records to disk.
+ */
+public enum FsyncPolicy {
+    /** Every commit waits until its record is on disk. Concurrent commits share one fsync (group commit). */
+    EVERY_COMMIT,
+
+    /** Records are written at once but forced to disk at most once per sync interval; commits do not wait. */
+    INTERVAL,
+
+    /** Records are written at once and the operating system decides when they reach the disk. */
+    NONE
+}
@@ -0,0 +1,61 @@
+package main;
+
+/**
+ * Immutable bucket of an {@link AmountHistogram}: a range of amounts and how many transactions fall in it.
+ * Amounts are kept in cents.
+ */
+public class HistogramBin {
+    private final long fromCents;
+    private final long toCents;
+    private final long count;
+
+    /**
+     * Constructs a new HistogramBin.
+     *
+     * @param fromCents The smallest amount of the bucket, in cents (inclusive).
+     * @param toCents   The largest amount of the bucket, in cents (inclusive).
+     * @param count     The number of amounts in the bucket.
+     */
+    public HistogramBin(long fromCents, long toCents, long count) {
+        this.fromCents = fromCents;
+        this.toCents = toCents;
+        this.count = count;
+    }
+
+    /**
+     * Gets the smallest amount of the bucket.
+     *
+     * @return The lower bound in cents (inclusive).
+     */
+    public long getFromCents() {
+        return fromCents;
+    }
+
+    /**
+     * Gets the largest amount of the bucket.
+     *
+     * @return The upper bound in cents (inclusive).
+     */
+    public long getToCents() {
+        return toCents;
+    }
+
+    /**
+     * Gets the number of amounts in the bucket.
+     *
+     * @return The amount count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns a formatted string representation of the bucket.
+     *
+     * @return The amount range and the count.
+     */
+    @Override
+    public String toString() {
+        return Money.format(fromCents) + " - " + Money.format(toCents) + ": " + count;
+    }
+}
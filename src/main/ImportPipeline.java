@@ -0,0 +1,348 @@
+package main;
+
+import Utils.LongIntHashMap;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Imports a CSV bank statement into a {@link TransactionManager} without user interaction.
+ * <p>
+ * The import runs as a pipeline of stages connected by bounded queues, so reading, parsing and inserting
+ * overlap while only a few chunks of {@value #CHUNK_LINES} lines are held in memory at any time:
+ * </p>
+ * <ol>
+ *     <li>Read: one thread reads the file and queues its lines in numbered chunks.</li>
+ *     <li>Parse and normalize: worker threads split each line by the detected {@link StatementFormat},
+ *     parse date and amount and assign type and category with the {@link ImportRules}. Lines that cannot
+ *     be parsed are counted as rejects.</li>
+ *     <li>Dedupe: the calling thread takes the parsed chunks back in file order and drops rows that are
+ *     already recorded, matched on timestamp, amount, type and description. Existing rows are looked up
+ *     by day the first time the statement reaches that day, with one range lookup per chunk. A row that
+ *     occurs twice in the statement is only a duplicate if the manager also holds it twice, so genuine
+ *     repeats are kept.</li>
+ *     <li>Insert: the new rows of each chunk are added in one batch under a single write lock. A row
+ *     whose generated ID is already taken gets a new one; the report counts these rows.</li>
+ * </ol>
+ * <p>
+ * Imported rows are not written to the transaction log; the caller saves the ledger afterwards.
+ * Importing the same statement again adds nothing, so an interrupted import can simply be rerun.
+ * </p>
+ */
+public final class ImportPipeline {
+    private static final int CHUNK_LINES = 4096;
+    private static final int QUEUE_CHUNKS = 4;
+    private static final int SAMPLE_REJECTS = 10;
+    private static final long SECONDS_PER_DAY = 86_400L;
+    private static final Chunk END_OF_LINES = new Chunk(-1, 0, List.of());
+    private static final Batch END_OF_BATCHES = new Batch(-1);
+
+    // Private constructor to prevent instantiation
+    private ImportPipeline() {}
+
+    /**
+     * Lines read from the file, tagged with their position.
+     */
+    private static final class Chunk {
+        final int sequence;
+        final long firstLine;
+        final List<String> lines;
+
+        Chunk(int sequence, long firstLine, List<String> lines) {
+            this.sequence = sequence;
+            this.firstLine = firstLine;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * The parsed rows of one chunk and the lines rejected from it.
+     */
+    private static final class Batch {
+        final int sequence;
+        final ColumnarTransactionStore rows = new ColumnarTransactionStore();
+        final List<String> rejects = new ArrayList<>();
+        long lines;
+
+        Batch(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+    /**
+     * Imports a statement.
+     *
+     * @param transactionManager the manager that receives the rows
+     * @param fileName           the CSV statement to read
+     * @param rules              the classification rules and date format
+     * @param workers            the number of parsing threads
+     * @return the counts and timing of the import
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if the statement header lacks a required column
+     */
+    public static ImportReport run(TransactionManager transactionManager, String fileName, ImportRules rules,
+                                   int workers) throws IOException {
+        long start = System.nanoTime();
+        int threads = Math.max(1, workers);
+        BufferedReader reader = new BufferedReader(new FileReader(fileName), 1 << 16);
+        String firstLine;
+        StatementFormat format;
+        try {
+            firstLine = reader.readLine();
+            if (firstLine == null) {
+                reader.close();
+                return new ImportReport(0, 0, 0, 0, 0, List.of(), System.nanoTime() - start);
+            }
+            format = StatementFormat.detect(firstLine, new ArrayList<>());
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(QUEUE_CHUNKS * threads);
+        BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(QUEUE_CHUNKS * threads);
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        List<Thread> stages = new ArrayList<>(threads + 1);
+        stages.add(new Thread(() -> read(reader, format.hasHeader() ? null : firstLine, threads, chunks, failure),
+                "import-reader"));
+        for (int i = 0; i < threads; i++) {
+            stages.add(new Thread(() -> parse(format, rules, chunks, batches), "import-parser-" + i));
+        }
+        for (Thread stage : stages) {
+            stage.setDaemon(true);
+            stage.start();
+        }
+
+        Deduplicator deduplicator = new Deduplicator(transactionManager);
+        Map<Integer, Batch> waiting = new HashMap<>();
+        List<String> sampleRejects = new ArrayList<>();
+        long lines = 0;
+        long imported = 0;
+        long duplicates = 0;
+        long reassignedIds = 0;
+        long rejected = 0;
+        try {
+            int next = 0;
+            int finished = 0;
+            while (finished < threads) {
+                Batch batch = batches.take();
+                if (batch == END_OF_BATCHES) {
+                    finished++;
+                    continue;
+                }
+
+                waiting.put(batch.sequence, batch);
+                while ((batch = waiting.remove(next)) != null) {
+                    ColumnarTransactionStore fresh = deduplicator.filter(batch.rows);
+                    reassignedIds += transactionManager.addRows(fresh);
+                    lines += batch.lines;
+                    imported += fresh.size();
+                    duplicates += batch.rows.size() - fresh.size();
+                    rejected += batch.rejects.size();
+                    for (String reject : batch.rejects) {
+                        if (sampleRejects.size() == SAMPLE_REJECTS) break;
+                        sampleRejects.add(reject);
+                    }
+                    next++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import of " + fileName + " was interrupted", e);
+        } finally {
+            for (Thread stage : stages) {
+                stage.interrupt();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        return new ImportReport(lines, imported, duplicates, reassignedIds, rejected, sampleRejects, System.nanoTime() - start);
+    }
+
+    /**
+     * Reader stage: queues the lines of the file in chunks, then one end marker per parser.
+     *
+     * @param reader    the open file, positioned after the first line
+     * @param firstLine the first line if it holds data, or {@code null} if it is a header
+     * @param parsers   the number of parser threads
+     * @param chunks    the queue that receives the chunks
+     * @param failure   receives the exception if reading fails
+     */
+    private static void read(BufferedReader reader, String firstLine, int parsers, BlockingQueue<Chunk> chunks,
+                             AtomicReference<IOException> failure) {
+        try (reader) {
+            int sequence = 0;
+            long lineNumber = firstLine == null ? 2 : 1;
+            List<String> lines = new ArrayList<>(CHUNK_LINES);
+            if (firstLine != null) lines.add(firstLine);
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == CHUNK_LINES) {
+                    chunks.put(new Chunk(sequence++, lineNumber, lines));
+                    lineNumber += CHUNK_LINES;
+                    lines = new ArrayList<>(CHUNK_LINES);
+                }
+            }
+            if (!lines.isEmpty()) {
+                chunks.put(new Chunk(sequence, lineNumber, lines));
+            }
+        } catch (IOException e) {
+            failure.set(e);
+        } catch (InterruptedException e) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < parsers; i++) {
+                chunks.put(END_OF_LINES);
+            }
+        } catch (InterruptedException e) {
+            // The import was abandoned
+        }
+    }
+
+    /**
+     * Parser stage: turns chunks of lines into batches of rows until the end marker arrives.
+     *
+     * @param format  the statement layout
+     * @param rules   the classification rules and date format
+     * @param chunks  the queue of line chunks
+     * @param batches the queue that receives the parsed batches
+     */
+    private static void parse(StatementFormat format, ImportRules rules, BlockingQueue<Chunk> chunks,
+                              BlockingQueue<Batch> batches) {
+        List<String> fields = new ArrayList<>();
+        try {
+            while (true) {
+                Chunk chunk = chunks.take();
+                if (chunk == END_OF_LINES) {
+                    batches.put(END_OF_BATCHES);
+                    return;
+                }
+
+                Batch batch = new Batch(chunk.sequence);
+                for (int i = 0; i < chunk.lines.size(); i++) {
+                    String line = chunk.lines.get(i);
+                    if (line.isBlank()) continue;
+
+                    batch.lines++;
+                    try {
+                        format.parse(line, rules, fields, batch.rows);
+                    } catch (IllegalArgumentException | ArithmeticException e) {
+                        batch.rejects.add("Line " + (chunk.firstLine + i) + ": " + e.getMessage());
+                    }
+                }
+                batches.put(batch);
+            }
+        } catch (InterruptedException e) {
+            // The import was abandoned
+        }
+    }
+
+    /**
+     * Recognizes rows that are already recorded, by a 64-bit fingerprint of their content.
+     * The IDs of imported rows are new, so they cannot be used to match.
+     */
+    private static final class Deduplicator {
+        private final TransactionManager transactionManager;
+        private final LongIntHashMap recorded = new LongIntHashMap();
+        private final LongIntHashMap imported = new LongIntHashMap();
+        private final LongIntHashMap loadedDays = new LongIntHashMap();
+
+        Deduplicator(TransactionManager transactionManager) {
+            this.transactionManager = transactionManager;
+        }
+
+        /**
+         * Selects the rows of a batch that are not yet recorded.
+         *
+         * @param rows the parsed rows
+         * @return the new rows, in order
+         */
+        ColumnarTransactionStore filter(ColumnarTransactionStore rows) {
+            loadDays(rows);
+
+            ColumnarTransactionStore fresh = new ColumnarTransactionStore();
+            for (int row = 0; row < rows.size(); row++) {
+                long fingerprint = fingerprint(rows.epochSecond(row), rows.amountCents(row), rows.type(row),
+                        rows.description(row));
+                int occurrence = imported.get(fingerprint, 0) + 1;
+                imported.put(fingerprint, occurrence);
+                if (occurrence > recorded.get(fingerprint, 0)) {
+                    fresh.appendRow(rows.id(row), rows.epochSecond(row), rows.amountCents(row), rows.type(row),
+                            rows.category(row), rows.description(row));
+                }
+            }
+            return fresh;
+        }
+
+        /**
+         * Counts the recorded rows by fingerprint for the days of a batch that were not seen before,
+         * with one range lookup for the whole batch. Rows of those days from this import are only inserted
+         * afterwards, so they are not counted.
+         *
+         * @param rows the parsed rows
+         */
+        private void loadDays(ColumnarTransactionStore rows) {
+            LongIntHashMap newDays = new LongIntHashMap();
+            long firstDay = Long.MAX_VALUE;
+            long lastDay = Long.MIN_VALUE;
+            for (int row = 0; row < rows.size(); row++) {
+                long epochDay = Math.floorDiv(rows.epochSecond(row), SECONDS_PER_DAY);
+                if (loadedDays.putIfAbsent(epochDay, 1)) {
+                    newDays.put(epochDay, 1);
+                    firstDay = Math.min(firstDay, epochDay);
+                    lastDay = Math.max(lastDay, epochDay);
+                }
+            }
+            if (newDays.size() == 0) return;
+
+            Lock read = transactionManager.lockForRead();
+            try {
+                TransactionStore store = transactionManager.getStore();
+                for (int row : transactionManager.rowsBetween(firstDay * SECONDS_PER_DAY, (lastDay + 1) * SECONDS_PER_DAY - 1)) {
+                    long epochSecond = store.epochSecond(row);
+                    if (!newDays.containsKey(Math.floorDiv(epochSecond, SECONDS_PER_DAY))) continue;
+
+                    long fingerprint = fingerprint(epochSecond, store.amountCents(row), store.type(row),
+                            store.description(row));
+                    recorded.put(fingerprint, recorded.get(fingerprint, 0) + 1);
+                }
+            } finally {
+                read.unlock();
+            }
+        }
+
+        /**
+         * Hashes the content of a row.
+         *
+         * @param epochSecond the timestamp
+         * @param amountCents the amount in cents
+         * @param type        the transaction type
+         * @param description the description
+         * @return the fingerprint
+         */
+        private static long fingerprint(long epochSecond, long amountCents, TransactionType type, String description) {
+            long hash = 0xCBF29CE484222325L;
+            for (int i = 0; i < description.length(); i++) {
+                hash = (hash ^ description.charAt(i)) * 0x100000001B3L;
+            }
+            hash ^= epochSecond * 0x9E3779B97F4A7C15L;
+            hash = Long.rotateLeft(hash, 31) ^ amountCents * 0xC2B2AE3D27D4EB4FL;
+            return Long.rotateLeft(hash, 17) ^ type.ordinal();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package main;
+
+import java.util.List;
+
+/**
+ * Immutable outcome of a statement import, as returned by
+ * {@link ImportPipeline#run(TransactionManager, String, ImportRules, int)}.
+ */
+public class ImportReport {
+    private final long rowsRead;
+    private final long imported;
+    private final long duplicates;
+    private final long reassignedIds;
+    private final long rejected;
+    private final List<String> sampleRejects;
+    private final long elapsedNanos;
+
+    /**
+     * Constructs a new ImportReport.
+     *
+     * @param rowsRead      The number of data lines read, without the header and blank lines.
+     * @param imported      The number of rows added.
+     * @param duplicates    The number of rows skipped because they were already recorded.
+     * @param reassignedIds The number of imported rows that got a new ID because theirs was already taken.
+     * @param rejected      The number of lines that could not be parsed.
+     * @param sampleRejects The first rejected lines, each with its line number and reason.
+     * @param elapsedNanos  The end-to-end time of the import.
+     */
+    public ImportReport(long rowsRead, long imported, long duplicates, long reassignedIds, long rejected,
+                        List<String> sampleRejects, long elapsedNanos) {
+        this.rowsRead = rowsRead;
+        this.imported = imported;
+        this.duplicates = duplicates;
+        this.reassignedIds = reassignedIds;
+        this.rejected = rejected;
+        this.sampleRejects = List.copyOf(sampleRejects);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the number of data lines read.
+     *
+     * @return The line count.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Gets the number of rows added.
+     *
+     * @return The imported row count.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * Gets the number of rows skipped because they were already recorded.
+     *
+     * @return The duplicate count.
+     */
+    public long getDuplicates() {
+        return duplicates;
+    }
+
+    /**
+     * Gets the number of imported rows that got a new ID because theirs was already taken.
+     *
+     * @return The reassigned ID count.
+     */
+    public long getReassignedIds() {
+        return reassignedIds;
+    }
+
+    /**
+     * Gets the number of lines that could not be parsed.
+     *
+     * @return The reject count.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Gets the first rejected lines, each with its line number and reason.
+     *
+     * @return The sample of rejected lines.
+     */
+    public List<String> getSampleRejects() {
+        return sampleRejects;
+    }
+
+    /**
+     * Gets the end-to-end time of the import.
+     *
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Gets the import throughput.
+     *
+     * @return The data lines read per second.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rowsRead * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder()
+                .append("Read ").append(rowsRead).append(" rows in ")
+                .append(String.format("%.1f ms (%.0f rows/s)", elapsedNanos / 1e6, getRowsPerSecond()))
+                .append(": ").append(imported).append(" imported | ").append(duplicates).append(" duplicates | ")
+                .append(rejected).append(" rejected");
+        if (reassignedIds > 0) {
+            text.append(" | ").append(reassignedIds).append(" given a new ID");
+        }
+        for (String reject : sampleRejects) {
+            text.append(System.lineSeparator()).append("  ").append(reject);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package main;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Rules that map imported statement rows to a {@link Category} and, optionally, a {@link TransactionType}.
+ * <p>
+ * A rules file holds one rule per line in the form {@code pattern|CATEGORY} or {@code pattern|CATEGORY|TYPE}.
+ * A rule matches when its pattern occurs in the description, ignoring case; the first matching rule wins.
+ * Rows that no rule matches keep the category of the statement's category column if it names one,
+ * and {@link Category#OTHER} otherwise. A line {@code date-format=<pattern>} sets the
+ * {@link DateTimeFormatter} pattern for statements whose dates are not ISO dates. Blank lines and lines
+ * starting with {@code #} are ignored. For example:
+ * </p>
+ * <pre>
+ * # Bank export rules
+ * date-format=dd/MM/yyyy
+ * payroll|SALARY|INCOME
+ * uber|TRANSPORT
+ * supermarket|FOOD
+ * </pre>
+ */
+public class ImportRules {
+    private final List<Rule> rules;
+    private final DateTimeFormatter dateFormat;
+
+    /**
+     * A pattern and the classification it assigns.
+     */
+    static final class Rule {
+        final String pattern;
+        final Category category;
+        /** The type to assign, or {@code null} to keep the type given by the statement. */
+        final TransactionType type;
+
+        Rule(String pattern, Category category, TransactionType type) {
+            this.pattern = pattern;
+            this.category = category;
+            this.type = type;
+        }
+    }
+
+    /**
+     * Creates a set of rules.
+     *
+     * @param rules      The rules in matching order.
+     * @param dateFormat The format of non-ISO dates, or {@code null} for ISO dates.
+     */
+    private ImportRules(List<Rule> rules, DateTimeFormatter dateFormat) {
+        this.rules = rules;
+        this.dateFormat = dateFormat;
+    }
+
+    /**
+     * Returns the rules used when no rules file is given: no patterns and ISO dates.
+     *
+     * @return The default rules.
+     */
+    public static ImportRules defaults() {
+        return new ImportRules(Collections.emptyList(), null);
+    }
+
+    /**
+     * Reads a rules file.
+     *
+     * @param fileName The rules file.
+     * @return The rules.
+     * @throws IOException              if reading fails.
+     * @throws IllegalArgumentException if a line is not a valid rule.
+     */
+    public static ImportRules load(String fileName) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        DateTimeFormatter dateFormat = null;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+
+                if (line.startsWith("date-format=")) {
+                    dateFormat = DateTimeFormatter.ofPattern(line.substring("date-format=".length()).trim());
+                    continue;
+                }
+
+                String[] fields = line.split("\\|");
+                if (fields.length < 2 || fields.length > 3 || fields[0].isBlank()) {
+                    throw new IllegalArgumentException("Invalid rule on line " + number + ": " + line);
+                }
+                try {
+                    Category category = Category.valueOf(fields[1].trim().toUpperCase(Locale.ROOT));
+                    TransactionType type = fields.length == 3
+                            ? TransactionType.valueOf(fields[2].trim().toUpperCase(Locale.ROOT)) : null;
+                    rules.add(new Rule(fields[0].trim().toLowerCase(Locale.ROOT), category, type));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Invalid rule on line " + number + ": " + line);
+                }
+            }
+        }
+
+        return new ImportRules(rules, dateFormat);
+    }
+
+    /**
+     * Gets the format of non-ISO dates.
+     *
+     * @return The date format, or {@code null} if dates are ISO dates.
+     */
+    public DateTimeFormatter getDateFormat() {
+        return dateFormat;
+    }
+
+    /**
+     * Gets the number of patterns.
+     *
+     * @return The rule count.
+     */
+    public int size() {
+        return rules.size();
+    }
+
+    /**
+     * Finds the first rule whose pattern occurs in a description.
+     *
+     * @param description The description, in lower case.
+     * @return The matching rule, or {@code null}.
+     */
+    Rule match(String description) {
+        for (Rule rule : rules) {
+            if (description.contains(rule.pattern)) return rule;
+        }
+        return null;
+    }
+}
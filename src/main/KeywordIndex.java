@@ -0,0 +1,223 @@
+package main;
+
+import Utils.IntList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Inverted index from lower-cased description words to the rows containing them.
+ * <p>
+ * Descriptions are split into words of letters and digits. Each word keeps a posting list of row positions
+ * in insertion order. Words are held in a sorted map, so all words starting with a prefix are found with a
+ * single range lookup.
+ * </p>
+ * <p>
+ * Rows whose description has a dictionary code (see {@link TransactionStore#descriptionCode(int)}) are added
+ * with {@link #add(int, int, String)}: each distinct description is split into words once, and its posting
+ * lists are remembered under the code, so further rows with that description are appended to the lists
+ * directly.
+ * </p>
+ */
+public class KeywordIndex {
+    private final NavigableMap<String, IntList> postings = new TreeMap<>();
+    /** The posting lists of the words of each description, by description code; filled on first use. */
+    private IntList[][] postingsByCode = new IntList[64][];
+
+    /**
+     * Indexes the words of a row's description.
+     *
+     * @param row         the row position; rows must be added in increasing order
+     * @param description the description of the row
+     */
+    public void add(int row, String description) {
+        for (String token : tokenize(description)) {
+            post(postings.computeIfAbsent(token, k -> new IntList(4)), row);
+        }
+    }
+
+    /**
+     * Indexes the words of a row's description, splitting each distinct description only once.
+     *
+     * @param row         the row position; rows must be added in increasing order
+     * @param code        the dictionary code of the description, or -1 if it has none
+     * @param description the description of the row
+     */
+    public void add(int row, int code, String description) {
+        if (code < 0) {
+            add(row, description);
+            return;
+        }
+
+        if (code >= postingsByCode.length) {
+            postingsByCode = Arrays.copyOf(postingsByCode, Math.max(code + 1, postingsByCode.length * 2));
+        }
+        IntList[] lists = postingsByCode[code];
+        if (lists == null) {
+            List<String> tokens = tokenize(description);
+            lists = new IntList[tokens.size()];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.computeIfAbsent(tokens.get(i), k -> new IntList(4));
+            }
+            postingsByCode[code] = lists;
+        }
+        for (IntList rows : lists) {
+            post(rows, row);
+        }
+    }
+
+    /**
+     * Finds the rows where every word of the keyword is the prefix of some word in the description.
+     *
+     * @param keyword the search text
+     * @return the matching rows in increasing order, or {@code null} if the keyword has no words
+     *         (in which case every row matches)
+     */
+    public int[] search(String keyword) {
+        List<String> tokens = tokenize(keyword);
+        if (tokens.isEmpty()) return null;
+
+        int[] result = null;
+        for (String token : tokens) {
+            int[] rows = rowsWithPrefix(token);
+            result = result == null ? rows : intersect(result, rows);
+            if (result.length == 0) break;
+        }
+
+        return result;
+    }
+
+    /**
+     * Checks a single description against keyword words without consulting the index
+     * and without allocating: every word must be the start of a word in the description.
+     *
+     * @param description the description to check
+     * @param tokens      the lower-cased keyword words, as returned by {@link #tokenize(String)}
+     * @return {@code true} if every keyword word starts some description word
+     */
+    static boolean matchesTokens(String description, List<String> tokens) {
+        for (String token : tokens) {
+            boolean found = false;
+            for (int i = 0; i <= description.length() - token.length() && !found; i++) {
+                boolean wordStart = Character.isLetterOrDigit(description.charAt(i))
+                        && (i == 0 || !Character.isLetterOrDigit(description.charAt(i - 1)));
+                found = wordStart && description.regionMatches(true, i, token, 0, token.length());
+            }
+            if (!found) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether a description contains a keyword, ignoring case, without allocating.
+     *
+     * @param description the description to check
+     * @param keyword     the keyword to look for
+     * @return {@code true} if the keyword appears anywhere in the description
+     */
+    static boolean containsIgnoreCase(String description, String keyword) {
+        for (int i = 0; i <= description.length() - keyword.length(); i++) {
+            if (description.regionMatches(true, i, keyword, 0, keyword.length())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Appends a row to a posting list. A word repeated in one description is posted once.
+     *
+     * @param rows the posting list of a word
+     * @param row  the row position
+     */
+    private static void post(IntList rows, int row) {
+        if (rows.isEmpty() || rows.last() != row) {
+            rows.add(row);
+        }
+    }
+
+    /**
+     * Collects the rows of every word starting with a prefix.
+     *
+     * @param prefix the lower-cased prefix
+     * @return the distinct matching rows in increasing order
+     */
+    private int[] rowsWithPrefix(String prefix) {
+        Map<String, IntList> matches = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (matches.isEmpty()) return new int[0];
+        if (matches.size() == 1) return matches.values().iterator().next().toArray();
+
+        IntList all = new IntList();
+        for (IntList rows : matches.values()) {
+            for (int i = 0; i < rows.size(); i++) {
+                all.add(rows.get(i));
+            }
+        }
+
+        int[] sorted = all.toArray();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Intersects two sorted row arrays.
+     *
+     * @param a the first sorted array
+     * @param b the second sorted array
+     * @return the rows present in both, in increasing order
+     */
+    private static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[k++] = a[i];
+                i++;
+                j++;
+            }
+        }
+
+        return Arrays.copyOf(result, k);
+    }
+
+    /**
+     * Splits text into lower-cased words made of letters and digits.
+     *
+     * @param text the text to split
+     * @return the words in order of appearance
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+
+        return tokens;
+    }
+}
@@ -0,0 +1,18 @@
+package main;
+
+/**
+ * Determines how {@link TransactionManager#filterByKeyword(String)} matches a keyword against descriptions.
+ */
+public enum KeywordMatchMode {
+    /**
+     * Every word of the keyword must be the start of a word in the description
+     * ("coff" matches "Coffee Shop"). Answered from the inverted token index.
+     */
+    TOKEN_PREFIX,
+
+    /**
+     * The keyword may appear anywhere in the description, as a case-insensitive substring
+     * ("ffee" matches "Coffee Shop"). Scans every description.
+     */
+    SUBSTRING
+}
@@ -0,0 +1,126 @@
+package main;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * The names of the files that make up one ledger on disk: the text ledger, the binary ledger used instead
+ * of it when present, the write-ahead log and the budgets. Rollup files are named after the ledger file.
+ * <p>
+ * {@link #DEFAULT} is the single ledger in the working directory; every {@link Account} keeps its files in
+ * a directory of its own (see {@link #in(String)}).
+ * </p>
+ */
+public final class LedgerFiles {
+    /** The ledger in the working directory. */
+    public static final LedgerFiles DEFAULT = new LedgerFiles("");
+
+    private static final String TEXT_FILE_NAME = "transactions.txt";
+    private static final String BINARY_FILE_NAME = "transactions.bin";
+    private static final String LOG_FILE_NAME = "transactions.log";
+    private static final String BUDGET_FILE_NAME = "budgets.txt";
+
+    private final String directory;
+
+    /**
+     * Creates the file names of a ledger.
+     *
+     * @param directory The directory holding the files, or an empty string for the working directory.
+     */
+    private LedgerFiles(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Names the files of a ledger kept in a directory. The directory is created when the ledger is opened.
+     *
+     * @param directory The directory holding the files.
+     * @return The file names.
+     */
+    public static LedgerFiles in(String directory) {
+        return new LedgerFiles(directory);
+    }
+
+    /**
+     * Gets the directory holding the files.
+     *
+     * @return The directory, or an empty string for the working directory.
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the name of the pipe-separated text ledger.
+     *
+     * @return The text ledger file name.
+     */
+    public String getTextFile() {
+        return resolve(TEXT_FILE_NAME);
+    }
+
+    /**
+     * Gets the name of the binary ledger, which is used instead of the text ledger when it exists.
+     *
+     * @return The binary ledger file name.
+     */
+    public String getBinaryFile() {
+        return resolve(BINARY_FILE_NAME);
+    }
+
+    /**
+     * Gets the name of the write-ahead log of transactions added since the last compaction.
+     *
+     * @return The log file name.
+     */
+    public String getLogFile() {
+        return resolve(LOG_FILE_NAME);
+    }
+
+    /**
+     * Gets the name of the budgets file.
+     *
+     * @return The budgets file name.
+     */
+    public String getBudgetFile() {
+        return resolve(BUDGET_FILE_NAME);
+    }
+
+    /**
+     * Picks the ledger file in use: the binary ledger if it exists, otherwise the text file name
+     * (which may itself hold a binary ledger).
+     *
+     * @return The name of the ledger file.
+     */
+    public String getActiveFile() {
+        return new File(getBinaryFile()).exists() ? getBinaryFile() : getTextFile();
+    }
+
+    /**
+     * Creates the directory holding the files if it does not exist yet.
+     *
+     * @throws IOException if the directory cannot be created.
+     */
+    void createDirectory() throws IOException {
+        if (!directory.isEmpty()) {
+            Files.createDirectories(Paths.get(directory));
+        }
+    }
+
+    /**
+     * Places a file name in the directory.
+     *
+     * @param fileName The bare file name.
+     * @return The file name within the directory.
+     */
+    private String resolve(String fileName) {
+        return directory.isEmpty() ? fileName : directory + File.separator + fileName;
+    }
+
+    @Override
+    public String toString() {
+        return directory.isEmpty() ? "." : directory;
+    }
+}
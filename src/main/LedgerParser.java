@@ -0,0 +1,302 @@
+package main;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Parses the pipe-separated transaction file format written by {@link FileManager}:
+ * <pre>[id]|[date]|[type]|[amount]|[category]|[description]</pre>
+ * <p>
+ * Lines are tokenized in place on a reusable character buffer, without regular expressions or
+ * intermediate strings. Descriptions are looked up in a {@link DescriptionDictionary} straight from the
+ * buffer, so rows with the same description share one {@link String} and a string is only created the
+ * first time a description appears. Timestamps in the fixed ISO layout produced by {@link LocalDateTime#toString()}
+ * and plain decimal amounts are converted straight to epoch seconds and cents (see {@link Money}); other
+ * layouts fall back to the {@code java.time} and {@link Double} parsers.
+ * Parsed rows are handed to a {@link RowSink}.
+ * </p>
+ */
+class LedgerParser {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Category[] CATEGORIES = Category.values();
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    /**
+     * Receives the column values of each parsed row.
+     */
+    @FunctionalInterface
+    interface RowSink {
+        /**
+         * Accepts one parsed row.
+         *
+         * @param id          the transaction ID, or {@link TransactionId#NONE} if the line has none
+         * @param epochSecond the timestamp as seconds since the epoch
+         * @param amountCents the amount in cents
+         * @param type        the transaction type
+         * @param category    the transaction category
+         * @param description the description text
+         */
+        void accept(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description);
+    }
+
+    // Private constructor to prevent instantiation
+    private LedgerParser() {}
+
+    /**
+     * Reads every line from a reader and passes the parsed rows to a sink.
+     * Lines that do not have six fields are skipped.
+     *
+     * @param reader the source of the ledger text
+     * @param sink   receives the parsed rows in file order
+     * @return the number of rows passed to the sink
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if a field holds an invalid value
+     */
+    static int parse(Reader reader, RowSink sink) throws IOException {
+        DescriptionDictionary descriptions = new DescriptionDictionary();
+        char[] buffer = new char[BUFFER_SIZE];
+        int length = 0;
+        int rows = 0;
+        int read;
+        while ((read = reader.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (buffer[i] == '\n') {
+                    if (parseLine(buffer, lineStart, i, descriptions, sink)) rows++;
+                    lineStart = i + 1;
+                }
+            }
+
+            // Keep the unfinished last line at the front of the buffer
+            length -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, length);
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        if (length > 0 && parseLine(buffer, 0, length, descriptions, sink)) rows++;
+
+        return rows;
+    }
+
+    /**
+     * Parses one line and passes it to a sink.
+     * The stored ID is kept; a line whose ID is not in the {@code TX-...} form is passed on with
+     * {@link TransactionId#NONE}, so the ledger it is added to gives it a new one.
+     *
+     * @param buffer       the characters holding the line
+     * @param start        the first character of the line (inclusive)
+     * @param end          the end of the line (exclusive); a trailing carriage return is ignored
+     * @param descriptions the dictionary that supplies one shared string per distinct description
+     * @param sink         receives the parsed row
+     * @return {@code true} if the line held a row, {@code false} if it did not have six fields
+     * @throws IllegalArgumentException if a field holds an invalid value
+     */
+    static boolean parseLine(char[] buffer, int start, int end, DescriptionDictionary descriptions, RowSink sink) {
+        if (end > start && buffer[end - 1] == '\r') end--;
+
+        int[] pipes = new int[5];
+        int found = 0;
+        for (int i = start; i < end && found < pipes.length; i++) {
+            if (buffer[i] == '|') pipes[found++] = i;
+        }
+        if (found < pipes.length || pipes[4] + 1 >= end) return false;
+
+        long epochSecond = parseEpochSecond(buffer, pipes[0] + 1, pipes[1]);
+        long id = TransactionId.parse(buffer, start, pipes[0]);
+        TransactionType type = TYPES[parseOrdinal(TYPES, buffer, pipes[1] + 1, pipes[2])];
+        long amountCents = Money.parse(buffer, pipes[2] + 1, pipes[3]);
+        Category category = CATEGORIES[parseOrdinal(CATEGORIES, buffer, pipes[3] + 1, pipes[4])];
+        String description = descriptions.intern(buffer, pipes[4] + 1, end);
+
+        sink.accept(id, epochSecond, amountCents, type, category, description);
+        return true;
+    }
+
+    /**
+     * Parses an ISO local date-time ({@code yyyy-MM-ddTHH:mm[:ss[.fraction]]}) into epoch seconds.
+     * The fraction of a second is dropped.
+     *
+     * @param buffer the characters holding the value
+     * @param start  the first character (inclusive)
+     * @param end    the last character (exclusive)
+     * @return the epoch second (UTC-based local time)
+     * @throws IllegalArgumentException if the value is not a valid date-time
+     */
+    static long parseEpochSecond(char[] buffer, int start, int end) {
+        int length = end - start;
+        boolean fixedLayout = length >= 16 && buffer[start + 4] == '-' && buffer[start + 7] == '-'
+                && buffer[start + 10] == 'T' && buffer[start + 13] == ':'
+                && (length == 16 || (length >= 19 && buffer[start + 16] == ':' && (length == 19 || buffer[start + 19] == '.')));
+        if (!fixedLayout) {
+            return LocalDateTime.parse(new String(buffer, start, length)).toEpochSecond(ZoneOffset.UTC);
+        }
+
+        int year = digits(buffer, start, 4);
+        int month = digits(buffer, start + 5, 2);
+        int day = digits(buffer, start + 8, 2);
+        int hour = digits(buffer, start + 11, 2);
+        int minute = digits(buffer, start + 14, 2);
+        int second = length >= 19 ? digits(buffer, start + 17, 2) : 0;
+        for (int i = start + 20; i < end; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') throw invalid("date", buffer, start, end);
+        }
+
+        if (!isValidDate(year, month, day) || hour > 23 || minute > 59 || second > 59) {
+            throw invalid("date", buffer, start, end);
+        }
+
+        return epochDay(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+    }
+
+    /**
+     * Finds the enum constant whose name equals a field, without creating a string.
+     *
+     * @param constants the enum constants to match against
+     * @param buffer    the characters holding the field
+     * @param start     the first character (inclusive)
+     * @param end       the last character (exclusive)
+     * @return the ordinal of the matching constant
+     * @throws IllegalArgumentException if no constant matches
+     */
+    private static int parseOrdinal(Enum<?>[] constants, char[] buffer, int start, int end) {
+        for (Enum<?> constant : constants) {
+            String name = constant.name();
+            if (name.length() != end - start) continue;
+
+            int i = 0;
+            while (i < name.length() && name.charAt(i) == buffer[start + i]) i++;
+            if (i == name.length()) return constant.ordinal();
+        }
+
+        throw invalid(constants[0].getDeclaringClass().getSimpleName(), buffer, start, end);
+    }
+
+    /**
+     * Reads a fixed number of decimal digits.
+     *
+     * @param buffer the characters holding the digits
+     * @param start  the first digit
+     * @param count  the number of digits
+     * @return the numeric value
+     * @throws IllegalArgumentException if a character is not a digit
+     */
+    private static int digits(char[] buffer, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = buffer[i];
+            if (c < '0' || c > '9') throw invalid("date", buffer, start, start + count);
+            value = value * 10 + (c - '0');
+        }
+
+        return value;
+    }
+
+    /**
+     * Checks whether a year, month and day form a valid proleptic Gregorian date.
+     *
+     * @param year  the year
+     * @param month the month
+     * @param day   the day of the month
+     * @return {@code true} if the date exists
+     */
+    static boolean isValidDate(int year, int month, int day) {
+        boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        int monthDays = month == 2 && leap ? 29 : month >= 1 && month <= 12 ? DAYS_IN_MONTH[month - 1] : 0;
+        return day >= 1 && day <= monthDays;
+    }
+
+    /**
+     * Converts a proleptic Gregorian date to days since 1970-01-01.
+     *
+     * @param year  the year
+     * @param month the month (1-12)
+     * @param day   the day of the month
+     * @return the epoch day
+     */
+    static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    /**
+     * Converts days since 1970-01-01 to a proleptic Gregorian date; the inverse of {@link #epochDay(int, int, int)}.
+     *
+     * @param epochDay the epoch day
+     * @return the date packed as {@code year * 10000 + month * 100 + day}
+     */
+    static long civilDate(long epochDay) {
+        long z = epochDay + 719_468;
+        long era = Math.floorDiv(z, 146_097L);
+        int dayOfEra = (int) (z - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1_460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10_000 + month * 100 + day;
+    }
+
+    /**
+     * Appends the ISO date ({@code yyyy-MM-dd}) of a timestamp.
+     *
+     * @param text        the buffer to append to
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @return the buffer
+     */
+    static StringBuilder appendDate(StringBuilder text, long epochSecond) {
+        long date = civilDate(Math.floorDiv(epochSecond, 86_400L));
+        text.append(date / 10_000).append('-');
+        twoDigits(text, (int) (date / 100 % 100)).append('-');
+        return twoDigits(text, (int) (date % 100));
+    }
+
+    /**
+     * Appends the ISO local date-time ({@code yyyy-MM-ddTHH:mm:ss}) of a timestamp.
+     *
+     * @param text        the buffer to append to
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @return the buffer
+     */
+    static StringBuilder appendDateTime(StringBuilder text, long epochSecond) {
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+        appendDate(text, epochSecond).append('T');
+        twoDigits(text, secondOfDay / 3_600).append(':');
+        twoDigits(text, secondOfDay / 60 % 60).append(':');
+        return twoDigits(text, secondOfDay % 60);
+    }
+
+    /**
+     * Appends a number from 0 to 99 as two digits.
+     *
+     * @param text  the buffer to append to
+     * @param value the number
+     * @return the buffer
+     */
+    private static StringBuilder twoDigits(StringBuilder text, int value) {
+        return text.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Builds the exception for an invalid field.
+     *
+     * @param field  the name of the field
+     * @param buffer the characters holding the field
+     * @param start  the first character (inclusive)
+     * @param end    the last character (exclusive)
+     * @return the exception to throw
+     */
+    private static IllegalArgumentException invalid(String field, char[] buffer, int start, int end) {
+        return new IllegalArgumentException("Invalid " + field + ": " + new String(buffer, start, end - start));
+    }
+}
@@ -0,0 +1,569 @@
+package main;
+
+import Utils.JsonUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Embedded HTTP service that answers JSON queries against a {@link TransactionManager}, for dashboards.
+ * <p>
+ * The server listens on the loopback interface only. Each request is handled on its own virtual thread when
+ * the running JDK has them (Java 21 and later); on older JDKs a fixed pool of platform threads is used.
+ * Endpoints:
+ * </p>
+ * <ul>
+ *     <li>{@code POST /transactions} adds a transaction from a JSON object with {@code amount}, {@code type},
+ *     {@code category}, {@code description} and an optional ISO {@code time}, and returns its {@code id}.</li>
+ *     <li>{@code GET /transactions} returns the matching transactions as a JSON array, streamed in chunks so
+ *     large results never sit in memory as a whole. {@code limit} caps the number of rows.</li>
+ *     <li>{@code GET /balance} returns the balance and the income and expense totals.</li>
+ *     <li>{@code GET /summary} returns the count and totals of the matching transactions.</li>
+ *     <li>{@code GET /summary/categories} returns the count and totals of each category.</li>
+ *     <li>{@code GET /summary/periods?period=MONTH&from=2024-01-01&to=2024-12-31} returns the totals of each
+ *     day, week, month or year of a date range.</li>
+ *     <li>{@code GET /summary/percentiles?period=MONTH&from=2024-01-01&to=2024-12-31} returns the count, median,
+ *     90th and 99th percentile amount of each category and type per month or year.</li>
+ *     <li>{@code GET /summary/histogram?type=EXPENSE&category=FOOD&from=2024-01-01&to=2024-12-31} returns the
+ *     amount distribution as buckets with {@code from}, {@code to} and {@code count}; {@code type} and
+ *     {@code category} are optional.</li>
+ * </ul>
+ * <p>
+ * Filters are query parameters: {@code type}, {@code category} (comma-separated), {@code from} and {@code to}
+ * (ISO dates or date-times; a date-only {@code to} includes the whole day), {@code min} and {@code max}
+ * amounts, and {@code keyword}. Amounts are written as JSON numbers with two fraction digits. Invalid input
+ * is answered with status 400 and a JSON {@code error} message.
+ * </p>
+ */
+public class LedgerServer {
+    /** The port used when none is given. */
+    public static final int DEFAULT_PORT = 8080;
+
+    private static final int STREAM_CHUNK_ROWS = 1_024;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final String JSON = "application/json; charset=utf-8";
+
+    static {
+        // The JDK server writes headers and body separately; without TCP_NODELAY small responses stall on delayed ACKs
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final TransactionManager transactionManager;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final boolean virtualThreads;
+
+    /**
+     * Creates a server bound to a loopback port; call {@link #start()} to accept requests.
+     *
+     * @param transactionManager The manager that answers the queries.
+     * @param port               The port, or 0 for any free port.
+     * @throws IOException if the port cannot be bound.
+     */
+    public LedgerServer(TransactionManager transactionManager, int port) throws IOException {
+        this.transactionManager = transactionManager;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.executor = virtual != null ? virtual
+                : Executors.newFixedThreadPool(Math.max(8, 4 * Runtime.getRuntime().availableProcessors()), task -> {
+                    Thread thread = new Thread(task, "ledger-server");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        server.setExecutor(executor);
+        server.createContext("/transactions", this::handleTransactions);
+        server.createContext("/balance", exchange -> handle(exchange, "GET", this::balance));
+        server.createContext("/summary", this::handleSummary);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits up to a second for running ones and releases the threads.
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The bound port.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Checks whether requests are handled on virtual threads.
+     *
+     * @return {@code false} if the JDK has no virtual threads and a platform thread pool is used.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task, if the JDK supports it.
+     * It is looked up reflectively so the code still compiles and runs on Java 17.
+     *
+     * @return The executor, or {@code null} on JDKs without virtual threads.
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the response of one endpoint.
+     */
+    @FunctionalInterface
+    private interface Endpoint {
+        /**
+         * Handles a request that passed the method check.
+         *
+         * @param exchange the request and response
+         * @param params   the decoded query parameters
+         * @throws IOException if writing the response fails
+         */
+        void handle(HttpExchange exchange, Map<String, String> params) throws IOException;
+    }
+
+    /**
+     * Runs an endpoint, answering wrong methods with 405 and invalid input with 400.
+     *
+     * @param exchange the request and response
+     * @param method   the accepted HTTP method
+     * @param endpoint the endpoint
+     * @throws IOException if writing the response fails
+     */
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+            try {
+                endpoint.handle(exchange, parseQuery(exchange.getRequestURI().getRawQuery()));
+            } catch (IllegalArgumentException | DateTimeException e) {
+                sendError(exchange, 400, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Routes {@code /transactions} by method.
+     *
+     * @param exchange the request and response
+     * @throws IOException if writing the response fails
+     */
+    private void handleTransactions(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/transactions")) {
+            handle(exchange, exchange.getRequestMethod(), (e, params) -> sendError(e, 404, "Not found"));
+        } else if (exchange.getRequestMethod().equals("POST")) {
+            handle(exchange, "POST", this::addTransaction);
+        } else {
+            handle(exchange, "GET", this::transactions);
+        }
+    }
+
+    /**
+     * Routes {@code /summary} and its sub-paths.
+     *
+     * @param exchange the request and response
+     * @throws IOException if writing the response fails
+     */
+    private void handleSummary(HttpExchange exchange) throws IOException {
+        switch (exchange.getRequestURI().getPath()) {
+            case "/summary" -> handle(exchange, "GET", this::summary);
+            case "/summary/categories" -> handle(exchange, "GET", this::categorySummaries);
+            case "/summary/periods" -> handle(exchange, "GET", this::periodSummaries);
+            case "/summary/percentiles" -> handle(exchange, "GET", this::amountPercentiles);
+            case "/summary/histogram" -> handle(exchange, "GET", this::amountHistogram);
+            default -> handle(exchange, exchange.getRequestMethod(), (e, params) -> sendError(e, 404, "Not found"));
+        }
+    }
+
+    /**
+     * {@code POST /transactions}: adds a transaction.
+     *
+     * @param exchange the request and response
+     * @param params   the query parameters (unused)
+     * @throws IOException if reading the body or writing the response fails
+     */
+    private void addTransaction(HttpExchange exchange, Map<String, String> params) throws IOException {
+        Map<String, String> body = JsonUtils.parseObject(readBody(exchange));
+        String description = required(body, "description");
+        if (description.indexOf('\n') >= 0 || description.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Description must be a single line");
+        }
+        long amountCents = Money.parse(required(body, "amount"));
+        TransactionType type = TransactionType.valueOf(required(body, "type").toUpperCase(Locale.ROOT));
+        Category category = Category.valueOf(required(body, "category").toUpperCase(Locale.ROOT));
+        LocalDateTime time = body.containsKey("time") ? parseTime(body.get("time"), false) : LocalDateTime.now();
+
+        Transaction transaction = new Transaction(time, Money.toDouble(amountCents), description, type, category);
+        transactionManager.addTransaction(transaction);
+        StringBuilder json = new StringBuilder("{\"id\":");
+        JsonUtils.appendString(json, transaction.getId()).append('}');
+        send(exchange, 201, json);
+    }
+
+    /**
+     * {@code GET /transactions}: streams the matching transactions as a JSON array.
+     * Rows are formatted in chunks under the read lock and written between chunks without it.
+     *
+     * @param exchange the request and response
+     * @param params   the filter parameters and an optional {@code limit}
+     * @throws IOException if writing the response fails
+     */
+    private void transactions(HttpExchange exchange, Map<String, String> params) throws IOException {
+        TransactionManager.Selection selection = transactionManager.matchingRows(parseFilter(params));
+        int[] rows = selection.rows;
+        int limit = params.containsKey("limit") ? Integer.parseInt(params.get("limit")) : rows.length;
+        if (limit < 0) throw new IllegalArgumentException("Invalid limit: " + limit);
+        int count = Math.min(limit, rows.length);
+
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            StringBuilder text = new StringBuilder(STREAM_CHUNK_ROWS * 128);
+            char[] chars = new char[0];
+            text.append('[');
+            for (int from = 0; from < count || from == 0; from += STREAM_CHUNK_ROWS) {
+                int to = Math.min(count, from + STREAM_CHUNK_ROWS);
+                Lock read = transactionManager.lockForRead();
+                try {
+                    for (int i = from; i < to; i++) {
+                        if (i > 0) text.append(',');
+                        appendTransaction(text, selection.store, rows[i]);
+                    }
+                } finally {
+                    read.unlock();
+                }
+                if (to == count) text.append(']');
+
+                if (chars.length < text.length()) chars = new char[text.length()];
+                text.getChars(0, text.length(), chars, 0);
+                out.write(chars, 0, text.length());
+                text.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * {@code GET /balance}: the balance and totals of all transactions.
+     *
+     * @param exchange the request and response
+     * @param params   the query parameters (unused)
+     * @throws IOException if writing the response fails
+     */
+    private void balance(HttpExchange exchange, Map<String, String> params) throws IOException {
+        send(exchange, 200, appendSummary(new StringBuilder(), transactionManager.summarize(TransactionQuery.all())));
+    }
+
+    /**
+     * {@code GET /summary}: the count and totals of the matching transactions.
+     *
+     * @param exchange the request and response
+     * @param params   the filter parameters
+     * @throws IOException if writing the response fails
+     */
+    private void summary(HttpExchange exchange, Map<String, String> params) throws IOException {
+        send(exchange, 200, appendSummary(new StringBuilder(), transactionManager.summarize(parseFilter(params))));
+    }
+
+    /**
+     * {@code GET /summary/categories}: the count and totals of each category.
+     *
+     * @param exchange the request and response
+     * @param params   the query parameters (unused)
+     * @throws IOException if writing the response fails
+     */
+    private void categorySummaries(HttpExchange exchange, Map<String, String> params) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<Category, TransactionSummary> entry : transactionManager.getCategorySummaries().entrySet()) {
+            if (json.length() > 1) json.append(',');
+            JsonUtils.appendString(json, entry.getKey().name()).append(':');
+            appendSummary(json, entry.getValue());
+        }
+        send(exchange, 200, json.append('}'));
+    }
+
+    /**
+     * {@code GET /summary/periods}: the totals of each period of a date range, from the rollups.
+     *
+     * @param exchange the request and response
+     * @param params   {@code period} (DAY, WEEK, MONTH or YEAR), {@code from} and {@code to} dates
+     * @throws IOException if writing the response fails
+     */
+    private void periodSummaries(HttpExchange exchange, Map<String, String> params) throws IOException {
+        RollupPeriod period = RollupPeriod.valueOf(params.getOrDefault("period", "MONTH").toUpperCase(Locale.ROOT));
+        LocalDate from = LocalDate.parse(required(params, "from"));
+        LocalDate to = LocalDate.parse(required(params, "to"));
+
+        StringBuilder json = new StringBuilder("[");
+        for (Map.Entry<LocalDate, TransactionSummary> entry
+                : transactionManager.getPeriodSummaries(period, from, to).entrySet()) {
+            if (json.length() > 1) json.append(',');
+            json.append("{\"start\":\"").append(entry.getKey()).append("\",\"summary\":");
+            appendSummary(json, entry.getValue()).append('}');
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    /**
+     * {@code GET /summary/percentiles}: the amount percentiles of each category and type per month or year,
+     * from the amount histograms.
+     *
+     * @param exchange the request and response
+     * @param params   {@code period} (MONTH or YEAR), {@code from} and {@code to} dates
+     * @throws IOException if writing the response fails
+     */
+    private void amountPercentiles(HttpExchange exchange, Map<String, String> params) throws IOException {
+        RollupPeriod period = RollupPeriod.valueOf(params.getOrDefault("period", "MONTH").toUpperCase(Locale.ROOT));
+        LocalDate from = LocalDate.parse(required(params, "from"));
+        LocalDate to = LocalDate.parse(required(params, "to"));
+
+        StringBuilder json = new StringBuilder("[");
+        for (AmountPercentiles entry : transactionManager.getAmountPercentiles(period, from, to)) {
+            if (json.length() > 1) json.append(',');
+            json.append("{\"start\":\"").append(entry.getStart()).append("\",\"category\":\"").append(entry.getCategory())
+                    .append("\",\"type\":\"").append(entry.getType()).append("\",\"count\":").append(entry.getCount())
+                    .append(",\"median\":");
+            Money.appendTo(json, entry.getMedianCents()).append(",\"p90\":");
+            Money.appendTo(json, entry.getP90Cents()).append(",\"p99\":");
+            Money.appendTo(json, entry.getP99Cents()).append('}');
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    /**
+     * {@code GET /summary/histogram}: the amount distribution of a type and category over a date range.
+     *
+     * @param exchange the request and response
+     * @param params   optional {@code type} and {@code category}, {@code from} and {@code to} dates
+     * @throws IOException if writing the response fails
+     */
+    private void amountHistogram(HttpExchange exchange, Map<String, String> params) throws IOException {
+        TransactionType type = params.containsKey("type")
+                ? TransactionType.valueOf(params.get("type").toUpperCase(Locale.ROOT)) : null;
+        Category category = params.containsKey("category")
+                ? Category.valueOf(params.get("category").toUpperCase(Locale.ROOT)) : null;
+        LocalDate from = LocalDate.parse(required(params, "from"));
+        LocalDate to = LocalDate.parse(required(params, "to"));
+
+        StringBuilder json = new StringBuilder("[");
+        for (HistogramBin bin : transactionManager.getAmountHistogram(type, category, from, to).getBins()) {
+            if (json.length() > 1) json.append(',');
+            json.append("{\"from\":");
+            Money.appendTo(json, bin.getFromCents()).append(",\"to\":");
+            Money.appendTo(json, bin.getToCents()).append(",\"count\":").append(bin.getCount()).append('}');
+        }
+        send(exchange, 200, json.append(']'));
+    }
+
+    /**
+     * Builds a query from the filter parameters.
+     *
+     * @param params the decoded query parameters
+     * @return the query
+     * @throws IllegalArgumentException if a parameter is invalid
+     * @throws DateTimeException        if a date is invalid
+     */
+    private static TransactionQuery parseFilter(Map<String, String> params) {
+        TransactionQuery query = TransactionQuery.all();
+        if (params.containsKey("type")) {
+            query = query.withType(TransactionType.valueOf(params.get("type").toUpperCase(Locale.ROOT)));
+        }
+        if (params.containsKey("category")) {
+            Set<Category> categories = EnumSet.noneOf(Category.class);
+            for (String name : params.get("category").split(",")) {
+                categories.add(Category.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+            query = query.withCategories(categories);
+        }
+        if (params.containsKey("from") || params.containsKey("to")) {
+            LocalDateTime from = params.containsKey("from") ? parseTime(params.get("from"), false) : LocalDateTime.MIN;
+            LocalDateTime to = params.containsKey("to") ? parseTime(params.get("to"), true) : LocalDateTime.MAX;
+            query = query.withDateRange(from, to);
+        }
+        if (params.containsKey("min") || params.containsKey("max")) {
+            long min = params.containsKey("min") ? Money.parse(params.get("min")) : Long.MIN_VALUE;
+            long max = params.containsKey("max") ? Money.parse(params.get("max")) : Long.MAX_VALUE;
+            query = query.withAmountRangeCents(min, max);
+        }
+        if (params.containsKey("keyword")) {
+            query = query.withKeyword(params.get("keyword"));
+        }
+        return query;
+    }
+
+    /**
+     * Parses an ISO date or date-time.
+     *
+     * @param text      the value
+     * @param endOfDay  whether a date without time means the last second of the day rather than its start
+     * @return the date-time
+     * @throws DateTimeException if the value is not an ISO date or date-time
+     */
+    private static LocalDateTime parseTime(String text, boolean endOfDay) {
+        if (text.length() == 10) {
+            LocalDate date = LocalDate.parse(text);
+            return endOfDay ? date.atTime(23, 59, 59) : date.atStartOfDay();
+        }
+        return LocalDateTime.parse(text);
+    }
+
+    /**
+     * Appends one row as a JSON object.
+     *
+     * @param json  the buffer to append to
+     * @param store the store holding the row
+     * @param row   the row position
+     */
+    private static void appendTransaction(StringBuilder json, TransactionStore store, int row) {
+        TransactionId.appendTo(json.append("{\"id\":\""), store.id(row)).append("\",\"time\":\"");
+        LedgerParser.appendDateTime(json, store.epochSecond(row))
+                .append("\",\"type\":\"").append(store.type(row).name()).append("\",\"amount\":");
+        Money.appendTo(json, store.amountCents(row))
+                .append(",\"category\":\"").append(store.category(row).name()).append("\",\"description\":");
+        JsonUtils.appendString(json, store.description(row)).append('}');
+    }
+
+    /**
+     * Appends a summary as a JSON object.
+     *
+     * @param json    the buffer to append to
+     * @param summary the summary
+     * @return the buffer
+     */
+    private static StringBuilder appendSummary(StringBuilder json, TransactionSummary summary) {
+        json.append("{\"count\":").append(summary.getCount()).append(",\"income\":");
+        Money.appendTo(json, summary.getIncomeCents()).append(",\"expense\":");
+        Money.appendTo(json, summary.getExpenseCents()).append(",\"balance\":");
+        return Money.appendTo(json, summary.getBalanceCents()).append('}');
+    }
+
+    /**
+     * Decodes a URL query string.
+     *
+     * @param rawQuery the raw query, or {@code null}
+     * @return the parameters; for repeated names the last value wins
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            params.put(name, value);
+        }
+        return params;
+    }
+
+    /**
+     * Gets a required parameter or member.
+     *
+     * @param values the parameters or JSON members
+     * @param name   the name
+     * @return the value
+     * @throws IllegalArgumentException if it is missing
+     */
+    private static String required(Map<String, String> values, String name) {
+        String value = values.get(name);
+        if (value == null) throw new IllegalArgumentException("Missing " + name);
+        return value;
+    }
+
+    /**
+     * Reads the request body as UTF-8 text.
+     *
+     * @param exchange the request
+     * @return the body
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if the body is larger than {@value #MAX_BODY_BYTES} bytes
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) throw new IllegalArgumentException("Request body too large");
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Sends a complete JSON response.
+     *
+     * @param exchange the response
+     * @param status   the HTTP status
+     * @param json     the body
+     * @throws IOException if writing fails
+     */
+    private static void send(HttpExchange exchange, int status, CharSequence json) throws IOException {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Sends an error as a JSON object with an {@code error} message.
+     *
+     * @param exchange the response
+     * @param status   the HTTP status
+     * @param message  the message
+     * @throws IOException if writing fails
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        JsonUtils.appendString(json, message == null ? "Bad request" : message).append('}');
+        send(exchange, status, json);
+    }
+}
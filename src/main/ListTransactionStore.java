@@ -0,0 +1,73 @@
+package main;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link TransactionStore} that keeps every row as a {@link Transaction} object in an {@link ArrayList}.
+ * This is the original storage layout; column accessors read the values from the stored objects.
+ */
+public class ListTransactionStore implements TransactionStore {
+    private final List<Transaction> transactions = new ArrayList<>();
+
+    @Override
+    public int size() {
+        return transactions.size();
+    }
+
+    @Override
+    public int append(Transaction transaction) {
+        transactions.add(transaction);
+        return transactions.size() - 1;
+    }
+
+    @Override
+    public int appendRow(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description) {
+        LocalDateTime date = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+        return append(new Transaction(id, date, amountCents, description, type, category));
+    }
+
+    @Override
+    public Transaction get(int row) {
+        return transactions.get(row);
+    }
+
+    @Override
+    public long id(int row) {
+        return transactions.get(row).getIdValue();
+    }
+
+    @Override
+    public long epochSecond(int row) {
+        return transactions.get(row).getDate().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    @Override
+    public long amountCents(int row) {
+        return transactions.get(row).getAmountCents();
+    }
+
+    @Override
+    public TransactionType type(int row) {
+        return transactions.get(row).getType();
+    }
+
+    @Override
+    public Category category(int row) {
+        return transactions.get(row).getCategory();
+    }
+
+    @Override
+    public String description(int row) {
+        return transactions.get(row).getDescription();
+    }
+
+    @Override
+    public int descriptionCode(int row) {
+        // Descriptions are kept as plain strings in the objects
+        transactions.get(row);
+        return -1;
+    }
+}
@@ -0,0 +1,259 @@
+package main;
+
+import Utils.LongIntHashMap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link TransactionStore} that reads its rows in place from a memory-mapped binary ledger
+ * (see {@link BinaryLedger}).
+ * <p>
+ * Opening the store only maps the file, so startup does not parse or copy any row, and column accessors
+ * read the record fields straight from the mapping. Rows appended afterwards are kept in memory in a
+ * {@link ColumnarTransactionStore} and follow the mapped rows. Decoded descriptions are cached per
+ * description code, so each distinct description is decoded once. The codes of appended rows follow those
+ * of the file's dictionary.
+ * </p>
+ * <p>
+ * Version 2 files, which referred to descriptions by heap offset, and version 1 files, which also kept IDs
+ * as text, are read as well. Their descriptions are cached per heap offset and their rows have no description
+ * code; the IDs of version 1 files are decoded once when the file is opened.
+ * </p>
+ */
+public class MappedTransactionStore implements TransactionStore {
+    /** Records per mapped segment; a single mapping is limited to 2 GB. */
+    private static final int RECORDS_PER_SEGMENT = (1 << 30) / BinaryLedger.RECORD_SIZE;
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final MappedByteBuffer[] segments;
+    private final MappedByteBuffer heap;
+    private final int mappedSize;
+    private final ColumnarTransactionStore appended = new ColumnarTransactionStore();
+    /** Decoded descriptions by code, filled on first use; {@code null} for files without a dictionary. */
+    private final String[] descriptionsByCode;
+    /** Decoded descriptions by heap offset, for files without a dictionary. */
+    private final Map<Integer, String> descriptionsByOffset = new ConcurrentHashMap<>();
+    private final int descriptionField;
+    private final int typeField;
+    private final int categoryField;
+    private final long[] textIds;
+
+    /**
+     * Maps a binary ledger file.
+     *
+     * @param fileName the binary ledger to open
+     * @throws IOException if the file cannot be read or is not a valid binary ledger
+     */
+    public MappedTransactionStore(String fileName) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            ByteBuffer header = ByteBuffer.allocate(BinaryLedger.HEADER_SIZE).order(BinaryLedger.ORDER);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // keep reading until the header is complete
+            }
+            if (header.hasRemaining() || header.getInt(0) != BinaryLedger.MAGIC) {
+                throw new IOException(fileName + " is not a binary ledger");
+            }
+            int version = header.getInt(4);
+            if (version < BinaryLedger.VERSION_TEXT_IDS || version > BinaryLedger.VERSION) {
+                throw new IOException("Unsupported binary ledger version " + version);
+            }
+            boolean textIdLayout = version == BinaryLedger.VERSION_TEXT_IDS;
+            descriptionField = textIdLayout ? BinaryLedger.V1_DESCRIPTION_OFFSET
+                    : version == BinaryLedger.VERSION_DESCRIPTION_OFFSETS ? BinaryLedger.V2_DESCRIPTION_OFFSET
+                    : BinaryLedger.DESCRIPTION_CODE;
+            typeField = textIdLayout ? BinaryLedger.V1_TYPE : BinaryLedger.TYPE;
+            categoryField = textIdLayout ? BinaryLedger.V1_CATEGORY : BinaryLedger.CATEGORY;
+
+            long count = header.getLong(BinaryLedger.HEADER_COUNT);
+            long heapPosition = header.getLong(BinaryLedger.HEADER_HEAP_POSITION);
+            long heapLength = header.getLong(BinaryLedger.HEADER_HEAP_LENGTH);
+            if (count > Integer.MAX_VALUE || heapLength > Integer.MAX_VALUE
+                    || heapPosition != BinaryLedger.HEADER_SIZE + count * BinaryLedger.RECORD_SIZE
+                    || heapPosition + heapLength > channel.size()) {
+                throw new IOException(fileName + " is truncated or corrupted");
+            }
+
+            mappedSize = (int) count;
+            segments = new MappedByteBuffer[(mappedSize + RECORDS_PER_SEGMENT - 1) / RECORDS_PER_SEGMENT];
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i * RECORDS_PER_SEGMENT;
+                long records = Math.min(RECORDS_PER_SEGMENT, count - first);
+                segments[i] = map(channel, BinaryLedger.HEADER_SIZE + first * BinaryLedger.RECORD_SIZE,
+                        records * BinaryLedger.RECORD_SIZE);
+            }
+            heap = map(channel, heapPosition, heapLength);
+            if (version == BinaryLedger.VERSION) {
+                int codes = heapLength >= 4 ? heap.getInt(0) : -1;
+                if (codes < 0 || 4 + 4L * codes > heapLength) {
+                    throw new IOException(fileName + " is truncated or corrupted");
+                }
+                descriptionsByCode = new String[codes];
+            } else {
+                descriptionsByCode = null;
+            }
+            textIds = textIdLayout ? decodeTextIds() : null;
+        }
+    }
+
+    @Override
+    public int size() {
+        return mappedSize + appended.size();
+    }
+
+    @Override
+    public int append(Transaction transaction) {
+        return mappedSize + appended.append(transaction);
+    }
+
+    @Override
+    public int appendRow(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description) {
+        return mappedSize + appended.appendRow(id, epochSecond, amountCents, type, category, description);
+    }
+
+    @Override
+    public Transaction get(int row) {
+        if (row >= mappedSize) return appended.get(row - mappedSize);
+
+        LocalDateTime date = LocalDateTime.ofEpochSecond(epochSecond(row), 0, ZoneOffset.UTC);
+        return new Transaction(id(row), date, amountCents(row), description(row), type(row), category(row));
+    }
+
+    @Override
+    public long id(int row) {
+        if (row >= mappedSize) return appended.id(row - mappedSize);
+        if (textIds != null) return textIds[row];
+        return segment(row).getLong(offset(row) + BinaryLedger.ID);
+    }
+
+    @Override
+    public long epochSecond(int row) {
+        if (row >= mappedSize) return appended.epochSecond(row - mappedSize);
+        return segment(row).getLong(offset(row) + BinaryLedger.EPOCH_SECOND);
+    }
+
+    @Override
+    public long amountCents(int row) {
+        if (row >= mappedSize) return appended.amountCents(row - mappedSize);
+        return segment(row).getLong(offset(row) + BinaryLedger.AMOUNT_CENTS);
+    }
+
+    @Override
+    public TransactionType type(int row) {
+        if (row >= mappedSize) return appended.type(row - mappedSize);
+        return TYPES[segment(row).get(offset(row) + typeField)];
+    }
+
+    @Override
+    public Category category(int row) {
+        if (row >= mappedSize) return appended.category(row - mappedSize);
+        return CATEGORIES[segment(row).get(offset(row) + categoryField)];
+    }
+
+    @Override
+    public String description(int row) {
+        if (row >= mappedSize) return appended.description(row - mappedSize);
+
+        int field = segment(row).getInt(offset(row) + descriptionField);
+        if (descriptionsByCode == null) {
+            return descriptionsByOffset.computeIfAbsent(field, this::readString);
+        }
+        // Racing readers may both decode a description; either result is a valid, immutable string
+        String description = descriptionsByCode[field];
+        if (description == null) {
+            description = readString(heap.getInt(4 + 4 * field));
+            descriptionsByCode[field] = description;
+        }
+        return description;
+    }
+
+    @Override
+    public int descriptionCode(int row) {
+        if (row >= mappedSize) {
+            int code = appended.descriptionCode(row - mappedSize);
+            return descriptionsByCode == null ? code : descriptionsByCode.length + code;
+        }
+        return descriptionsByCode == null ? -1 : segment(row).getInt(offset(row) + descriptionField);
+    }
+
+    /**
+     * Returns the mapped segment holding a row.
+     *
+     * @param row a mapped row position
+     * @return the segment buffer
+     */
+    private MappedByteBuffer segment(int row) {
+        if (row < 0) throw new IndexOutOfBoundsException("Row " + row + " out of bounds for size " + size());
+        return segments[row / RECORDS_PER_SEGMENT];
+    }
+
+    /**
+     * Returns the byte offset of a row within its segment.
+     *
+     * @param row a mapped row position
+     * @return the offset of the record
+     */
+    private static int offset(int row) {
+        return (row % RECORDS_PER_SEGMENT) * BinaryLedger.RECORD_SIZE;
+    }
+
+    /**
+     * Decodes the text IDs of a version 1 file. IDs that are not in the {@code TX-...} form get the lowest
+     * free ID of their second, in row order.
+     *
+     * @return the ID of every mapped row
+     */
+    private long[] decodeTextIds() {
+        long[] ids = new long[mappedSize];
+        LongIntHashMap taken = new LongIntHashMap(mappedSize);
+        for (int row = 0; row < mappedSize; row++) {
+            ids[row] = TransactionId.parse(readString(segment(row).getInt(offset(row) + BinaryLedger.V1_ID_OFFSET)));
+            if (ids[row] != TransactionId.NONE) taken.put(ids[row], row);
+        }
+        TransactionId.Allocator allocator = new TransactionId.Allocator();
+        for (int row = 0; row < mappedSize; row++) {
+            if (ids[row] == TransactionId.NONE) {
+                ids[row] = allocator.next(epochSecond(row), taken::containsKey);
+                taken.put(ids[row], row);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Decodes a length-prefixed UTF-8 string from the heap.
+     *
+     * @param offset the heap offset of the string
+     * @return the decoded string
+     */
+    private String readString(int offset) {
+        int length = heap.getInt(offset);
+        byte[] bytes = new byte[length];
+        heap.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Maps a read-only region of a file with the ledger byte order.
+     *
+     * @param channel  the open file
+     * @param position the start of the region
+     * @param length   the length of the region
+     * @return the mapped buffer
+     * @throws IOException if mapping fails
+     */
+    private static MappedByteBuffer map(FileChannel channel, long position, long length) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        buffer.order(BinaryLedger.ORDER);
+        return buffer;
+    }
+}
@@ -2,9 +2,19 @@ package main;
 
 import Utils.EnumUtils;
 
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 
 import static Utils.InputUtils.*;
 
@@ -23,7 +33,11 @@ public class MenuManager {
         System.out.println("2. View Transactions");
         System.out.println("3. View Balance");
         System.out.println("4. Filter Transactions");
-        System.out.println("5. Exit");
+        System.out.println("5. Period Report");
+        System.out.println("6. Budgets");
+        System.out.println("7. Edit Transaction");
+        System.out.println("8. Delete Transaction");
+        System.out.println("9. Exit");
         System.out.print("Choose an option: ");
     }
 
@@ -88,18 +102,150 @@ public class MenuManager {
         Transaction transaction = new Transaction(LocalDateTime.now(), amount, description, type, category);
         transactionManager.addTransaction(transaction);
         System.out.println("main.Transaction added successfully!");
+        // Publish right away so budget alerts for this expense are shown now
+        transactionManager.publish();
     }
 
     /**
-     * Displays all transactions from a given list.
+     * Handles user input for correcting a transaction picked by its ID. Each field shows its current value,
+     * which is kept when the user just presses Enter; the ID and date stay the same.
      *
-     * @param transactions list of transactions to print
+     * @param transactionManager the transaction manager holding the transaction
+     * @param scanner the scanner used for user input
      */
-    public static void printTransactionsHistory(List<Transaction> transactions) {
-        System.out.println("------------ main.Transaction History ------------");
-        for (Transaction transaction : transactions) {
+    public static void editTransaction(TransactionManager transactionManager, Scanner scanner) {
+        Transaction current = readTransaction(transactionManager, scanner);
+        if (current == null) return;
+
+        System.out.print("Enter a description [" + current.getDescription() + "]: ");
+        String description = scanner.nextLine();
+        if (description.isBlank()) description = current.getDescription();
+
+        long amountCents = current.getAmountCents();
+        System.out.print("Enter amount [" + Money.format(amountCents) + "]: ");
+        String amount = scanner.nextLine().trim();
+        if (!amount.isEmpty()) {
+            try {
+                amountCents = Money.parse(amount);
+            } catch (IllegalArgumentException e) {
+                System.out.println("Invalid amount, keeping " + Money.format(amountCents));
+            }
+        }
+
+        System.out.print("Change type from " + current.getType() + "? (y/N): ");
+        TransactionType type = scanner.nextLine().trim().equalsIgnoreCase("y") ? readType(scanner) : current.getType();
+
+        Category category = current.getCategory();
+        System.out.print("Change category from " + category + "? (y/N): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("y")) {
+            printCategoryList();
+            category = readCategory(scanner);
+        }
+
+        Transaction edited = new Transaction(current.getIdValue(), current.getDate(), amountCents, description, type, category);
+        if (transactionManager.updateTransaction(edited)) {
+            System.out.println("main.Transaction updated: " + edited);
+            // Publish right away so budget alerts for the new amount are shown now
+            transactionManager.publish();
+        } else {
+            System.out.println("The transaction was deleted in the meantime.");
+        }
+    }
+
+    /**
+     * Handles user input for deleting a transaction picked by its ID, after a confirmation.
+     *
+     * @param transactionManager the transaction manager holding the transaction
+     * @param scanner the scanner used for user input
+     */
+    public static void deleteTransaction(TransactionManager transactionManager, Scanner scanner) {
+        Transaction current = readTransaction(transactionManager, scanner);
+        if (current == null) return;
+
+        System.out.print("Delete this transaction? (y/N): ");
+        if (!scanner.nextLine().trim().equalsIgnoreCase("y")) return;
+
+        if (transactionManager.deleteTransaction(current.getIdValue())) {
+            System.out.println("main.Transaction deleted.");
+        } else {
+            System.out.println("The transaction was deleted in the meantime.");
+        }
+    }
+
+    /**
+     * Asks for a transaction ID and shows the transaction.
+     *
+     * @param transactionManager the transaction manager holding the transaction
+     * @param scanner the scanner used for user input
+     * @return the transaction, or {@code null} if no transaction has the entered ID
+     */
+    private static Transaction readTransaction(TransactionManager transactionManager, Scanner scanner) {
+        System.out.print("Enter the transaction ID (TX-yyyyMMdd-HHmmss-N): ");
+        Transaction transaction = transactionManager.getTransaction(scanner.nextLine().trim());
+        if (transaction == null) {
+            System.out.println("No transaction has that ID.");
+        } else {
             System.out.println(transaction);
         }
+        return transaction;
+    }
+
+    /**
+     * Displays all transactions, one page at a time.
+     *
+     * @param transactionManager the manager containing all transaction records
+     * @param scanner the scanner used for user input
+     */
+    public static void printTransactionsHistory(TransactionManager transactionManager, Scanner scanner) {
+        System.out.println("------------ main.Transaction History ------------");
+        browse(transactionManager.page(TransactionQuery.all(), TransactionPager.DEFAULT_PAGE_SIZE), scanner);
+    }
+
+    /**
+     * Shows the pages of a pager, letting the user move to the first, next, previous or last page,
+     * jump to a page number or change the page size, until they quit or leave the last page.
+     *
+     * @param pager the pager over the transactions to show
+     * @param scanner the scanner used for user input
+     */
+    private static void browse(TransactionPager pager, Scanner scanner) {
+        // Not closed: closing it would close System.out
+        Writer console = new OutputStreamWriter(System.out, Charset.defaultCharset());
+        while (true) {
+            try {
+                pager.render(console);
+                console.flush();
+            } catch (IOException e) {
+                System.out.println("Error printing transactions: " + e.getMessage());
+                return;
+            }
+            if (pager.getPageCount() == 1) return;
+
+            System.out.print("Page " + pager.getPage() + " of " + pager.getPageCount() + " (" + pager.getMatchCount()
+                    + " transactions). [Enter] next, (p)revious, (f)irst, (l)ast, page number, (s)ize <n>, (q)uit: ");
+            String command = scanner.nextLine().trim().toLowerCase();
+            if (command.isEmpty() || command.equals("n")) {
+                if (!pager.next()) return;
+            } else if (command.equals("p")) {
+                pager.previous();
+            } else if (command.equals("f")) {
+                pager.first();
+            } else if (command.equals("l")) {
+                pager.last();
+            } else if (command.equals("q")) {
+                return;
+            } else {
+                try {
+                    if (command.startsWith("s")) {
+                        pager.setPageSize(Integer.parseInt(command.substring(1).trim()));
+                    } else {
+                        pager.goTo(Integer.parseInt(command));
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Invalid option.");
+                }
+            }
+        }
     }
 
     /**
@@ -108,19 +254,203 @@ public class MenuManager {
      * @param transactionManager the manager containing all transaction records
      */
     public static void printBalance(TransactionManager transactionManager) {
-        System.out.printf("Your current balance is: %.2f%n", transactionManager.getBalance());
+        System.out.println("Your current balance is: " + Money.format(transactionManager.getBalanceCents()));
+    }
+
+    /**
+     * Prints income, expense and per-category totals for each day, week, month or year of a date range.
+     * The report is answered from the pre-aggregated rollups, without scanning the transactions; monthly and
+     * yearly reports add the median, 90th and 99th percentile amount from the amount histograms.
+     *
+     * @param transactionManager the manager containing all transaction records
+     * @param scanner the scanner used for user input
+     */
+    public static void printPeriodReport(TransactionManager transactionManager, Scanner scanner) {
+        System.out.println("Group by:");
+        RollupPeriod period = readPeriod(scanner);
+        LocalDate from = readDate(scanner, "Enter start date (yyyy-MM-dd): ").toLocalDate();
+        LocalDate to = readDate(scanner, "Enter end date (yyyy-MM-dd): ", true).toLocalDate();
+
+        System.out.println("\n------------ Period Report ------------");
+        Map<LocalDate, TransactionSummary> summaries = transactionManager.getPeriodSummaries(period, from, to);
+        if (summaries.isEmpty()) {
+            System.out.println("No transactions in this period.");
+            return;
+        }
+
+        Map<List<Object>, AmountPercentiles> percentiles = new HashMap<>();
+        if (period == RollupPeriod.MONTH || period == RollupPeriod.YEAR) {
+            for (AmountPercentiles entry : transactionManager.getAmountPercentiles(period, from, to)) {
+                percentiles.put(List.of(entry.getStart(), entry.getCategory(), entry.getType()), entry);
+            }
+            System.out.printf("(Percentiles are estimated within %.1f%% and cover whole months.)%n", AmountHistogram.RELATIVE_ERROR * 100);
+        }
+
+        List<Rollup> rollups = transactionManager.getRollups(period, from, to);
+        int next = 0;
+        for (Map.Entry<LocalDate, TransactionSummary> bucket : summaries.entrySet()) {
+            System.out.println(bucket.getKey() + ": " + bucket.getValue());
+            while (next < rollups.size() && rollups.get(next).getStart().equals(bucket.getKey())) {
+                Rollup rollup = rollups.get(next++);
+                AmountPercentiles amounts = percentiles.get(List.of(rollup.getStart(), rollup.getCategory(), rollup.getType()));
+                System.out.println("    " + rollup.getCategory() + " " + rollup.getType() + ": " + rollup.getCount()
+                        + " | total " + Money.format(rollup.getSumCents())
+                        + " | min " + Money.format(rollup.getMinCents())
+                        + " | max " + Money.format(rollup.getMaxCents())
+                        + (amounts == null ? "" : " | median " + Money.format(amounts.getMedianCents())
+                                + " | p90 " + Money.format(amounts.getP90Cents())
+                                + " | p99 " + Money.format(amounts.getP99Cents())));
+            }
+        }
+    }
+
+    /**
+     * Lists the budgets with how much was spent against each in its current period,
+     * and lets the user add and remove budgets. Changes are saved right away.
+     *
+     * @param transactionManager the manager holding the budgets
+     * @param files the ledger files the budgets are saved with
+     * @param scanner the scanner used for user input
+     */
+    public static void manageBudgets(TransactionManager transactionManager, LedgerFiles files, Scanner scanner) {
+        while (true) {
+            System.out.println("\n------------ Budgets ------------");
+            List<Budget> budgets = transactionManager.getBudgets();
+            if (budgets.isEmpty()) {
+                System.out.println("No budgets yet.");
+            }
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < budgets.size(); i++) {
+                Budget budget = budgets.get(i);
+                long spent = transactionManager.getBudgetSpentCents(budget, today);
+                System.out.println((i + 1) + ". " + budget + " | spent " + Money.format(spent) + " this period ("
+                        + spent * 100 / budget.getLimitCents() + "%)");
+            }
+            System.out.print("[a] add, [r <n>] remove, [q] back: ");
+
+            String command = scanner.nextLine().trim().toLowerCase();
+            if (command.equals("q")) {
+                return;
+            } else if (command.equals("a")) {
+                addBudget(transactionManager, files, scanner);
+            } else if (command.startsWith("r ")) {
+                try {
+                    int number = Integer.parseInt(command.substring(2).trim());
+                    if (number >= 1 && number <= budgets.size()) {
+                        transactionManager.removeBudget(budgets.get(number - 1));
+                        FileManager.saveBudgets(transactionManager, files);
+                    } else {
+                        System.out.println("Invalid budget number.");
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid budget number.");
+                }
+            } else {
+                System.out.println("Invalid option.");
+            }
+        }
+    }
+
+    /**
+     * Reads a new budget from the user and adds it.
+     *
+     * @param transactionManager the manager that receives the budget
+     * @param files the ledger files the budgets are saved with
+     * @param scanner the scanner used for user input
+     */
+    private static void addBudget(TransactionManager transactionManager, LedgerFiles files, Scanner scanner) {
+        System.out.println("Category:");
+        printCategoryList();
+        Category category = readCategory(scanner);
+        System.out.println("Per:");
+        RollupPeriod period = readPeriod(scanner);
+
+        System.out.print("Enter limit: ");
+        double limit = scanner.nextDouble();
+        scanner.nextLine();
+        System.out.print("Enter alert thresholds in % separated by commas (Enter for 80,100): ");
+        String thresholds = scanner.nextLine().trim();
+
+        try {
+            int[] percents = thresholds.isEmpty() ? new int[0]
+                    : Arrays.stream(thresholds.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+            Budget budget = new Budget(category, period, Money.ofDouble(limit), percents);
+            if (transactionManager.addBudget(budget)) {
+                FileManager.saveBudgets(transactionManager, files);
+                System.out.println("Budget added: " + budget);
+            } else {
+                System.out.println("This budget already exists.");
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid budget: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lets the user choose a day, week, month or year period.
+     *
+     * @param scanner the scanner used for user input
+     * @return the chosen period
+     */
+    private static RollupPeriod readPeriod(Scanner scanner) {
+        List<String> periods = EnumUtils.getCapitalizedEnumStrings(RollupPeriod.class);
+        for (int i = 0; i < periods.size(); i++) {
+            System.out.println((i + 1) + ". " + periods.get(i));
+        }
+        return repeatUntilNotNull(() -> {
+            RollupPeriod result = null;
+            try {
+                int choice = scanner.nextInt();
+                if (choice >= 1 && choice <= RollupPeriod.values().length) {
+                    result = RollupPeriod.values()[choice - 1];
+                } else {
+                    System.out.print("Invalid choice. Please try again: ");
+                }
+            } catch (Exception e) {
+                System.out.print("Bad input please try again: ");
+            } finally {
+                scanner.nextLine();
+            }
+            return result;
+        });
     }
 
     /**
-     * Saves all transactions and exits the program.
+     * Saves the transactions added in this session and exits the program.
      *
      * @param transactionManager the manager from which transactions will be saved
+     * @param files the ledger files to save to
      */
-    public static void exitMenu(TransactionManager transactionManager) {
-        FileManager.saveTransactions(transactionManager.getAllTransactions());
+    public static void exitMenu(TransactionManager transactionManager, LedgerFiles files) {
+        FileManager.closeLedger(transactionManager, files);
         System.out.println("Goodbye!");
     }
 
+    /**
+     * Reads a category number from the list printed by {@link #printCategoryList()}, until a valid one is entered.
+     *
+     * @param scanner the scanner used for user input
+     * @return the chosen category
+     */
+    private static Category readCategory(Scanner scanner) {
+        return repeatUntilNotNull(() -> {
+            Category result = null;
+            try {
+                int choice = scanner.nextInt();
+                if (choice >= 1 && choice <= Category.values().length) {
+                    result = Category.values()[choice - 1];
+                } else {
+                    System.out.print("Invalid choice. Please try again: ");
+                }
+            } catch (Exception e) {
+                System.out.print("Bad input please try again: ");
+            } finally {
+                scanner.nextLine();
+            }
+            return result;
+        });
+    }
+
     /**
      * Displays a list of categories from the {@link Category} enum.
      * Used for category selection and filtering.
@@ -134,84 +464,94 @@ public class MenuManager {
 
     /**
      * Allows the user to filter transactions by various criteria such as type, date range, amount range,
-     * category, or keyword.
+     * category, or keyword. Criteria can be combined; a transaction is shown when it matches all of them,
+     * or any of the chosen categories when several categories are picked.
      *
      * @param transactionManager the manager from which transactions will be filtered
+     * @param scanner the scanner used for user input
      */
-    public static void filterTransactions(TransactionManager transactionManager) {
+    public static void filterTransactions(TransactionManager transactionManager, Scanner scanner) {
         System.out.println("\n------------ Filtered Transactions ------------");
-        System.out.println("Filter By:");
-        System.out.println("1. Type (INCOME/EXPENSE)");
-        System.out.println("2. Date Range");
-        System.out.println("3. Amount Range");
-        System.out.println("4. Category");
-        System.out.println("5. Description Keyword");
-
-        Scanner scanner = new Scanner(System.in);
-        int filterChoice = repeatUntilNotNull(() -> {
-            Integer choice = null;
-            try {
-                choice = scanner.nextInt();
-                if(choice < 1 || choice > 5) {
-                    throw new Exception("Invalid input");
-                }
-            } catch (Exception e) {
-                System.out.print("Invalid input. Please try again (1 - 5): ");
-                choice = null;
-            } finally {
-                scanner.nextLine();
+        TransactionQuery query = TransactionQuery.all();
+        Set<Category> categories = EnumSet.noneOf(Category.class);
+
+        while (true) {
+            System.out.println("Filter By:");
+            System.out.println("1. Type (INCOME/EXPENSE)");
+            System.out.println("2. Date Range");
+            System.out.println("3. Amount Range");
+            System.out.println("4. Category");
+            System.out.println("5. Description Keyword");
+            System.out.println("6. Show results");
+            if (!query.equals(TransactionQuery.all())) {
+                System.out.println("Current filter: " + query.describe());
             }
 
-            return choice;
-        });
+            int filterChoice = repeatUntilNotNull(() -> {
+                Integer choice = null;
+                try {
+                    choice = scanner.nextInt();
+                    if(choice < 1 || choice > 6) {
+                        throw new Exception("Invalid input");
+                    }
+                } catch (Exception e) {
+                    System.out.print("Invalid input. Please try again (1 - 6): ");
+                    choice = null;
+                } finally {
+                    scanner.nextLine();
+                }
 
-        switch (filterChoice) {
-            case 1 -> {
-                TransactionType type = readType(scanner);
-                List<Transaction> result = transactionManager.filterByType(type);
-                result.forEach(System.out::println);
-            }
-            case 2 -> {
-                LocalDateTime from = readDate(scanner, "Enter start date & time (yyyy-MM-dd HH:mm): ");
-                LocalDateTime to = readDate(scanner, "Enter end date & time (yyyy-MM-dd HH:mm): ", true);
-                List<Transaction> result = transactionManager.filterByDateRange(from, to);
-                result.forEach(System.out::println);
-            }
-            case 3 -> {
-                System.out.print("Enter min amount: ");
-                double fromAmount = scanner.nextDouble();
-                System.out.print("Enter max amount: ");
-                double toAmount = scanner.nextDouble();
-                List<Transaction> result = transactionManager.filterByAmountRange(fromAmount, toAmount);
-                result.forEach(System.out::println);
-            }
-            case 4 -> {
-                System.out.println("Filter by:");
-                printCategoryList();
-                Category category =  repeatUntilNotNull(() -> {
-                    Category result = null;
-                    try {
-                        int choice = scanner.nextInt();
-                        if(choice <= 0 || choice > Category.values().length) {
-                            System.out.print("Invalid choice. Please try again: ");
+                return choice;
+            });
+
+            switch (filterChoice) {
+                case 1 -> query = query.withType(readType(scanner));
+                case 2 -> {
+                    LocalDateTime from = readDate(scanner, "Enter start date & time (yyyy-MM-dd HH:mm): ");
+                    LocalDateTime to = readDate(scanner, "Enter end date & time (yyyy-MM-dd HH:mm): ", true);
+                    query = query.withDateRange(from, to);
+                }
+                case 3 -> {
+                    System.out.print("Enter min amount: ");
+                    double fromAmount = scanner.nextDouble();
+                    System.out.print("Enter max amount: ");
+                    double toAmount = scanner.nextDouble();
+                    scanner.nextLine();
+                    query = query.withAmountRange(fromAmount, toAmount);
+                }
+                case 4 -> {
+                    System.out.println("Filter by:");
+                    printCategoryList();
+                    Category category =  repeatUntilNotNull(() -> {
+                        Category result = null;
+                        try {
+                            int choice = scanner.nextInt();
+                            if(choice <= 0 || choice > Category.values().length) {
+                                System.out.print("Invalid choice. Please try again: ");
+                            }
+                            result = Category.values()[choice-1];
+                        } catch (Exception e) {
+                            System.out.print("Bad input please try again: ");
+                        } finally {
+                            scanner.nextLine();
                         }
-                        result = Category.values()[choice-1];
-                    } catch (Exception e) {
-                        System.out.print("Bad input please try again: ");
-                    } finally {
-                        scanner.nextLine();
-                    }
-                    return result;
-                });
-                transactionManager.filterByCategory(category).forEach(System.out::println);
-            }
-            case 5 -> {
-                System.out.print("Enter keyword: ");
-                String keyword = scanner.nextLine();
-                List<Transaction> result = transactionManager.filterByKeyword(keyword);
-                result.forEach(System.out::println);
+                        return result;
+                    });
+                    categories.add(category);
+                    query = query.withCategories(categories);
+                }
+                case 5 -> {
+                    System.out.print("Enter keyword: ");
+                    query = query.withKeyword(scanner.nextLine());
+                }
+                case 6 -> {
+                    TransactionSummary summary = transactionManager.summarize(query);
+                    browse(transactionManager.page(query, TransactionPager.DEFAULT_PAGE_SIZE), scanner);
+                    System.out.println(summary);
+                    return;
+                }
+                default -> System.out.println("Invalid filter option.");
             }
-            default -> System.out.println("Invalid filter option.");
         }
     }
 }
@@ -0,0 +1,161 @@
+package main;
+
+/**
+ * Fixed-point money amounts.
+ * <p>
+ * Amounts are held as a {@code long} number of cents (minor units) everywhere: in the stores, the running
+ * totals and the ledger files. This class converts between that form and text or {@code double} without
+ * creating intermediate objects, and adds amounts with overflow checks, so totals are exact and never
+ * wrap around silently.
+ * </p>
+ * The text form is a plain decimal with two fraction digits, e.g. {@code 12.50} or {@code -0.05}.
+ */
+public final class Money {
+    private static final long MAX_DOUBLE_AMOUNT = Long.MAX_VALUE / 100;
+
+    // Private constructor to prevent instantiation
+    private Money() {}
+
+    /**
+     * Converts an amount in currency units to cents, rounding half away from zero.
+     *
+     * @param amount the amount, e.g. {@code 12.5}
+     * @return the amount in cents
+     * @throws IllegalArgumentException if the amount is not finite or too large
+     */
+    public static long ofDouble(double amount) {
+        if (!(Math.abs(amount) < MAX_DOUBLE_AMOUNT)) {
+            throw new IllegalArgumentException("Invalid amount: " + amount);
+        }
+        // Math.round would round negative halves up, e.g. -0.005 to 0; round the magnitude, like parse does
+        long cents = (long) Math.floor(Math.abs(amount) * 100 + 0.5);
+        return amount < 0 ? -cents : cents;
+    }
+
+    /**
+     * Converts cents to an amount in currency units, for display and legacy APIs.
+     *
+     * @param cents the amount in cents
+     * @return the amount as a {@code double}
+     */
+    public static double toDouble(long cents) {
+        return cents / 100.0;
+    }
+
+    /**
+     * Adds two amounts.
+     *
+     * @param a the first amount in cents
+     * @param b the second amount in cents
+     * @return the sum in cents
+     * @throws ArithmeticException if the sum overflows
+     */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtracts one amount from another.
+     *
+     * @param a the amount in cents
+     * @param b the amount to subtract, in cents
+     * @return the difference in cents
+     * @throws ArithmeticException if the difference overflows
+     */
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Formats an amount as a decimal with two fraction digits.
+     *
+     * @param cents the amount in cents
+     * @return the text form, e.g. {@code 12.50}
+     */
+    public static String format(long cents) {
+        return appendTo(new StringBuilder(24), cents).toString();
+    }
+
+    /**
+     * Appends an amount as a decimal with two fraction digits.
+     *
+     * @param text  the buffer to append to
+     * @param cents the amount in cents
+     * @return the buffer
+     */
+    public static StringBuilder appendTo(StringBuilder text, long cents) {
+        long units = cents / 100;
+        int fraction = (int) Math.abs(cents % 100);
+        if (cents < 0) text.append('-');
+        return text.append(Math.abs(units)).append('.')
+                .append((char) ('0' + fraction / 10)).append((char) ('0' + fraction % 10));
+    }
+
+    /**
+     * Parses a decimal amount into cents, rounding half away from zero at the third fraction digit.
+     *
+     * @param text the text to parse, e.g. {@code 12.5} or {@code 12.50}
+     * @return the amount in cents
+     * @throws IllegalArgumentException if the text is not a number
+     */
+    public static long parse(CharSequence text) {
+        char[] buffer = new char[text.length()];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = text.charAt(i);
+        }
+        return parse(buffer, 0, buffer.length);
+    }
+
+    /**
+     * Parses a decimal amount into cents, rounding half away from zero at the third fraction digit.
+     * Plain decimals are read digit by digit without allocating; exponent notation such as {@code 1.0E7},
+     * which older versions wrote for large amounts, falls back to {@link Double#parseDouble(String)}.
+     *
+     * @param buffer the characters holding the value
+     * @param start  the first character (inclusive)
+     * @param end    the last character (exclusive)
+     * @return the amount in cents
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    public static long parse(char[] buffer, int start, int end) {
+        int i = start;
+        boolean negative = i < end && buffer[i] == '-';
+        if (negative) i++;
+
+        long units = 0;
+        int integerDigits = 0;
+        while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+            units = units * 10 + (buffer[i++] - '0');
+            integerDigits++;
+        }
+
+        long cents = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < end && buffer[i] == '.') {
+            i++;
+            while (i < end && buffer[i] >= '0' && buffer[i] <= '9') {
+                if (fractionDigits < 2) {
+                    cents = cents * 10 + (buffer[i] - '0');
+                } else if (fractionDigits == 2) {
+                    roundUp = buffer[i] >= '5';
+                }
+                fractionDigits++;
+                i++;
+            }
+        }
+
+        if (i != end || integerDigits > 16 || integerDigits + fractionDigits == 0) {
+            // Exponent notation (e.g. 1.0E7 from Double.toString) or anything unusual
+            try {
+                return ofDouble(Double.parseDouble(new String(buffer, start, end - start)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid amount: " + new String(buffer, start, end - start));
+            }
+        }
+
+        if (fractionDigits == 1) cents *= 10;
+        long value = units * 100 + cents + (roundUp ? 1 : 0);
+        return negative ? -value : value;
+    }
+}
@@ -0,0 +1,152 @@
+package main;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Loads a pipe-separated ledger file on several threads.
+ * <p>
+ * The file is split into byte ranges of about {@value #CHUNK_BYTES} bytes whose ends are moved forward
+ * to the next line break, so no line is cut. Each range is read and parsed on a {@link ForkJoinPool}
+ * into its own {@link ColumnarTransactionStore} segment. The segments are then appended to the
+ * {@link TransactionManager} in file order, so the result is identical to a sequential load, down to the
+ * new IDs given to rows without one or with a duplicate ID (see {@link TransactionManager#addRows}).
+ * </p>
+ */
+final class ParallelLedgerLoader {
+    private static final int CHUNK_BYTES = 8 << 20;
+
+    // Private constructor to prevent instantiation
+    private ParallelLedgerLoader() {}
+
+    /**
+     * Loads a file into a manager using the given number of threads.
+     * If a line holds an invalid value, the rows before it are kept and the rest of the file is skipped,
+     * as with the sequential loader.
+     *
+     * @param transactionManager the manager that receives the rows
+     * @param fileName           the pipe-separated file to read
+     * @param parallelism        the number of parsing threads
+     * @return the number of loaded rows
+     * @throws IOException              if reading fails
+     * @throws IllegalArgumentException if a line holds an invalid value (after the preceding rows were added)
+     */
+    static int load(TransactionManager transactionManager, String fileName, int parallelism) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName))) {
+            List<long[]> ranges = splitAtLineBreaks(channel);
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                List<ForkJoinTask<Segment>> tasks = new ArrayList<>(ranges.size());
+                for (long[] range : ranges) {
+                    tasks.add(pool.submit(() -> parse(channel, range[0], range[1])));
+                }
+
+                int loaded = 0;
+                for (ForkJoinTask<Segment> task : tasks) {
+                    Segment segment = task.join();
+                    ColumnarTransactionStore rows = segment.rows;
+                    transactionManager.addRows(rows);
+                    loaded += rows.size();
+                    if (segment.failure instanceof IOException) throw (IOException) segment.failure;
+                    if (segment.failure != null) throw (IllegalArgumentException) segment.failure;
+                }
+
+                return loaded;
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Splits a file into byte ranges that each end right after a line break (or at the end of the file).
+     *
+     * @param channel the open file
+     * @return the ranges as {@code [start, end)} pairs in file order
+     * @throws IOException if reading fails
+     */
+    private static List<long[]> splitAtLineBreaks(FileChannel channel) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long start = 0;
+        while (start < size) {
+            long end = Math.min(size, start + CHUNK_BYTES);
+            boolean aligned = end == size;
+            while (!aligned) {
+                probe.clear();
+                int read = channel.read(probe, end);
+                if (read <= 0) {
+                    end = size;
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        end += i + 1;
+                        aligned = true;
+                        break;
+                    }
+                }
+                if (!aligned) end += read;
+            }
+
+            ranges.add(new long[]{start, end});
+            start = end;
+        }
+
+        return ranges;
+    }
+
+    /**
+     * Reads and parses one byte range into a segment. Runs on a pool thread.
+     *
+     * @param channel the open file
+     * @param start   the first byte (inclusive)
+     * @param end     the last byte (exclusive)
+     * @return the parsed rows, with the error that stopped parsing if any
+     */
+    private static Segment parse(FileChannel channel, long start, long end) {
+        Segment segment = new Segment();
+        try {
+            ByteBuffer bytes = ByteBuffer.allocate((int) (end - start));
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, start + bytes.position()) < 0) break;
+            }
+            bytes.flip();
+
+            CharBuffer chars = StandardCharsets.UTF_8.decode(bytes);
+            char[] buffer = chars.array();
+            int length = chars.limit();
+            DescriptionDictionary descriptions = new DescriptionDictionary();
+            int lineStart = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i == length || buffer[i] == '\n') {
+                    if (i > lineStart) {
+                        LedgerParser.parseLine(buffer, lineStart, i, descriptions, segment.rows::appendRow);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            segment.failure = e;
+        }
+
+        return segment;
+    }
+
+    /**
+     * Rows parsed from one byte range.
+     */
+    private static final class Segment {
+        final ColumnarTransactionStore rows = new ColumnarTransactionStore();
+        Exception failure;
+    }
+}
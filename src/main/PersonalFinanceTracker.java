@@ -1,5 +1,8 @@
 package main;
 
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 /**
@@ -13,14 +16,49 @@ public class PersonalFinanceTracker {
     /**
      * The main method that launches the application.
      *
-     * @param args command-line arguments (not used)
+     * @param args command-line arguments; {@code --convert} converts the text ledger
+     *             to the binary format and exits, {@code --import <statement.csv> [rules-file]}
+     *             imports a bank statement into the ledger and exits, {@code --serve [port]}
+     *             answers HTTP/JSON queries instead of showing the menu; a leading
+     *             {@code --account <name>} applies the menu or option to that account's ledger under
+     *             {@value AccountRegistry#DEFAULT_ROOT}, and {@code --accounts [name...]} prints the balance
+     *             of every account (or the named ones) and their combined total
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--accounts")) {
+            printAccounts(Arrays.asList(args).subList(1, args.length));
+            return;
+        }
+        LedgerFiles files = LedgerFiles.DEFAULT;
+        if (args.length > 1 && args[0].equals("--account")) {
+            try {
+                files = new AccountRegistry(AccountRegistry.DEFAULT_ROOT).getAccount(args[1]).getFiles();
+            } catch (IllegalArgumentException e) {
+                System.out.println("Error selecting account: " + e.getMessage());
+                return;
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+
+        if (args.length > 0 && args[0].equals("--convert")) {
+            int rows = FileManager.convertToBinary(files);
+            if (rows >= 0) System.out.println("Converted " + rows + " transactions to the binary ledger.");
+            return;
+        }
+        if (args.length > 1 && args[0].equals("--import")) {
+            importStatement(files, args[1], args.length > 2 ? args[2] : null);
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--serve")) {
+            serve(files, args.length > 1 ? Integer.parseInt(args[1]) : LedgerServer.DEFAULT_PORT);
+            return;
+        }
+
         Scanner scanner = new Scanner(System.in);
-        TransactionManager transactionManager = new TransactionManager();
 
-        // Load transactions from file into memory
-        transactionManager.getAllTransactions().addAll(FileManager.loadTransactions());
+        // Open the ledger on disk (text or binary)
+        TransactionManager transactionManager = FileManager.openLedger(files);
+        transactionManager.addBudgetListener(alert -> System.out.println("\n" + alert));
         int choice = 0;
 
         while(true) {
@@ -34,20 +72,107 @@ public class PersonalFinanceTracker {
                     MenuManager.addTransaction(transactionManager, scanner);
                 }
                 case 2 -> {
-                    MenuManager.printTransactionsHistory(transactionManager.getAllTransactions());
+                    MenuManager.printTransactionsHistory(transactionManager, scanner);
                 }
                 case 3 -> {
                     MenuManager.printBalance(transactionManager);
                 }
                 case 4 -> {
-                    MenuManager.filterTransactions(transactionManager);
+                    MenuManager.filterTransactions(transactionManager, scanner);
                 }
                 case 5 -> {
-                    MenuManager.exitMenu(transactionManager);
+                    MenuManager.printPeriodReport(transactionManager, scanner);
+                }
+                case 6 -> {
+                    MenuManager.manageBudgets(transactionManager, files, scanner);
+                }
+                case 7 -> {
+                    MenuManager.editTransaction(transactionManager, scanner);
+                }
+                case 8 -> {
+                    MenuManager.deleteTransaction(transactionManager, scanner);
+                }
+                case 9 -> {
+                    MenuManager.exitMenu(transactionManager, files);
                     return;
                 }
                 default -> System.out.println("Invalid option.");
             }
         }
     }
+
+    /**
+     * Imports a bank statement into the ledger on disk and saves it, for the {@code --import} option.
+     *
+     * @param files         the ledger to import into
+     * @param fileName      the CSV statement
+     * @param rulesFileName the classification rules file, or {@code null} for the default rules
+     */
+    private static void importStatement(LedgerFiles files, String fileName, String rulesFileName) {
+        TransactionManager transactionManager = FileManager.openLedger(files);
+        try {
+            ImportRules rules = rulesFileName == null ? ImportRules.defaults() : ImportRules.load(rulesFileName);
+            ImportReport report = ImportPipeline.run(transactionManager, fileName, rules,
+                    Runtime.getRuntime().availableProcessors());
+            System.out.println(report);
+            // Imported rows bypass the log, so fold them into the base file (closing without a log saves anyway)
+            if (report.getImported() > 0 && transactionManager.getTransactionLog() != null) {
+                FileManager.saveTransactions(transactionManager, files);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Error importing " + fileName + ": " + e.getMessage());
+        } finally {
+            FileManager.closeLedger(transactionManager, files);
+        }
+    }
+
+    /**
+     * Serves the ledger on disk over HTTP until the process is stopped, for the {@code --serve} option.
+     * On shutdown the server stops and the ledger is closed as when leaving the menu.
+     *
+     * @param files the ledger to serve
+     * @param port  the loopback port to listen on
+     */
+    private static void serve(LedgerFiles files, int port) {
+        TransactionManager transactionManager = FileManager.openLedger(files);
+        try {
+            LedgerServer server = new LedgerServer(transactionManager, port);
+            server.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                server.stop();
+                FileManager.closeLedger(transactionManager, files);
+            }));
+            System.out.println("Serving " + transactionManager.size() + " transactions on http://localhost:" + server.getPort()
+                    + (server.isVirtualThreads() ? " (virtual threads)" : " (thread pool)") + "; press Ctrl+C to stop.");
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            FileManager.closeLedger(transactionManager, files);
+        }
+    }
+
+    /**
+     * Prints the balance of each account and their combined total, for the {@code --accounts} option.
+     * The accounts are loaded in parallel and closed again afterwards.
+     *
+     * @param names the accounts to include, or an empty list for every account on disk
+     */
+    private static void printAccounts(List<String> names) {
+        AccountRegistry registry = new AccountRegistry(AccountRegistry.DEFAULT_ROOT);
+        try {
+            List<String> selected = names.isEmpty() ? registry.listAccounts() : names;
+            if (selected.isEmpty()) {
+                System.out.println("No accounts in " + registry.getRoot() + ".");
+                return;
+            }
+            long total = registry.getBalanceCents(selected);
+            for (String name : selected) {
+                System.out.println(name + ": " + Money.format(registry.getAccount(name).getManager().getBalanceCents()));
+            }
+            System.out.println("Total: " + Money.format(total));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Error reading accounts: " + e.getMessage());
+        } finally {
+            registry.close();
+        }
+    }
 }
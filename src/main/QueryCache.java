@@ -0,0 +1,225 @@
+package main;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.IntPredicate;
+
+/**
+ * Bounded cache of query results, keyed by the normalized criteria of a {@link TransactionQuery} and the
+ * {@link KeywordMatchMode}.
+ * <p>
+ * Both the matching row positions and the count-and-totals summary of a query can be cached. Entries are
+ * evicted in least-recently-used order once there are more than {@code maxEntries} of them or the cached
+ * row lists together hold more than {@code maxRows} positions.
+ * </p>
+ * <p>
+ * Each entry keeps the row filter of its query. When a row is added or deleted, only the entries whose filter
+ * accepts it are dropped; results the row cannot change stay cached. The manager puts results and adds rows
+ * while holding its lock, so a result computed before a row was added can never be stored after it.
+ * </p>
+ */
+final class QueryCache {
+    /** The fixed cost of an entry, counted in row positions, so summaries also have a weight. */
+    private static final int ENTRY_WEIGHT = 16;
+
+    private final int maxEntries;
+    private final long maxRows;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    /** The number of entries, readable without the monitor so adding rows can skip an empty cache. */
+    private volatile int size;
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * The normalized criteria and kind of a cached result. The match mode is only part of the key
+     * when the query has a keyword.
+     */
+    private static final class Key {
+        final TransactionQuery query;
+        final KeywordMatchMode mode;
+        final boolean rows;
+
+        Key(TransactionQuery query, KeywordMatchMode mode, boolean rows) {
+            this.query = query.normalized(mode);
+            this.mode = query.getKeyword() == null ? null : mode;
+            this.rows = rows;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return rows == other.rows && mode == other.mode && query.equals(other.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(query, mode, rows);
+        }
+    }
+
+    /**
+     * A cached result and the filter that decides whether a new row invalidates it.
+     */
+    private static final class Entry {
+        final int[] rows;
+        final TransactionSummary summary;
+        final IntPredicate matcher;
+        final long weight;
+
+        Entry(int[] rows, TransactionSummary summary, IntPredicate matcher) {
+            this.rows = rows;
+            this.summary = summary;
+            this.matcher = matcher;
+            this.weight = ENTRY_WEIGHT + (rows == null ? 0 : rows.length);
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxEntries the maximum number of cached results; 0 disables the cache
+     * @param maxRows    the maximum number of row positions held by all cached row lists
+     */
+    QueryCache(int maxEntries, long maxRows) {
+        this.maxEntries = maxEntries;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Looks up the matching rows of a query.
+     *
+     * @param query the criteria
+     * @param mode  the keyword match mode
+     * @return the cached row positions, which must not be modified, or {@code null} on a miss
+     */
+    synchronized int[] getRows(TransactionQuery query, KeywordMatchMode mode) {
+        Entry entry = lookup(new Key(query, mode, true));
+        return entry == null ? null : entry.rows;
+    }
+
+    /**
+     * Looks up the summary of a query.
+     *
+     * @param query the criteria
+     * @param mode  the keyword match mode
+     * @return the cached summary, or {@code null} on a miss
+     */
+    synchronized TransactionSummary getSummary(TransactionQuery query, KeywordMatchMode mode) {
+        Entry entry = lookup(new Key(query, mode, false));
+        return entry == null ? null : entry.summary;
+    }
+
+    /**
+     * Caches the matching rows of a query. The caller must hold the manager's lock.
+     *
+     * @param query   the criteria
+     * @param mode    the keyword match mode
+     * @param rows    the matching row positions; kept by reference and never modified
+     * @param matcher accepts exactly the rows the query matches
+     */
+    synchronized void putRows(TransactionQuery query, KeywordMatchMode mode, int[] rows, IntPredicate matcher) {
+        put(new Key(query, mode, true), new Entry(rows, null, matcher));
+    }
+
+    /**
+     * Caches the summary of a query. The caller must hold the manager's lock.
+     *
+     * @param query   the criteria
+     * @param mode    the keyword match mode
+     * @param summary the count and totals of the matches
+     * @param matcher accepts exactly the rows the query matches
+     */
+    synchronized void putSummary(TransactionQuery query, KeywordMatchMode mode, TransactionSummary summary, IntPredicate matcher) {
+        put(new Key(query, mode, false), new Entry(null, summary, matcher));
+    }
+
+    /**
+     * Drops the results a new or deleted row changes. The caller must hold the manager's write lock,
+     * and must call this before a deleted row stops matching.
+     *
+     * @param row the position of the added or deleted row
+     */
+    void rowChanged(int row) {
+        if (size == 0) return;
+
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.matcher.test(row)) {
+                    iterator.remove();
+                    weight -= entry.weight;
+                    invalidations++;
+                }
+            }
+            size = entries.size();
+        }
+    }
+
+    /**
+     * Drops every cached result, e.g. before a bulk load.
+     */
+    synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+        weight = 0;
+        size = 0;
+    }
+
+    /**
+     * Takes a snapshot of the counters.
+     *
+     * @return the hit, miss, eviction and invalidation counts and the current size
+     */
+    synchronized QueryCacheStats stats() {
+        return new QueryCacheStats(hits, misses, evictions, invalidations, entries.size(), weight);
+    }
+
+    /**
+     * Finds an entry and counts the hit or miss; a disabled cache counts neither.
+     *
+     * @param key the criteria and kind
+     * @return the entry, or {@code null}
+     */
+    private Entry lookup(Key key) {
+        if (maxEntries == 0) return null;
+
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return entry;
+    }
+
+    /**
+     * Stores an entry and evicts the least recently used ones until the cache fits its bounds again.
+     * Results too large to ever fit are not stored.
+     *
+     * @param key   the criteria and kind
+     * @param entry the result
+     */
+    private void put(Key key, Entry entry) {
+        if (maxEntries == 0 || entry.weight > maxRows) return;
+
+        Entry previous = entries.put(key, entry);
+        if (previous != null) weight -= previous.weight;
+        weight += entry.weight;
+
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || weight > maxRows) {
+            Entry evicted = eldest.next();
+            eldest.remove();
+            weight -= evicted.weight;
+            evictions++;
+        }
+        size = entries.size();
+    }
+}
@@ -0,0 +1,104 @@
+package main;
+
+/**
+ * Immutable snapshot of the query result cache counters, as returned by
+ * {@link TransactionManager#getQueryCacheStats()}.
+ */
+public class QueryCacheStats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+    private final int entries;
+    private final long weight;
+
+    /**
+     * Constructs a new QueryCacheStats.
+     *
+     * @param hits          The number of lookups answered from the cache.
+     * @param misses        The number of lookups that had to run the query.
+     * @param evictions     The number of results dropped to keep the cache within its bounds.
+     * @param invalidations The number of results dropped because a new transaction matched them.
+     * @param entries       The number of cached results.
+     * @param weight        The number of row positions held by the cached results, plus a fixed cost per result.
+     */
+    public QueryCacheStats(long hits, long misses, long evictions, long invalidations, int entries, long weight) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+        this.entries = entries;
+        this.weight = weight;
+    }
+
+    /**
+     * Gets the number of lookups answered from the cache.
+     *
+     * @return The hit count.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of lookups that had to run the query.
+     *
+     * @return The miss count.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of results dropped to keep the cache within its bounds.
+     *
+     * @return The eviction count.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of results dropped because a new transaction matched them.
+     *
+     * @return The invalidation count.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return The entry count.
+     */
+    public int getEntries() {
+        return entries;
+    }
+
+    /**
+     * Gets the size of the cached results, in row positions plus a fixed cost per result.
+     *
+     * @return The cache weight.
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * Gets the share of lookups answered from the cache.
+     *
+     * @return The hit ratio from 0 to 1, or 0 before the first lookup.
+     */
+    public double getHitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "hits " + hits + " | misses " + misses + String.format(" | hit ratio %.1f%%", getHitRatio() * 100)
+                + " | evictions " + evictions + " | invalidations " + invalidations
+                + " | entries " + entries + " | weight " + weight;
+    }
+}
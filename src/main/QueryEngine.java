@@ -0,0 +1,449 @@
+package main;
+
+import Utils.IntList;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+/**
+ * Executes {@link TransactionQuery} conjunctions against a {@link TransactionStore} and its indexes.
+ * <p>
+ * For each query the engine picks the most selective row source available (the type/category bitmaps,
+ * the timestamp index for a date range, the amount index for an amount range, the keyword postings for a
+ * keyword, or a full scan) and evaluates all remaining criteria on
+ * the candidate rows in a single fused pass over the columns. A keyword left to that pass is matched once per
+ * distinct description and then by description code (see {@link DescriptionMatcher}). Queries restricted only by type and category
+ * are counted and totalled straight from the running {@link TransactionAggregates}.
+ * </p>
+ * <p>
+ * Deleted rows stay in the sorted and keyword indexes until the manager compacts its rows; the bitmaps and
+ * aggregates drop them right away, and every other row source checks the deleted-row bitmap first.
+ * </p>
+ * <p>
+ * Largest/smallest-N queries ({@link #extremes}) either walk the amount index from one end, checking every
+ * criterion, or keep a bounded heap of N rows over the planned candidates, whichever is expected to visit
+ * fewer rows. Either way they need O(N) extra memory.
+ * </p>
+ */
+class QueryEngine {
+    /** A date range selecting at most this fraction of the rows is used without probing the keyword index. */
+    private static final int SELECTIVE_RANGE_DIVISOR = 64;
+
+    private final TransactionStore store;
+    private final TransactionAggregates aggregates;
+    private final SortedRowIndex timeIndex;
+    private final SortedRowIndex amountIndex;
+    private final KeywordIndex keywordIndex;
+    private final EnumBitmapIndex bitmaps;
+    private final RowBitmap deleted;
+
+    /**
+     * Creates an engine over a store and the indexes maintained for it.
+     *
+     * @param store        the rows to query
+     * @param aggregates   the running totals of the store
+     * @param timeIndex    the timestamp index of the store
+     * @param amountIndex  the amount index of the store
+     * @param keywordIndex the description index of the store
+     * @param bitmaps      the type and category bitmaps of the store, holding only live rows
+     * @param deleted      the deleted rows, which the other indexes still hold
+     */
+    QueryEngine(TransactionStore store, TransactionAggregates aggregates, SortedRowIndex timeIndex,
+                SortedRowIndex amountIndex, KeywordIndex keywordIndex, EnumBitmapIndex bitmaps, RowBitmap deleted) {
+        this.store = store;
+        this.aggregates = aggregates;
+        this.timeIndex = timeIndex;
+        this.amountIndex = amountIndex;
+        this.keywordIndex = keywordIndex;
+        this.bitmaps = bitmaps;
+        this.deleted = deleted;
+    }
+
+    /**
+     * Returns the matching rows in insertion order.
+     *
+     * @param query the criteria
+     * @param mode  how the keyword criterion is matched
+     * @return the matching row positions, ascending
+     */
+    int[] rows(TransactionQuery query, KeywordMatchMode mode) {
+        return stream(query, mode).toArray();
+    }
+
+    /**
+     * Returns a lazily evaluated stream of the matching rows in insertion order.
+     *
+     * @param query the criteria
+     * @param mode  how the keyword criterion is matched
+     * @return the matching row positions, ascending
+     */
+    IntStream stream(TransactionQuery query, KeywordMatchMode mode) {
+        Plan plan = plan(query, mode);
+        if (plan.bitmap != null) {
+            return plan.bitmap.stream().filter(plan.filter);
+        }
+        if (plan.candidates == null) {
+            return IntStream.range(0, store.size()).filter(plan.filter);
+        }
+
+        if (!plan.ordered) {
+            Arrays.sort(plan.candidates);
+        }
+        return Arrays.stream(plan.candidates).filter(plan.filter);
+    }
+
+    /**
+     * Counts the matching rows.
+     *
+     * @param query the criteria
+     * @param mode  how the keyword criterion is matched
+     * @return the number of matching rows
+     */
+    long count(TransactionQuery query, KeywordMatchMode mode) {
+        if (isEnumOnly(query)) {
+            return enumSummary(query).getCount();
+        }
+
+        long[] count = new long[1];
+        forEach(query, mode, row -> count[0]++);
+        return count[0];
+    }
+
+    /**
+     * Counts and totals the matching rows without materializing any transaction.
+     *
+     * @param query the criteria
+     * @param mode  how the keyword criterion is matched
+     * @return the count and income/expense totals of the matches
+     */
+    TransactionSummary summarize(TransactionQuery query, KeywordMatchMode mode) {
+        if (isEnumOnly(query)) {
+            return enumSummary(query);
+        }
+
+        long[] totals = new long[TransactionType.values().length];
+        long[] count = new long[1];
+        forEach(query, mode, row -> {
+            int t = store.type(row).ordinal();
+            totals[t] = Money.add(totals[t], store.amountCents(row));
+            count[0]++;
+        });
+
+        return new TransactionSummary(count[0], totals[TransactionType.INCOME.ordinal()], totals[TransactionType.EXPENSE.ordinal()]);
+    }
+
+    /**
+     * Passes every matching row to a consumer, in no particular order.
+     *
+     * @param query    the criteria
+     * @param mode     how the keyword criterion is matched
+     * @param consumer receives the matching row positions
+     */
+    void forEach(TransactionQuery query, KeywordMatchMode mode, IntConsumer consumer) {
+        Plan plan = plan(query, mode);
+        if (plan.bitmap != null) {
+            plan.bitmap.forEach(row -> {
+                if (plan.filter.test(row)) consumer.accept(row);
+            });
+        } else if (plan.candidates == null) {
+            for (int row = 0, size = store.size(); row < size; row++) {
+                if (plan.filter.test(row)) consumer.accept(row);
+            }
+        } else {
+            for (int row : plan.candidates) {
+                if (plan.filter.test(row)) consumer.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Returns the matching rows with the largest or smallest amounts, best first. Rows with equal amounts
+     * are ordered by row position, later rows counting as larger.
+     *
+     * @param query   the criteria
+     * @param mode    how the keyword criterion is matched
+     * @param limit   the maximum number of rows to return
+     * @param largest {@code true} for the largest amounts, {@code false} for the smallest
+     * @return up to {@code limit} matching row positions, largest (or smallest) amount first
+     */
+    int[] extremes(TransactionQuery query, KeywordMatchMode mode, int limit, boolean largest) {
+        if (limit <= 0) return new int[0];
+
+        long from = query.hasAmountRange() ? query.minCents() : Long.MIN_VALUE;
+        long to = query.hasAmountRange() ? query.maxCents() : Long.MAX_VALUE;
+        Plan plan = plan(query, mode);
+
+        // Walking the amount order visits about limit * inRange / matches rows, the heap visits every candidate
+        long inRange = query.hasAmountRange() ? amountIndex.countBetween(from, to) : store.size();
+        if ((long) limit * inRange < (long) plan.estimate * plan.estimate) {
+            IntPredicate filter = residualFilter(query, mode, false, false);
+            IntList rows = new IntList(Math.min(limit, 1024));
+            amountIndex.forEachOrdered(from, to, largest, row -> {
+                if (filter.test(row)) rows.add(row);
+                return rows.size() < limit;
+            });
+            return rows.toArray();
+        }
+
+        RowHeap heap = new RowHeap(Math.min(limit, plan.estimate), largest);
+        forEach(query, mode, heap::offer);
+        return heap.drain();
+    }
+
+    /**
+     * Builds a predicate that accepts exactly the rows matching every criterion of a query,
+     * e.g. to decide whether a new row changes a cached result.
+     *
+     * @param query the criteria
+     * @param mode  how the keyword criterion is matched
+     * @return the row filter
+     */
+    IntPredicate matcher(TransactionQuery query, KeywordMatchMode mode) {
+        return residualFilter(query, mode, false, false);
+    }
+
+    /**
+     * Chooses the row source for a query and builds the filter for the remaining criteria.
+     *
+     * @param query the criteria
+     * @param mode  how the keyword criterion is matched
+     * @return the execution plan
+     */
+    private Plan plan(TransactionQuery query, KeywordMatchMode mode) {
+        RowBitmap bitmap = null;
+        int[] candidates = null;
+        boolean ordered = true;
+        int best = store.size();
+        boolean enumResolved = false;
+        boolean keywordResolved = false;
+
+        RowBitmap enumRows = bitmaps.select(query.getType(), query.getCategories());
+        if (enumRows != null) {
+            int selected = enumRows.cardinality();
+            if (selected < best) {
+                bitmap = enumRows;
+                best = selected;
+                enumResolved = true;
+            }
+        }
+
+        if (query.hasDateRange()) {
+            int inRange = timeIndex.countBetween(query.fromSecond(), query.toSecond());
+            if (inRange < best) {
+                bitmap = null;
+                candidates = timeIndex.rowsBetween(query.fromSecond(), query.toSecond());
+                ordered = false;
+                best = inRange;
+                enumResolved = false;
+            }
+        }
+
+        if (query.hasAmountRange()) {
+            int inRange = amountIndex.countBetween(query.minCents(), query.maxCents());
+            if (inRange < best) {
+                bitmap = null;
+                candidates = amountIndex.rowsBetween(query.minCents(), query.maxCents());
+                ordered = false;
+                best = inRange;
+                enumResolved = false;
+            }
+        }
+
+        String keyword = query.getKeyword();
+        if (keyword != null && mode == KeywordMatchMode.TOKEN_PREFIX && best > store.size() / SELECTIVE_RANGE_DIVISOR) {
+            int[] postings = keywordIndex.search(keyword);
+            if (postings != null && postings.length < best) {
+                bitmap = null;
+                candidates = postings;
+                ordered = true;
+                best = postings.length;
+                enumResolved = false;
+                keywordResolved = true;
+            }
+        }
+
+        return new Plan(bitmap, candidates, ordered, best, residualFilter(query, mode, enumResolved, keywordResolved));
+    }
+
+    /**
+     * Builds a predicate that checks every criterion of the query on a row's columns,
+     * cheapest checks first. Deleted rows are rejected unless the candidates come from the bitmaps.
+     *
+     * @param query         the criteria
+     * @param mode          how the keyword criterion is matched
+     * @param skipEnums     {@code true} if the candidates already satisfy the type and category
+     * @param skipKeyword   {@code true} if the candidates already satisfy the keyword
+     * @return the row filter
+     */
+    private IntPredicate residualFilter(TransactionQuery query, KeywordMatchMode mode, boolean skipEnums, boolean skipKeyword) {
+        TransactionType type = skipEnums ? null : query.getType();
+        boolean anyCategory = skipEnums || query.getCategories() == null;
+        boolean checkDate = query.hasDateRange();
+        boolean checkAmount = query.hasAmountRange();
+        long fromSecond = query.fromSecond();
+        long toSecond = query.toSecond();
+        long minCents = query.minCents();
+        long maxCents = query.maxCents();
+
+        String keyword = skipKeyword ? null : query.getKeyword();
+        DescriptionMatcher descriptions = keyword == null ? null : new DescriptionMatcher(store, keyword, mode);
+
+        return row -> {
+            if (!skipEnums && deleted.get(row)) return false;
+            if (type != null && store.type(row) != type) return false;
+            if (!anyCategory && !query.acceptsCategory(store.category(row))) return false;
+            if (checkAmount) {
+                long cents = store.amountCents(row);
+                if (cents < minCents || cents > maxCents) return false;
+            }
+            if (checkDate) {
+                long second = store.epochSecond(row);
+                if (second < fromSecond || second > toSecond) return false;
+            }
+            return descriptions == null || descriptions.matches(row);
+        };
+    }
+
+    /**
+     * Checks whether a query restricts only the type and category.
+     *
+     * @param query the criteria
+     * @return {@code true} if the query can be answered from the aggregates
+     */
+    static boolean isEnumOnly(TransactionQuery query) {
+        return !query.hasDateRange() && !query.hasAmountRange() && query.getKeyword() == null;
+    }
+
+    /**
+     * Answers a type/category-only query from the running aggregates.
+     *
+     * @param query the criteria
+     * @return the count and totals of the matching rows
+     */
+    private TransactionSummary enumSummary(TransactionQuery query) {
+        TransactionSummary summary = TransactionSummary.EMPTY;
+        for (Category category : Category.values()) {
+            if (!query.acceptsCategory(category)) continue;
+
+            TransactionSummary categorySummary = aggregates.getSummary(category);
+            if (query.getType() == TransactionType.INCOME) {
+                categorySummary = new TransactionSummary(aggregates.getCount(TransactionType.INCOME, category), categorySummary.getIncomeCents(), 0);
+            } else if (query.getType() == TransactionType.EXPENSE) {
+                categorySummary = new TransactionSummary(aggregates.getCount(TransactionType.EXPENSE, category), 0, categorySummary.getExpenseCents());
+            }
+            summary = summary.plus(categorySummary);
+        }
+
+        return summary;
+    }
+
+    /**
+     * The chosen row source of a query and the filter for the criteria it does not cover.
+     */
+    private static final class Plan {
+        /** Candidate rows as a bitmap, or {@code null} if another source is used. */
+        final RowBitmap bitmap;
+        /** Candidate rows, or {@code null} to scan every row when there is no bitmap either. */
+        final int[] candidates;
+        /** Whether the candidates are already in ascending row order. */
+        final boolean ordered;
+        /** The number of candidate rows, an upper bound for the number of matches. */
+        final int estimate;
+        final IntPredicate filter;
+
+        Plan(RowBitmap bitmap, int[] candidates, boolean ordered, int estimate, IntPredicate filter) {
+            this.bitmap = bitmap;
+            this.candidates = candidates;
+            this.ordered = ordered;
+            this.estimate = estimate;
+            this.filter = filter;
+        }
+    }
+
+    /**
+     * A bounded heap keeping the rows with the largest (or smallest) amounts offered so far.
+     * The root is the worst row kept, so each offer costs O(log N) and memory stays at N rows.
+     */
+    private final class RowHeap {
+        private final int[] rows;
+        private final boolean largest;
+        private int size;
+
+        RowHeap(int capacity, boolean largest) {
+            this.rows = new int[capacity];
+            this.largest = largest;
+        }
+
+        /**
+         * Keeps a row if it is better than the worst row kept, or if the heap is not full yet.
+         *
+         * @param row the row position
+         */
+        void offer(int row) {
+            if (size < rows.length) {
+                rows[size] = row;
+                siftUp(size++);
+            } else if (size > 0 && better(row, rows[0])) {
+                rows[0] = row;
+                siftDown(0);
+            }
+        }
+
+        /**
+         * Empties the heap.
+         *
+         * @return the kept rows, best first
+         */
+        int[] drain() {
+            int[] result = new int[size];
+            while (size > 0) {
+                result[size - 1] = rows[0];
+                rows[0] = rows[--size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!better(rows[parent], rows[i])) return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                if (left < size && better(rows[worst], rows[left])) worst = left;
+                if (left + 1 < size && better(rows[worst], rows[left + 1])) worst = left + 1;
+                if (worst == i) return;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int row = rows[a];
+            rows[a] = rows[b];
+            rows[b] = row;
+        }
+
+        /**
+         * Checks whether a row ranks before another one, by amount and then row position.
+         *
+         * @param a the first row
+         * @param b the second row
+         * @return {@code true} if {@code a} is a better result than {@code b}
+         */
+        private boolean better(int a, int b) {
+            int order = Long.compare(store.amountCents(a), store.amountCents(b));
+            if (order == 0) order = Integer.compare(a, b);
+            return largest ? order > 0 : order < 0;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package main;
+
+import java.time.LocalDate;
+
+/**
+ * Immutable count and amount statistics of the transactions of one type and category in one time bucket,
+ * as returned by {@link TransactionManager#getRollups(RollupPeriod, LocalDate, LocalDate)}.
+ * Amounts are kept in cents.
+ */
+public class Rollup {
+    private final LocalDate start;
+    private final Category category;
+    private final TransactionType type;
+    private final long count;
+    private final long sumCents;
+    private final long minCents;
+    private final long maxCents;
+
+    /**
+     * Constructs a new Rollup.
+     *
+     * @param start    The first day of the time bucket.
+     * @param category The category of the transactions.
+     * @param type     The type of the transactions.
+     * @param count    The number of transactions.
+     * @param sumCents The total amount, in cents.
+     * @param minCents The smallest amount, in cents.
+     * @param maxCents The largest amount, in cents.
+     */
+    public Rollup(LocalDate start, Category category, TransactionType type,
+                  long count, long sumCents, long minCents, long maxCents) {
+        this.start = start;
+        this.category = category;
+        this.type = type;
+        this.count = count;
+        this.sumCents = sumCents;
+        this.minCents = minCents;
+        this.maxCents = maxCents;
+    }
+
+    /**
+     * Gets the first day of the time bucket.
+     *
+     * @return The bucket start.
+     */
+    public LocalDate getStart() {
+        return start;
+    }
+
+    /**
+     * Gets the category of the summarized transactions.
+     *
+     * @return The category.
+     */
+    public Category getCategory() {
+        return category;
+    }
+
+    /**
+     * Gets the type of the summarized transactions.
+     *
+     * @return The transaction type.
+     */
+    public TransactionType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the number of summarized transactions.
+     *
+     * @return The transaction count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the total amount in cents.
+     *
+     * @return The total in cents.
+     */
+    public long getSumCents() {
+        return sumCents;
+    }
+
+    /**
+     * Gets the smallest amount in cents.
+     *
+     * @return The smallest amount in cents.
+     */
+    public long getMinCents() {
+        return minCents;
+    }
+
+    /**
+     * Gets the largest amount in cents.
+     *
+     * @return The largest amount in cents.
+     */
+    public long getMaxCents() {
+        return maxCents;
+    }
+
+    /**
+     * Returns a formatted string representation of the rollup.
+     *
+     * @return The bucket, category, type, count, total, smallest and largest amount.
+     */
+    @Override
+    public String toString() {
+        return start + " " + category + " " + type + ": " + count + " transactions | total " + Money.format(sumCents)
+                + " | min " + Money.format(minCents) + " | max " + Money.format(maxCents);
+    }
+}
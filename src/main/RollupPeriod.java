@@ -0,0 +1,37 @@
+package main;
+
+import java.time.LocalDate;
+
+/**
+ * The length of the time buckets a rollup report groups transactions by.
+ * Buckets start at midnight UTC of their first day.
+ */
+public enum RollupPeriod {
+    /** One bucket per calendar day. */
+    DAY,
+
+    /** One bucket per ISO week, starting on Monday. */
+    WEEK,
+
+    /** One bucket per calendar month. */
+    MONTH,
+
+    /** One bucket per calendar year. */
+    YEAR;
+
+    /**
+     * Finds the first day of the bucket that holds a day.
+     *
+     * @param epochDay the day as days since the epoch
+     * @return the first day of its bucket, as days since the epoch
+     */
+    long bucketStart(long epochDay) {
+        return switch (this) {
+            case DAY -> epochDay;
+            // 1970-01-01 was a Thursday, so Mondays are the days where epochDay + 3 is a multiple of 7
+            case WEEK -> epochDay - Math.floorMod(epochDay + 3, 7L);
+            case MONTH -> LocalDate.ofEpochDay(epochDay).withDayOfMonth(1).toEpochDay();
+            case YEAR -> LocalDate.ofEpochDay(epochDay).withDayOfYear(1).toEpochDay();
+        };
+    }
+}
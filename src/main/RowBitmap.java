@@ -0,0 +1,167 @@
+package main;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A set of row positions stored as a plain bitset of 64-bit words.
+ * Set operations work a word at a time and counts use {@link Long#bitCount(long)}, so no row is read.
+ */
+public class RowBitmap {
+    private long[] words;
+
+    /**
+     * Creates an empty bitmap.
+     */
+    public RowBitmap() {
+        this(new long[1]);
+    }
+
+    private RowBitmap(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Adds a row to the set.
+     *
+     * @param row the row position
+     */
+    public void set(int row) {
+        int word = row >>> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, word + 1));
+        }
+        words[word] |= 1L << row;
+    }
+
+    /**
+     * Removes a row from the set.
+     *
+     * @param row the row position
+     */
+    public void clear(int row) {
+        int word = row >>> 6;
+        if (word < words.length) {
+            words[word] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * Checks whether a row is in the set.
+     *
+     * @param row the row position
+     * @return {@code true} if the row is set
+     */
+    public boolean get(int row) {
+        int word = row >>> 6;
+        return word < words.length && (words[word] & (1L << row)) != 0;
+    }
+
+    /**
+     * Counts the rows in the set.
+     *
+     * @return the number of set rows
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns an independent copy of this set.
+     *
+     * @return a new bitmap with the same rows
+     */
+    public RowBitmap copy() {
+        return new RowBitmap(Arrays.copyOf(words, words.length));
+    }
+
+    /**
+     * Returns the intersection of this set and another one.
+     *
+     * @param other the other set
+     * @return a new bitmap with the rows present in both
+     */
+    public RowBitmap and(RowBitmap other) {
+        long[] result = new long[Math.min(words.length, other.words.length)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = words[i] & other.words[i];
+        }
+
+        return new RowBitmap(result);
+    }
+
+    /**
+     * Returns the union of this set and another one.
+     *
+     * @param other the other set
+     * @return a new bitmap with the rows present in either
+     */
+    public RowBitmap or(RowBitmap other) {
+        long[] longer = words.length >= other.words.length ? words : other.words;
+        long[] shorter = longer == words ? other.words : words;
+        long[] result = Arrays.copyOf(longer, longer.length);
+        for (int i = 0; i < shorter.length; i++) {
+            result[i] |= shorter[i];
+        }
+
+        return new RowBitmap(result);
+    }
+
+    /**
+     * Passes every set row to a consumer in increasing order.
+     *
+     * @param consumer receives the row positions
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                consumer.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    /**
+     * Returns the set rows as a stream in increasing order.
+     *
+     * @return a sequential stream of row positions
+     */
+    public IntStream stream() {
+        PrimitiveIterator.OfInt iterator = new PrimitiveIterator.OfInt() {
+            private int index = -1;
+            private long word;
+
+            @Override
+            public boolean hasNext() {
+                while (word == 0) {
+                    if (++index >= words.length) return false;
+                    word = words[index];
+                }
+                return true;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int row = (index << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                return row;
+            }
+        };
+
+        return StreamSupport.intStream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+}
@@ -0,0 +1,373 @@
+package main;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Secondary index that keeps row positions ordered by a {@code long} key column (e.g. the timestamp).
+ * <p>
+ * Rows arriving in key order are appended in O(1). Rows that arrive out of order are parked in a pending
+ * buffer, so inserts never shift the whole index. The buffer is merged into the ordered array once it holds
+ * about {@code 32 * sqrt(n)} rows, which keeps the amortized insert cost at O(sqrt(n)) even when every row
+ * arrives out of order. Range lookups use binary search on the ordered array and scan the pending buffer,
+ * costing O(log n + p + k). Rows with equal keys are kept in row order. During a bulk load
+ * (see {@link #setBulkLoad(boolean)}) the pending rows are merged only once, at the end.
+ * </p>
+ * <p>
+ * Lookups never modify the index, so any number of them may run concurrently as long as no row is being
+ * added at the same time.
+ * </p>
+ */
+public class SortedRowIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final IntToLongFunction key;
+    private int[] sorted = new int[INITIAL_CAPACITY];
+    private int sortedSize;
+    private int[] pending = new int[INITIAL_CAPACITY];
+    private int pendingSize;
+    private boolean bulkLoad;
+
+    /**
+     * Creates an empty index.
+     *
+     * @param key function returning the key of a row
+     */
+    public SortedRowIndex(IntToLongFunction key) {
+        this.key = key;
+    }
+
+    /**
+     * Adds a row to the index. Rows are added in ascending row order, as they are appended to the store.
+     *
+     * @param row the row position
+     */
+    public void add(int row) {
+        if (pendingSize == 0 && (sortedSize == 0 || compare(sorted[sortedSize - 1], row) <= 0)) {
+            if (sortedSize == sorted.length) {
+                sorted = Arrays.copyOf(sorted, sortedSize * 2);
+            }
+            sorted[sortedSize++] = row;
+        } else {
+            if (pendingSize == pending.length) {
+                pending = Arrays.copyOf(pending, pendingSize * 2);
+            }
+            pending[pendingSize++] = row;
+            if (!bulkLoad && pendingSize > pendingLimit()) {
+                mergePending();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of indexed rows.
+     *
+     * @return the row count
+     */
+    public int size() {
+        return sortedSize + pendingSize;
+    }
+
+    /**
+     * Counts the rows whose key lies in {@code [from, to]}.
+     *
+     * @param from the lowest key (inclusive)
+     * @param to   the highest key (inclusive)
+     * @return the number of matching rows
+     */
+    public int countBetween(long from, long to) {
+        int count = Math.max(0, upperBound(to) - lowerBound(from));
+        for (int i = 0; i < pendingSize; i++) {
+            long value = key.applyAsLong(pending[i]);
+            if (value >= from && value <= to) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the rows whose key lies in {@code [from, to]}, ordered by key.
+     *
+     * @param from the lowest key (inclusive)
+     * @param to   the highest key (inclusive)
+     * @return the matching row positions
+     */
+    public int[] rowsBetween(long from, long to) {
+        int start = lowerBound(from);
+        int end = Math.max(start, upperBound(to));
+        if (pendingSize == 0) {
+            return Arrays.copyOfRange(sorted, start, end);
+        }
+
+        int[] late = pendingBetween(from, to);
+        int lateSize = late.length;
+
+        int[] rows = new int[end - start + lateSize];
+        int i = start;
+        int j = 0;
+        int k = 0;
+        while (i < end && j < lateSize) {
+            rows[k++] = compare(sorted[i], late[j]) <= 0 ? sorted[i++] : late[j++];
+        }
+        while (i < end) rows[k++] = sorted[i++];
+        while (j < lateSize) rows[k++] = late[j++];
+        return rows;
+    }
+
+    /**
+     * Passes every row whose key lies in {@code [from, to]} to the consumer, ordered by key.
+     *
+     * @param from     the lowest key (inclusive)
+     * @param to       the highest key (inclusive)
+     * @param consumer receives the matching row positions
+     */
+    public void forEachBetween(long from, long to, IntConsumer consumer) {
+        if (pendingSize > 0) {
+            for (int row : rowsBetween(from, to)) {
+                consumer.accept(row);
+            }
+            return;
+        }
+
+        int end = upperBound(to);
+        for (int i = lowerBound(from); i < end; i++) {
+            consumer.accept(sorted[i]);
+        }
+    }
+
+    /**
+     * Passes the rows whose key lies in {@code [from, to]} to the consumer in key order, ascending or
+     * descending, until the consumer returns {@code false}. Walking from one end this way answers
+     * "largest N" and "smallest N" questions without visiting the rest of the range.
+     *
+     * @param from       the lowest key (inclusive)
+     * @param to         the highest key (inclusive)
+     * @param descending {@code true} to start with the highest key
+     * @param consumer   receives the row positions; returns {@code false} to stop
+     */
+    public void forEachOrdered(long from, long to, boolean descending, IntPredicate consumer) {
+        int start = lowerBound(from);
+        int end = Math.max(start, upperBound(to));
+        int[] late = pendingSize == 0 ? new int[0] : pendingBetween(from, to);
+
+        if (descending) {
+            int i = end - 1;
+            int j = late.length - 1;
+            while (i >= start || j >= 0) {
+                boolean takeSorted = j < 0 || (i >= start && compare(sorted[i], late[j]) > 0);
+                if (!consumer.test(takeSorted ? sorted[i--] : late[j--])) return;
+            }
+        } else {
+            int i = start;
+            int j = 0;
+            while (i < end || j < late.length) {
+                boolean takeSorted = j == late.length || (i < end && compare(sorted[i], late[j]) <= 0);
+                if (!consumer.test(takeSorted ? sorted[i++] : late[j++])) return;
+            }
+        }
+    }
+
+    /**
+     * Starts or ends a bulk load. While a bulk load runs, rows added out of order stay in the pending buffer
+     * however many there are; ending it merges them in one pass.
+     *
+     * @param bulkLoad {@code true} to start a bulk load, {@code false} to end it
+     */
+    void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+        if (!bulkLoad) {
+            mergePending();
+        }
+    }
+
+    /**
+     * Collects the pending rows whose key lies in {@code [from, to]}, ordered by key.
+     *
+     * @param from the lowest key (inclusive)
+     * @param to   the highest key (inclusive)
+     * @return the matching pending rows
+     */
+    private int[] pendingBetween(long from, long to) {
+        int[] late = new int[pendingSize];
+        int lateSize = 0;
+        for (int i = 0; i < pendingSize; i++) {
+            long value = key.applyAsLong(pending[i]);
+            if (value >= from && value <= to) late[lateSize++] = pending[i];
+        }
+        late = Arrays.copyOf(late, lateSize);
+        sortByKey(late, lateSize);
+        return late;
+    }
+
+    /**
+     * Finds the first position in the ordered array whose key is {@code >= value}.
+     *
+     * @param value the key to search for
+     * @return the insertion position
+     */
+    private int lowerBound(long value) {
+        int low = 0;
+        int high = sortedSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key.applyAsLong(sorted[mid]) < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Finds the first position in the ordered array whose key is {@code > value}.
+     *
+     * @param value the key to search for
+     * @return the position after the last matching key
+     */
+    private int upperBound(long value) {
+        int low = 0;
+        int high = sortedSize;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (key.applyAsLong(sorted[mid]) <= value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Returns how many out-of-order rows may wait before they are merged.
+     * Merging costs O(n), so waiting for {@code 32 * sqrt(n)} rows balances the merges against the
+     * lookups that scan the pending rows.
+     *
+     * @return the pending row limit
+     */
+    private int pendingLimit() {
+        return Math.max(1024, (int) (32 * Math.sqrt(sortedSize)));
+    }
+
+    /**
+     * Sorts the pending rows and merges them into the ordered array.
+     * Inserts do this once the pending buffer is full; an owner may call it after a bulk load,
+     * so the following lookups only search the ordered array.
+     */
+    void mergePending() {
+        if (pendingSize == 0) return;
+
+        long[] pendingKeys = sortByKey(pending, pendingSize);
+
+        int[] merged = new int[Math.max(INITIAL_CAPACITY, Integer.highestOneBit(sortedSize + pendingSize) * 2)];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        long sortedKey = sortedSize > 0 ? key.applyAsLong(sorted[0]) : 0;
+        while (i < sortedSize && j < pendingSize) {
+            if (sortedKey < pendingKeys[j] || (sortedKey == pendingKeys[j] && sorted[i] < pending[j])) {
+                merged[k++] = sorted[i++];
+                if (i < sortedSize) sortedKey = key.applyAsLong(sorted[i]);
+            } else {
+                merged[k++] = pending[j++];
+            }
+        }
+        while (i < sortedSize) merged[k++] = sorted[i++];
+        while (j < pendingSize) merged[k++] = pending[j++];
+
+        sorted = merged;
+        sortedSize = k;
+        pendingSize = 0;
+    }
+
+    /**
+     * Sorts rows by key, keeping rows given in ascending row order in row order among equal keys.
+     * The keys are read once into an array. When the key range and the row count fit together in 63 bits,
+     * as they do for timestamps and amounts, each key is packed with the row's position into one
+     * {@code long} and the packed values are sorted as primitives; otherwise a stable merge sort is used.
+     *
+     * @param rows the rows to sort, in ascending row order
+     * @param size the number of rows to sort
+     * @return the keys of the sorted rows, in the same order
+     */
+    private long[] sortByKey(int[] rows, int size) {
+        long[] keys = new long[size];
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            keys[i] = key.applyAsLong(rows[i]);
+            min = Math.min(min, keys[i]);
+            max = Math.max(max, keys[i]);
+        }
+
+        int positionBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, size - 1));
+        long range = max - min;
+        if (size < 2 || range < 0 || range >>> (63 - positionBits) != 0) {
+            mergeSort(rows, keys, new int[size], new long[size], 0, size);
+            return keys;
+        }
+
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++) {
+            packed[i] = (keys[i] - min) << positionBits | i;
+        }
+        Arrays.sort(packed);
+
+        int[] unsorted = Arrays.copyOf(rows, size);
+        long positionMask = (1L << positionBits) - 1;
+        for (int i = 0; i < size; i++) {
+            rows[i] = unsorted[(int) (packed[i] & positionMask)];
+            keys[i] = (packed[i] >>> positionBits) + min;
+        }
+        return keys;
+    }
+
+    /**
+     * Stable merge sort of {@code rows[from, to)} by the parallel {@code keys}.
+     *
+     * @param rows       the rows to sort
+     * @param keys       the key of each row, sorted along with it
+     * @param rowBuffer  scratch space at least as long as the sorted range
+     * @param keyBuffer  scratch space at least as long as the sorted range
+     * @param from       the first position (inclusive)
+     * @param to         the last position (exclusive)
+     */
+    private static void mergeSort(int[] rows, long[] keys, int[] rowBuffer, long[] keyBuffer, int from, int to) {
+        if (to - from < 2) return;
+
+        int mid = (from + to) >>> 1;
+        mergeSort(rows, keys, rowBuffer, keyBuffer, from, mid);
+        mergeSort(rows, keys, rowBuffer, keyBuffer, mid, to);
+        if (keys[mid - 1] <= keys[mid]) return;
+
+        System.arraycopy(rows, from, rowBuffer, from, to - from);
+        System.arraycopy(keys, from, keyBuffer, from, to - from);
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && keyBuffer[i] <= keyBuffer[j])) {
+                rows[k] = rowBuffer[i];
+                keys[k] = keyBuffer[i++];
+            } else {
+                rows[k] = rowBuffer[j];
+                keys[k] = keyBuffer[j++];
+            }
+        }
+    }
+
+    /**
+     * Orders two rows by key, breaking ties by row position.
+     *
+     * @param a the first row
+     * @param b the second row
+     * @return a negative, zero or positive value as {@code a} sorts before, equal to or after {@code b}
+     */
+    private int compare(int a, int b) {
+        int result = Long.compare(key.applyAsLong(a), key.applyAsLong(b));
+        return result != 0 ? result : Integer.compare(a, b);
+    }
+}
@@ -0,0 +1,325 @@
+package main;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The column layout of a CSV bank statement, detected from its first line.
+ * <p>
+ * The delimiter is the most frequent of comma, semicolon and tab in the first line. If that line names the
+ * columns, they are found by name: a date, a description (also {@code memo}, {@code payee}, {@code details}...),
+ * and either a signed amount or separate debit and credit columns; optional {@code type} and {@code category}
+ * columns are used when present. Without a header the layout {@code date,description,amount} is assumed.
+ * Fields may be quoted with {@code "}, with {@code ""} standing for a quote inside a quoted field.
+ * </p>
+ * <p>
+ * Dates are ISO dates ({@code yyyy-MM-dd}, optionally followed by a time) unless the {@link ImportRules}
+ * set a date format. Amounts use a decimal point; currency symbols, thousands separators and parentheses
+ * for negative amounts are accepted. A negative amount, a debit, or a type column saying {@code EXPENSE},
+ * {@code DEBIT} or {@code DR} makes an expense; amounts are stored without sign.
+ * </p>
+ */
+final class StatementFormat {
+    private static final Set<String> DATE_NAMES = Set.of("date", "transaction date", "posted date", "posting date",
+            "booking date", "value date");
+    private static final Set<String> DESCRIPTION_NAMES = Set.of("description", "memo", "payee", "details",
+            "narrative", "name", "reference", "transaction description");
+    private static final Set<String> AMOUNT_NAMES = Set.of("amount", "value", "transaction amount");
+    private static final Set<String> DEBIT_NAMES = Set.of("debit", "withdrawal", "withdrawals", "money out", "paid out");
+    private static final Set<String> CREDIT_NAMES = Set.of("credit", "deposit", "deposits", "money in", "paid in");
+    private static final Set<String> TYPE_NAMES = Set.of("type", "transaction type");
+    private static final Set<String> CATEGORY_NAMES = Set.of("category");
+    private static final String NO_DESCRIPTION = "(no description)";
+
+    private final char delimiter;
+    private final boolean header;
+    private final int date;
+    private final int description;
+    private final int amount;
+    private final int debit;
+    private final int credit;
+    private final int type;
+    private final int category;
+
+    /**
+     * Creates a layout.
+     *
+     * @param delimiter   the field delimiter
+     * @param header      whether the first line is a header
+     * @param columns     the column positions of date, description, amount, debit, credit, type and
+     *                    category, -1 for absent columns
+     */
+    private StatementFormat(char delimiter, boolean header, int[] columns) {
+        this.delimiter = delimiter;
+        this.header = header;
+        this.date = columns[0];
+        this.description = columns[1];
+        this.amount = columns[2];
+        this.debit = columns[3];
+        this.credit = columns[4];
+        this.type = columns[5];
+        this.category = columns[6];
+    }
+
+    /**
+     * Detects the layout of a statement from its first line.
+     *
+     * @param firstLine the first line of the file
+     * @param fields    scratch list for the split fields
+     * @return the layout
+     * @throws IllegalArgumentException if the header lacks a date, description or amount column
+     */
+    static StatementFormat detect(String firstLine, List<String> fields) {
+        char delimiter = detectDelimiter(firstLine);
+        split(firstLine, delimiter, fields);
+
+        Set<?>[] names = {DATE_NAMES, DESCRIPTION_NAMES, AMOUNT_NAMES, DEBIT_NAMES, CREDIT_NAMES, TYPE_NAMES, CATEGORY_NAMES};
+        int[] columns = {-1, -1, -1, -1, -1, -1, -1};
+        boolean named = false;
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).trim().toLowerCase(Locale.ROOT);
+            for (int role = 0; role < names.length; role++) {
+                if (columns[role] < 0 && names[role].contains(name)) {
+                    columns[role] = i;
+                    named = true;
+                    break;
+                }
+            }
+        }
+
+        if (!named) {
+            return new StatementFormat(delimiter, false, new int[]{0, 1, 2, -1, -1, -1, -1});
+        }
+        if (columns[0] < 0 || columns[1] < 0 || (columns[2] < 0 && columns[3] < 0 && columns[4] < 0)) {
+            throw new IllegalArgumentException("Statement header needs date, description and amount columns: " + firstLine);
+        }
+        return new StatementFormat(delimiter, true, columns);
+    }
+
+    /**
+     * Checks whether the first line is a header rather than a row.
+     *
+     * @return {@code true} if the first line names the columns
+     */
+    boolean hasHeader() {
+        return header;
+    }
+
+    /**
+     * Parses and normalizes one statement line and appends it to a batch without a transaction ID;
+     * the manager gives the row its ID when the batch is added.
+     *
+     * @param line   the line, without line separator
+     * @param rules  the classification rules and date format
+     * @param fields scratch list for the split fields
+     * @param out    the batch that receives the row
+     * @throws IllegalArgumentException if the line lacks a field or holds an invalid date or amount
+     */
+    void parse(String line, ImportRules rules, List<String> fields, ColumnarTransactionStore out) {
+        split(line, delimiter, fields);
+
+        long epochSecond = parseDate(field(fields, date, "date"), rules.getDateFormat());
+        TransactionType transactionType;
+        long amountCents;
+        String debitText = debit >= 0 && debit < fields.size() ? fields.get(debit).trim() : "";
+        String creditText = credit >= 0 && credit < fields.size() ? fields.get(credit).trim() : "";
+        if (amount >= 0 && (amount < fields.size() && !fields.get(amount).isBlank() || debitText.isEmpty() && creditText.isEmpty())) {
+            amountCents = parseAmount(field(fields, amount, "amount"));
+            transactionType = amountCents < 0 ? TransactionType.EXPENSE : TransactionType.INCOME;
+            if (type >= 0 && type < fields.size()) {
+                transactionType = parseType(fields.get(type), transactionType);
+            }
+        } else if (!debitText.isEmpty()) {
+            amountCents = parseAmount(debitText);
+            transactionType = TransactionType.EXPENSE;
+        } else if (!creditText.isEmpty()) {
+            amountCents = parseAmount(creditText);
+            transactionType = TransactionType.INCOME;
+        } else {
+            throw new IllegalArgumentException("Missing amount");
+        }
+        amountCents = Math.abs(amountCents);
+
+        String text = sanitize(field(fields, description, "description"));
+        String lowerCase = text.toLowerCase(Locale.ROOT);
+        Category transactionCategory = Category.OTHER;
+        if (category >= 0 && category < fields.size()) {
+            try {
+                transactionCategory = Category.valueOf(fields.get(category).trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                // Unknown bank category: leave it to the rules
+            }
+        }
+        ImportRules.Rule rule = rules.match(lowerCase);
+        if (rule != null) {
+            transactionCategory = rule.category;
+            if (rule.type != null) transactionType = rule.type;
+        }
+
+        out.appendRow(TransactionId.NONE, epochSecond, amountCents, transactionType, transactionCategory, text);
+    }
+
+    /**
+     * Splits a line into fields, removing quotes.
+     *
+     * @param line      the line
+     * @param delimiter the field delimiter
+     * @param fields    the list that receives the fields; cleared first
+     */
+    static void split(String line, char delimiter, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c != '\r') {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+    }
+
+    /**
+     * Picks the most frequent of comma, semicolon and tab outside quotes.
+     *
+     * @param line the first line
+     * @return the delimiter
+     */
+    private static char detectDelimiter(String line) {
+        int commas = 0;
+        int semicolons = 0;
+        int tabs = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            if (quoted) continue;
+            if (c == ',') commas++;
+            else if (c == ';') semicolons++;
+            else if (c == '\t') tabs++;
+        }
+
+        if (tabs > commas && tabs > semicolons) return '\t';
+        return semicolons > commas ? ';' : ',';
+    }
+
+    /**
+     * Gets a required field.
+     *
+     * @param fields the split fields
+     * @param column the column position
+     * @param name   the field name, for the error message
+     * @return the field
+     * @throws IllegalArgumentException if the line is too short
+     */
+    private static String field(List<String> fields, int column, String name) {
+        if (column >= fields.size()) {
+            throw new IllegalArgumentException("Missing " + name);
+        }
+        return fields.get(column);
+    }
+
+    /**
+     * Parses a statement date.
+     *
+     * @param text   the field
+     * @param format the format of non-ISO dates, or {@code null}
+     * @return the epoch second of the date (at midnight if it has no time)
+     * @throws IllegalArgumentException if the date is invalid
+     */
+    private static long parseDate(String text, DateTimeFormatter format) {
+        String value = text.trim();
+        try {
+            if (format != null) {
+                try {
+                    return LocalDateTime.parse(value, format).toEpochSecond(ZoneOffset.UTC);
+                } catch (DateTimeParseException e) {
+                    return LocalDate.parse(value, format).toEpochDay() * 86_400L;
+                }
+            }
+            if (value.length() == 10) {
+                return LocalDate.parse(value).toEpochDay() * 86_400L;
+            }
+
+            char[] chars = value.toCharArray();
+            if (chars.length > 10 && chars[10] == ' ') chars[10] = 'T';
+            return LedgerParser.parseEpochSecond(chars, 0, chars.length);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + text);
+        }
+    }
+
+    /**
+     * Parses a statement amount, accepting currency symbols, thousands separators and parentheses.
+     *
+     * @param text the field
+     * @return the signed amount in cents
+     * @throws IllegalArgumentException if the amount is invalid
+     */
+    private static long parseAmount(String text) {
+        StringBuilder digits = new StringBuilder(text.length());
+        boolean negative = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.') {
+                digits.append(c);
+            } else if (c == '-' || c == '(') {
+                negative = true;
+            }
+            // Currency symbols and codes, spaces and thousands separators are skipped
+        }
+        if (digits.length() == 0) {
+            throw new IllegalArgumentException(text.isBlank() ? "Missing amount" : "Invalid amount: " + text);
+        }
+
+        long cents = Money.parse(digits);
+        return negative ? -cents : cents;
+    }
+
+    /**
+     * Reads a type column.
+     *
+     * @param text     the field
+     * @param fallback the type to use if the field is empty or unknown
+     * @return the transaction type
+     */
+    private static TransactionType parseType(String text, TransactionType fallback) {
+        String value = text.trim().toUpperCase(Locale.ROOT);
+        return switch (value) {
+            case "INCOME", "CREDIT", "CR" -> TransactionType.INCOME;
+            case "EXPENSE", "DEBIT", "DR" -> TransactionType.EXPENSE;
+            default -> fallback;
+        };
+    }
+
+    /**
+     * Makes a description safe for the pipe-separated ledger.
+     *
+     * @param text the field
+     * @return the description without pipes or line breaks, or a placeholder if it is empty
+     */
+    private static String sanitize(String text) {
+        String value = text.replace('|', ' ').replace('\n', ' ').replace('\r', ' ').trim();
+        return value.isEmpty() ? NO_DESCRIPTION : value;
+    }
+}
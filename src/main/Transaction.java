@@ -1,59 +1,113 @@
 package main;
 
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents a financial transaction with details such as date, amount, description, type, and category.
+ * A new transaction gets its ID from the {@link TransactionManager} it is first added to.
  */
 public class Transaction {
     private LocalDateTime timeStamp;
-    private double amount;
+    private long amountCents;
     private String description;
     private TransactionType type;
-    private final String id;
-    private static final AtomicInteger counter = new AtomicInteger(1);
+    private volatile long id;
+    private String idText;
     private Category category;
 
     /**
      * Constructs a new Transaction.
      *
      * @param timeStamp   The timestamp of the transaction.
-     * @param amount      The monetary value of the transaction.
+     * @param amount      The monetary value of the transaction; rounded to whole cents.
      * @param description A brief description of the transaction.
      * @param type        The type of transaction (INCOME or EXPENSE).
      * @param category    The category assigned to the transaction.
+     * @throws IllegalArgumentException if the amount is not a finite number.
      */
     public Transaction(LocalDateTime timeStamp, double amount, String description, TransactionType type, Category category) {
         this.timeStamp = timeStamp;
-        this.amount = amount;
+        this.amountCents = Money.ofDouble(amount);
         this.description = description;
         this.type = type;
-        id = generateId(timeStamp);
+        id = TransactionId.NONE;
         this.category = category;
     }
 
     /**
-     * Generates a unique transaction ID using the timestamp and a counter.
+     * Constructs a Transaction that keeps an already assigned ID.
+     * Used by storage engines when rebuilding a transaction from its stored columns.
      *
-     * @param time The timestamp of the transaction.
-     * @return A unique ID string in the format: TX-yyMMdd-HHmmss-N
+     * @param id          The previously assigned transaction ID.
+     * @param timeStamp   The timestamp of the transaction.
+     * @param amountCents The monetary value of the transaction in cents.
+     * @param description A brief description of the transaction.
+     * @param type        The type of transaction (INCOME or EXPENSE).
+     * @param category    The category assigned to the transaction.
+     */
+    Transaction(long id, LocalDateTime timeStamp, long amountCents, String description, TransactionType type, Category category) {
+        this.timeStamp = timeStamp;
+        this.amountCents = amountCents;
+        this.description = description;
+        this.type = type;
+        this.id = id;
+        this.category = category;
+    }
+
+    /**
+     * Creates a new version of this transaction with the same ID, to pass to
+     * {@link TransactionManager#updateTransaction(Transaction)}.
+     *
+     * @param timeStamp   The timestamp of the new version.
+     * @param amount      The monetary value of the new version; rounded to whole cents.
+     * @param description The description of the new version.
+     * @param type        The type of the new version.
+     * @param category    The category of the new version.
+     * @return The new version; this transaction is not changed.
+     * @throws IllegalArgumentException if the amount is not a finite number.
      */
-    private String generateId(LocalDateTime time) {
-        DateTimeFormatter datePart = DateTimeFormatter.ofPattern("yyMMdd-HHmmss");
-        return "TX-" + time.format(datePart) + "-" + counter.getAndIncrement();
+    public Transaction withDetails(LocalDateTime timeStamp, double amount, String description, TransactionType type, Category category) {
+        return new Transaction(id, timeStamp, Money.ofDouble(amount), description, type, category);
     }
 
     /**
      * Gets the unique ID of this transaction.
+     * The text form is rendered on first use and then kept.
      *
-     * @return The transaction ID.
+     * @return The transaction ID in the format TX-yyyyMMdd-HHmmss-N, or {@code null} if it was not added yet.
      */
     public String getId() {
+        String text = idText;
+        if (text == null) {
+            long value = id;
+            if (value == TransactionId.NONE) return null;
+            text = TransactionId.toString(value);
+            idText = text;
+        }
+        return text;
+    }
+
+    /**
+     * Gets the unique ID of this transaction in its compact form (see {@link TransactionId}).
+     *
+     * @return The 64-bit transaction ID, or {@link TransactionId#NONE} if it was not added yet.
+     */
+    public long getIdValue() {
         return id;
     }
 
+    /**
+     * Sets the ID of a new transaction, as handed out by the manager it is added to.
+     *
+     * @param id The new ID.
+     * @return {@code false} if the transaction already has an ID, e.g. because another thread added it first.
+     */
+    synchronized boolean assignId(long id) {
+        if (this.id != TransactionId.NONE) return false;
+        this.id = id;
+        return true;
+    }
+
     /**
      * Gets the timestamp of this transaction.
      *
@@ -69,7 +123,16 @@ public class Transaction {
      * @return The monetary amount.
      */
     public double getAmount() {
-        return amount;
+        return Money.toDouble(amountCents);
+    }
+
+    /**
+     * Gets the exact amount of this transaction in cents (see {@link Money}).
+     *
+     * @return The amount in cents.
+     */
+    public long getAmountCents() {
+        return amountCents;
     }
 
     /**
@@ -104,6 +167,6 @@ public class Transaction {
      */
     @Override
     public String toString() {
-        return "[" + id + "] " + timeStamp.toLocalDate() + " | " + type + " | " + amount + " | " + category + " | " + description;
+        return "[" + getId() + "] " + timeStamp.toLocalDate() + " | " + type + " | " + Money.format(amountCents) + " | " + category + " | " + description;
     }
 }
@@ -0,0 +1,190 @@
+package main;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Running totals over all stored transactions.
+ * <p>
+ * Sums and counts are kept per {@link TransactionType} and {@link Category} and updated in constant time
+ * for every recorded row, so balance and per-category questions never need to scan the ledger.
+ * </p>
+ */
+public class TransactionAggregates {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Category[] CATEGORIES = Category.values();
+
+    private final long[][] sumsCents = new long[TYPES.length][CATEGORIES.length];
+    private final long[][] counts = new long[TYPES.length][CATEGORIES.length];
+    private final long[] typeSumsCents = new long[TYPES.length];
+    private final long[] typeCounts = new long[TYPES.length];
+
+    /**
+     * Adds one transaction to the totals.
+     *
+     * @param type        The type of the transaction.
+     * @param category    The category of the transaction.
+     * @param amountCents The amount of the transaction in cents.
+     * @throws ArithmeticException if a total would overflow; the totals are then left unchanged.
+     */
+    public void record(TransactionType type, Category category, long amountCents) {
+        int t = type.ordinal();
+        int c = category.ordinal();
+        long categorySum = Money.add(sumsCents[t][c], amountCents);
+        long typeSum = Money.add(typeSumsCents[t], amountCents);
+        sumsCents[t][c] = categorySum;
+        counts[t][c]++;
+        typeSumsCents[t] = typeSum;
+        typeCounts[t]++;
+    }
+
+    /**
+     * Takes a recorded transaction out of the totals, e.g. when it is deleted or replaced.
+     *
+     * @param type        The type of the transaction.
+     * @param category    The category of the transaction.
+     * @param amountCents The amount of the transaction in cents.
+     * @throws ArithmeticException if a total would overflow; the totals are then left unchanged.
+     */
+    public void remove(TransactionType type, Category category, long amountCents) {
+        int t = type.ordinal();
+        int c = category.ordinal();
+        long categorySum = Money.subtract(sumsCents[t][c], amountCents);
+        long typeSum = Money.subtract(typeSumsCents[t], amountCents);
+        sumsCents[t][c] = categorySum;
+        counts[t][c]--;
+        typeSumsCents[t] = typeSum;
+        typeCounts[t]--;
+    }
+
+    /**
+     * Gets the current balance (income minus expense) in cents.
+     *
+     * @return The balance in cents.
+     * @throws ArithmeticException if the balance does not fit in a {@code long}.
+     */
+    public long getBalanceCents() {
+        return Money.subtract(typeSumsCents[TransactionType.INCOME.ordinal()], typeSumsCents[TransactionType.EXPENSE.ordinal()]);
+    }
+
+    /**
+     * Gets the total amount of one transaction type in cents.
+     *
+     * @param type The transaction type.
+     * @return The total in cents.
+     */
+    public long getTotalCents(TransactionType type) {
+        return typeSumsCents[type.ordinal()];
+    }
+
+    /**
+     * Gets the number of transactions of one type.
+     *
+     * @param type The transaction type.
+     * @return The transaction count.
+     */
+    public long getCount(TransactionType type) {
+        return typeCounts[type.ordinal()];
+    }
+
+    /**
+     * Gets the number of transactions of one type in one category.
+     *
+     * @param type     The transaction type.
+     * @param category The category.
+     * @return The transaction count.
+     */
+    public long getCount(TransactionType type, Category category) {
+        return counts[type.ordinal()][category.ordinal()];
+    }
+
+    /**
+     * Gets the count and totals of one category.
+     *
+     * @param category The category.
+     * @return The category summary.
+     */
+    public TransactionSummary getSummary(Category category) {
+        int c = category.ordinal();
+        int income = TransactionType.INCOME.ordinal();
+        int expense = TransactionType.EXPENSE.ordinal();
+        return new TransactionSummary(counts[income][c] + counts[expense][c], sumsCents[income][c], sumsCents[expense][c]);
+    }
+
+    /**
+     * Gets the count and totals of every category.
+     *
+     * @return A map from each category to its summary.
+     */
+    public Map<Category, TransactionSummary> getSummaries() {
+        Map<Category, TransactionSummary> summaries = new EnumMap<>(Category.class);
+        for (Category category : CATEGORIES) {
+            summaries.put(category, getSummary(category));
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Gets the count and totals of all transactions.
+     *
+     * @return The overall summary.
+     */
+    public TransactionSummary getTotalSummary() {
+        return new TransactionSummary(typeCounts[0] + typeCounts[1],
+                typeSumsCents[TransactionType.INCOME.ordinal()], typeSumsCents[TransactionType.EXPENSE.ordinal()]);
+    }
+
+    /**
+     * Recomputes the totals from scratch by scanning every row of a store.
+     *
+     * @param store The store to scan.
+     * @return Freshly computed aggregates.
+     */
+    public static TransactionAggregates recompute(TransactionStore store) {
+        return recompute(store, new RowBitmap());
+    }
+
+    /**
+     * Recomputes the totals from scratch by scanning the live rows of a store.
+     *
+     * @param store   The store to scan.
+     * @param deleted The rows to leave out.
+     * @return Freshly computed aggregates.
+     */
+    public static TransactionAggregates recompute(TransactionStore store, RowBitmap deleted) {
+        TransactionAggregates aggregates = new TransactionAggregates();
+        for (int row = 0; row < store.size(); row++) {
+            if (deleted.get(row)) continue;
+            aggregates.record(store.type(row), store.category(row), store.amountCents(row));
+        }
+
+        return aggregates;
+    }
+
+    /**
+     * Compares these totals with another set of aggregates.
+     *
+     * @param other The aggregates to compare with.
+     * @return A description of the first difference found, or {@code null} if they are equal.
+     */
+    public String findMismatch(TransactionAggregates other) {
+        for (TransactionType type : TYPES) {
+            for (Category category : CATEGORIES) {
+                int t = type.ordinal();
+                int c = category.ordinal();
+                if (sumsCents[t][c] != other.sumsCents[t][c] || counts[t][c] != other.counts[t][c]) {
+                    return type + "/" + category + ": running " + counts[t][c] + " rows, " + sumsCents[t][c]
+                            + " cents; recomputed " + other.counts[t][c] + " rows, " + other.sumsCents[t][c] + " cents";
+                }
+            }
+            int t = type.ordinal();
+            if (typeSumsCents[t] != other.typeSumsCents[t] || typeCounts[t] != other.typeCounts[t]) {
+                return type + ": running " + typeCounts[t] + " rows, " + typeSumsCents[t]
+                        + " cents; recomputed " + other.typeCounts[t] + " rows, " + other.typeSumsCents[t] + " cents";
+            }
+        }
+
+        return null;
+    }
+}
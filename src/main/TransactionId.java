@@ -0,0 +1,290 @@
+package main;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongPredicate;
+
+/**
+ * Compact 64-bit transaction IDs.
+ * <p>
+ * An ID packs the transaction timestamp, the node that created it and a sequence number per node and second:
+ * </p>
+ * <pre>
+ * bits 63..24: epoch second (signed) | bits 23..16: node | bits 15..0: sequence
+ * </pre>
+ * <p>
+ * IDs therefore sort by transaction time. The node is read from the {@code pft.node} system property
+ * (0-255) and is random otherwise, so processes writing to the same ledger rarely share one.
+ * </p>
+ * <p>
+ * New IDs are handed out per ledger by an {@link Allocator}, which takes the lowest sequence number of the
+ * transaction's second that the ledger does not hold yet. No process-wide state is kept, so the ledgers of
+ * different accounts do not affect each other's IDs. Only when a ledger already holds all 65,536 IDs of this
+ * node for a second does a new ID move on to the next second.
+ * </p>
+ * <p>
+ * The text form is {@code TX-yyyyMMdd-HHmmss-N}, where {@code N} is the low 24 bits (node and sequence).
+ * Like ISO dates, years before 0 carry a {@code -} and years after 9999 a {@code +}, so every ID round-trips
+ * through its text form. It is rendered without a formatter and only when asked for. IDs written by earlier
+ * versions in the {@code TX-yyMMdd-HHmmss-N} form with node 0 are still accepted, with their two-digit year
+ * read as 20yy.
+ * </p>
+ */
+public final class TransactionId {
+    /** The value returned by the parsers for text that is not a transaction ID. */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final int NODE_BITS = 8;
+    private static final int SEQUENCE_BITS = 16;
+    private static final int LOW_BITS = NODE_BITS + SEQUENCE_BITS;
+    private static final int SEQUENCE_MASK = (1 << SEQUENCE_BITS) - 1;
+    private static final long MAX_EPOCH_SECOND = (1L << (63 - LOW_BITS)) - 1;
+    private static final long MIN_EPOCH_SECOND = -(1L << (63 - LOW_BITS));
+    private static final int TEXT_LENGTH = 19; // "TX-yyyyMMdd-HHmmss-" before the number
+    private static final int LEGACY_TEXT_LENGTH = 17; // "TX-yyMMdd-HHmmss-"
+    private static final int MAX_NUMBER_DIGITS = 8;
+    private static final int MAX_YEAR_DIGITS = 6;
+
+    private static final int NODE = Integer.getInteger("pft.node",
+            ThreadLocalRandom.current().nextInt(1 << NODE_BITS)) & ((1 << NODE_BITS) - 1);
+
+    // Private constructor to prevent instantiation
+    private TransactionId() {}
+
+    /**
+     * Hands out the new IDs of one ledger.
+     * <p>
+     * The ledger says which IDs it holds; the allocator probes the sequence numbers of a second from the
+     * lowest up and returns the first free one. To keep bursts of transactions in the same second from
+     * probing every taken number again, it remembers where the last search of a second ended, for a fixed
+     * number of recent seconds; a second that has dropped out starts from 0 again. Not thread-safe.
+     * </p>
+     */
+    static final class Allocator {
+        private static final int HINTS = 1024;
+
+        private final long[] hintSeconds = new long[HINTS];
+        private final int[] hintSequences = new int[HINTS];
+
+        /**
+         * Creates an allocator with no recent seconds.
+         */
+        Allocator() {
+            Arrays.fill(hintSeconds, Long.MIN_VALUE);
+        }
+
+        /**
+         * Finds a new ID on this node for a timestamp, in the next second with a free sequence number if
+         * every ID of this one is taken.
+         *
+         * @param epochSecond the timestamp of the transaction as seconds since the epoch
+         * @param taken       tells whether the ledger already holds an ID
+         * @return the new ID
+         * @throws IllegalArgumentException if the timestamp is out of range
+         */
+        long next(long epochSecond, LongPredicate taken) {
+            for (long second = epochSecond; ; second++) {
+                int slot = (int) second & (HINTS - 1);
+                int sequence = hintSeconds[slot] == second ? hintSequences[slot] : 0;
+                for (; sequence <= SEQUENCE_MASK; sequence++) {
+                    long id = of(second, NODE, sequence);
+                    if (id != NONE && !taken.test(id)) {
+                        hintSeconds[slot] = second;
+                        hintSequences[slot] = sequence + 1;
+                        return id;
+                    }
+                }
+                hintSeconds[slot] = second;
+                hintSequences[slot] = sequence;
+            }
+        }
+    }
+
+    /**
+     * Builds an ID from its parts.
+     *
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @param node        the node (0-255)
+     * @param sequence    the sequence number (0-65535)
+     * @return the ID
+     * @throws IllegalArgumentException if a part is out of range
+     */
+    public static long of(long epochSecond, int node, int sequence) {
+        if (epochSecond < MIN_EPOCH_SECOND || epochSecond > MAX_EPOCH_SECOND) {
+            throw new IllegalArgumentException("Timestamp out of range for a transaction ID: " + epochSecond);
+        }
+        if (node >>> NODE_BITS != 0 || sequence >>> SEQUENCE_BITS != 0) {
+            throw new IllegalArgumentException("Invalid node " + node + " or sequence " + sequence);
+        }
+        return epochSecond << LOW_BITS | (long) node << SEQUENCE_BITS | sequence;
+    }
+
+    /**
+     * Gets the timestamp part of an ID.
+     *
+     * @param id the ID
+     * @return the epoch second
+     */
+    public static long epochSecond(long id) {
+        return id >> LOW_BITS;
+    }
+
+    /**
+     * Gets the node part of an ID.
+     *
+     * @param id the ID
+     * @return the node
+     */
+    public static int node(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & ((1 << NODE_BITS) - 1);
+    }
+
+    /**
+     * Gets the sequence part of an ID.
+     *
+     * @param id the ID
+     * @return the sequence number
+     */
+    public static int sequence(long id) {
+        return (int) id & SEQUENCE_MASK;
+    }
+
+    /**
+     * Renders an ID in the {@code TX-yyyyMMdd-HHmmss-N} form.
+     *
+     * @param id the ID
+     * @return the text form
+     */
+    public static String toString(long id) {
+        return appendTo(new StringBuilder(TEXT_LENGTH + MAX_NUMBER_DIGITS), id).toString();
+    }
+
+    /**
+     * Appends the {@code TX-yyyyMMdd-HHmmss-N} form of an ID.
+     *
+     * @param text the buffer to append to
+     * @param id   the ID
+     * @return the buffer
+     */
+    public static StringBuilder appendTo(StringBuilder text, long id) {
+        long epochSecond = epochSecond(id);
+        long date = LedgerParser.civilDate(Math.floorDiv(epochSecond, 86_400L));
+        int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+        long year = Math.floorDiv(date, 10_000L);
+        int month = (int) Math.floorMod(date, 10_000L) / 100;
+        int day = (int) Math.floorMod(date, 100L);
+
+        text.append("TX-");
+        if (year < 0 || year > 9_999) {
+            text.append(year < 0 ? '-' : '+');
+        }
+        long digits = Math.abs(year);
+        for (long place = 1_000; place > digits && place > 1; place /= 10) {
+            text.append('0');
+        }
+        text.append(digits);
+        twoDigits(text, month);
+        twoDigits(text, day);
+        text.append('-');
+        twoDigits(text, secondOfDay / 3_600);
+        twoDigits(text, secondOfDay / 60 % 60);
+        twoDigits(text, secondOfDay % 60);
+        return text.append('-').append(id & ((1 << LOW_BITS) - 1));
+    }
+
+    /**
+     * Parses the {@code TX-yyyyMMdd-HHmmss-N} form, or the earlier {@code TX-yyMMdd-HHmmss-N} form with its
+     * two-digit year read as 20yy.
+     *
+     * @param text the text to parse
+     * @return the ID, or {@link #NONE} if the text is not a transaction ID
+     */
+    public static long parse(String text) {
+        return parse(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Parses the {@code TX-yyyyMMdd-HHmmss-N} or {@code TX-yyMMdd-HHmmss-N} form from a character range
+     * (see {@link #parse(String)}).
+     *
+     * @param buffer the characters holding the ID
+     * @param start  the first character (inclusive)
+     * @param end    the last character (exclusive)
+     * @return the ID, or {@link #NONE} if the text is not a transaction ID
+     */
+    static long parse(char[] buffer, int start, int end) {
+        if (end - start <= LEGACY_TEXT_LENGTH || buffer[start] != 'T' || buffer[start + 1] != 'X' || buffer[start + 2] != '-') {
+            return NONE;
+        }
+
+        // The date runs up to the next dash: six digits in the earlier form, a year and four digits otherwise
+        int dateStart = start + 3;
+        char sign = buffer[dateStart];
+        if (sign == '-' || sign == '+') dateStart++;
+        int dateEnd = dateStart;
+        while (dateEnd < end && buffer[dateEnd] >= '0' && buffer[dateEnd] <= '9') dateEnd++;
+        int dateDigits = dateEnd - dateStart;
+        int numberStart = dateEnd + 8;
+        if (dateDigits != 6 && (dateDigits < 8 || dateDigits > MAX_YEAR_DIGITS + 4)
+                || dateDigits == 6 && dateStart != start + 3 || numberStart >= end
+                || end - numberStart > MAX_NUMBER_DIGITS || buffer[dateEnd] != '-' || buffer[numberStart - 1] != '-') {
+            return NONE;
+        }
+
+        int year = 0;
+        if (dateDigits == 6) {
+            year = 2000 + twoDigits(buffer, dateStart);
+        } else {
+            for (int i = dateStart; i < dateEnd - 4; i++) {
+                year = year * 10 + (buffer[i] - '0');
+            }
+            if (sign == '-') year = -year;
+        }
+        int month = twoDigits(buffer, dateEnd - 4);
+        int day = twoDigits(buffer, dateEnd - 2);
+        int hour = twoDigits(buffer, dateEnd + 1);
+        int minute = twoDigits(buffer, dateEnd + 3);
+        int second = twoDigits(buffer, dateEnd + 5);
+        if (hour < 0 || minute < 0 || second < 0 || !LedgerParser.isValidDate(year, month, day)
+                || hour > 23 || minute > 59 || second > 59) {
+            return NONE;
+        }
+
+        long low = 0;
+        for (int i = numberStart; i < end; i++) {
+            char c = buffer[i];
+            if (c < '0' || c > '9') return NONE;
+            low = low * 10 + (c - '0');
+        }
+        if (low >>> LOW_BITS != 0) return NONE;
+
+        long epochSecond = LedgerParser.epochDay(year, month, day) * 86_400L
+                + hour * 3_600L + minute * 60L + second;
+        if (epochSecond < MIN_EPOCH_SECOND || epochSecond > MAX_EPOCH_SECOND) return NONE;
+        return epochSecond << LOW_BITS | low;
+    }
+
+    /**
+     * Appends a value as two decimal digits.
+     *
+     * @param text  the buffer to append to
+     * @param value the value (0-99)
+     */
+    private static void twoDigits(StringBuilder text, int value) {
+        text.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    /**
+     * Reads two decimal digits.
+     *
+     * @param buffer the characters holding the digits
+     * @param start  the first digit
+     * @return the value, or -1 if a character is not a digit
+     */
+    private static int twoDigits(char[] buffer, int start) {
+        char tens = buffer[start];
+        char ones = buffer[start + 1];
+        if (tens < '0' || tens > '9' || ones < '0' || ones > '9') return -1;
+        return (tens - '0') * 10 + (ones - '0');
+    }
+}
@@ -0,0 +1,387 @@
+package main;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Append-only write-ahead log of newly added, edited and deleted transactions.
+ * <p>
+ * Each committed transaction is enqueued as one line in the text ledger format; edits and deletions are
+ * logged as versioned records, the new version prefixed with {@value #UPDATE_PREFIX} and the ID of a deleted
+ * transaction with {@value #DELETE_PREFIX}, so the log stays append-only. A background writer thread
+ * drains everything enqueued so far in one write (group commit) and forces it to disk according to the
+ * {@link FsyncPolicy}. The log is periodically folded into the base ledger file by
+ * {@link FileManager#compact(TransactionManager)}: the log is first rotated to a {@code .compacting} file,
+ * so new commits keep going to a fresh log while the base file is rewritten.
+ * </p>
+ */
+public class TransactionLog implements Closeable {
+    /** Starts the record of an edited transaction, followed by its new version as a ledger line. */
+    static final String UPDATE_PREFIX = "UPDATE|";
+    /** Starts the record of a deleted transaction, followed by its ID. */
+    static final String DELETE_PREFIX = "DELETE|";
+
+    private final Path path;
+    private final Path compactingPath;
+    private final FsyncPolicy policy;
+    private final long syncIntervalMillis;
+    private final Thread writer;
+    private final Object io = new Object();
+
+    private FileChannel channel;
+    private StringBuilder pending = new StringBuilder();
+    private long enqueued;
+    private long written;
+    private long sinceRotation;
+    private long lastSync = System.nanoTime();
+    private boolean unsynced;
+    private IOException failure;
+    private boolean closed;
+    private BooleanSupplier compaction;
+    private long compactionThreshold = Long.MAX_VALUE;
+    private long nextCompaction = Long.MAX_VALUE;
+    private int failedCompactions;
+    private Thread compactor;
+
+    /**
+     * Opens (or creates) a log file for appending and starts its writer thread.
+     *
+     * @param fileName           the log file
+     * @param policy             when records are forced to disk
+     * @param syncIntervalMillis the longest time between forced writes under {@link FsyncPolicy#INTERVAL}
+     * @throws IOException if the file cannot be opened
+     */
+    public TransactionLog(String fileName, FsyncPolicy policy, long syncIntervalMillis) throws IOException {
+        this.path = Paths.get(fileName);
+        this.compactingPath = Paths.get(fileName + ".compacting");
+        this.policy = policy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.channel = openChannel(path);
+        this.writer = new Thread(this::writeLoop, "transaction-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Enqueues a transaction for writing. The caller must not let a compaction rotate the log between
+     * enqueuing a record and buffering its transaction; {@link TransactionManager} does both under a stripe lock.
+     *
+     * @param transaction the committed transaction
+     * @return the sequence number of the record, to pass to {@link #awaitDurable(long)}
+     * @throws UncheckedIOException if an earlier write failed or the log is closed
+     */
+    public synchronized long append(Transaction transaction) {
+        checkUsable();
+        appendTransaction(transaction);
+        return enqueued();
+    }
+
+    /**
+     * Enqueues the new version of an edited transaction. On replay it replaces the row with the same ID,
+     * or is added if there is none.
+     *
+     * @param transaction the new version, carrying the ID of the transaction it replaces
+     * @return the sequence number of the record, to pass to {@link #awaitDurable(long)}
+     * @throws UncheckedIOException if an earlier write failed or the log is closed
+     */
+    public synchronized long appendUpdate(Transaction transaction) {
+        checkUsable();
+        pending.append(UPDATE_PREFIX);
+        appendTransaction(transaction);
+        return enqueued();
+    }
+
+    /**
+     * Enqueues the deletion of a transaction. On replay the row with the ID is deleted if there is one.
+     *
+     * @param id the ID of the deleted transaction
+     * @return the sequence number of the record, to pass to {@link #awaitDurable(long)}
+     * @throws UncheckedIOException if an earlier write failed or the log is closed
+     */
+    public synchronized long appendDelete(long id) {
+        checkUsable();
+        TransactionId.appendTo(pending.append(DELETE_PREFIX), id).append('\n');
+        return enqueued();
+    }
+
+    /**
+     * Writes a transaction as one ledger line into the pending text.
+     *
+     * @param transaction the transaction to write
+     */
+    private void appendTransaction(Transaction transaction) {
+        FileManager.appendLine(pending, transaction.getIdValue(), transaction.getDate().toEpochSecond(ZoneOffset.UTC),
+                transaction.getAmountCents(), transaction.getType(), transaction.getCategory(),
+                transaction.getDescription());
+        pending.append('\n');
+    }
+
+    /**
+     * Counts a record that was just written into the pending text, wakes the writer and starts a compaction
+     * if the log has grown past the point set by {@link #setCompaction}. The caller must hold the monitor.
+     *
+     * @return the sequence number of the record
+     */
+    private long enqueued() {
+        sinceRotation++;
+        notifyAll();
+
+        if (sinceRotation >= nextCompaction && compaction != null && (compactor == null || !compactor.isAlive())) {
+            BooleanSupplier task = compaction;
+            compactor = new Thread(() -> runCompaction(task), "transaction-log-compactor");
+            compactor.setDaemon(true);
+            compactor.start();
+        }
+        return ++enqueued;
+    }
+
+    /**
+     * Sets up background compaction: once the current log holds the given number of records,
+     * the compaction task is started on its own thread (one at a time).
+     * <p>
+     * After a failed run the next one waits for another threshold's worth of records, doubling with each
+     * failure in a row up to 64 thresholds, so a compaction that keeps failing, e.g. on a full disk, is not
+     * retried (and reported) on every append. A successful run restores the plain threshold.
+     * </p>
+     *
+     * @param thresholdRecords the log size that triggers a compaction
+     * @param compaction       the task folding the log into the base file; returns {@code false} if it failed
+     */
+    public synchronized void setCompaction(long thresholdRecords, BooleanSupplier compaction) {
+        this.compactionThreshold = thresholdRecords;
+        this.nextCompaction = thresholdRecords;
+        this.failedCompactions = 0;
+        this.compaction = compaction;
+    }
+
+    /**
+     * Runs a compaction task on the compactor thread and sets when the next one may start.
+     *
+     * @param task the compaction task
+     */
+    private void runCompaction(BooleanSupplier task) {
+        boolean compacted = task.getAsBoolean();
+        synchronized (this) {
+            if (compacted) {
+                failedCompactions = 0;
+                nextCompaction = compactionThreshold;
+            } else {
+                int doublings = Math.min(failedCompactions++, 6);
+                long backoff = compactionThreshold > Long.MAX_VALUE >> doublings
+                        ? Long.MAX_VALUE : compactionThreshold << doublings;
+                nextCompaction = sinceRotation > Long.MAX_VALUE - backoff ? Long.MAX_VALUE : sinceRotation + backoff;
+            }
+        }
+    }
+
+    /**
+     * Waits for a running background compaction to finish.
+     */
+    public void awaitCompaction() {
+        Thread running;
+        synchronized (this) {
+            running = compactor;
+        }
+        if (running == null) return;
+
+        try {
+            running.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until a record is as durable as the policy requires: on disk for {@link FsyncPolicy#EVERY_COMMIT},
+     * not at all for the other policies.
+     *
+     * @param sequence a sequence number returned by {@link #append(Transaction)}
+     * @throws UncheckedIOException if writing the record failed
+     */
+    public synchronized void awaitDurable(long sequence) {
+        if (policy != FsyncPolicy.EVERY_COMMIT) return;
+
+        boolean interrupted = false;
+        while (written < sequence && failure == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (written < sequence) throw new UncheckedIOException(failure);
+    }
+
+    /**
+     * Returns the number of records appended since the log was opened or last rotated.
+     *
+     * @return the record count of the current log file
+     */
+    public synchronized long size() {
+        return sinceRotation;
+    }
+
+    /**
+     * Writes everything enqueued so far and forces it to disk.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        long target;
+        synchronized (this) {
+            target = enqueued;
+            while (written < target && failure == null) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while flushing the transaction log", e);
+                }
+            }
+            if (failure != null) throw failure;
+        }
+        synchronized (io) {
+            channel.force(false);
+            unsynced = false;
+        }
+    }
+
+    /**
+     * Flushes the log and moves it aside to the {@code .compacting} file, continuing in a fresh log.
+     * Must be called while no new transactions are being applied, so that the rows present now are exactly
+     * the ones covered by the base file and the moved-aside log.
+     *
+     * @throws IOException if flushing or moving fails, or a previous compaction is unfinished
+     */
+    void rotate() throws IOException {
+        flush();
+        synchronized (io) {
+            if (Files.exists(compactingPath)) {
+                throw new IOException("Previous compaction of " + path + " has not finished");
+            }
+            channel.close();
+            Files.move(path, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            channel = openChannel(path);
+        }
+        synchronized (this) {
+            sinceRotation = 0;
+        }
+    }
+
+    /**
+     * Deletes the moved-aside log once its records are part of the base file.
+     *
+     * @throws IOException if the file cannot be deleted
+     */
+    void finishCompaction() throws IOException {
+        Files.deleteIfExists(compactingPath);
+    }
+
+    /**
+     * Flushes outstanding records, stops the writer thread and closes the file.
+     *
+     * @throws IOException if the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        awaitCompaction();
+        try {
+            flush();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                notifyAll();
+            }
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized (io) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Body of the writer thread: repeatedly takes every pending record and writes them in one batch.
+     */
+    private void writeLoop() {
+        while (true) {
+            StringBuilder batch;
+            long batchEnd;
+            synchronized (this) {
+                while (pending.length() == 0 && !closed) {
+                    try {
+                        wait(policy == FsyncPolicy.INTERVAL ? syncIntervalMillis : 0);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (policy == FsyncPolicy.INTERVAL && pending.length() == 0) break;
+                }
+                if (closed && pending.length() == 0) return;
+
+                batch = pending;
+                batchEnd = enqueued;
+                pending = new StringBuilder(Math.max(16, batch.length()));
+            }
+
+            try {
+                synchronized (io) {
+                    ByteBuffer bytes = StandardCharsets.UTF_8.encode(batch.toString());
+                    while (bytes.hasRemaining()) {
+                        channel.write(bytes);
+                    }
+                    unsynced |= batch.length() > 0;
+                    if (unsynced && (policy == FsyncPolicy.EVERY_COMMIT
+                            || (policy == FsyncPolicy.INTERVAL && System.nanoTime() - lastSync >= syncIntervalMillis * 1_000_000))) {
+                        channel.force(false);
+                        lastSync = System.nanoTime();
+                        unsynced = false;
+                    }
+                }
+                synchronized (this) {
+                    written = batchEnd;
+                    notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    failure = e;
+                    notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Rejects appends after a write failure or after the log was closed.
+     */
+    private void checkUsable() {
+        if (failure != null) throw new UncheckedIOException("Transaction log is unusable", failure);
+        if (closed) throw new UncheckedIOException(new IOException("Transaction log is closed"));
+    }
+
+    /**
+     * Opens a file for appending, creating it if needed.
+     *
+     * @param file the file to open
+     * @return the open channel
+     * @throws IOException if the file cannot be opened
+     */
+    private static FileChannel openChannel(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+}
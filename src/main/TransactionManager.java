@@ -1,32 +1,897 @@
 package main;
 
+import Utils.IntList;
+import Utils.LongIntHashMap;
+
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
 
 /**
  * Manages a list of financial transactions and provides methods
  * for adding, retrieving, and analyzing them (e.g., filtering and calculating balance).
+ * <p>
+ * Rows are kept in a {@link TransactionStore}. By default a {@link ColumnarTransactionStore} is used;
+ * scans read the primitive columns directly and only the returned transactions are materialized.
+ * </p>
+ * <p>
+ * Balance and per-category totals are kept in {@link TransactionAggregates} and updated on every insert,
+ * so they are answered in constant time. {@link TransactionRollups} keep the same statistics per day, so
+ * daily, weekly, monthly and yearly reports cost time proportional to the number of days they cover.
+ * Amount percentiles and histograms per month, type and category come from mergeable {@link AmountHistogram}s
+ * ({@link #getAmountPercentiles}, {@link #getAmountHistogram}); they are built from the rows on first use and
+ * then kept up to date on every change.
+ * With {@link #setConsistencyChecks(boolean)} enabled, or the {@code pft.consistencyChecks} system property
+ * set to {@code true}, every insert additionally recomputes the totals from scratch and fails if they drift.
+ * </p>
+ * <p>
+ * A {@link SortedRowIndex} over the timestamp column answers date-range filters and date-range totals
+ * with a binary search instead of a full scan; a second one over the amount column does the same for amount
+ * ranges and answers largest/smallest-N queries ({@link #findLargest}, {@link #findSmallest}). A {@link KeywordIndex} over the description words answers
+ * keyword searches from its posting lists (see {@link KeywordMatchMode}), and an {@link EnumBitmapIndex}
+ * holds one bitmap per type and category. A hash map from {@link TransactionId} to row position answers
+ * ID lookups in constant time.
+ * </p>
+ * <p>
+ * Criteria can be combined in a {@link TransactionQuery}; the {@link QueryEngine} drives each query from its
+ * most selective index and checks the remaining criteria in one pass. The {@code filterBy...} methods are
+ * single-criterion shortcuts for such queries.
+ * </p>
+ * <p>
+ * Matching rows and summaries of recent queries are kept in a bounded {@link QueryCache}. A new transaction
+ * only invalidates the cached results of the queries it matches.
+ * </p>
+ * <p>
+ * Category {@link Budget}s are checked by a {@link BudgetTracker} against running expense totals per period as
+ * each transaction is published; thresholds that are reached are reported to the registered
+ * {@link BudgetListener}s. Bulk loads do not raise alerts.
+ * </p>
+ * <p>
+ * Transactions are edited and deleted by ID in constant time, without moving any row: a deleted row is marked
+ * in a tombstone bitmap and taken out of the totals, the rollups, the ID map and the type/category bitmaps,
+ * and an edit deletes the old version and appends the new one under the same ID. Both are logged as versioned
+ * records in the write-ahead log. The sorted and keyword indexes keep deleted rows, which queries skip, until
+ * a background compaction copies the live rows into a new store with fresh indexes and swaps it in once
+ * deleted rows make up a share of the rows set by the system properties {@code pft.reclaimPercent} (default
+ * 25) and {@code pft.reclaimMinRows} (default 1024). See {@link #reclaimDeletedRows()}.
+ * </p>
+ * <p>
+ * The manager is thread-safe. {@link #addTransaction(Transaction)} only appends to one of several striped
+ * buffers, chosen by the calling thread, so writers on different threads rarely contend. Buffered
+ * transactions are published in batches: the buffers are drained into the store and the indexes under the
+ * write lock of a {@link ReentrantReadWriteLock}. Every read first publishes what is buffered, so a thread
+ * always sees its own transactions, and then runs under the read lock on a consistent state. Writers
+ * never wait for readers, only for the short publish step when a buffer is full.
+ * </p>
  */
 public class TransactionManager {
-    private List<Transaction> transactions = new ArrayList<>();
+    /** A buffer holding this many transactions is published by the writer that filled it. */
+    private static final int STRIPE_CAPACITY = 1024;
+    /** The number of query results kept by the query cache. */
+    private static final int QUERY_CACHE_ENTRIES = 128;
+    /** The number of row positions the cached query results may hold in total (16 MB). */
+    private static final long QUERY_CACHE_ROWS = 4_000_000;
+    /** Rows copied per read lock acquisition while deleted rows are reclaimed. */
+    private static final int RECLAIM_CHUNK = 1 << 16;
+
+    private final TransactionAggregates aggregates = new TransactionAggregates();
+    /** The rows and their indexes; replaced as a whole when deleted rows are reclaimed. */
+    private Table table;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Held while row positions must stay valid across lock acquisitions: by file writers and reclaiming. */
+    private final ReentrantLock rowPositions = new ReentrantLock();
+    private final AtomicBoolean reclaiming = new AtomicBoolean();
+    private final int reclaimPercent = Integer.getInteger("pft.reclaimPercent", 25);
+    private final int reclaimMinRows = Integer.getInteger("pft.reclaimMinRows", 1024);
+    /** Rows deleted while a reclaim copies the rows, or {@code null} if no reclaim is running. */
+    private IntList deletedWhileReclaiming;
+    private final Stripe[] stripes;
+    /** The IDs of the buffered transactions, so a duplicate is rejected before it is logged. */
+    private final Set<Long> bufferedIds = ConcurrentHashMap.newKeySet();
+    /** Hands out the IDs of new transactions; guarded by itself, and used under the read or write lock. */
+    private final TransactionId.Allocator idAllocator = new TransactionId.Allocator();
+    private QueryCache queryCache = new QueryCache(QUERY_CACHE_ENTRIES, QUERY_CACHE_ROWS);
+    private final BudgetTracker budgetTracker = new BudgetTracker();
+    private TransactionRollups rollups;
+    /** Built from the live rows on first use, then updated on every change; {@code null} until then. */
+    private volatile AmountSketches amountSketches;
+    private final Object amountSketchesBuild = new Object();
+    private boolean bulkLoad;
+    private volatile KeywordMatchMode keywordMatchMode = KeywordMatchMode.TOKEN_PREFIX;
+    private volatile boolean consistencyChecks = Boolean.getBoolean("pft.consistencyChecks");
+    private volatile TransactionLog transactionLog;
+
+    /**
+     * An append buffer for the transactions of some writer threads.
+     */
+    private static final class Stripe {
+        private final ReentrantLock lock = new ReentrantLock();
+        private ArrayList<Transaction> buffer = new ArrayList<>();
+        private volatile int size;
+    }
+
+    /**
+     * The stored rows and the indexes over their positions.
+     * <p>
+     * Deleting a row marks it in {@link #deleted} and drops it from the ID map and the bitmaps; the sorted
+     * and keyword indexes keep it until the live rows are copied into a new table. Row positions are only
+     * meaningful for the table they were read from.
+     * </p>
+     */
+    private static final class Table {
+        final TransactionStore store;
+        final SortedRowIndex timeIndex;
+        final SortedRowIndex amountIndex;
+        final KeywordIndex keywordIndex = new KeywordIndex();
+        final EnumBitmapIndex bitmaps = new EnumBitmapIndex();
+        final LongIntHashMap rowsById = new LongIntHashMap();
+        final RowBitmap deleted = new RowBitmap();
+        final QueryEngine queryEngine;
+        int deletedCount;
+
+        /**
+         * Creates the indexes of a store; rows already in it are not indexed.
+         *
+         * @param store      the rows
+         * @param aggregates the running totals of the manager
+         */
+        Table(TransactionStore store, TransactionAggregates aggregates) {
+            this.store = store;
+            this.timeIndex = new SortedRowIndex(store::epochSecond);
+            this.amountIndex = new SortedRowIndex(store::amountCents);
+            this.queryEngine = new QueryEngine(store, aggregates, timeIndex, amountIndex, keywordIndex, bitmaps, deleted);
+        }
+
+        /**
+         * Indexes a row that was just appended to the store.
+         * If an older row already has the same ID, lookups keep returning the older row.
+         *
+         * @param row the position of the new row
+         */
+        void add(int row) {
+            rowsById.putIfAbsent(store.id(row), row);
+            timeIndex.add(row);
+            amountIndex.add(row);
+            keywordIndex.add(row, store.descriptionCode(row), store.description(row));
+            bitmaps.add(row, store.type(row), store.category(row));
+        }
+
+        /**
+         * Appends a row of another store and indexes it.
+         *
+         * @param from the store holding the row
+         * @param row  the position of the row in that store
+         * @return the position of the copy
+         */
+        int copy(TransactionStore from, int row) {
+            int copy = store.appendRow(from.id(row), from.epochSecond(row), from.amountCents(row), from.type(row),
+                    from.category(row), from.description(row));
+            add(copy);
+            return copy;
+        }
+
+        /**
+         * Marks a row deleted and drops it from the ID map and the bitmaps.
+         *
+         * @param row the position of a live row
+         */
+        void delete(int row) {
+            long id = store.id(row);
+            if (rowsById.get(id, -1) == row) {
+                rowsById.remove(id);
+            }
+            deleted.set(row);
+            bitmaps.remove(row, store.type(row), store.category(row));
+            deletedCount++;
+        }
+
+        /**
+         * Returns the number of rows that are not deleted.
+         *
+         * @return the live row count
+         */
+        int liveSize() {
+            return store.size() - deletedCount;
+        }
+
+        /**
+         * Starts or ends a bulk load of the sorted indexes.
+         *
+         * @param bulkLoad {@code true} to start a bulk load, {@code false} to end it
+         */
+        void setBulkLoad(boolean bulkLoad) {
+            timeIndex.setBulkLoad(bulkLoad);
+            amountIndex.setBulkLoad(bulkLoad);
+        }
+    }
+
+    /**
+     * Row positions together with the store they refer to. Reclaiming deleted rows moves the live rows to a
+     * new store; the old one keeps its rows unchanged, so a selection can still be read after that.
+     */
+    static final class Selection {
+        final TransactionStore store;
+        final int[] rows;
+
+        /**
+         * Creates a selection.
+         *
+         * @param store the store the positions refer to
+         * @param rows  the selected row positions
+         */
+        Selection(TransactionStore store, int[] rows) {
+            this.store = store;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Creates a manager backed by a {@link ColumnarTransactionStore}.
+     */
+    public TransactionManager() {
+        this(new ColumnarTransactionStore());
+    }
+
+    /**
+     * Creates a manager backed by the given storage engine.
+     *
+     * @param store The store that will hold the transactions.
+     */
+    public TransactionManager(TransactionStore store) {
+        this(store, null);
+    }
+
+    /**
+     * Creates a manager backed by the given storage engine, reusing rollups saved for its rows.
+     *
+     * @param store   The store that will hold the transactions.
+     * @param saved The rollups of the rows already in the store, or {@code null} to compute them.
+     *              They are ignored if their row count does not match the store.
+     */
+    TransactionManager(TransactionStore store, TransactionRollups saved) {
+        this.table = new Table(store, aggregates);
+        this.stripes = new Stripe[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) * 2];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        bulkLoad = true;
+        table.setBulkLoad(true);
+        for (int row = 0; row < store.size(); row++) {
+            indexRow(row);
+        }
+        endBulkLoad(saved);
+    }
 
     /**
-     * Adds a transaction to the internal transaction list.
+     * Adds a transaction.
+     * <p>
+     * The transaction is buffered and becomes visible to other threads with the next publish, at the latest
+     * when any thread reads from the manager. When a {@link TransactionLog} is attached, the transaction is
+     * first enqueued in the log; the call returns once the log's {@link FsyncPolicy} is satisfied.
+     * </p>
+     * <p>
+     * A new transaction gets its ID here, before anything is logged: the lowest free one of its second (see
+     * {@link TransactionId.Allocator}). A transaction that already has an ID keeps it, unless the ID is
+     * already present, buffered or published; then it is rejected. Budget alerts for the transaction are
+     * raised when it is published.
+     * </p>
      *
      * @param transaction The transaction to be added.
+     * @throws IllegalArgumentException if a transaction with the same ID was already added and not deleted.
      */
     public void addTransaction(Transaction transaction) {
-        transactions.add(transaction);
+        long id = transaction.getIdValue();
+        // The ID stays in bufferedIds until its row is indexed, so no other add can slip in between
+        Lock read = lock.readLock();
+        if (id == TransactionId.NONE) {
+            long epochSecond = transaction.getDate().toEpochSecond(ZoneOffset.UTC);
+            read.lock();
+            try {
+                synchronized (idAllocator) {
+                    id = idAllocator.next(epochSecond, this::isTaken);
+                    bufferedIds.add(id);
+                }
+            } finally {
+                read.unlock();
+            }
+            if (!transaction.assignId(id)) {
+                bufferedIds.remove(id);
+                throw new IllegalArgumentException("Transaction already added: " + transaction.getId());
+            }
+        } else {
+            if (!bufferedIds.add(id)) {
+                throw new IllegalArgumentException("Transaction ID already present: " + transaction.getId());
+            }
+            boolean present;
+            read.lock();
+            try {
+                present = table.rowsById.containsKey(id);
+            } finally {
+                read.unlock();
+            }
+            if (present) {
+                bufferedIds.remove(id);
+                throw new IllegalArgumentException("Transaction ID already present: " + transaction.getId());
+            }
+        }
+
+        Stripe stripe = stripes[(int) Thread.currentThread().getId() & (stripes.length - 1)];
+        TransactionLog log;
+        long sequence = 0;
+        int buffered;
+        stripe.lock.lock();
+        try {
+            log = transactionLog;
+            if (log != null) {
+                sequence = log.append(transaction);
+            }
+            stripe.buffer.add(transaction);
+            buffered = ++stripe.size;
+        } catch (RuntimeException e) {
+            bufferedIds.remove(id);
+            throw e;
+        } finally {
+            stripe.lock.unlock();
+        }
+
+        if (buffered >= STRIPE_CAPACITY) {
+            publish();
+        }
+        if (log != null) {
+            log.awaitDurable(sequence);
+        }
+    }
+
+    /**
+     * Publishes every buffered transaction, so all threads see it.
+     * Reads do this on their own; calling it explicitly is only needed to bound how long transactions
+     * stay buffered when nothing is read.
+     */
+    public void publish() {
+        lock.writeLock().lock();
+        try {
+            drainStripes();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        budgetTracker.deliverAlerts();
+    }
+
+    /**
+     * Attaches the write-ahead log that records every transaction added from now on.
+     * Rows added through the bulk load paths are not logged.
+     *
+     * @param log The log to append to, or {@code null} to stop logging.
+     */
+    public void setTransactionLog(TransactionLog log) {
+        lock.writeLock().lock();
+        lockStripes();
+        try {
+            drainStripes();
+            this.transactionLog = log;
+        } finally {
+            unlockStripes();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the attached write-ahead log.
+     *
+     * @return The log, or {@code null} if none is attached.
+     */
+    public TransactionLog getTransactionLog() {
+        return transactionLog;
+    }
+
+    /**
+     * Publishes every buffered transaction and rotates the write-ahead log in one step, for compaction.
+     * No writer can log a transaction in between, so the rotated log holds exactly the logged changes
+     * to the returned rows. The caller must hold {@link #lockRowPositions()} until it has read them.
+     *
+     * @return The number of row positions present when the log was rotated, deleted rows included.
+     * @throws IOException if rotating the log fails.
+     */
+    int rotateTransactionLog() throws IOException {
+        lock.writeLock().lock();
+        lockStripes();
+        try {
+            drainStripes();
+            TransactionLog log = transactionLog;
+            if (log != null) {
+                log.rotate();
+            }
+            return table.store.size();
+        } finally {
+            unlockStripes();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds several transactions at once, e.g. the ones loaded from file on startup.
+     * They are published right away and are not logged. New transactions get their ID here; a transaction
+     * whose ID is already present is stored under a new ID, like the rows of {@link #addRows}.
+     *
+     * @param transactions The transactions to be added, in order.
+     */
+    public void addTransactions(Collection<Transaction> transactions) {
+        lock.writeLock().lock();
+        try {
+            drainStripes();
+            for (Transaction t : transactions) {
+                long epochSecond = t.getDate().toEpochSecond(ZoneOffset.UTC);
+                if (t.getIdValue() == TransactionId.NONE) {
+                    t.assignId(newId(epochSecond));
+                }
+                if (!isTaken(t.getIdValue())) {
+                    indexRow(table.store.append(t));
+                } else {
+                    indexRow(table.store.appendRow(newId(epochSecond), epochSecond, t.getAmountCents(), t.getType(),
+                            t.getCategory(), t.getDescription()));
+                }
+            }
+            table.timeIndex.mergePending();
+            table.amountIndex.mergePending();
+            if (consistencyChecks) {
+                verifyAggregates();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        budgetTracker.deliverAlerts();
+    }
+
+    /**
+     * Appends a row given as raw column values, as produced by the file loaders.
+     * The row is published right away and is not logged. A row whose ID is already present is stored under a
+     * new ID, like the rows of {@link #addRows}.
+     *
+     * @param id          The transaction ID, or {@link TransactionId#NONE} to give the row a new one.
+     * @param epochSecond The timestamp as seconds since the epoch.
+     * @param amountCents The amount in cents.
+     * @param type        The transaction type.
+     * @param category    The transaction category.
+     * @param description The description text.
+     */
+    void addRow(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description) {
+        lock.writeLock().lock();
+        try {
+            indexRow(table.store.appendRow(uniqueId(id, epochSecond), epochSecond, amountCents, type, category, description));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        budgetTracker.deliverAlerts();
+    }
+
+    /**
+     * Appends a batch of rows, as produced by the parallel loader and the statement importer,
+     * taking the write lock once for the whole batch. The rows are published right away and are not logged.
+     * A row without an ID gets a new one, and so does a row whose ID is already present, published or
+     * buffered, so every row can be reached by its ID. The row that had the ID first keeps it, so edits and
+     * deletions logged under that ID still apply to it. {@link #addRow} and {@link #addTransactions} treat
+     * duplicates the same way, so a ledger loads the same on one thread as on several.
+     *
+     * @param rows The rows to be added, in order.
+     * @return The number of rows whose ID was replaced because it was taken.
+     */
+    int addRows(TransactionStore rows) {
+        int reassigned = 0;
+        lock.writeLock().lock();
+        try {
+            for (int row = 0; row < rows.size(); row++) {
+                long id = uniqueId(rows.id(row), rows.epochSecond(row));
+                if (id != rows.id(row) && rows.id(row) != TransactionId.NONE) reassigned++;
+                indexRow(table.store.appendRow(id, rows.epochSecond(row), rows.amountCents(row),
+                        rows.type(row), rows.category(row), rows.description(row)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        budgetTracker.deliverAlerts();
+        return reassigned;
+    }
+
+    /**
+     * Replaces a transaction with a new version that has the same ID, e.g. to correct its amount or category.
+     * The old row is deleted and the new version appended; totals, rollups, budgets and indexes are updated,
+     * and a budget threshold the new version reaches raises an alert. When a {@link TransactionLog} is
+     * attached, the new version is logged first.
+     *
+     * @param transaction The new version; its ID selects the transaction to replace.
+     * @return {@code false} if no transaction has that ID.
+     */
+    public boolean updateTransaction(Transaction transaction) {
+        return change(transaction.getIdValue(), transaction);
+    }
+
+    /**
+     * Deletes a transaction by its ID.
+     *
+     * @param id The ID in the TX-yyyyMMdd-HHmmss-N format.
+     * @return {@code false} if no transaction has that ID.
+     */
+    public boolean deleteTransaction(String id) {
+        long value = TransactionId.parse(id);
+        return value != TransactionId.NONE && deleteTransaction(value);
+    }
+
+    /**
+     * Deletes a transaction by its compact ID. The row is marked deleted and taken out of the totals,
+     * rollups, budgets and lookups; its memory is reclaimed later (see {@link #reclaimDeletedRows()}).
+     * When a {@link TransactionLog} is attached, the deletion is logged first.
+     *
+     * @param id The 64-bit ID (see {@link TransactionId}).
+     * @return {@code false} if no transaction has that ID.
+     */
+    public boolean deleteTransaction(long id) {
+        return change(id, null);
+    }
+
+    /**
+     * Applies an edit read back from the write-ahead log: the row with the ID is replaced by the given values,
+     * unless it already holds them, or the values are added as a new row if there is none. Not logged.
+     *
+     * @param id          The transaction ID.
+     * @param epochSecond The timestamp as seconds since the epoch.
+     * @param amountCents The amount in cents.
+     * @param type        The transaction type.
+     * @param category    The transaction category.
+     * @param description The description text.
+     */
+    void replaceRow(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description) {
+        boolean reclaim;
+        lock.writeLock().lock();
+        try {
+            drainStripes();
+            TransactionStore store = table.store;
+            int row = table.rowsById.get(id, -1);
+            if (row >= 0) {
+                if (store.epochSecond(row) == epochSecond && store.amountCents(row) == amountCents && store.type(row) == type
+                        && store.category(row) == category && store.description(row).equals(description)) {
+                    return;
+                }
+                deleteRow(row);
+            }
+            indexRow(store.appendRow(id, epochSecond, amountCents, type, category, description));
+            reclaim = shouldReclaim();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        budgetTracker.deliverAlerts();
+        if (reclaim) startReclaim();
+    }
+
+    /**
+     * Copies the live rows into a new store with freshly built indexes and swaps it in, reclaiming the memory
+     * and index entries of deleted rows. This runs on its own in the background once enough rows are deleted;
+     * calling it directly is only needed to compact right away.
+     * <p>
+     * The rows are copied while holding the read lock for one chunk of rows at a time, so reads and writes go
+     * on meanwhile. Rows deleted or added during the copy are applied to the new store under the write lock
+     * just before the swap. Readers that fixed their rows before the swap, such as pagers, keep reading the old
+     * store. Only a {@link ColumnarTransactionStore} is compacted: the rows of a {@link MappedTransactionStore}
+     * live in its file, whose deleted rows are dropped when the ledger is next saved or compacted.
+     * </p>
+     *
+     * @return The number of rows reclaimed.
+     */
+    public int reclaimDeletedRows() {
+        rowPositions.lock();
+        try {
+            Table old;
+            int copied;
+            lock.writeLock().lock();
+            try {
+                drainStripes();
+                old = table;
+                if (old.deletedCount == 0 || bulkLoad || !(old.store instanceof ColumnarTransactionStore)) return 0;
+                copied = old.store.size();
+                deletedWhileReclaiming = new IntList();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Table compacted = new Table(new ColumnarTransactionStore(), aggregates);
+            compacted.setBulkLoad(true);
+            int[] moved = new int[copied];
+            for (int start = 0; start < copied; start += RECLAIM_CHUNK) {
+                Lock read = lock.readLock();
+                read.lock();
+                try {
+                    for (int row = start; row < Math.min(copied, start + RECLAIM_CHUNK); row++) {
+                        moved[row] = old.deleted.get(row) ? -1 : compacted.copy(old.store, row);
+                    }
+                } finally {
+                    read.unlock();
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                drainStripes();
+                // Deletions first, so the new version of an edited row takes over its ID when it is copied
+                IntList deleted = deletedWhileReclaiming;
+                for (int i = 0; i < deleted.size(); i++) {
+                    int row = deleted.get(i);
+                    if (row < copied && moved[row] >= 0) compacted.delete(moved[row]);
+                }
+                for (int row = copied; row < old.store.size(); row++) {
+                    if (!old.deleted.get(row)) compacted.copy(old.store, row);
+                }
+                compacted.setBulkLoad(bulkLoad);
+                table = compacted;
+                deletedWhileReclaiming = null;
+                queryCache.clear();
+                return old.store.size() - compacted.store.size();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            rowPositions.unlock();
+        }
+    }
+
+    /**
+     * Gets the number of deleted rows that have not been reclaimed yet.
+     *
+     * @return The deleted row count.
+     */
+    public int getDeletedCount() {
+        Lock read = lockForRead();
+        try {
+            return table.deletedCount;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Deletes or replaces the row of an ID and logs the change.
+     *
+     * @param id          The ID of the transaction.
+     * @param replacement The new version, or {@code null} to delete.
+     * @return {@code false} if no transaction has the ID.
+     */
+    private boolean change(long id, Transaction replacement) {
+        TransactionLog log;
+        long sequence = 0;
+        boolean reclaim;
+        lock.writeLock().lock();
+        try {
+            drainStripes();
+            int row = table.rowsById.get(id, -1);
+            if (row < 0) return false;
+
+            log = transactionLog;
+            if (log != null) {
+                sequence = replacement == null ? log.appendDelete(id) : log.appendUpdate(replacement);
+            }
+            deleteRow(row);
+            if (replacement != null) {
+                indexRow(table.store.append(replacement));
+            }
+            if (consistencyChecks) {
+                verifyAggregates();
+            }
+            reclaim = shouldReclaim();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        budgetTracker.deliverAlerts();
+        if (log != null) {
+            log.awaitDurable(sequence);
+        }
+        if (reclaim) startReclaim();
+        return true;
+    }
+
+    /**
+     * Checks whether enough rows are deleted to reclaim them. The caller must hold the write lock.
+     *
+     * @return {@code true} if the deleted rows reach both thresholds and the store can be compacted.
+     */
+    private boolean shouldReclaim() {
+        Table current = table;
+        return current.deletedCount >= reclaimMinRows
+                && current.deletedCount * 100L >= (long) current.store.size() * reclaimPercent
+                && current.store instanceof ColumnarTransactionStore;
+    }
+
+    /**
+     * Starts {@link #reclaimDeletedRows()} on a background thread, unless one is already running.
+     */
+    private void startReclaim() {
+        if (!reclaiming.compareAndSet(false, true)) return;
+
+        Thread reclaimer = new Thread(() -> {
+            try {
+                reclaimDeletedRows();
+            } finally {
+                reclaiming.set(false);
+            }
+        }, "deleted-row-reclaimer");
+        reclaimer.setDaemon(true);
+        reclaimer.start();
+    }
+
+    /**
+     * Starts a bulk load: rows added until {@link #endBulkLoad(TransactionRollups)} do not update the rollups,
+     * which are rebuilt or replaced once at the end, and the sorted indexes merge out-of-order rows only then.
+     */
+    void beginBulkLoad() {
+        lock.writeLock().lock();
+        try {
+            drainStripes();
+            queryCache.clear();
+            // Rebuilt on first use after the load instead of row by row
+            amountSketches = null;
+            bulkLoad = true;
+            table.setBulkLoad(true);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ends a bulk load. The saved rollups are used if they cover exactly the live rows now in the store;
+     * otherwise the rollups are recomputed in one pass over the store.
+     *
+     * @param saved The rollups saved with the loaded ledger, or {@code null} if there are none.
+     */
+    void endBulkLoad(TransactionRollups saved) {
+        lock.writeLock().lock();
+        try {
+            Table current = table;
+            rollups = saved != null && saved.getRowCount() == current.liveSize() ? saved
+                    : TransactionRollups.recompute(current.store, current.deleted);
+            budgetTracker.rebuild(rollups);
+            current.setBulkLoad(false);
+            bulkLoad = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of recorded transactions. Deleted transactions are not counted.
+     *
+     * @return The transaction count.
+     */
+    public int size() {
+        Lock read = lockForRead();
+        try {
+            return table.liveSize();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Looks up a transaction by its ID.
+     *
+     * @param id The ID in the TX-yyyyMMdd-HHmmss-N format.
+     * @return The transaction, or {@code null} if no transaction has that ID.
+     */
+    public Transaction getTransaction(String id) {
+        long value = TransactionId.parse(id);
+        return value == TransactionId.NONE ? null : getTransaction(value);
+    }
+
+    /**
+     * Looks up a transaction by its compact ID.
+     *
+     * @param id The 64-bit ID (see {@link TransactionId}).
+     * @return The transaction, or {@code null} if no transaction has that ID.
+     */
+    public Transaction getTransaction(long id) {
+        Lock read = lockForRead();
+        try {
+            int row = table.rowsById.get(id, -1);
+            return row < 0 ? null : table.store.get(row);
+        } finally {
+            read.unlock();
+        }
     }
 
     /**
-     * Returns the list of all recorded transactions.
+     * Returns the row position of an ID among the published live rows.
      *
-     * @return A list of transactions.
+     * @param id The 64-bit ID.
+     * @return The row, or -1 if no live row has that ID.
+     */
+    int rowOf(long id) {
+        Lock read = lock.readLock();
+        read.lock();
+        try {
+            return table.rowsById.get(id, -1);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the storage engine holding the rows, for the file writers. It may hold deleted rows
+     * (see {@link #isDeleted(int)}). Rows must only be read while holding the lock returned by
+     * {@link #lockForRead()}, and the store is only kept while {@link #lockRowPositions()} is held.
+     *
+     * @return The underlying store.
+     */
+    TransactionStore getStore() {
+        return table.store;
+    }
+
+    /**
+     * Checks whether a row of the store returned by {@link #getStore()} was deleted.
+     * The caller must hold the lock returned by {@link #lockForRead()}.
+     *
+     * @param row The row position.
+     * @return {@code true} if the row was deleted or replaced by a newer version.
+     */
+    boolean isDeleted(int row) {
+        return table.deleted.get(row);
+    }
+
+    /**
+     * Keeps the current rows in place, e.g. while a file writer reads them one chunk at a time:
+     * deleted rows are not reclaimed until the returned lock is released.
+     *
+     * @return The held lock; the caller must unlock it.
+     */
+    Lock lockRowPositions() {
+        rowPositions.lock();
+        return rowPositions;
+    }
+
+    /**
+     * Returns the rows whose timestamp lies in a range, for the statement importer.
+     * The caller must hold the lock returned by {@link #lockForRead()}.
+     *
+     * @param fromSecond The earliest timestamp in epoch seconds (inclusive).
+     * @param toSecond   The latest timestamp in epoch seconds (inclusive).
+     * @return The matching live row positions in the store.
+     */
+    int[] rowsBetween(long fromSecond, long toSecond) {
+        Table current = table;
+        int[] rows = current.timeIndex.rowsBetween(fromSecond, toSecond);
+        return current.deletedCount == 0 ? rows : Arrays.stream(rows).filter(row -> !current.deleted.get(row)).toArray();
+    }
+
+    /**
+     * Returns a snapshot of all recorded transactions.
+     * Transactions added later do not show up in the returned list.
+     *
+     * @return A read-only list of transactions.
      */
     public List<Transaction> getAllTransactions() {
-        return transactions;
+        Lock read = lockForRead();
+        try {
+            Table current = table;
+            List<Transaction> all = new ArrayList<>(current.liveSize());
+            for (int row = 0; row < current.store.size(); row++) {
+                if (!current.deleted.get(row)) all.add(current.store.get(row));
+            }
+
+            return Collections.unmodifiableList(all);
+        } finally {
+            read.unlock();
+        }
     }
 
     /**
@@ -35,16 +900,419 @@ public class TransactionManager {
      * @return The calculated balance.
      */
     public double getBalance() {
-        double balance = 0;
-        for(Transaction t: transactions) {
-            if(t.getType() == TransactionType.INCOME) {
-                balance += t.getAmount();
-            } else {
-                balance -= t.getAmount();
+        return Money.toDouble(getBalanceCents());
+    }
+
+    /**
+     * Gets the exact current balance in cents.
+     *
+     * @return The balance in cents.
+     */
+    public long getBalanceCents() {
+        Lock read = lockForRead();
+        try {
+            return aggregates.getBalanceCents();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Gets the total amount of all transactions of one type.
+     *
+     * @param type The transaction type (INCOME or EXPENSE).
+     * @return The total amount.
+     */
+    public double getTotal(TransactionType type) {
+        return Money.toDouble(getTotalCents(type));
+    }
+
+    /**
+     * Gets the exact total amount of all transactions of one type in cents.
+     *
+     * @param type The transaction type (INCOME or EXPENSE).
+     * @return The total in cents.
+     */
+    public long getTotalCents(TransactionType type) {
+        Lock read = lockForRead();
+        try {
+            return aggregates.getTotalCents(type);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Gets the transaction count and income/expense totals of one category.
+     *
+     * @param category The category to summarize.
+     * @return The category summary.
+     */
+    public TransactionSummary getCategorySummary(Category category) {
+        Lock read = lockForRead();
+        try {
+            return aggregates.getSummary(category);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Counts the transactions of one category from its bitmap, without reading any row.
+     *
+     * @param category The category to count.
+     * @return The number of transactions in that category.
+     */
+    public int getCategoryCount(Category category) {
+        Lock read = lockForRead();
+        try {
+            return table.bitmaps.count(category);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Gets the transaction count and income/expense totals of every category.
+     *
+     * @return A map from each category to its summary.
+     */
+    public Map<Category, TransactionSummary> getCategorySummaries() {
+        Lock read = lockForRead();
+        try {
+            return aggregates.getSummaries();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the count, sum, smallest and largest amount of every non-empty (bucket, category, type)
+     * combination in a date range, answered from the rollups.
+     *
+     * @param period The bucket length.
+     * @param from   The first day of the range (inclusive).
+     * @param to     The last day of the range (inclusive).
+     * @return The rollups, ordered by bucket, then category, then type.
+     */
+    public List<Rollup> getRollups(RollupPeriod period, LocalDate from, LocalDate to) {
+        Lock read = lockForRead();
+        try {
+            return rollups.report(period, from, to);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the count and income/expense totals of every non-empty bucket in a date range,
+     * answered from the rollups.
+     *
+     * @param period The bucket length.
+     * @param from   The first day of the range (inclusive).
+     * @param to     The last day of the range (inclusive).
+     * @return A map from the first day of each bucket to its summary, in date order.
+     */
+    public Map<LocalDate, TransactionSummary> getPeriodSummaries(RollupPeriod period, LocalDate from, LocalDate to) {
+        Lock read = lockForRead();
+        try {
+            return rollups.summarize(period, from, to);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the median, 90th and 99th percentile amount of every non-empty (bucket, category, type)
+     * combination in a date range, answered by merging monthly {@link AmountHistogram}s. The percentiles are
+     * within {@link AmountHistogram#RELATIVE_ERROR} of the exact ones. Months that the range covers only in
+     * part are included in full.
+     *
+     * @param period The bucket length; {@link RollupPeriod#MONTH} or {@link RollupPeriod#YEAR}.
+     * @param from   The first day of the range (inclusive).
+     * @param to     The last day of the range (inclusive).
+     * @return The percentiles, ordered by bucket, then category, then type.
+     * @throws IllegalArgumentException if the period is shorter than a month.
+     */
+    public List<AmountPercentiles> getAmountPercentiles(RollupPeriod period, LocalDate from, LocalDate to) {
+        Lock read = lockForRead();
+        try {
+            return amountSketches().percentiles(period, from, to);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the distribution of the amounts of a type and category over the months that overlap a date range,
+     * merged from the monthly histograms without reading any transaction, e.g. the median grocery expense of
+     * a year: <pre>getAmountHistogram(EXPENSE, FOOD, from, to).getValueAtQuantile(0.5)</pre>
+     *
+     * @param type     The transaction type, or {@code null} for both types.
+     * @param category The category, or {@code null} for every category.
+     * @param from     The first day of the range (inclusive).
+     * @param to       The last day of the range (inclusive).
+     * @return A new histogram that the caller may change or merge further.
+     */
+    public AmountHistogram getAmountHistogram(TransactionType type, Category category, LocalDate from, LocalDate to) {
+        Lock read = lockForRead();
+        try {
+            return amountSketches().histogram(type, category, from, to);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Adds a budget. Its totals are taken from the rollups, so existing expenses count towards it, but only
+     * expenses added from now on raise alerts.
+     *
+     * @param budget The budget to check.
+     * @return {@code false} if an equal budget is already present.
+     */
+    public boolean addBudget(Budget budget) {
+        lock.writeLock().lock();
+        try {
+            drainStripes();
+            return budgetTracker.add(budget, rollups);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a budget.
+     *
+     * @param budget The budget to stop checking.
+     * @return {@code false} if the budget was not present.
+     */
+    public boolean removeBudget(Budget budget) {
+        lock.writeLock().lock();
+        try {
+            drainStripes();
+            return budgetTracker.remove(budget);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the budgets in the order they were added.
+     *
+     * @return A list of budgets.
+     */
+    public List<Budget> getBudgets() {
+        Lock read = lockForRead();
+        try {
+            return budgetTracker.budgets();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Gets how much was spent against a budget in the period that contains a day,
+     * e.g. this month for a monthly budget. Answered from the running totals.
+     *
+     * @param budget A budget added with {@link #addBudget(Budget)}.
+     * @param day    A day of the period.
+     * @return The category's expense total for the period, in cents.
+     * @throws IllegalArgumentException if the budget was not added.
+     */
+    public long getBudgetSpentCents(Budget budget, LocalDate day) {
+        Lock read = lockForRead();
+        try {
+            return budgetTracker.spentCents(budget, day);
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Registers a listener for the alerts of all budgets. Alerts are delivered once the expense that
+     * reaches a threshold is published, outside the manager's locks.
+     *
+     * @param listener The listener to notify.
+     */
+    public void addBudgetListener(BudgetListener listener) {
+        budgetTracker.addListener(listener);
+    }
+
+    /**
+     * Unregisters a budget listener.
+     *
+     * @param listener The listener to remove.
+     */
+    public void removeBudgetListener(BudgetListener listener) {
+        budgetTracker.removeListener(listener);
+    }
+
+    /**
+     * Enables or disables consistency check mode. When enabled, every publish recomputes the
+     * running totals from scratch and compares them, which makes inserts O(n); intended for tests.
+     * New managers start with the mode given by the {@code pft.consistencyChecks} system property.
+     *
+     * @param enabled {@code true} to verify the totals after every insert.
+     */
+    public void setConsistencyChecks(boolean enabled) {
+        this.consistencyChecks = enabled;
+    }
+
+    /**
+     * Enables or disables the query result cache. Either way the cache starts out empty with reset counters.
+     *
+     * @param enabled {@code true} to cache query results, {@code false} to run every query.
+     */
+    public void setQueryCacheEnabled(boolean enabled) {
+        lock.writeLock().lock();
+        try {
+            queryCache = new QueryCache(enabled ? QUERY_CACHE_ENTRIES : 0, QUERY_CACHE_ROWS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the hit, miss, eviction and invalidation counters of the query result cache.
+     *
+     * @return A snapshot of the cache counters.
+     */
+    public QueryCacheStats getQueryCacheStats() {
+        Lock read = lockForRead();
+        try {
+            return queryCache.stats();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Recomputes the running totals, rollups and amount sketches from the stored rows and compares them with the
+     * maintained ones.
+     *
+     * @throws IllegalStateException if the maintained totals, rollups or sketches differ from the recomputed ones.
+     */
+    public void verifyAggregates() {
+        Lock read = lock.isWriteLockedByCurrentThread() ? null : lockForRead();
+        try {
+            Table current = table;
+            String mismatch = aggregates.findMismatch(TransactionAggregates.recompute(current.store, current.deleted));
+            if (mismatch != null) {
+                throw new IllegalStateException("Aggregates out of sync: " + mismatch);
+            }
+            mismatch = bulkLoad ? null : rollups.findMismatch(TransactionRollups.recompute(current.store, current.deleted));
+            if (mismatch != null) {
+                throw new IllegalStateException("Rollups out of sync: " + mismatch);
             }
+            AmountSketches sketches = amountSketches;
+            mismatch = bulkLoad || sketches == null ? null
+                    : sketches.findMismatch(AmountSketches.recompute(current.store, current.deleted));
+            if (mismatch != null) {
+                throw new IllegalStateException("Amount sketches out of sync: " + mismatch);
+            }
+        } finally {
+            if (read != null) read.unlock();
         }
+    }
+
+    /**
+     * Returns the transactions matching every criterion of a query, in insertion order.
+     *
+     * @param query The criteria to match.
+     * @return A list of matching transactions.
+     */
+    public List<Transaction> find(TransactionQuery query) {
+        return collect(query);
+    }
 
-        return balance;
+    /**
+     * Returns a pager over the transactions matching a query, in insertion order, for display.
+     * The matching rows are fixed when this method is called.
+     *
+     * @param query    The criteria to match.
+     * @param pageSize The number of transactions per page.
+     * @return A pager positioned on the first page.
+     * @throws IllegalArgumentException if the page size is not positive.
+     */
+    public TransactionPager page(TransactionQuery query, int pageSize) {
+        Selection selection = matchingRows(query);
+        return new TransactionPager(this, selection.store, selection.rows, pageSize);
+    }
+
+    /**
+     * Returns the positions of the rows matching a query, in insertion order, for the renderers.
+     * Rows must only be read while holding the lock returned by {@link #lockForRead()}.
+     *
+     * @param query The criteria to match.
+     * @return The matching row positions and the store they refer to.
+     */
+    Selection matchingRows(TransactionQuery query) {
+        Lock read = lockForRead();
+        try {
+            return new Selection(table.store, cachedRows(query));
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the transactions matching a query as a lazily evaluated stream, in insertion order.
+     * The matching rows are fixed when this method is called; transactions are only created as the
+     * stream is consumed.
+     *
+     * @param query The criteria to match.
+     * @return A stream of matching transactions.
+     */
+    public Stream<Transaction> stream(TransactionQuery query) {
+        int[] rows;
+        TransactionStore store;
+        Lock read = lockForRead();
+        try {
+            rows = cachedRows(query);
+            store = table.store;
+        } finally {
+            read.unlock();
+        }
+
+        return Arrays.stream(rows).mapToObj(row -> {
+            Lock rowRead = lock.readLock();
+            rowRead.lock();
+            try {
+                return store.get(row);
+            } finally {
+                rowRead.unlock();
+            }
+        });
+    }
+
+    /**
+     * Counts the transactions matching a query without creating them.
+     *
+     * @param query The criteria to match.
+     * @return The number of matching transactions.
+     */
+    public long count(TransactionQuery query) {
+        Lock read = lockForRead();
+        try {
+            return QueryEngine.isEnumOnly(query) ? table.queryEngine.count(query, keywordMatchMode) : cachedSummary(query).getCount();
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Counts and totals the transactions matching a query without creating them.
+     *
+     * @param query The criteria to match.
+     * @return The count and income/expense totals of the matches.
+     */
+    public TransactionSummary summarize(TransactionQuery query) {
+        Lock read = lockForRead();
+        try {
+            return QueryEngine.isEnumOnly(query) ? table.queryEngine.summarize(query, keywordMatchMode) : cachedSummary(query);
+        } finally {
+            read.unlock();
+        }
     }
 
     /**
@@ -54,14 +1322,7 @@ public class TransactionManager {
      * @return A list of transactions of the given type.
      */
     public ArrayList<Transaction> filterByType(TransactionType type){
-        ArrayList<Transaction> filteredList = new ArrayList<>();
-        for(Transaction t: transactions) {
-            if(t.getType() == type) {
-                filteredList.add(t);
-            }
-        }
-
-        return filteredList;
+        return collect(TransactionQuery.all().withType(type));
     }
 
     /**
@@ -72,15 +1333,44 @@ public class TransactionManager {
      * @return A list of transactions within the specified range.
      */
     public ArrayList<Transaction> filterByDateRange(LocalDateTime from, LocalDateTime to) {
-        ArrayList<Transaction> filteredList = new ArrayList<>();
-        for(Transaction t: transactions) {
-            LocalDateTime date = t.getDate();
-            if((date.isEqual(from) || date.isAfter(from)) && (date.isEqual(to) || date.isBefore(to))){
-                filteredList.add(t);
-            }
-        }
+        return collect(TransactionQuery.all().withDateRange(from, to));
+    }
+
+    /**
+     * Counts and totals the transactions within a specific date and time range
+     * without creating any {@link Transaction} objects.
+     *
+     * @param from The start of the date range (inclusive).
+     * @param to   The end of the date range (inclusive).
+     * @return The count and income/expense totals of the range.
+     */
+    public TransactionSummary getSummaryBetween(LocalDateTime from, LocalDateTime to) {
+        return summarize(TransactionQuery.all().withDateRange(from, to));
+    }
+
+    /**
+     * Returns the matching transactions with the largest amounts, e.g. the 20 largest expenses of a year:
+     * <pre>findLargest(TransactionQuery.all().withType(TransactionType.EXPENSE).withDateRange(from, to), 20)</pre>
+     * Only {@code n} rows are held at any time, however many transactions match.
+     *
+     * @param query The criteria to match.
+     * @param n     The maximum number of transactions to return.
+     * @return Up to {@code n} matching transactions, largest amount first.
+     */
+    public List<Transaction> findLargest(TransactionQuery query, int n) {
+        return extremes(query, n, true);
+    }
 
-        return filteredList;
+    /**
+     * Returns the matching transactions with the smallest amounts.
+     * Only {@code n} rows are held at any time, however many transactions match.
+     *
+     * @param query The criteria to match.
+     * @param n     The maximum number of transactions to return.
+     * @return Up to {@code n} matching transactions, smallest amount first.
+     */
+    public List<Transaction> findSmallest(TransactionQuery query, int n) {
+        return extremes(query, n, false);
     }
 
     /**
@@ -91,15 +1381,7 @@ public class TransactionManager {
      * @return A list of transactions whose amounts fall within the range.
      */
     public ArrayList<Transaction> filterByAmountRange(double from, double to) {
-        ArrayList<Transaction> filteredList = new ArrayList<>();
-
-        for(Transaction t: transactions) {
-            if(t.getAmount() >= from && t.getAmount() <= to) {
-                filteredList.add(t);
-            }
-        }
-
-        return filteredList;
+        return collect(TransactionQuery.all().withAmountRange(from, to));
     }
 
     /**
@@ -109,32 +1391,310 @@ public class TransactionManager {
      * @return A list of transactions that match the specified category.
      */
     public ArrayList<Transaction> filterByCategory(Category category) {
-        ArrayList<Transaction> filteredList = new ArrayList<>();
+        return collect(TransactionQuery.all().withCategory(category));
+    }
+
+    /**
+     * Filters transactions based on a keyword found in the description.
+     * How the keyword is matched depends on the current {@link KeywordMatchMode}.
+     *
+     * @param keyword The keyword to search for (case-insensitive).
+     * @return A list of transactions whose description matches the keyword.
+     */
+    public ArrayList<Transaction> filterByKeyword(String keyword) {
+        return collect(TransactionQuery.all().withKeyword(keyword));
+    }
+
+    /**
+     * Selects how {@link #filterByKeyword(String)} matches keywords.
+     *
+     * @param mode The match mode to use from now on.
+     */
+    public void setKeywordMatchMode(KeywordMatchMode mode) {
+        this.keywordMatchMode = mode;
+    }
+
+    /**
+     * Gets the current keyword match mode.
+     *
+     * @return The mode used by {@link #filterByKeyword(String)}.
+     */
+    public KeywordMatchMode getKeywordMatchMode() {
+        return keywordMatchMode;
+    }
 
-        for(Transaction t: transactions) {
-            if(t.getCategory() == category) {
-                filteredList.add(t);
+    /**
+     * Publishes buffered transactions and takes the read lock.
+     *
+     * @return The held read lock; the caller must unlock it.
+     */
+    Lock lockForRead() {
+        for (Stripe stripe : stripes) {
+            if (stripe.size > 0) {
+                publish();
+                break;
             }
         }
 
-        return filteredList;
+        Lock read = lock.readLock();
+        read.lock();
+        return read;
     }
 
     /**
-     * Filters transactions based on a keyword found in the description.
+     * Moves every buffered transaction into the store and the indexes.
+     * The caller must hold the write lock. {@link #addTransaction(Transaction)} has already checked their IDs.
+     */
+    private void drainStripes() {
+        boolean drained = false;
+        for (Stripe stripe : stripes) {
+            if (stripe.size == 0) continue;
+
+            ArrayList<Transaction> batch;
+            stripe.lock.lock();
+            try {
+                batch = stripe.buffer;
+                stripe.buffer = new ArrayList<>(Math.min(batch.size(), STRIPE_CAPACITY));
+                stripe.size = 0;
+            } finally {
+                stripe.lock.unlock();
+            }
+
+            for (Transaction transaction : batch) {
+                indexRow(table.store.append(transaction));
+                bufferedIds.remove(transaction.getIdValue());
+            }
+            drained = true;
+        }
+
+        if (drained && consistencyChecks) {
+            verifyAggregates();
+        }
+    }
+
+    /**
+     * Hands out a new ID for a row added under the write lock.
      *
-     * @param keyword The keyword to search for (case-insensitive).
-     * @return A list of transactions whose description contains the keyword.
+     * @param epochSecond The timestamp of the row as seconds since the epoch.
+     * @return The lowest ID of that second that is not taken.
      */
-    public ArrayList<Transaction> filterByKeyword(String keyword) {
-        ArrayList<Transaction> filteredList = new ArrayList<>();
-        for(Transaction t: transactions) {
-            if(t.getDescription().toLowerCase().contains(keyword.toLowerCase()))
-                filteredList.add(t);
+    private long newId(long epochSecond) {
+        synchronized (idAllocator) {
+            return idAllocator.next(epochSecond, this::isTaken);
         }
+    }
 
-        return filteredList;
+    /**
+     * Picks the ID a row added under the write lock is stored under.
+     *
+     * @param id          The ID of the row, or {@link TransactionId#NONE} if it has none.
+     * @param epochSecond The timestamp of the row as seconds since the epoch.
+     * @return The ID itself if it is free, otherwise a new one.
+     */
+    private long uniqueId(long id, long epochSecond) {
+        return id != TransactionId.NONE && !isTaken(id) ? id : newId(epochSecond);
     }
 
+    /**
+     * Checks whether an ID is held by a published or a buffered transaction.
+     * The caller must hold the read or the write lock.
+     *
+     * @param id The ID.
+     * @return {@code true} if the ID is taken.
+     */
+    private boolean isTaken(long id) {
+        return table.rowsById.containsKey(id) || !bufferedIds.isEmpty() && bufferedIds.contains(id);
+    }
 
+    /**
+     * Locks every stripe, so no writer can buffer or log a transaction.
+     */
+    private void lockStripes() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    /**
+     * Unlocks every stripe locked by {@link #lockStripes()}.
+     */
+    private void unlockStripes() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    /**
+     * Updates the running totals and indexes for a row that was just appended to the store.
+     * If an older row already has the same ID, lookups keep returning the older row.
+     *
+     * @param row The position of the new row.
+     */
+    private void indexRow(int row) {
+        TransactionStore store = table.store;
+        long id = store.id(row);
+        table.add(row);
+        aggregates.record(store.type(row), store.category(row), store.amountCents(row));
+        if (!bulkLoad) {
+            rollups.record(store.epochSecond(row), store.type(row), store.category(row), store.amountCents(row));
+            budgetTracker.record(id, store.epochSecond(row), store.type(row), store.category(row), store.amountCents(row));
+        }
+        AmountSketches sketches = amountSketches;
+        if (sketches != null) {
+            sketches.record(store.epochSecond(row), store.type(row), store.category(row), store.amountCents(row));
+        }
+        queryCache.rowChanged(row);
+    }
+
+    /**
+     * Deletes a live row: drops the cached results it belongs to, takes it out of the running totals, the
+     * rollups and the budget totals, and marks it deleted. The caller must hold the write lock.
+     *
+     * @param row The position of the row.
+     */
+    private void deleteRow(int row) {
+        Table current = table;
+        TransactionStore store = current.store;
+        long epochSecond = store.epochSecond(row);
+        long amountCents = store.amountCents(row);
+        TransactionType type = store.type(row);
+        Category category = store.category(row);
+
+        queryCache.rowChanged(row);
+        aggregates.remove(type, category, amountCents);
+        current.delete(row);
+        if (!bulkLoad) {
+            rollups.remove(epochSecond, type, category, amountCents, () -> cellStatistics(epochSecond, type, category));
+            budgetTracker.remove(store.id(row), epochSecond, type, category, amountCents);
+        }
+        AmountSketches sketches = amountSketches;
+        if (sketches != null) {
+            sketches.remove(epochSecond, type, category, amountCents);
+        }
+        if (deletedWhileReclaiming != null) {
+            deletedWhileReclaiming.add(row);
+        }
+    }
+
+    /**
+     * Gets the amount sketches, building them from the live rows on first use. The caller must hold the read
+     * lock, which keeps writers out while they are built. During a bulk load the sketches of the rows loaded
+     * so far are returned without keeping them.
+     *
+     * @return The sketches of every live row.
+     */
+    private AmountSketches amountSketches() {
+        AmountSketches sketches = amountSketches;
+        if (sketches != null) return sketches;
+
+        Table current = table;
+        if (bulkLoad) return AmountSketches.recompute(current.store, current.deleted);
+        synchronized (amountSketchesBuild) {
+            sketches = amountSketches;
+            if (sketches == null) {
+                sketches = AmountSketches.recompute(current.store, current.deleted);
+                amountSketches = sketches;
+            }
+            return sketches;
+        }
+    }
+
+    /**
+     * Collects the amounts of the live rows of one day, type and category, to repair the bounds of a rollup
+     * cell after a delete. The caller must hold the write lock.
+     *
+     * @param epochSecond A timestamp within the day.
+     * @param type        The transaction type.
+     * @param category    The category.
+     * @return The statistics of the matching amounts.
+     */
+    private LongSummaryStatistics cellStatistics(long epochSecond, TransactionType type, Category category) {
+        Table current = table;
+        long dayStart = Math.floorDiv(epochSecond, 86_400L) * 86_400L;
+        LongSummaryStatistics statistics = new LongSummaryStatistics();
+        current.timeIndex.forEachBetween(dayStart, dayStart + 86_399L, row -> {
+            if (!current.deleted.get(row) && current.store.type(row) == type && current.store.category(row) == category) {
+                statistics.accept(current.store.amountCents(row));
+            }
+        });
+        return statistics;
+    }
+
+    /**
+     * Runs a query and materializes its matches.
+     *
+     * @param query The criteria to match.
+     * @return The matching transactions in insertion order.
+     */
+    private ArrayList<Transaction> collect(TransactionQuery query) {
+        Lock read = lockForRead();
+        try {
+            int[] rows = cachedRows(query);
+            ArrayList<Transaction> filteredList = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                filteredList.add(table.store.get(row));
+            }
+
+            return filteredList;
+        } finally {
+            read.unlock();
+        }
+    }
+
+    /**
+     * Returns the matching rows of a query from the query cache, running and caching the query on a miss.
+     * The caller must hold the read lock, so no row can be added between running the query and caching it.
+     *
+     * @param query The criteria to match.
+     * @return The matching row positions in insertion order; must not be modified.
+     */
+    private int[] cachedRows(TransactionQuery query) {
+        KeywordMatchMode mode = keywordMatchMode;
+        int[] rows = queryCache.getRows(query, mode);
+        if (rows == null) {
+            rows = table.queryEngine.rows(query, mode);
+            queryCache.putRows(query, mode, rows, table.queryEngine.matcher(query, mode));
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the summary of a query from the query cache, running and caching the query on a miss.
+     * The caller must hold the read lock.
+     *
+     * @param query The criteria to match.
+     * @return The count and income/expense totals of the matches.
+     */
+    private TransactionSummary cachedSummary(TransactionQuery query) {
+        KeywordMatchMode mode = keywordMatchMode;
+        TransactionSummary summary = queryCache.getSummary(query, mode);
+        if (summary == null) {
+            summary = table.queryEngine.summarize(query, mode);
+            queryCache.putSummary(query, mode, summary, table.queryEngine.matcher(query, mode));
+        }
+        return summary;
+    }
+
+    /**
+     * Runs a largest/smallest-N query and materializes its result.
+     *
+     * @param query   The criteria to match.
+     * @param n       The maximum number of transactions to return.
+     * @param largest {@code true} for the largest amounts, {@code false} for the smallest.
+     * @return The selected transactions, best first.
+     */
+    private List<Transaction> extremes(TransactionQuery query, int n, boolean largest) {
+        Lock read = lockForRead();
+        try {
+            int[] rows = table.queryEngine.extremes(query, keywordMatchMode, n, largest);
+            List<Transaction> result = new ArrayList<>(rows.length);
+            for (int row : rows) {
+                result.add(table.store.get(row));
+            }
+
+            return result;
+        } finally {
+            read.unlock();
+        }
+    }
 }
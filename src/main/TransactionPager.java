@@ -0,0 +1,186 @@
+package main;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Renders the transactions matching a query one page at a time, as returned by
+ * {@link TransactionManager#page(TransactionQuery, int)}.
+ * <p>
+ * The matching rows are fixed when the pager is created. Each page is formatted straight from the store's
+ * columns into one reusable buffer, in the form of {@link Transaction#toString()}, without creating a
+ * {@link Transaction} or a string per row, and is then written with a single bulk write. The read lock is
+ * only held while a page is formatted, not while it is written.
+ * </p>
+ */
+public class TransactionPager {
+    /** The page size of the menu. */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    private final TransactionManager transactionManager;
+    private final TransactionStore store;
+    private final int[] rows;
+    private final StringBuilder text = new StringBuilder(8_192);
+    private char[] chars = new char[0];
+    private int pageSize;
+    private int page;
+
+    /**
+     * Creates a pager positioned on the first page.
+     *
+     * @param transactionManager The manager holding the rows.
+     * @param store              The store the row positions refer to.
+     * @param rows               The matching row positions, in display order.
+     * @param pageSize           The number of rows per page.
+     * @throws IllegalArgumentException if the page size is not positive.
+     */
+    TransactionPager(TransactionManager transactionManager, TransactionStore store, int[] rows, int pageSize) {
+        this.transactionManager = transactionManager;
+        this.store = store;
+        this.rows = rows;
+        setPageSize(pageSize);
+    }
+
+    /**
+     * Gets the number of matching transactions.
+     *
+     * @return The match count.
+     */
+    public int getMatchCount() {
+        return rows.length;
+    }
+
+    /**
+     * Gets the number of rows per page.
+     *
+     * @return The page size.
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Changes the number of rows per page, staying on the page that holds the first row of the current page.
+     *
+     * @param pageSize The number of rows per page.
+     * @throws IllegalArgumentException if the page size is not positive.
+     */
+    public void setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Invalid page size: " + pageSize);
+        }
+        int firstRow = page * this.pageSize;
+        this.pageSize = pageSize;
+        this.page = firstRow / pageSize;
+    }
+
+    /**
+     * Gets the number of pages; an empty result has one empty page.
+     *
+     * @return The page count.
+     */
+    public int getPageCount() {
+        return Math.max(1, (rows.length + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * Gets the current page.
+     *
+     * @return The page number, starting at 1.
+     */
+    public int getPage() {
+        return page + 1;
+    }
+
+    /**
+     * Moves to a page, clamped to the first and last page.
+     *
+     * @param number The page number, starting at 1.
+     */
+    public void goTo(int number) {
+        page = Math.max(0, Math.min(number, getPageCount()) - 1);
+    }
+
+    /**
+     * Moves to the first page.
+     */
+    public void first() {
+        page = 0;
+    }
+
+    /**
+     * Moves to the last page.
+     */
+    public void last() {
+        page = getPageCount() - 1;
+    }
+
+    /**
+     * Moves to the next page.
+     *
+     * @return {@code false} if the current page is the last one.
+     */
+    public boolean next() {
+        if (page + 1 >= getPageCount()) return false;
+        page++;
+        return true;
+    }
+
+    /**
+     * Moves to the previous page.
+     *
+     * @return {@code false} if the current page is the first one.
+     */
+    public boolean previous() {
+        if (page == 0) return false;
+        page--;
+        return true;
+    }
+
+    /**
+     * Writes the current page, one transaction per line, with a single write.
+     * The writer is not flushed.
+     *
+     * @param out The destination.
+     * @throws IOException if writing fails.
+     */
+    public void render(Writer out) throws IOException {
+        int from = page * pageSize;
+        int to = Math.min(rows.length, from + pageSize);
+        text.setLength(0);
+        Lock read = transactionManager.lockForRead();
+        try {
+            for (int i = from; i < to; i++) {
+                appendRow(text, store, rows[i]);
+            }
+        } finally {
+            read.unlock();
+        }
+
+        int length = text.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        text.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+    }
+
+    /**
+     * Appends one row in the form {@code [id] yyyy-MM-dd | TYPE | amount | CATEGORY | description},
+     * followed by a line separator.
+     *
+     * @param text  The buffer to append to.
+     * @param store The store holding the row.
+     * @param row   The row position.
+     */
+    private static void appendRow(StringBuilder text, TransactionStore store, int row) {
+        TransactionId.appendTo(text.append('['), store.id(row)).append("] ");
+        LedgerParser.appendDate(text, store.epochSecond(row))
+                .append(" | ").append(store.type(row).name()).append(" | ");
+        Money.appendTo(text, store.amountCents(row))
+                .append(" | ").append(store.category(row).name())
+                .append(" | ").append(store.description(row))
+                .append(System.lineSeparator());
+    }
+}
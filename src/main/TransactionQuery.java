@@ -0,0 +1,352 @@
+package main;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable conjunction of filter criteria over transactions.
+ * <p>
+ * Start from {@link #all()} and narrow it down with the {@code with...} methods; each call returns a new query.
+ * A transaction matches when it satisfies every criterion that was set, e.g.
+ * <pre>TransactionQuery.all().withType(TransactionType.EXPENSE).withCategory(Category.FOOD).withAmountRange(50, Double.MAX_VALUE)</pre>
+ * Queries are executed by {@link TransactionManager#find(TransactionQuery)} and related methods.
+ * </p>
+ */
+public final class TransactionQuery {
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final TransactionQuery ALL = new TransactionQuery(null, null, Long.MIN_VALUE, Long.MAX_VALUE,
+            Long.MIN_VALUE, Long.MAX_VALUE, null);
+
+    private final TransactionType type;
+    private final Set<Category> categories;
+    private final long fromSecond;
+    private final long toSecond;
+    private final long minCents;
+    private final long maxCents;
+    private final String keyword;
+
+    private TransactionQuery(TransactionType type, Set<Category> categories, long fromSecond, long toSecond,
+                             long minCents, long maxCents, String keyword) {
+        this.type = type;
+        this.categories = categories;
+        this.fromSecond = fromSecond;
+        this.toSecond = toSecond;
+        this.minCents = minCents;
+        this.maxCents = maxCents;
+        this.keyword = keyword;
+    }
+
+    /**
+     * Returns the query that matches every transaction.
+     *
+     * @return The unrestricted query.
+     */
+    public static TransactionQuery all() {
+        return ALL;
+    }
+
+    /**
+     * Restricts the query to one transaction type.
+     *
+     * @param type The required type (INCOME or EXPENSE).
+     * @return A new query with the type restriction.
+     */
+    public TransactionQuery withType(TransactionType type) {
+        return new TransactionQuery(Objects.requireNonNull(type), categories, fromSecond, toSecond, minCents, maxCents, keyword);
+    }
+
+    /**
+     * Restricts the query to one category.
+     *
+     * @param category The required category.
+     * @return A new query with the category restriction.
+     */
+    public TransactionQuery withCategory(Category category) {
+        return withCategories(EnumSet.of(category));
+    }
+
+    /**
+     * Restricts the query to any of several categories.
+     *
+     * @param categories The accepted categories; must not be empty.
+     * @return A new query with the category restriction.
+     */
+    public TransactionQuery withCategories(Collection<Category> categories) {
+        if (categories.isEmpty()) {
+            throw new IllegalArgumentException("At least one category is required");
+        }
+        return new TransactionQuery(type, EnumSet.copyOf(categories), fromSecond, toSecond, minCents, maxCents, keyword);
+    }
+
+    /**
+     * Restricts the query to a date and time range.
+     *
+     * @param from The start of the range (inclusive).
+     * @param to   The end of the range (inclusive).
+     * @return A new query with the date restriction.
+     */
+    public TransactionQuery withDateRange(LocalDateTime from, LocalDateTime to) {
+        long fromEpoch = from.toEpochSecond(ZoneOffset.UTC) + (from.getNano() > 0 ? 1 : 0);
+        return new TransactionQuery(type, categories, fromEpoch, to.toEpochSecond(ZoneOffset.UTC), minCents, maxCents, keyword);
+    }
+
+    /**
+     * Restricts the query to an amount range.
+     *
+     * @param from The minimum amount (inclusive).
+     * @param to   The maximum amount (inclusive).
+     * @return A new query with the amount restriction.
+     */
+    public TransactionQuery withAmountRange(double from, double to) {
+        return withAmountRangeCents(toCentsCeil(from), toCentsFloor(to));
+    }
+
+    /**
+     * Restricts the query to an amount range given in cents.
+     *
+     * @param minCents The minimum amount in cents (inclusive).
+     * @param maxCents The maximum amount in cents (inclusive).
+     * @return A new query with the amount restriction.
+     */
+    public TransactionQuery withAmountRangeCents(long minCents, long maxCents) {
+        return new TransactionQuery(type, categories, fromSecond, toSecond, minCents, maxCents, keyword);
+    }
+
+    /**
+     * Restricts the query to descriptions matching a keyword.
+     *
+     * @param keyword The keyword; matched according to the manager's {@link KeywordMatchMode}.
+     * @return A new query with the keyword restriction.
+     */
+    public TransactionQuery withKeyword(String keyword) {
+        return new TransactionQuery(type, categories, fromSecond, toSecond, minCents, maxCents, Objects.requireNonNull(keyword));
+    }
+
+    /**
+     * Gets the required transaction type.
+     *
+     * @return The type, or {@code null} if any type matches.
+     */
+    public TransactionType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the accepted categories.
+     *
+     * @return A copy of the categories, or {@code null} if any category matches.
+     */
+    public Set<Category> getCategories() {
+        return categories == null ? null : EnumSet.copyOf(categories);
+    }
+
+    /**
+     * Gets the description keyword.
+     *
+     * @return The keyword, or {@code null} if descriptions are not restricted.
+     */
+    public String getKeyword() {
+        return keyword;
+    }
+
+    /**
+     * Checks whether the query restricts the date.
+     *
+     * @return {@code true} if a date range was set.
+     */
+    public boolean hasDateRange() {
+        return fromSecond != Long.MIN_VALUE || toSecond != Long.MAX_VALUE;
+    }
+
+    /**
+     * Checks whether the query restricts the amount.
+     *
+     * @return {@code true} if an amount range was set.
+     */
+    public boolean hasAmountRange() {
+        return minCents != Long.MIN_VALUE || maxCents != Long.MAX_VALUE;
+    }
+
+    /**
+     * Gets the start of the date range.
+     *
+     * @return The first matching epoch second (inclusive).
+     */
+    long fromSecond() {
+        return fromSecond;
+    }
+
+    /**
+     * Gets the end of the date range.
+     *
+     * @return The last matching epoch second (inclusive).
+     */
+    long toSecond() {
+        return toSecond;
+    }
+
+    /**
+     * Gets the lower amount bound.
+     *
+     * @return The minimum amount in cents (inclusive).
+     */
+    long minCents() {
+        return minCents;
+    }
+
+    /**
+     * Gets the upper amount bound.
+     *
+     * @return The maximum amount in cents (inclusive).
+     */
+    long maxCents() {
+        return maxCents;
+    }
+
+    /**
+     * Checks whether a category is accepted by this query.
+     *
+     * @param category The category to check.
+     * @return {@code true} if the category matches.
+     */
+    boolean acceptsCategory(Category category) {
+        return categories == null || categories.contains(category);
+    }
+
+    /**
+     * Returns an equivalent query in canonical form, so that queries matching the same rows compare equal:
+     * a category set covering every category is dropped, and in {@link KeywordMatchMode#TOKEN_PREFIX} mode
+     * the keyword is reduced to its lowercase words.
+     *
+     * @param mode The keyword match mode the query is run with.
+     * @return The canonical query.
+     */
+    TransactionQuery normalized(KeywordMatchMode mode) {
+        Set<Category> normalizedCategories = categories != null && categories.size() == Category.values().length ? null : categories;
+        String normalizedKeyword = keyword != null && mode == KeywordMatchMode.TOKEN_PREFIX
+                ? String.join(" ", KeywordIndex.tokenize(keyword))
+                : keyword;
+        if (normalizedCategories == categories && Objects.equals(normalizedKeyword, keyword)) return this;
+
+        return new TransactionQuery(type, normalizedCategories, fromSecond, toSecond, minCents, maxCents, normalizedKeyword);
+    }
+
+    /**
+     * Converts an amount to cents, rounding up and ignoring floating-point noise.
+     *
+     * @param amount The amount.
+     * @return The smallest whole number of cents not below the amount.
+     */
+    private static long toCentsCeil(double amount) {
+        if (amount >= Long.MAX_VALUE / 100.0) return Long.MAX_VALUE;
+        if (amount <= Long.MIN_VALUE / 100.0) return Long.MIN_VALUE;
+        return (long) Math.ceil(amount * 100 - 1e-6);
+    }
+
+    /**
+     * Converts an amount to cents, rounding down and ignoring floating-point noise.
+     *
+     * @param amount The amount.
+     * @return The largest whole number of cents not above the amount.
+     */
+    private static long toCentsFloor(double amount) {
+        if (amount >= Long.MAX_VALUE / 100.0) return Long.MAX_VALUE;
+        if (amount <= Long.MIN_VALUE / 100.0) return Long.MIN_VALUE;
+        return (long) Math.floor(amount * 100 + 1e-6);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransactionQuery)) return false;
+        TransactionQuery other = (TransactionQuery) o;
+        return fromSecond == other.fromSecond && toSecond == other.toSecond
+                && minCents == other.minCents && maxCents == other.maxCents
+                && type == other.type && Objects.equals(categories, other.categories)
+                && Objects.equals(keyword, other.keyword);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, categories, fromSecond, toSecond, minCents, maxCents, keyword);
+    }
+
+    /**
+     * Describes the criteria for users, with dates as {@code yyyy-MM-dd HH:mm} and amounts as in
+     * {@link Money#format(long)}, e.g. {@code EXPENSE | FOOD | 2024-03-01 00:00 to 2024-03-31 23:59 | amount 10.50 to 100.00}.
+     *
+     * @return The criteria that were set, or {@code "none"} if there are none.
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder();
+        if (type != null) sb.append(" | ").append(type);
+        if (categories != null) {
+            String separator = " | ";
+            for (Category category : categories) {
+                sb.append(separator).append(category);
+                separator = ", ";
+            }
+        }
+        if (hasDateRange()) {
+            sb.append(" | ");
+            describeRange(sb, fromSecond != Long.MIN_VALUE ? formatSecond(fromSecond) : null,
+                    toSecond != Long.MAX_VALUE ? formatSecond(toSecond) : null);
+        }
+        if (hasAmountRange()) {
+            sb.append(" | amount ");
+            describeRange(sb, minCents != Long.MIN_VALUE ? Money.format(minCents) : null,
+                    maxCents != Long.MAX_VALUE ? Money.format(maxCents) : null);
+        }
+        if (keyword != null) sb.append(" | keyword \"").append(keyword).append('"');
+        return sb.length() == 0 ? "none" : sb.substring(3);
+    }
+
+    /**
+     * Appends a range whose ends may be open.
+     *
+     * @param sb   The buffer to append to.
+     * @param from The start of the range, or {@code null} if it is open.
+     * @param to   The end of the range, or {@code null} if it is open.
+     */
+    private static void describeRange(StringBuilder sb, String from, String to) {
+        if (from == null) {
+            sb.append("up to ").append(to);
+        } else if (to == null) {
+            sb.append("from ").append(from);
+        } else {
+            sb.append(from).append(" to ").append(to);
+        }
+    }
+
+    /**
+     * Formats a bound of the date range.
+     *
+     * @param epochSecond The bound as seconds since the epoch.
+     * @return The bound as {@code yyyy-MM-dd HH:mm}.
+     */
+    private static String formatSecond(long epochSecond) {
+        return DATE_TIME.format(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Returns a description of the criteria for debugging, with the raw bounds in seconds and cents
+     * (see {@link #describe()} for users).
+     *
+     * @return The criteria that were set.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("TransactionQuery[");
+        if (type != null) sb.append(" type=").append(type);
+        if (categories != null) sb.append(" categories=").append(categories);
+        if (hasDateRange()) sb.append(" seconds=").append(fromSecond).append("..").append(toSecond);
+        if (hasAmountRange()) sb.append(" cents=").append(minCents).append("..").append(maxCents);
+        if (keyword != null) sb.append(" keyword='").append(keyword).append('\'');
+        return sb.append(" ]").toString();
+    }
+}
@@ -0,0 +1,389 @@
+package main;
+
+import Utils.LongIntHashMap;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Pre-aggregated statistics per day, {@link Category} and {@link TransactionType}.
+ * <p>
+ * Every recorded row updates the count, sum, minimum and maximum of its cell in constant time. Reports over
+ * days, weeks, months or years ({@link RollupPeriod}) combine the daily cells of the requested range, so they
+ * cost time proportional to the number of days in the range, not to the number of transactions.
+ * </p>
+ * <p>
+ * The cells are kept in parallel {@code long} arrays, one slot of cells per day that has transactions,
+ * with a hash map from the epoch day to its slot.
+ * </p>
+ */
+public class TransactionRollups {
+    private static final TransactionType[] TYPES = TransactionType.values();
+    private static final Category[] CATEGORIES = Category.values();
+    private static final int CELLS = TYPES.length * CATEGORIES.length;
+    private static final int INITIAL_DAYS = 64;
+
+    private final LongIntHashMap slots = new LongIntHashMap(INITIAL_DAYS);
+    private long[] days = new long[INITIAL_DAYS];
+    private long[] counts = new long[INITIAL_DAYS * CELLS];
+    private long[] sumsCents = new long[INITIAL_DAYS * CELLS];
+    private long[] minsCents = new long[INITIAL_DAYS * CELLS];
+    private long[] maxsCents = new long[INITIAL_DAYS * CELLS];
+    private int dayCount;
+    private long firstDay = Long.MAX_VALUE;
+    private long lastDay = Long.MIN_VALUE;
+    private long rowCount;
+
+    /**
+     * Adds one transaction to the cell of its day, category and type.
+     *
+     * @param epochSecond The timestamp of the transaction as seconds since the epoch.
+     * @param type        The type of the transaction.
+     * @param category    The category of the transaction.
+     * @param amountCents The amount of the transaction in cents.
+     * @throws ArithmeticException if the cell sum would overflow; the rollups are then left unchanged.
+     */
+    public void record(long epochSecond, TransactionType type, Category category, long amountCents) {
+        long day = Math.floorDiv(epochSecond, 86_400L);
+        int slot = slots.get(day, -1);
+        long sum = slot < 0 ? amountCents : Money.add(sumsCents[slot * CELLS + cell(type, category)], amountCents);
+
+        if (slot < 0) {
+            slot = addDay(day);
+        }
+        int cell = slot * CELLS + cell(type, category);
+        if (counts[cell] == 0) {
+            minsCents[cell] = amountCents;
+            maxsCents[cell] = amountCents;
+        } else {
+            minsCents[cell] = Math.min(minsCents[cell], amountCents);
+            maxsCents[cell] = Math.max(maxsCents[cell], amountCents);
+        }
+        sumsCents[cell] = sum;
+        counts[cell]++;
+        rowCount++;
+    }
+
+    /**
+     * Takes one transaction out of the cell of its day, category and type, e.g. when it is deleted.
+     * The count and sum are updated in constant time. If the amount was the cell's minimum or maximum,
+     * the remaining amounts of the cell are asked for to find the new bounds.
+     *
+     * @param epochSecond The timestamp of the transaction as seconds since the epoch.
+     * @param type        The type of the transaction.
+     * @param category    The category of the transaction.
+     * @param amountCents The amount of the transaction in cents.
+     * @param remaining   Supplies the statistics of the other transactions of the cell; only called when
+     *                    the bounds must be recomputed.
+     * @throws IllegalArgumentException if the cell holds no transaction.
+     * @throws ArithmeticException if the cell sum would overflow; the rollups are then left unchanged.
+     */
+    public void remove(long epochSecond, TransactionType type, Category category, long amountCents,
+                       Supplier<LongSummaryStatistics> remaining) {
+        int slot = slots.get(Math.floorDiv(epochSecond, 86_400L), -1);
+        int cell = slot < 0 ? -1 : slot * CELLS + cell(type, category);
+        if (cell < 0 || counts[cell] == 0) {
+            throw new IllegalArgumentException("No " + category + "/" + type + " transaction recorded at " + epochSecond);
+        }
+
+        sumsCents[cell] = Money.subtract(sumsCents[cell], amountCents);
+        counts[cell]--;
+        rowCount--;
+        if (counts[cell] == 0) {
+            minsCents[cell] = 0;
+            maxsCents[cell] = 0;
+        } else if (amountCents == minsCents[cell] || amountCents == maxsCents[cell]) {
+            LongSummaryStatistics others = remaining.get();
+            minsCents[cell] = others.getMin();
+            maxsCents[cell] = others.getMax();
+        }
+    }
+
+    /**
+     * Gets the number of recorded rows.
+     *
+     * @return The row count.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of days that have had at least one transaction. Days whose transactions were all
+     * removed are still counted.
+     *
+     * @return The day count.
+     */
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    /**
+     * Returns the statistics of every non-empty (bucket, category, type) combination in a date range,
+     * ordered by bucket, then category, then type.
+     *
+     * @param period The bucket length.
+     * @param from   The first day of the range (inclusive).
+     * @param to     The last day of the range (inclusive).
+     * @return The rollups of the range.
+     */
+    public List<Rollup> report(RollupPeriod period, LocalDate from, LocalDate to) {
+        List<Rollup> rollups = new ArrayList<>();
+        long[] bucketCounts = new long[CELLS];
+        long[] bucketSums = new long[CELLS];
+        long[] bucketMins = new long[CELLS];
+        long[] bucketMaxs = new long[CELLS];
+        long bucket = Long.MIN_VALUE;
+
+        long end = Math.min(to.toEpochDay(), lastDay);
+        for (long day = Math.max(from.toEpochDay(), firstDay); day <= end; day++) {
+            int slot = slots.get(day, -1);
+            if (slot < 0) continue;
+
+            long start = period.bucketStart(day);
+            if (start != bucket) {
+                flush(bucket, bucketCounts, bucketSums, bucketMins, bucketMaxs, rollups);
+                bucket = start;
+            }
+            for (int c = 0; c < CELLS; c++) {
+                int cell = slot * CELLS + c;
+                if (counts[cell] == 0) continue;
+                if (bucketCounts[c] == 0) {
+                    bucketMins[c] = minsCents[cell];
+                    bucketMaxs[c] = maxsCents[cell];
+                } else {
+                    bucketMins[c] = Math.min(bucketMins[c], minsCents[cell]);
+                    bucketMaxs[c] = Math.max(bucketMaxs[c], maxsCents[cell]);
+                }
+                bucketSums[c] = Money.add(bucketSums[c], sumsCents[cell]);
+                bucketCounts[c] += counts[cell];
+            }
+        }
+        flush(bucket, bucketCounts, bucketSums, bucketMins, bucketMaxs, rollups);
+
+        return rollups;
+    }
+
+    /**
+     * Returns the count and income/expense totals of every non-empty bucket in a date range.
+     *
+     * @param period The bucket length.
+     * @param from   The first day of the range (inclusive).
+     * @param to     The last day of the range (inclusive).
+     * @return A map from the first day of each bucket to its summary, in date order.
+     */
+    public Map<LocalDate, TransactionSummary> summarize(RollupPeriod period, LocalDate from, LocalDate to) {
+        Map<LocalDate, TransactionSummary> summaries = new LinkedHashMap<>();
+        for (Rollup rollup : report(period, from, to)) {
+            long income = rollup.getType() == TransactionType.INCOME ? rollup.getSumCents() : 0;
+            long expense = rollup.getType() == TransactionType.EXPENSE ? rollup.getSumCents() : 0;
+            summaries.merge(rollup.getStart(), new TransactionSummary(rollup.getCount(), income, expense),
+                    TransactionSummary::plus);
+        }
+
+        return summaries;
+    }
+
+    /**
+     * Recomputes the rollups from scratch by scanning every row of a store.
+     *
+     * @param store The store to scan.
+     * @return Freshly computed rollups.
+     */
+    public static TransactionRollups recompute(TransactionStore store) {
+        return recompute(store, new RowBitmap());
+    }
+
+    /**
+     * Recomputes the rollups from scratch by scanning the live rows of a store.
+     *
+     * @param store   The store to scan.
+     * @param deleted The rows to leave out.
+     * @return Freshly computed rollups.
+     */
+    public static TransactionRollups recompute(TransactionStore store, RowBitmap deleted) {
+        TransactionRollups rollups = new TransactionRollups();
+        for (int row = 0; row < store.size(); row++) {
+            if (deleted.get(row)) continue;
+            rollups.record(store.epochSecond(row), store.type(row), store.category(row), store.amountCents(row));
+        }
+
+        return rollups;
+    }
+
+    /**
+     * Compares these rollups with another set of rollups. Days left without transactions by
+     * {@link #remove} count as missing.
+     *
+     * @param other The rollups to compare with.
+     * @return A description of the first difference found, or {@code null} if they are equal.
+     */
+    public String findMismatch(TransactionRollups other) {
+        if (rowCount != other.rowCount) {
+            return "running " + rowCount + " rows over " + dayCount + " days; recomputed "
+                    + other.rowCount + " rows over " + other.dayCount + " days";
+        }
+        // With equal row counts, every cell of this side matching means the other side has no extra rows
+        for (int slot = 0; slot < dayCount; slot++) {
+            int otherSlot = other.slots.get(days[slot], -1);
+            if (otherSlot < 0 && isEmpty(slot)) continue;
+            for (int c = 0; otherSlot >= 0 && c < CELLS; c++) {
+                int cell = slot * CELLS + c;
+                int otherCell = otherSlot * CELLS + c;
+                if (counts[cell] != other.counts[otherCell] || sumsCents[cell] != other.sumsCents[otherCell]
+                        || minsCents[cell] != other.minsCents[otherCell] || maxsCents[cell] != other.maxsCents[otherCell]) {
+                    return LocalDate.ofEpochDay(days[slot]) + " " + CATEGORIES[c / TYPES.length] + "/" + TYPES[c % TYPES.length]
+                            + ": running " + counts[cell] + " rows, " + sumsCents[cell] + " cents; recomputed "
+                            + other.counts[otherCell] + " rows, " + other.sumsCents[otherCell] + " cents";
+                }
+            }
+            if (otherSlot < 0) {
+                return LocalDate.ofEpochDay(days[slot]) + ": missing from the recomputed rollups";
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes the rollups in a compact binary form: the row and day counts, then every day with a bit mask
+     * of its non-empty cells followed by their count, sum, minimum and maximum.
+     *
+     * @param out The stream to write to.
+     * @throws IOException if writing fails.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(rowCount);
+        out.writeInt(dayCount);
+        for (int slot = 0; slot < dayCount; slot++) {
+            int mask = 0;
+            for (int c = 0; c < CELLS; c++) {
+                if (counts[slot * CELLS + c] != 0) mask |= 1 << c;
+            }
+            out.writeLong(days[slot]);
+            out.writeInt(mask);
+            for (int c = 0; c < CELLS; c++) {
+                int cell = slot * CELLS + c;
+                if (counts[cell] == 0) continue;
+                out.writeLong(counts[cell]);
+                out.writeLong(sumsCents[cell]);
+                out.writeLong(minsCents[cell]);
+                out.writeLong(maxsCents[cell]);
+            }
+        }
+    }
+
+    /**
+     * Reads rollups written by {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in The stream to read from.
+     * @return The rollups.
+     * @throws IOException if reading fails or the data is malformed.
+     */
+    public static TransactionRollups readFrom(DataInputStream in) throws IOException {
+        TransactionRollups rollups = new TransactionRollups();
+        long rowCount = in.readLong();
+        int dayCount = in.readInt();
+        if (rowCount < 0 || dayCount < 0) {
+            throw new IOException("Corrupt rollup data");
+        }
+
+        for (int i = 0; i < dayCount; i++) {
+            long day = in.readLong();
+            int mask = in.readInt();
+            if (rollups.slots.containsKey(day) || mask >>> CELLS != 0) {
+                throw new IOException("Corrupt rollup data at day " + day);
+            }
+            int slot = rollups.addDay(day);
+            for (int c = 0; c < CELLS; c++) {
+                if ((mask & (1 << c)) == 0) continue;
+                int cell = slot * CELLS + c;
+                rollups.counts[cell] = in.readLong();
+                rollups.sumsCents[cell] = in.readLong();
+                rollups.minsCents[cell] = in.readLong();
+                rollups.maxsCents[cell] = in.readLong();
+            }
+        }
+        rollups.rowCount = rowCount;
+
+        return rollups;
+    }
+
+    /**
+     * Checks whether every cell of a day is empty.
+     *
+     * @param slot The slot of the day.
+     * @return {@code true} if the day holds no transaction.
+     */
+    private boolean isEmpty(int slot) {
+        for (int c = 0; c < CELLS; c++) {
+            if (counts[slot * CELLS + c] != 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Allocates the slot of a day, growing the arrays if needed.
+     *
+     * @param day The day as days since the epoch.
+     * @return The new slot.
+     */
+    private int addDay(long day) {
+        if (dayCount == days.length) {
+            days = Arrays.copyOf(days, dayCount * 2);
+            counts = Arrays.copyOf(counts, dayCount * 2 * CELLS);
+            sumsCents = Arrays.copyOf(sumsCents, dayCount * 2 * CELLS);
+            minsCents = Arrays.copyOf(minsCents, dayCount * 2 * CELLS);
+            maxsCents = Arrays.copyOf(maxsCents, dayCount * 2 * CELLS);
+        }
+        days[dayCount] = day;
+        slots.put(day, dayCount);
+        firstDay = Math.min(firstDay, day);
+        lastDay = Math.max(lastDay, day);
+        return dayCount++;
+    }
+
+    /**
+     * Moves the non-empty cells of a finished bucket to the report and clears them.
+     *
+     * @param bucket       The first day of the bucket, or {@link Long#MIN_VALUE} before the first bucket.
+     * @param bucketCounts The cell counts.
+     * @param bucketSums   The cell sums.
+     * @param bucketMins   The cell minimums.
+     * @param bucketMaxs   The cell maximums.
+     * @param rollups      The report to add to.
+     */
+    private static void flush(long bucket, long[] bucketCounts, long[] bucketSums, long[] bucketMins,
+                              long[] bucketMaxs, List<Rollup> rollups) {
+        if (bucket == Long.MIN_VALUE) return;
+
+        LocalDate start = LocalDate.ofEpochDay(bucket);
+        for (int c = 0; c < CELLS; c++) {
+            if (bucketCounts[c] == 0) continue;
+            rollups.add(new Rollup(start, CATEGORIES[c / TYPES.length], TYPES[c % TYPES.length],
+                    bucketCounts[c], bucketSums[c], bucketMins[c], bucketMaxs[c]));
+        }
+        Arrays.fill(bucketCounts, 0);
+        Arrays.fill(bucketSums, 0);
+    }
+
+    /**
+     * Returns the position of a (category, type) cell within a day; cells are ordered by category, then type.
+     *
+     * @param type     The transaction type.
+     * @param category The category.
+     * @return The cell position.
+     */
+    private static int cell(TransactionType type, Category category) {
+        return category.ordinal() * TYPES.length + type.ordinal();
+    }
+}
@@ -0,0 +1,108 @@
+package main;
+
+/**
+ * Storage engine used by {@link TransactionManager} to hold transaction rows.
+ * <p>
+ * Rows are addressed by their position (0-based, in insertion order). Column accessors expose
+ * the raw values of a row without building a {@link Transaction} object, so scans over large
+ * ledgers can read only the columns they need. Full objects are created with {@link #get(int)}
+ * only when results are handed back to the caller.
+ * </p>
+ */
+public interface TransactionStore {
+
+    /**
+     * Returns the number of stored rows.
+     *
+     * @return the row count
+     */
+    int size();
+
+    /**
+     * Appends a transaction to the end of the store.
+     *
+     * @param transaction the transaction to store
+     * @return the row position assigned to the transaction
+     */
+    int append(Transaction transaction);
+
+    /**
+     * Appends a row given as raw column values, without building a {@link Transaction} first.
+     * Used by the file loaders.
+     *
+     * @param id          the transaction ID
+     * @param epochSecond the timestamp as seconds since the epoch
+     * @param amountCents the amount in cents
+     * @param type        the transaction type
+     * @param category    the transaction category
+     * @param description the description text
+     * @return the row position assigned to the row
+     */
+    int appendRow(long id, long epochSecond, long amountCents, TransactionType type, Category category, String description);
+
+    /**
+     * Materializes the transaction stored at the given row.
+     *
+     * @param row the row position
+     * @return the transaction at that row
+     */
+    Transaction get(int row);
+
+    /**
+     * Returns the ID of a row.
+     *
+     * @param row the row position
+     * @return the transaction ID in its compact form (see {@link TransactionId})
+     */
+    long id(int row);
+
+    /**
+     * Returns the timestamp of a row as seconds since the epoch (UTC-based local time).
+     *
+     * @param row the row position
+     * @return the epoch second of the transaction
+     */
+    long epochSecond(int row);
+
+    /**
+     * Returns the amount of a row in cents.
+     *
+     * @param row the row position
+     * @return the amount in cents
+     */
+    long amountCents(int row);
+
+    /**
+     * Returns the type of a row.
+     *
+     * @param row the row position
+     * @return INCOME or EXPENSE
+     */
+    TransactionType type(int row);
+
+    /**
+     * Returns the category of a row.
+     *
+     * @param row the row position
+     * @return the transaction's category
+     */
+    Category category(int row);
+
+    /**
+     * Returns the description of a row.
+     *
+     * @param row the row position
+     * @return the description text
+     */
+    String description(int row);
+
+    /**
+     * Returns the dictionary code of a row's description. Rows with equal descriptions share a code, so
+     * a check on the description can be made once per code instead of once per row.
+     * Codes are small non-negative numbers assigned densely from 0.
+     *
+     * @param row the row position
+     * @return the description code, or -1 if the store does not encode this row's description
+     */
+    int descriptionCode(int row);
+}
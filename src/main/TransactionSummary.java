@@ -0,0 +1,126 @@
+package main;
+
+/**
+ * Immutable count and income/expense totals for a group of transactions.
+ * Amounts are kept in cents; the {@code double} getters convert them for display.
+ */
+public class TransactionSummary {
+    /** A summary of no transactions. */
+    public static final TransactionSummary EMPTY = new TransactionSummary(0, 0, 0);
+
+    private final long count;
+    private final long incomeCents;
+    private final long expenseCents;
+
+    /**
+     * Constructs a new TransactionSummary.
+     *
+     * @param count        The number of transactions.
+     * @param incomeCents  The total of INCOME amounts, in cents.
+     * @param expenseCents The total of EXPENSE amounts, in cents.
+     */
+    public TransactionSummary(long count, long incomeCents, long expenseCents) {
+        this.count = count;
+        this.incomeCents = incomeCents;
+        this.expenseCents = expenseCents;
+    }
+
+    /**
+     * Gets the number of summarized transactions.
+     *
+     * @return The transaction count.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the total income in cents.
+     *
+     * @return The income total in cents.
+     */
+    public long getIncomeCents() {
+        return incomeCents;
+    }
+
+    /**
+     * Gets the total expense in cents.
+     *
+     * @return The expense total in cents.
+     */
+    public long getExpenseCents() {
+        return expenseCents;
+    }
+
+    /**
+     * Gets the total income.
+     *
+     * @return The income total.
+     */
+    public double getIncome() {
+        return Money.toDouble(incomeCents);
+    }
+
+    /**
+     * Gets the total expense.
+     *
+     * @return The expense total.
+     */
+    public double getExpense() {
+        return Money.toDouble(expenseCents);
+    }
+
+    /**
+     * Gets the income minus the expense in cents.
+     *
+     * @return The balance in cents.
+     * @throws ArithmeticException if the balance does not fit in a {@code long}.
+     */
+    public long getBalanceCents() {
+        return Money.subtract(incomeCents, expenseCents);
+    }
+
+    /**
+     * Gets the income minus the expense.
+     *
+     * @return The balance.
+     */
+    public double getBalance() {
+        return Money.toDouble(getBalanceCents());
+    }
+
+    /**
+     * Combines this summary with another one.
+     *
+     * @param other The summary to add.
+     * @return A summary covering the transactions of both.
+     */
+    public TransactionSummary plus(TransactionSummary other) {
+        return new TransactionSummary(count + other.count, Money.add(incomeCents, other.incomeCents),
+                Money.add(expenseCents, other.expenseCents));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TransactionSummary)) return false;
+        TransactionSummary other = (TransactionSummary) o;
+        return count == other.count && incomeCents == other.incomeCents && expenseCents == other.expenseCents;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(count) * 961 + Long.hashCode(incomeCents) * 31 + Long.hashCode(expenseCents);
+    }
+
+    /**
+     * Returns a formatted string representation of the summary.
+     *
+     * @return The count, income, expense and balance.
+     */
+    @Override
+    public String toString() {
+        return count + " transactions | income " + Money.format(incomeCents) + " | expense " + Money.format(expenseCents)
+                + " | balance " + Money.format(getBalanceCents());
+    }
+}